@@ -0,0 +1,120 @@
+package com.shepherdmoney.interviewproject.model;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the CreditCard balance engine.
+ * The history holds one record every other day ending today, so even backdate distances
+ * hit a record exactly and odd distances resolve through the closest previous record.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CreditCardBenchmark {
+
+    private static final int INSERT_WINDOW = 1024;
+
+    @Param({"10", "1000", "100000"})
+    public int historyLength;
+
+    @Param({"2", "31", "366"})
+    public int backdateDays;
+
+    private CreditCard creditCard;
+
+    private LocalDate today;
+
+    private LocalDate exactDate;
+
+    private LocalDate floorDate;
+
+    private LocalDate missDate;
+
+    private LocalDate backdate;
+
+    private int insertCounter;
+
+    private boolean toggle;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        today = LocalDate.now();
+        creditCard = new CreditCard();
+        for (int i = historyLength - 1; i >= 0; i--) {
+            creditCard.insertBalance(today.minusDays(2L * i), 1000.0 + i);
+        }
+        creditCard.flushBalanceHistory();
+
+        long span = 2L * (historyLength - 1);
+        long exactOffset = Math.min(backdateDays & ~1, span);
+        exactDate = today.minusDays(exactOffset);
+        floorDate = exactOffset > 0 ? exactDate.plusDays(1) : today.plusDays(1);
+        missDate = today.minusDays(span + 1);
+        backdate = exactDate;
+        insertCounter = 0;
+    }
+
+    @Benchmark
+    public void insertBalance() {
+        // Cycles through a fixed window of future dates so the history size stays bounded
+        creditCard.insertBalance(today.plusDays(1 + (insertCounter++ & (INSERT_WINDOW - 1))), 42.0);
+    }
+
+    @Benchmark
+    public double getBalanceExactHit() {
+        return creditCard.getBalance(exactDate);
+    }
+
+    @Benchmark
+    public double getBalanceFloorHit() {
+        return creditCard.getBalance(floorDate);
+    }
+
+    @Benchmark
+    public double getBalanceMiss() {
+        return creditCard.getBalance(missDate);
+    }
+
+    @Benchmark
+    public void updateBalance() {
+        toggle = !toggle;
+        creditCard.updateBalance(exactDate, toggle ? 500.0 : 600.0);
+    }
+
+    /**
+     * The backdated update path of POST /credit-card:update-balance for one payload.
+     */
+    @Benchmark
+    public int backdatedPropagation() {
+        toggle = !toggle;
+        creditCard.propagateBalance(backdate, toggle ? 1500.0 : 1600.0);
+        return creditCard.flushBalanceHistory();
+    }
+
+    /**
+     * The day-by-day rewrite loop the update endpoint used before range propagation, kept as a baseline.
+     */
+    @Benchmark
+    public void backdatedPropagationDayByDay(Blackhole blackhole) {
+        toggle = !toggle;
+        double balance = toggle ? 1500.0 : 1600.0;
+        double currentBalance = creditCard.getBalance(backdate);
+        double difference = balance - currentBalance;
+        creditCard.updateBalance(backdate, balance);
+        if (currentBalance > 0) {
+            LocalDate date = backdate.plusDays(1);
+            while (!date.isAfter(today)) {
+                creditCard.updateBalance(date, creditCard.getBalance(date) + difference);
+                date = date.plusDays(1);
+            }
+        }
+        blackhole.consume(creditCard.flushBalanceHistory());
+    }
+}
@@ -0,0 +1,118 @@
+package com.shepherdmoney.interviewproject.loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Minimal blocking HTTP client for the application's endpoints.
+ * Request bodies are built by hand since every value is generated by the load test itself.
+ */
+public class ApiClient {
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    private final String baseUri;
+
+    public ApiClient(String baseUri) {
+        this.baseUri = baseUri;
+    }
+
+    /**
+     * A single balance update to send in an update-balance batch.
+     */
+    public record BalanceUpdate(String cardNumber, LocalDate date, double amount) {
+    }
+
+    public HttpResponse<String> createUser(String name, String email) throws IOException, InterruptedException {
+        String body = "{\"name\":\"" + name + "\",\"email\":\"" + email + "\"}";
+        return send(json("/user").PUT(HttpRequest.BodyPublishers.ofString(body)).build());
+    }
+
+    public HttpResponse<String> createCard(int userId, String bank, String number) throws IOException, InterruptedException {
+        String body = "{\"userId\":" + userId + ",\"cardIssuanceBank\":\"" + bank + "\",\"cardNumber\":\"" + number + "\"}";
+        return send(json("/credit-card").POST(HttpRequest.BodyPublishers.ofString(body)).build());
+    }
+
+    public HttpResponse<String> createUsersBulk(List<String> names) throws IOException, InterruptedException {
+        StringBuilder body = new StringBuilder(names.size() * 60);
+        for (String name : names) {
+            body.append("{\"name\":\"").append(name).append("\",\"email\":\"").append(name).append("@example.com\"}\n");
+        }
+        return send(ndjson("/user:bulk").PUT(HttpRequest.BodyPublishers.ofString(body.toString())).build());
+    }
+
+    public HttpResponse<String> createCardsBulk(List<Integer> userIds, String bank, List<String> numbers)
+            throws IOException, InterruptedException {
+        StringBuilder body = new StringBuilder(numbers.size() * 80);
+        for (int i = 0; i < numbers.size(); i++) {
+            body.append("{\"userId\":").append(userIds.get(i)).append(",\"cardIssuanceBank\":\"").append(bank)
+                    .append("\",\"cardNumber\":\"").append(numbers.get(i)).append("\"}\n");
+        }
+        return send(ndjson("/credit-card:bulk").POST(HttpRequest.BodyPublishers.ofString(body.toString())).build());
+    }
+
+    public HttpResponse<String> listCards(int userId) throws IOException, InterruptedException {
+        return send(get("/credit-card:all?userId=" + userId));
+    }
+
+    public HttpResponse<String> userIdForCard(String cardNumber) throws IOException, InterruptedException {
+        return send(get("/credit-card:user-id?creditCardNumber=" + encode(cardNumber)));
+    }
+
+    public HttpResponse<String> balanceHistory(String cardNumber) throws IOException, InterruptedException {
+        return send(get("/credit-card:balance-history?cardNumber=" + encode(cardNumber)));
+    }
+
+    public HttpResponse<String> balanceAt(String cardNumber, LocalDate date) throws IOException, InterruptedException {
+        return send(get("/credit-card:balance?cardNumber=" + encode(cardNumber) + "&date=" + date));
+    }
+
+    public HttpResponse<String> updateBalance(List<BalanceUpdate> updates) throws IOException, InterruptedException {
+        StringBuilder body = new StringBuilder(updates.size() * 80).append('[');
+        for (int i = 0; i < updates.size(); i++) {
+            BalanceUpdate update = updates.get(i);
+            if (i > 0) {
+                body.append(',');
+            }
+            body.append("{\"creditCardNumber\":\"").append(update.cardNumber())
+                    .append("\",\"balanceDate\":\"").append(update.date())
+                    .append("\",\"balanceAmount\":").append(update.amount()).append('}');
+        }
+        body.append(']');
+        return send(json("/credit-card:update-balance").POST(HttpRequest.BodyPublishers.ofString(body.toString())).build());
+    }
+
+    private HttpResponse<String> send(HttpRequest request) throws IOException, InterruptedException {
+        return httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpRequest.Builder json(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUri + path))
+                .header("Content-Type", "application/json")
+                .timeout(Duration.ofSeconds(30));
+    }
+
+    private HttpRequest.Builder ndjson(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUri + path))
+                .header("Content-Type", "application/x-ndjson")
+                .timeout(Duration.ofSeconds(120));
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUri + path)).timeout(Duration.ofSeconds(30)).GET().build();
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,123 @@
+package com.shepherdmoney.interviewproject.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-endpoint latency histograms in microseconds, with error counts,
+ * and the number of database statements the application executed over the same period.
+ */
+public class LatencyReport {
+
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(2);
+
+    private final Map<Operation, Histogram> histograms = new EnumMap<>(Operation.class);
+
+    private final Map<Operation, LongAdder> errors = new EnumMap<>(Operation.class);
+
+    private long statements = -1;
+
+    public LatencyReport() {
+        for (Operation operation : Operation.values()) {
+            histograms.put(operation, new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3));
+            errors.put(operation, new LongAdder());
+        }
+    }
+
+    /**
+     * Records one request.
+     *
+     * @param operation     The endpoint called.
+     * @param latencyNanos  Time from the intended start of the request to its completion.
+     * @param failed        true if the request failed or returned an error status.
+     */
+    public void record(Operation operation, long latencyNanos, boolean failed) {
+        long micros = Math.min(TimeUnit.NANOSECONDS.toMicros(latencyNanos), HIGHEST_TRACKABLE_MICROS);
+        histograms.get(operation).recordValue(Math.max(micros, 1));
+        if (failed) {
+            errors.get(operation).increment();
+        }
+    }
+
+    /**
+     * Records the database statements executed while the requests were recorded.
+     *
+     * @param statements The number of JDBC statements prepared by the application.
+     */
+    public void recordStatements(long statements) {
+        this.statements = statements;
+    }
+
+    /**
+     * @return The latencies of all endpoints in one histogram.
+     */
+    public Histogram combined() {
+        Histogram combined = new Histogram(HIGHEST_TRACKABLE_MICROS, 3);
+        histograms.values().forEach(combined::add);
+        return combined;
+    }
+
+    /**
+     * @return The number of failed requests over all endpoints.
+     */
+    public long errorCount() {
+        return errors.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    /**
+     * Prints a summary table and writes one HdrHistogram percentile distribution file per endpoint
+     * plus a summary.csv to the directory.
+     *
+     * @param title           Heading of the printed table.
+     * @param durationSeconds The measured duration, used for throughput.
+     * @param out             Where to print the table.
+     * @param directory       Where to write the files.
+     * @throws IOException if the files cannot be written.
+     */
+    public void write(String title, int durationSeconds, PrintStream out, Path directory) throws IOException {
+        Files.createDirectories(directory);
+        out.println();
+        out.println(title);
+        out.printf("%-36s %9s %7s %10s %9s %9s %9s %9s%n",
+                "endpoint", "count", "errors", "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms");
+
+        StringBuilder csv = new StringBuilder("endpoint,count,errors,throughput,p50_ms,p99_ms,p999_ms,max_ms\n");
+        long requests = 0;
+        for (Operation operation : Operation.values()) {
+            Histogram histogram = histograms.get(operation);
+            long count = histogram.getTotalCount();
+            if (count == 0) {
+                continue;
+            }
+            requests += count;
+            double throughput = (double) count / durationSeconds;
+            double p50 = histogram.getValueAtPercentile(50.0) / 1000.0;
+            double p99 = histogram.getValueAtPercentile(99.0) / 1000.0;
+            double p999 = histogram.getValueAtPercentile(99.9) / 1000.0;
+            double max = histogram.getMaxValue() / 1000.0;
+            long errorCount = errors.get(operation).sum();
+            out.printf("%-36s %9d %7d %10.1f %9.2f %9.2f %9.2f %9.2f%n",
+                    operation.label, count, errorCount, throughput, p50, p99, p999, max);
+            csv.append('"').append(operation.label).append("\",").append(count).append(',').append(errorCount)
+                    .append(',').append(String.format("%.1f,%.3f,%.3f,%.3f,%.3f", throughput, p50, p99, p999, max))
+                    .append('\n');
+
+            try (PrintStream hgrm = new PrintStream(Files.newOutputStream(directory.resolve(operation.name() + ".hgrm")))) {
+                histogram.outputPercentileDistribution(hgrm, 1000.0);
+            }
+        }
+        Files.writeString(directory.resolve("summary.csv"), csv);
+        if (statements >= 0 && requests > 0) {
+            out.printf("Database statements: %d (%.2f per request)%n", statements, (double) statements / requests);
+        }
+    }
+}
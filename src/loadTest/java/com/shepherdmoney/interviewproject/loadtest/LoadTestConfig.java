@@ -0,0 +1,125 @@
+package com.shepherdmoney.interviewproject.loadtest;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Load test settings, read from {@code loadtest.*} system properties.
+ *
+ * <ul>
+ *     <li>{@code loadtest.users} - users seeded before the run (default 50)</li>
+ *     <li>{@code loadtest.cardsPerUser} - cards seeded per user (default 2)</li>
+ *     <li>{@code loadtest.historyDays} - days of daily balance history seeded per card (default 365)</li>
+ *     <li>{@code loadtest.clients} - concurrent clients, each on its own virtual thread (default 16)</li>
+ *     <li>{@code loadtest.rate} - target requests per second across all clients (default 500)</li>
+ *     <li>{@code loadtest.warmupSeconds} - unrecorded warmup before measuring (default 5)</li>
+ *     <li>{@code loadtest.durationSeconds} - measured duration (default 30)</li>
+ *     <li>{@code loadtest.batchSize} - payloads per update-balance request (default 20)</li>
+ *     <li>{@code loadtest.mix} - operation weights, e.g. {@code USER_ID:40,LIST_CARDS:20}; unlisted operations keep their default</li>
+ *     <li>{@code loadtest.reportDir} - directory for histogram and summary files</li>
+ *     <li>{@code loadtest.onboardingRows} - users and cards created one per call and then in bulk to compare
+ *     throughput after the run; 0 skips the comparison (default 0)</li>
+ *     <li>{@code loadtest.bulkSize} - rows per bulk creation request (default 1000)</li>
+ *     <li>{@code loadtest.entityCache} - whether the application runs with the Hibernate second-level cache,
+ *     to compare database round trips with it off (default true)</li>
+ *     <li>{@code loadtest.balanceStorage} - how the application stores balance history, {@code rows} or
+ *     {@code segments} (default rows)</li>
+ *     <li>{@code loadtest.threadModes} - comma separated thread modes of the application, {@code platform} or
+ *     {@code virtual}; each is run in turn against a fresh database and compared at the end (default platform)</li>
+ *     <li>{@code loadtest.tomcatThreads} - request threads of the application in platform mode (default 200)</li>
+ * </ul>
+ */
+public class LoadTestConfig {
+
+    final int users;
+
+    final int cardsPerUser;
+
+    final int historyDays;
+
+    final int clients;
+
+    final int rate;
+
+    final int warmupSeconds;
+
+    final int durationSeconds;
+
+    final int batchSize;
+
+    final Map<Operation, Integer> mix;
+
+    final Path reportDir;
+
+    final int onboardingRows;
+
+    final int bulkSize;
+
+    final boolean entityCache;
+
+    final String balanceStorage;
+
+    final List<String> threadModes;
+
+    final int tomcatThreads;
+
+    private LoadTestConfig() {
+        users = intProperty("users", 50);
+        cardsPerUser = intProperty("cardsPerUser", 2);
+        historyDays = intProperty("historyDays", 365);
+        clients = intProperty("clients", 16);
+        rate = intProperty("rate", 500);
+        warmupSeconds = intProperty("warmupSeconds", 5);
+        durationSeconds = intProperty("durationSeconds", 30);
+        batchSize = intProperty("batchSize", 20);
+        mix = parseMix(System.getProperty("loadtest.mix", ""));
+        reportDir = Path.of(System.getProperty("loadtest.reportDir", "build/reports/loadtest"));
+        onboardingRows = intProperty("onboardingRows", 0);
+        bulkSize = intProperty("bulkSize", 1000);
+        entityCache = Boolean.parseBoolean(System.getProperty("loadtest.entityCache", "true"));
+        balanceStorage = System.getProperty("loadtest.balanceStorage", "rows");
+        threadModes = Arrays.stream(System.getProperty("loadtest.threadModes", "platform").split(","))
+                .map(String::trim)
+                .filter(mode -> !mode.isEmpty())
+                .toList();
+        tomcatThreads = intProperty("tomcatThreads", 200);
+    }
+
+    /**
+     * @return The settings taken from the current system properties.
+     */
+    public static LoadTestConfig fromSystemProperties() {
+        return new LoadTestConfig();
+    }
+
+    private static int intProperty(String name, int defaultValue) {
+        return Integer.parseInt(System.getProperty("loadtest." + name, String.valueOf(defaultValue)));
+    }
+
+    private static Map<Operation, Integer> parseMix(String value) {
+        Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            mix.put(operation, operation.defaultWeight);
+        }
+        for (String part : value.split(",")) {
+            if (part.isBlank()) {
+                continue;
+            }
+            String[] weight = part.split(":");
+            mix.put(Operation.valueOf(weight[0].trim()), Integer.parseInt(weight[1].trim()));
+        }
+        return mix;
+    }
+
+    @Override
+    public String toString() {
+        return "users=" + users + ", cardsPerUser=" + cardsPerUser + ", historyDays=" + historyDays
+                + ", clients=" + clients + ", rate=" + rate + "/s, warmup=" + warmupSeconds + "s, duration="
+                + durationSeconds + "s, batchSize=" + batchSize + ", mix=" + mix + ", onboardingRows=" + onboardingRows
+                + ", bulkSize=" + bulkSize + ", entityCache=" + entityCache + ", balanceStorage=" + balanceStorage
+                + ", threadModes=" + threadModes + ", tomcatThreads=" + tomcatThreads;
+    }
+}
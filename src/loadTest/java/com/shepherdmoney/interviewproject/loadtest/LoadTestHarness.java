@@ -0,0 +1,318 @@
+package com.shepherdmoney.interviewproject.loadtest;
+
+import com.shepherdmoney.interviewproject.InterviewProjectApplication;
+import com.shepherdmoney.interviewproject.metrics.EntityCacheStatistics;
+import com.shepherdmoney.interviewproject.repository.BalanceHistoryRepository;
+import com.shepherdmoney.interviewproject.repository.BalanceSegmentRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.HdrHistogram.Histogram;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * End-to-end load test. Boots the application on a random port against an in-memory H2 database,
+ * seeds users, cards and balance history over HTTP, then drives a weighted mix of requests from
+ * concurrent clients at a fixed target rate.
+ * Latency is measured from each request's scheduled start, so a saturated server shows up as
+ * queueing delay instead of silently lowering the offered load.
+ * The database statements executed during the measured phase are counted, so runs with the
+ * second-level cache on and off can be compared by round trips per request.
+ * Several thread modes can be run one after another, each against its own database, and are
+ * compared by throughput and tail latency over all endpoints at the end.
+ */
+public class LoadTestHarness {
+
+    private static final String[] APPLICATION_ARGS = {
+            "--server.port=0",
+            "--server.address=127.0.0.1",
+            "--spring.h2.console.enabled=false",
+            "--logging.level.root=WARN"
+    };
+
+    private final LoadTestConfig config;
+
+    private final ApiClient client;
+
+    private final List<Integer> userIds = new ArrayList<>();
+
+    private final List<String> cardNumbers = new ArrayList<>();
+
+    private final AtomicLong createdCounter = new AtomicLong();
+
+    private final Operation[] weightedOperations;
+
+    public LoadTestHarness(LoadTestConfig config, ApiClient client) {
+        this.config = config;
+        this.client = client;
+        this.weightedOperations = weightedOperations(config.mix);
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestConfig config = LoadTestConfig.fromSystemProperties();
+        System.out.println("Load test: " + config);
+
+        Map<String, LatencyReport> reports = new LinkedHashMap<>();
+        for (String threadMode : config.threadModes) {
+            Path reportDir = config.threadModes.size() > 1 ? config.reportDir.resolve(threadMode) : config.reportDir;
+            reports.put(threadMode, run(config, threadMode, reportDir));
+        }
+        if (reports.size() > 1) {
+            printComparison(reports, config.durationSeconds);
+        }
+    }
+
+    /**
+     * Boots the application with the given thread mode, seeds it and runs the measured workload.
+     *
+     * @return The latencies recorded during the measured phase.
+     */
+    private static LatencyReport run(LoadTestConfig config, String threadMode, Path reportDir) throws Exception {
+        System.out.println();
+        System.out.println("Thread mode " + threadMode);
+        List<String> applicationArgs = new ArrayList<>(List.of(APPLICATION_ARGS));
+        applicationArgs.add("--spring.datasource.url=jdbc:h2:mem:loadtest-" + threadMode + ";DB_CLOSE_DELAY=-1");
+        applicationArgs.add("--app.entity-cache.enabled=" + config.entityCache);
+        applicationArgs.add("--app.balance.storage.mode=" + config.balanceStorage);
+        applicationArgs.add("--app.threads.mode=" + threadMode);
+        applicationArgs.add("--server.tomcat.threads.max=" + config.tomcatThreads);
+        ConfigurableApplicationContext context = SpringApplication.run(InterviewProjectApplication.class, applicationArgs.toArray(new String[0]));
+        try {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            LoadTestHarness harness = new LoadTestHarness(config, new ApiClient("http://127.0.0.1:" + port));
+
+            long seedStart = System.nanoTime();
+            harness.seed();
+            System.out.printf("Seeded %d users, %d cards, %d days of history in %.1fs%n", harness.userIds.size(),
+                    harness.cardNumbers.size(), config.historyDays, (System.nanoTime() - seedStart) / 1e9);
+            System.out.printf("Stored as %d balance history rows and %d balance segments%n",
+                    context.getBean(BalanceHistoryRepository.class).count(), context.getBean(BalanceSegmentRepository.class).count());
+
+            Statistics statistics = context.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+            LatencyReport report = harness.run(statistics);
+            report.write("Results over " + config.durationSeconds + "s at " + config.rate + " req/s target",
+                    config.durationSeconds, System.out, reportDir);
+            System.out.println("Histograms written to " + reportDir.toAbsolutePath());
+            context.getBean(EntityCacheStatistics.class).regions().forEach(region -> System.out.printf(
+                    "Entity cache %-18s %9d hits %9d misses  hit ratio %.3f%n",
+                    region.getRegion(), region.getHits(), region.getMisses(), region.getHitRatio()));
+
+            if (config.onboardingRows > 0) {
+                harness.compareOnboarding();
+            }
+            return report;
+        } finally {
+            context.close();
+        }
+    }
+
+    private static void printComparison(Map<String, LatencyReport> reports, int durationSeconds) {
+        System.out.println();
+        System.out.println("Thread modes over all endpoints");
+        System.out.printf("%-10s %9s %7s %10s %9s %9s %9s %9s%n",
+                "threads", "count", "errors", "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms");
+        reports.forEach((threadMode, report) -> {
+            Histogram histogram = report.combined();
+            System.out.printf("%-10s %9d %7d %10.1f %9.2f %9.2f %9.2f %9.2f%n", threadMode,
+                    histogram.getTotalCount(), report.errorCount(), (double) histogram.getTotalCount() / durationSeconds,
+                    histogram.getValueAtPercentile(50.0) / 1000.0, histogram.getValueAtPercentile(99.0) / 1000.0,
+                    histogram.getValueAtPercentile(99.9) / 1000.0, histogram.getMaxValue() / 1000.0);
+        });
+    }
+
+    /**
+     * Creates the users and cards and fills each card with one balance per day.
+     */
+    void seed() throws Exception {
+        LocalDate today = LocalDate.now();
+        for (int u = 0; u < config.users; u++) {
+            int userId = Integer.parseInt(checked(client.createUser("user" + u, "user" + u + "@example.com")));
+            userIds.add(userId);
+            for (int c = 0; c < config.cardsPerUser; c++) {
+                String number = "seed-" + u + "-" + c;
+                checked(client.createCard(userId, "Bank" + c, number));
+                cardNumbers.add(number);
+
+                List<ApiClient.BalanceUpdate> history = new ArrayList<>();
+                for (int day = config.historyDays; day >= 0; day--) {
+                    history.add(new ApiClient.BalanceUpdate(number, today.minusDays(day), 1000.0 + day));
+                    if (history.size() == 500) {
+                        checked(client.updateBalance(history));
+                        history.clear();
+                    }
+                }
+                if (!history.isEmpty()) {
+                    checked(client.updateBalance(history));
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs the warmup and the measured phase.
+     *
+     * @param statistics The application's Hibernate statistics, read at the start and end of the measured phase.
+     * @return The latencies and database statements recorded during the measured phase.
+     */
+    LatencyReport run(Statistics statistics) throws InterruptedException {
+        LatencyReport report = new LatencyReport();
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) * config.clients / config.rate;
+        long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(config.warmupSeconds);
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(config.durationSeconds);
+
+        // Virtual threads, so thousands of clients can outnumber the application's request threads
+        ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor();
+        for (int i = 0; i < config.clients; i++) {
+            long firstStart = start + intervalNanos * i / config.clients;
+            clients.execute(() -> drive(report, firstStart, intervalNanos, measureFrom, end));
+        }
+        clients.shutdown();
+        LockSupport.parkNanos(measureFrom - System.nanoTime());
+        long statementsAtStart = statistics.getPrepareStatementCount();
+        clients.awaitTermination(config.warmupSeconds + config.durationSeconds + 120L, TimeUnit.SECONDS);
+        report.recordStatements(statistics.getPrepareStatementCount() - statementsAtStart);
+        return report;
+    }
+
+    /**
+     * Creates the same number of users and cards once through the single-row endpoints and once through
+     * the bulk endpoints, and prints the throughput of both.
+     */
+    void compareOnboarding() throws Exception {
+        int rows = config.onboardingRows;
+        long start = System.nanoTime();
+        for (int i = 0; i < rows; i++) {
+            int userId = Integer.parseInt(checked(client.createUser("single" + i, "single" + i + "@example.com")));
+            checked(client.createCard(userId, "OnboardBank", "single-" + i));
+        }
+        printOnboarding("single-row", rows, System.nanoTime() - start);
+
+        start = System.nanoTime();
+        for (int from = 0; from < rows; from += config.bulkSize) {
+            int count = Math.min(config.bulkSize, rows - from);
+            List<String> names = new ArrayList<>(count);
+            List<String> numbers = new ArrayList<>(count);
+            for (int i = from; i < from + count; i++) {
+                names.add("bulk" + i);
+                numbers.add("bulk-" + i);
+            }
+            List<Integer> ids = parseIds(checked(client.createUsersBulk(names)));
+            checked(client.createCardsBulk(ids, "OnboardBank", numbers));
+        }
+        printOnboarding("bulk x" + config.bulkSize, rows, System.nanoTime() - start);
+    }
+
+    private static void printOnboarding(String mode, int rows, long elapsedNanos) {
+        System.out.printf("Onboarding %-12s %d users + %d cards in %.2fs (%.0f rows/s)%n", mode, rows, rows,
+                elapsedNanos / 1e9, 2.0 * rows * 1e9 / elapsedNanos);
+    }
+
+    private static List<Integer> parseIds(String json) {
+        List<Integer> ids = new ArrayList<>();
+        for (String id : json.replaceAll("[\\[\\]\\s]", "").split(",")) {
+            if (!id.isEmpty()) {
+                ids.add(Integer.parseInt(id));
+            }
+        }
+        return ids;
+    }
+
+    private void drive(LatencyReport report, long firstStart, long intervalNanos, long measureFrom, long end) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (long intendedStart = firstStart; intendedStart < end; intendedStart += intervalNanos) {
+            long wait = intendedStart - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            Operation operation = weightedOperations[random.nextInt(weightedOperations.length)];
+            boolean failed;
+            try {
+                failed = execute(operation, random).statusCode() >= 400;
+            } catch (Exception e) {
+                failed = true;
+            }
+            if (intendedStart >= measureFrom) {
+                report.record(operation, System.nanoTime() - intendedStart, failed);
+            }
+        }
+    }
+
+    private HttpResponse<String> execute(Operation operation, ThreadLocalRandom random) throws Exception {
+        switch (operation) {
+            case CREATE_USER -> {
+                long n = createdCounter.incrementAndGet();
+                return client.createUser("load" + n, "load" + n + "@example.com");
+            }
+            case CREATE_CARD -> {
+                return client.createCard(randomUser(random), "LoadBank", "load-" + createdCounter.incrementAndGet());
+            }
+            case LIST_CARDS -> {
+                return client.listCards(randomUser(random));
+            }
+            case USER_ID -> {
+                return client.userIdForCard(randomCard(random));
+            }
+            case UPDATE_BALANCE -> {
+                LocalDate today = LocalDate.now();
+                List<ApiClient.BalanceUpdate> updates = new ArrayList<>(config.batchSize);
+                for (int i = 0; i < config.batchSize; i++) {
+                    updates.add(new ApiClient.BalanceUpdate(randomCard(random),
+                            today.minusDays(random.nextInt(config.historyDays + 1)), 100.0 + random.nextInt(10_000)));
+                }
+                return client.updateBalance(updates);
+            }
+            case BALANCE_HISTORY -> {
+                return client.balanceHistory(randomCard(random));
+            }
+            case BALANCE_AT -> {
+                return client.balanceAt(randomCard(random), LocalDate.now().minusDays(random.nextInt(config.historyDays + 1)));
+            }
+            default -> throw new IllegalStateException("Unknown operation " + operation);
+        }
+    }
+
+    private int randomUser(ThreadLocalRandom random) {
+        return userIds.get(random.nextInt(userIds.size()));
+    }
+
+    private String randomCard(ThreadLocalRandom random) {
+        return cardNumbers.get(random.nextInt(cardNumbers.size()));
+    }
+
+    private static String checked(HttpResponse<String> response) {
+        if (response.statusCode() >= 400) {
+            throw new IllegalStateException("Seeding request failed with " + response.statusCode() + ": " + response.body());
+        }
+        return response.body();
+    }
+
+    private static Operation[] weightedOperations(Map<Operation, Integer> mix) {
+        List<Operation> operations = new ArrayList<>();
+        mix.forEach((operation, weight) -> {
+            for (int i = 0; i < weight; i++) {
+                operations.add(operation);
+            }
+        });
+        if (operations.isEmpty()) {
+            throw new IllegalArgumentException("The request mix must contain at least one operation");
+        }
+        return operations.toArray(new Operation[0]);
+    }
+}
@@ -0,0 +1,31 @@
+package com.shepherdmoney.interviewproject.loadtest;
+
+/**
+ * Endpoints exercised by the load test, with their default share of the request mix.
+ * Operations with a default weight of 0 only run when listed in {@code loadtest.mix}.
+ */
+public enum Operation {
+
+    CREATE_USER("PUT /user", 2),
+
+    CREATE_CARD("POST /credit-card", 3),
+
+    LIST_CARDS("GET /credit-card:all", 20),
+
+    USER_ID("GET /credit-card:user-id", 40),
+
+    UPDATE_BALANCE("POST /credit-card:update-balance", 15),
+
+    BALANCE_HISTORY("GET /credit-card:balance-history", 20),
+
+    BALANCE_AT("GET /credit-card:balance", 0);
+
+    final String label;
+
+    final int defaultWeight;
+
+    Operation(String label, int defaultWeight) {
+        this.label = label;
+        this.defaultWeight = defaultWeight;
+    }
+}
@@ -0,0 +1,288 @@
+package com.shepherdmoney.interviewproject.loadtest;
+
+import com.shepherdmoney.interviewproject.InterviewProjectApplication;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Startup benchmark. Launches the application from the production layout in a fresh JVM per run, against an
+ * in-memory H2 database, and measures the time from process start until the first request (creating a user)
+ * succeeds, and the resident set size of the process at that point.
+ * Each variant adds one startup optimization to the previous one, so the report reads as before and after:
+ *
+ * <ul>
+ *     <li>{@code baseline} - default profile, every bean created on startup</li>
+ *     <li>{@code prod} - prod profile, beans created on first use</li>
+ *     <li>{@code prod-aot} - prod profile started from the AOT-processed bean definitions</li>
+ *     <li>{@code prod-aot-cds} - as above, with classes mapped from the class-data-sharing archive</li>
+ * </ul>
+ *
+ * Settings are read from {@code startup.*} system properties:
+ *
+ * <ul>
+ *     <li>{@code startup.libDir} - directory holding the application jar and its dependencies (required)</li>
+ *     <li>{@code startup.cdsArchive} - class-data-sharing archive to use or, in a training run, to write (required)</li>
+ *     <li>{@code startup.trainOnly} - only start the application once to write the archive (default false)</li>
+ *     <li>{@code startup.runs} - measured runs per variant (default 5)</li>
+ *     <li>{@code startup.variants} - comma separated variants to run (default all)</li>
+ *     <li>{@code startup.timeoutSeconds} - time allowed for the first request to succeed (default 120)</li>
+ *     <li>{@code startup.reportDir} - directory for the summary and the application logs</li>
+ * </ul>
+ *
+ * The resident set size is read from {@code /proc} and reported as -1 where it is not available.
+ */
+public class StartupBenchmark {
+
+    enum Variant {
+        BASELINE("baseline", false, false, false),
+        PROD("prod", true, false, false),
+        PROD_AOT("prod-aot", true, true, false),
+        PROD_AOT_CDS("prod-aot-cds", true, true, true);
+
+        final String label;
+
+        final boolean prodProfile;
+
+        final boolean aot;
+
+        final boolean cds;
+
+        Variant(String label, boolean prodProfile, boolean aot, boolean cds) {
+            this.label = label;
+            this.prodProfile = prodProfile;
+            this.aot = aot;
+            this.cds = cds;
+        }
+
+        static Variant of(String label) {
+            return Arrays.stream(values())
+                    .filter(variant -> variant.label.equals(label))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("Unknown startup variant " + label));
+        }
+    }
+
+    /**
+     * Time to the first successful request and resident set size of one application start.
+     */
+    record Sample(long firstRequestMillis, long rssKilobytes) {
+    }
+
+    private static final long POLL_INTERVAL_MILLIS = 10;
+
+    private final String classpath;
+
+    private final Path cdsArchive;
+
+    private final int timeoutSeconds;
+
+    private final Path reportDir;
+
+    public StartupBenchmark(String classpath, Path cdsArchive, int timeoutSeconds, Path reportDir) {
+        this.classpath = classpath;
+        this.cdsArchive = cdsArchive;
+        this.timeoutSeconds = timeoutSeconds;
+        this.reportDir = reportDir;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path libDir = Path.of(requiredProperty("startup.libDir"));
+        Path cdsArchive = Path.of(requiredProperty("startup.cdsArchive"));
+        int runs = Integer.parseInt(System.getProperty("startup.runs", "5"));
+        int timeoutSeconds = Integer.parseInt(System.getProperty("startup.timeoutSeconds", "120"));
+        Path reportDir = Path.of(System.getProperty("startup.reportDir", "build/reports/startup"));
+        Files.createDirectories(reportDir);
+
+        StartupBenchmark benchmark = new StartupBenchmark(classpath(libDir), cdsArchive, timeoutSeconds, reportDir);
+        if (Boolean.parseBoolean(System.getProperty("startup.trainOnly", "false"))) {
+            Sample sample = benchmark.train();
+            System.out.printf("Wrote %s (%d KB) from a training run that served its first request after %d ms%n",
+                    cdsArchive, Files.size(cdsArchive) / 1024, sample.firstRequestMillis());
+            return;
+        }
+
+        List<Variant> variants = variants(System.getProperty("startup.variants", ""));
+        if (variants.stream().anyMatch(variant -> variant.cds) && !Files.exists(cdsArchive)) {
+            benchmark.train();
+        }
+        StringBuilder summary = new StringBuilder(String.format("%-14s %5s %12s %9s %9s %12s%n",
+                "variant", "runs", "median ms", "min ms", "max ms", "RSS MB"));
+        StringBuilder csv = new StringBuilder("variant,run,first_request_ms,rss_kb\n");
+        for (Variant variant : variants) {
+            // One unmeasured start brings the jars into the page cache, so the first variant is not penalised
+            benchmark.start(variant, false);
+            long[] millis = new long[runs];
+            long[] rss = new long[runs];
+            for (int run = 0; run < runs; run++) {
+                Sample sample = benchmark.start(variant, false);
+                millis[run] = sample.firstRequestMillis();
+                rss[run] = sample.rssKilobytes();
+                csv.append(variant.label).append(',').append(run).append(',').append(millis[run]).append(',')
+                        .append(rss[run]).append('\n');
+            }
+            Arrays.sort(millis);
+            Arrays.sort(rss);
+            long medianRss = rss[runs / 2];
+            summary.append(String.format("%-14s %5d %12d %9d %9d %12s%n", variant.label, runs, millis[runs / 2],
+                    millis[0], millis[runs - 1], medianRss < 0 ? "n/a" : String.format("%.1f", medianRss / 1024.0)));
+        }
+        System.out.println();
+        System.out.println("Time to first request and resident set size");
+        System.out.print(summary);
+        Files.writeString(reportDir.resolve("summary.txt"), summary);
+        Files.writeString(reportDir.resolve("startup.csv"), csv);
+        System.out.println("Results written to " + reportDir.toAbsolutePath());
+    }
+
+    /**
+     * Starts the application once with the class-data-sharing archive being recorded, which the JVM writes on exit.
+     * Serving a first request makes the archive include the classes of the request path as well.
+     *
+     * @return The sample of the training run.
+     */
+    Sample train() throws IOException, InterruptedException {
+        Files.createDirectories(cdsArchive.toAbsolutePath().getParent());
+        Files.deleteIfExists(cdsArchive);
+        Sample sample = start(Variant.PROD_AOT, true);
+        if (!Files.exists(cdsArchive)) {
+            throw new IllegalStateException("The training run exited without writing " + cdsArchive
+                    + ", see " + reportDir.resolve("training.log"));
+        }
+        return sample;
+    }
+
+    /**
+     * Starts the application in a new JVM, waits for the first request to succeed and stops it again.
+     *
+     * @param variant  The startup optimizations to apply.
+     * @param training Whether to record the class-data-sharing archive.
+     * @return The time to the first request and the resident set size at that point.
+     */
+    Sample start(Variant variant, boolean training) throws IOException, InterruptedException {
+        int port = freePort();
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        if (training) {
+            command.add("-XX:ArchiveClassesAtExit=" + cdsArchive);
+        } else if (variant.cds) {
+            command.add("-XX:SharedArchiveFile=" + cdsArchive);
+        }
+        if (variant.aot) {
+            command.add("-Dspring.aot.enabled=true");
+        }
+        command.addAll(List.of("-cp", classpath, InterviewProjectApplication.class.getName(),
+                "--server.port=" + port,
+                "--server.address=127.0.0.1",
+                "--spring.datasource.url=jdbc:h2:mem:startup;DB_CLOSE_DELAY=-1",
+                "--logging.level.root=WARN"));
+        if (variant.prodProfile) {
+            command.add("--spring.profiles.active=prod");
+        }
+
+        Path log = reportDir.resolve((training ? "training" : variant.label) + ".log");
+        long started = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(log.toFile())
+                .start();
+        try {
+            ApiClient client = new ApiClient("http://127.0.0.1:" + port);
+            long deadline = started + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+            while (true) {
+                if (!process.isAlive()) {
+                    throw new IllegalStateException(variant.label + " exited with " + process.exitValue() + ", see " + log);
+                }
+                if (System.nanoTime() > deadline) {
+                    throw new IllegalStateException(variant.label + " served no request within " + timeoutSeconds + "s, see " + log);
+                }
+                try {
+                    HttpResponse<String> response = client.createUser("startup", "startup@example.com");
+                    if (response.statusCode() == 200) {
+                        break;
+                    }
+                } catch (IOException e) {
+                    // Not listening yet
+                }
+                Thread.sleep(POLL_INTERVAL_MILLIS);
+            }
+            long firstRequestMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+            return new Sample(firstRequestMillis, rssKilobytes(process.pid()));
+        } finally {
+            stop(process);
+        }
+    }
+
+    /**
+     * Stops the application with SIGTERM, so it shuts down gracefully and a training run writes its archive.
+     */
+    private static void stop(Process process) throws InterruptedException {
+        process.destroy();
+        if (!process.waitFor(60, TimeUnit.SECONDS)) {
+            process.destroyForcibly().waitFor();
+        }
+    }
+
+    private static long rssKilobytes(long pid) throws IOException {
+        Path status = Path.of("/proc", String.valueOf(pid), "status");
+        if (!Files.exists(status)) {
+            return -1;
+        }
+        try (Stream<String> lines = Files.lines(status)) {
+            return lines.filter(line -> line.startsWith("VmRSS:"))
+                    .map(line -> Long.parseLong(line.replaceAll("\\D", "")))
+                    .findFirst()
+                    .orElse(-1L);
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    /**
+     * Lists the jars in a fixed order, since a class-data-sharing archive is only used with the classpath it was
+     * recorded with.
+     */
+    private static String classpath(Path libDir) throws IOException {
+        try (Stream<Path> jars = Files.list(libDir)) {
+            String classpath = jars.filter(jar -> jar.toString().endsWith(".jar"))
+                    .map(jar -> jar.toAbsolutePath().toString())
+                    .sorted()
+                    .collect(Collectors.joining(System.getProperty("path.separator")));
+            if (classpath.isEmpty()) {
+                throw new IllegalArgumentException("No jars in " + libDir);
+            }
+            return classpath;
+        }
+    }
+
+    private static List<Variant> variants(String value) {
+        if (value.isBlank()) {
+            return List.of(Variant.values());
+        }
+        return Arrays.stream(value.split(","))
+                .map(String::trim)
+                .map(Variant::of)
+                .toList();
+    }
+
+    private static String requiredProperty(String name) {
+        String value = System.getProperty(name);
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException("Missing system property " + name);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,85 @@
+package com.shepherdmoney.interviewproject.config;
+
+import com.shepherdmoney.interviewproject.metrics.BalanceMetrics;
+import com.shepherdmoney.interviewproject.repository.BalanceHistoryRepository;
+import com.shepherdmoney.interviewproject.repository.BalanceLedgerRepository;
+import com.shepherdmoney.interviewproject.repository.BalanceRollupRepository;
+import com.shepherdmoney.interviewproject.repository.BalanceSegmentRepository;
+import com.shepherdmoney.interviewproject.repository.CreditCardRepository;
+import com.shepherdmoney.interviewproject.service.ArchivedBalanceStore;
+import com.shepherdmoney.interviewproject.service.BalanceArchive;
+import com.shepherdmoney.interviewproject.service.BalanceStore;
+import com.shepherdmoney.interviewproject.service.LedgerBalanceStore;
+import com.shepherdmoney.interviewproject.service.RowBalanceStore;
+import com.shepherdmoney.interviewproject.service.SegmentBalanceStore;
+import com.shepherdmoney.interviewproject.vo.response.CardArchiveState;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Selects how balance history is stored: {@code rows} keeps one row per balance record,
+ * {@code segments} packs each card's records into one row per month.
+ * Records moved to the balance archive are read back from it whenever a read reaches before the stored history.
+ * Either is read through the balance ledger, which replays updates not yet folded into the stored history.
+ */
+@Configuration
+public class BalanceStoreConfig {
+
+    public static final String ROWS = "rows";
+
+    public static final String SEGMENTS = "segments";
+
+    private static final int ARCHIVE_STATE_PAGE_SIZE = 1000;
+
+    /**
+     * Opens the balance archive and drops every segment the database does not refer to, since the files outlive it.
+     */
+    @Bean(destroyMethod = "close")
+    public BalanceArchive balanceArchive(@Value("${app.balance.archive.dir:${user.home}/balance-archive}") Path directory,
+                                         CreditCardRepository creditCardRepository) {
+        BalanceArchive balanceArchive = new BalanceArchive(directory);
+        if (!balanceArchive.isEmpty()) {
+            Map<Integer, Long> committedGenerations = new HashMap<>();
+            PageRequest page = PageRequest.of(0, ARCHIVE_STATE_PAGE_SIZE);
+            int afterId = 0;
+            List<CardArchiveState> states;
+            while (!(states = creditCardRepository.findWithArchiveGeneration(afterId, page)).isEmpty()) {
+                states.forEach(state -> committedGenerations.put(state.getCardId(), state.getArchiveGeneration()));
+                afterId = states.get(states.size() - 1).getCardId();
+            }
+            balanceArchive.retain(committedGenerations);
+        }
+        return balanceArchive;
+    }
+
+    @Bean
+    public BalanceStore balanceStore(@Value("${app.balance.storage.mode:" + ROWS + "}") String storage,
+                                     @Value("${app.balance.ledger.enabled:false}") boolean ledgerEnabled,
+                                     @Value("${app.balance.ledger.rebuild-cache.max-cards:1000}") int rebuildCacheSize,
+                                     CreditCardRepository creditCardRepository,
+                                     BalanceHistoryRepository balanceHistoryRepository,
+                                     BalanceRollupRepository balanceRollupRepository,
+                                     BalanceSegmentRepository balanceSegmentRepository,
+                                     BalanceLedgerRepository balanceLedgerRepository,
+                                     BalanceArchive balanceArchive,
+                                     BalanceMetrics balanceMetrics,
+                                     PlatformTransactionManager transactionManager) {
+        BalanceStore snapshots = switch (storage) {
+            case ROWS -> new RowBalanceStore(creditCardRepository, balanceHistoryRepository, balanceRollupRepository);
+            case SEGMENTS -> new SegmentBalanceStore(creditCardRepository, balanceSegmentRepository);
+            default -> throw new IllegalArgumentException("Unknown balance storage '" + storage + "', expected "
+                    + ROWS + " or " + SEGMENTS + ".");
+        };
+        BalanceStore stored = new ArchivedBalanceStore(snapshots, balanceArchive, creditCardRepository, balanceMetrics);
+        return new LedgerBalanceStore(stored, creditCardRepository, balanceLedgerRepository, balanceMetrics,
+                transactionManager, ledgerEnabled, rebuildCacheSize);
+    }
+}
@@ -0,0 +1,93 @@
+package com.shepherdmoney.interviewproject.config;
+
+import org.ehcache.config.CacheConfiguration;
+import org.ehcache.config.builders.CacheConfigurationBuilder;
+import org.ehcache.config.builders.ConfigurationBuilder;
+import org.ehcache.config.builders.ExpiryPolicyBuilder;
+import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Hibernate second-level cache for the User and CreditCard entities and the card lookup queries,
+ * held in bounded in-process Ehcache regions with a time to live.
+ * Entity regions are read-write, so committed updates and deletes replace or evict the cached entry,
+ * and cached query results are discarded whenever one of the tables they read is written.
+ * Balance history collections are not cached.
+ */
+@Configuration
+public class EntityCacheConfig {
+
+    public static final String USER_REGION = "user";
+
+    public static final String CREDIT_CARD_REGION = "credit-card";
+
+    public static final String CREDIT_CARD_QUERY_REGION = "credit-card-query";
+
+    /**
+     * Regions reported by the cache statistics, in display order.
+     */
+    public static final List<String> REGIONS = List.of(USER_REGION, CREDIT_CARD_REGION, CREDIT_CARD_QUERY_REGION);
+
+    // Region names Hibernate uses for uncategorized query results and for the per-table update timestamps
+    private static final String DEFAULT_QUERY_REGION = "default-query-results-region";
+
+    private static final String TIMESTAMPS_REGION = "default-update-timestamps-region";
+
+    // One timestamp per table, so this never evicts
+    private static final long TIMESTAMPS_MAX_ENTRIES = 1000;
+
+    private final boolean enabled;
+
+    public EntityCacheConfig(@Value("${app.entity-cache.enabled:true}") boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Bean(destroyMethod = "close")
+    public CacheManager entityCacheManager(@Value("${app.entity-cache.max-entries:10000}") long maxEntries,
+                                           @Value("${app.entity-cache.ttl:10m}") Duration ttl) {
+        CacheConfiguration<Object, Object> bounded = CacheConfigurationBuilder
+                .newCacheConfigurationBuilder(Object.class, Object.class, ResourcePoolsBuilder.heap(maxEntries))
+                .withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(ttl))
+                .build();
+        // Update timestamps must outlive every cached query result, otherwise stale results would look fresh
+        CacheConfiguration<Object, Object> timestamps = CacheConfigurationBuilder
+                .newCacheConfigurationBuilder(Object.class, Object.class, ResourcePoolsBuilder.heap(TIMESTAMPS_MAX_ENTRIES))
+                .withExpiry(ExpiryPolicyBuilder.noExpiration())
+                .build();
+        ConfigurationBuilder configuration = ConfigurationBuilder.newConfigurationBuilder()
+                .withCache(USER_REGION, bounded)
+                .withCache(CREDIT_CARD_REGION, bounded)
+                .withCache(CREDIT_CARD_QUERY_REGION, bounded)
+                .withCache(DEFAULT_QUERY_REGION, bounded)
+                .withCache(TIMESTAMPS_REGION, timestamps);
+        EhcacheCachingProvider provider = (EhcacheCachingProvider) Caching.getCachingProvider(EhcacheCachingProvider.class.getName());
+        // A URI of its own per application context, so contexts in one JVM do not share regions
+        return provider.getCacheManager(URI.create("urn:entity-cache:" + UUID.randomUUID()), configuration.build());
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer entityCacheProperties(CacheManager entityCacheManager) {
+        return properties -> {
+            properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, enabled);
+            properties.put(AvailableSettings.USE_QUERY_CACHE, enabled);
+            if (enabled) {
+                properties.put(AvailableSettings.CACHE_REGION_FACTORY, ConfigSettings.SIMPLE_FACTORY_NAME);
+                properties.put(ConfigSettings.CACHE_MANAGER, entityCacheManager);
+                properties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "fail");
+            }
+        };
+    }
+}
@@ -0,0 +1,29 @@
+package com.shepherdmoney.interviewproject.config;
+
+import com.shepherdmoney.interviewproject.metrics.PersistenceStatsListenerRegistrar;
+import com.shepherdmoney.interviewproject.service.BalanceArchiver;
+import com.shepherdmoney.interviewproject.service.BalanceLedger;
+import com.shepherdmoney.interviewproject.service.BalanceStorageMigration;
+import com.shepherdmoney.interviewproject.service.BalanceWriteBehindBuffer;
+import com.shepherdmoney.interviewproject.service.CardOwnerIndex;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Beans created on startup even when {@code spring.main.lazy-initialization} is on, as it is in the prod profile.
+ * They either bring the stored balances up to date before the first request is served (storage migration,
+ * pending ledger entries, the write-behind log, the card owner index) or are never injected anywhere and would otherwise not exist
+ * (the balance archiver, the persistence statistics listener).
+ * Everything else, including controllers and most services, is created on first use.
+ */
+@Configuration
+public class LazyInitializationConfig {
+
+    @Bean
+    public static LazyInitializationExcludeFilter eagerStartupBeans() {
+        return LazyInitializationExcludeFilter.forBeanTypes(BalanceStorageMigration.class, BalanceLedger.class,
+                BalanceWriteBehindBuffer.class, CardOwnerIndex.class, BalanceArchiver.class,
+                PersistenceStatsListenerRegistrar.class);
+    }
+}
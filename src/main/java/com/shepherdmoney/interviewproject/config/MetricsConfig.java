@@ -0,0 +1,86 @@
+package com.shepherdmoney.interviewproject.config;
+
+import com.shepherdmoney.interviewproject.metrics.EntityCacheStatistics;
+import com.shepherdmoney.interviewproject.metrics.PersistenceStatsInterceptor;
+import com.shepherdmoney.interviewproject.service.CardNumberCache;
+import com.shepherdmoney.interviewproject.service.ResponseCache;
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Metrics wiring: {@code @Timed} support for handlers, per-request persistence statistics,
+ * card number cache and response cache counters, and second-level cache hit ratios per region.
+ * The raw second-level cache counters are published by Hibernate's own metrics binder.
+ */
+@Configuration
+public class MetricsConfig implements WebMvcConfigurer {
+
+    private final MeterRegistry meterRegistry;
+
+    public MetricsConfig(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Bean
+    public TimedAspect timedAspect() {
+        return new TimedAspect(meterRegistry);
+    }
+
+    @Bean
+    public MeterBinder cardNumberCacheMetrics(CardNumberCache cardNumberCache) {
+        return registry -> {
+            FunctionCounter.builder("card_number_cache.hits", cardNumberCache, cache -> cache.stats().getHits())
+                    .register(registry);
+            FunctionCounter.builder("card_number_cache.misses", cardNumberCache, cache -> cache.stats().getMisses())
+                    .register(registry);
+            FunctionCounter.builder("card_number_cache.evictions", cardNumberCache, cache -> cache.stats().getEvictions())
+                    .register(registry);
+            Gauge.builder("card_number_cache.size", cardNumberCache, cache -> cache.stats().getSize())
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder responseCacheMetrics(ResponseCache responseCache) {
+        return registry -> {
+            FunctionCounter.builder("response_cache.hits", responseCache, cache -> cache.stats().getHits())
+                    .register(registry);
+            FunctionCounter.builder("response_cache.misses", responseCache, cache -> cache.stats().getMisses())
+                    .register(registry);
+            FunctionCounter.builder("response_cache.not_modified", responseCache, cache -> cache.stats().getNotModified())
+                    .register(registry);
+            FunctionCounter.builder("response_cache.evictions", responseCache, cache -> cache.stats().getEvictions())
+                    .register(registry);
+            FunctionCounter.builder("response_cache.invalidations", responseCache, cache -> cache.stats().getInvalidations())
+                    .register(registry);
+            Gauge.builder("response_cache.size", responseCache, cache -> cache.stats().getSize())
+                    .register(registry);
+            Gauge.builder("response_cache.bytes", responseCache, cache -> cache.stats().getBytes())
+                    .baseUnit("bytes")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder entityCacheMetrics(EntityCacheStatistics entityCacheStatistics) {
+        return registry -> {
+            for (String region : EntityCacheConfig.REGIONS) {
+                Gauge.builder("entity_cache.hit_ratio", entityCacheStatistics, stats -> stats.hitRatio(region))
+                        .tag("region", region)
+                        .register(registry);
+            }
+        };
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new PersistenceStatsInterceptor(meterRegistry));
+    }
+}
@@ -0,0 +1,114 @@
+package com.shepherdmoney.interviewproject.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.apache.coyote.ProtocolHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Selects the threads that handle requests and apply balance updates: {@code platform} keeps Tomcat's fixed pool
+ * of {@code server.tomcat.threads.max} threads and one platform thread per worker, {@code virtual} runs every
+ * request, streamed response and worker on its own virtual thread.
+ * Handlers spend most of their time blocked on JDBC, so with virtual threads a burst of requests waits for a
+ * pooled connection rather than for a request thread, and the connection pool bounds the concurrent database work.
+ * <p>
+ * The H2 driver holds a monitor while it runs a statement, which pins a virtual thread to its carrier, including
+ * while the statement waits for a row lock. With as many connections as carriers, every carrier could be pinned
+ * by such a waiter while the transaction holding the lock has no carrier left to finish on, so in virtual mode
+ * the pool is kept below the number of carriers.
+ */
+@Configuration
+public class ThreadConfig implements WebMvcConfigurer {
+
+    public static final String PLATFORM = "platform";
+
+    public static final String VIRTUAL = "virtual";
+
+    private static final Logger log = LoggerFactory.getLogger(ThreadConfig.class);
+
+    private final boolean virtual;
+
+    public ThreadConfig(@Value("${app.threads.mode:" + PLATFORM + "}") String mode) {
+        this.virtual = isVirtual(mode);
+    }
+
+    /**
+     * Creates the threads of a background worker.
+     *
+     * @param mode The configured thread mode.
+     * @param name The name of the worker's threads.
+     * @return A factory of virtual threads in virtual mode, of platform threads otherwise.
+     */
+    public static ThreadFactory threadFactory(String mode, String name) {
+        return isVirtual(mode) ? Thread.ofVirtual().name(name).factory() : runnable -> new Thread(runnable, name);
+    }
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<ProtocolHandler> requestExecutorCustomizer() {
+        return protocolHandler -> {
+            if (virtual) {
+                protocolHandler.setExecutor(virtualThreadExecutor("http-virtual-"));
+            }
+        };
+    }
+
+    /**
+     * Caps the connection pool in virtual mode, see the class comment.
+     */
+    @Bean
+    public static BeanPostProcessor connectionPoolSizer(Environment environment) {
+        boolean virtual = isVirtual(environment.getProperty("app.threads.mode", PLATFORM));
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (virtual && bean instanceof HikariDataSource dataSource) {
+                    int carriers = Integer.getInteger("jdk.virtualThreadScheduler.parallelism",
+                            Runtime.getRuntime().availableProcessors());
+                    int maxPoolSize = Math.max(1, carriers - 1);
+                    if (dataSource.getMaximumPoolSize() > maxPoolSize) {
+                        log.info("Connection pool limited to {} connections for {} virtual thread carriers",
+                                maxPoolSize, carriers);
+                        dataSource.setMaximumPoolSize(maxPoolSize);
+                        if (dataSource.getMinimumIdle() > maxPoolSize) {
+                            dataSource.setMinimumIdle(maxPoolSize);
+                        }
+                    }
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        if (virtual) {
+            configurer.setTaskExecutor(new TaskExecutorAdapter(virtualThreadExecutor("mvc-async-virtual-")));
+        }
+    }
+
+    private static ExecutorService virtualThreadExecutor(String prefix) {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(prefix, 0).factory());
+    }
+
+    private static boolean isVirtual(String mode) {
+        return switch (mode) {
+            case PLATFORM -> false;
+            case VIRTUAL -> true;
+            default -> throw new IllegalArgumentException("Unknown thread mode '" + mode + "', expected "
+                    + PLATFORM + " or " + VIRTUAL + ".");
+        };
+    }
+}
@@ -1,16 +1,67 @@
 package com.shepherdmoney.interviewproject.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shepherdmoney.interviewproject.event.CreditCardCreatedEvent;
+import com.shepherdmoney.interviewproject.metrics.BalanceMetrics;
+import com.shepherdmoney.interviewproject.metrics.EntityCacheStatistics;
 import com.shepherdmoney.interviewproject.model.CreditCard;
+import com.shepherdmoney.interviewproject.model.RollupGranularity;
 import com.shepherdmoney.interviewproject.model.User;
 import com.shepherdmoney.interviewproject.repository.CreditCardRepository;
+import com.shepherdmoney.interviewproject.service.BalanceFeedService;
+import com.shepherdmoney.interviewproject.service.BalanceHistoryService;
+import com.shepherdmoney.interviewproject.service.BalanceIngestionService;
+import com.shepherdmoney.interviewproject.service.BalanceLedger;
+import com.shepherdmoney.interviewproject.service.BalanceLookupService;
+import com.shepherdmoney.interviewproject.service.BalanceRollupService;
+import com.shepherdmoney.interviewproject.service.BalanceStore;
+import com.shepherdmoney.interviewproject.service.BalanceUpdateService;
+import com.shepherdmoney.interviewproject.service.BalanceWriteBehindBuffer;
+import com.shepherdmoney.interviewproject.service.BulkCreationService;
+import com.shepherdmoney.interviewproject.service.CardNumberCache;
+import com.shepherdmoney.interviewproject.service.CardOwnerIndex;
+import com.shepherdmoney.interviewproject.service.IngestionRejectedException;
+import com.shepherdmoney.interviewproject.service.InvalidPayloadException;
+import com.shepherdmoney.interviewproject.service.ResourceVersions;
+import com.shepherdmoney.interviewproject.service.ResponseCache;
 import com.shepherdmoney.interviewproject.vo.request.AddCreditCardToUserPayload;
+import com.shepherdmoney.interviewproject.vo.request.BalanceLookupPayload;
 import com.shepherdmoney.interviewproject.vo.request.UpdateBalancePayload;
+import com.shepherdmoney.interviewproject.vo.response.BalanceFeedResult;
+import com.shepherdmoney.interviewproject.vo.response.BalanceHistoryView;
+import com.shepherdmoney.interviewproject.vo.response.BalanceLedgerEntryView;
+import com.shepherdmoney.interviewproject.vo.response.BalanceRollupCheck;
+import com.shepherdmoney.interviewproject.vo.response.BalanceRollupReport;
+import com.shepherdmoney.interviewproject.vo.response.BalanceUpdateResult;
+import com.shepherdmoney.interviewproject.vo.response.CacheRegionStats;
+import com.shepherdmoney.interviewproject.vo.response.CardBalanceView;
+import com.shepherdmoney.interviewproject.vo.response.CardNumberCacheStats;
+import com.shepherdmoney.interviewproject.vo.response.CardOwnerIndexCheck;
+import com.shepherdmoney.interviewproject.vo.response.CardReference;
+import com.shepherdmoney.interviewproject.vo.response.CreditCardSummary;
 import com.shepherdmoney.interviewproject.vo.response.CreditCardView;
+import com.shepherdmoney.interviewproject.vo.response.IngestionJobView;
+import io.micrometer.core.annotation.Timed;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
@@ -26,8 +77,81 @@ public class CreditCardController {
 
     private final CreditCardRepository creditCardRepository;
 
-    public CreditCardController(CreditCardRepository creditCardRepository) {
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    private static final String NEXT_AFTER_ID_HEADER = "X-Next-After-Id";
+
+    private static final int MAX_CARD_PAGE_SIZE = 1000;
+
+    private static final int MAX_BALANCE_LOOKUPS = 1000;
+
+    private static final MediaType TEXT_PLAIN_UTF8 = new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8);
+
+    private final BalanceUpdateService balanceUpdateService;
+
+    private final BalanceHistoryService balanceHistoryService;
+
+    private final BalanceIngestionService balanceIngestionService;
+
+    private final BalanceRollupService balanceRollupService;
+
+    private final BalanceFeedService balanceFeedService;
+
+    private final BalanceLookupService balanceLookupService;
+
+    private final BalanceWriteBehindBuffer balanceWriteBehindBuffer;
+
+    private final BalanceStore balanceStore;
+
+    private final BalanceLedger balanceLedger;
+
+    private final BulkCreationService bulkCreationService;
+
+    private final CardNumberCache cardNumberCache;
+
+    private final CardOwnerIndex cardOwnerIndex;
+
+    private final EntityCacheStatistics entityCacheStatistics;
+
+    private final ResourceVersions resourceVersions;
+
+    private final ResponseCache responseCache;
+
+    private final ObjectMapper objectMapper;
+
+    private final BalanceMetrics balanceMetrics;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    public CreditCardController(CreditCardRepository creditCardRepository, BalanceUpdateService balanceUpdateService,
+                                BalanceHistoryService balanceHistoryService, BalanceIngestionService balanceIngestionService,
+                                BalanceRollupService balanceRollupService, BalanceFeedService balanceFeedService,
+                                BalanceLookupService balanceLookupService, BalanceWriteBehindBuffer balanceWriteBehindBuffer,
+                                BalanceStore balanceStore, BalanceLedger balanceLedger,
+                                BulkCreationService bulkCreationService, CardNumberCache cardNumberCache,
+                                CardOwnerIndex cardOwnerIndex,
+                                EntityCacheStatistics entityCacheStatistics, ResourceVersions resourceVersions,
+                                ResponseCache responseCache, ObjectMapper objectMapper,
+                                BalanceMetrics balanceMetrics, ApplicationEventPublisher eventPublisher) {
         this.creditCardRepository = creditCardRepository;
+        this.balanceUpdateService = balanceUpdateService;
+        this.balanceHistoryService = balanceHistoryService;
+        this.balanceIngestionService = balanceIngestionService;
+        this.balanceRollupService = balanceRollupService;
+        this.balanceFeedService = balanceFeedService;
+        this.balanceLookupService = balanceLookupService;
+        this.balanceWriteBehindBuffer = balanceWriteBehindBuffer;
+        this.balanceStore = balanceStore;
+        this.balanceLedger = balanceLedger;
+        this.bulkCreationService = bulkCreationService;
+        this.cardNumberCache = cardNumberCache;
+        this.cardOwnerIndex = cardOwnerIndex;
+        this.entityCacheStatistics = entityCacheStatistics;
+        this.resourceVersions = resourceVersions;
+        this.responseCache = responseCache;
+        this.objectMapper = objectMapper;
+        this.balanceMetrics = balanceMetrics;
+        this.eventPublisher = eventPublisher;
     }
 
     /**
@@ -35,6 +159,7 @@ public class CreditCardController {
      *
      * @param creditCardRepository The repository used for credit card data operations.
      */
+    @Timed(value = "app.handler", histogram = true)
     @PostMapping("/credit-card")
     public ResponseEntity<Integer> addCreditCardToUser(@RequestBody AddCreditCardToUserPayload payload) {
         CreditCard creditCard = new CreditCard();
@@ -45,98 +170,484 @@ public class CreditCardController {
         user.setId(payload.getUserId());
         creditCard.setOwner(user);
 
-        CreditCard savedCreditCard = creditCardRepository.save(creditCard);
+        CreditCard savedCreditCard;
+        try {
+            savedCreditCard = creditCardRepository.save(creditCard);
+        } catch (DataIntegrityViolationException e) {
+            // Duplicate card number or unknown user
+            return ResponseEntity.badRequest().build();
+        }
+        eventPublisher.publishEvent(new CreditCardCreatedEvent(savedCreditCard.getId(), savedCreditCard.getNumber(), payload.getUserId()));
         return ResponseEntity.ok(savedCreditCard.getId());
     }
 
     /**
-     * Adds a credit card to a user based on the provided payload.
-     * 
-     * @param payload The payload containing the user ID and credit card details.
-     * @return A ResponseEntity containing the ID of the newly added credit card.
+     * Adds credit cards in bulk from a JSON array or an NDJSON stream of AddCreditCardToUserPayload objects.
+     *
+     * @param body The request body.
+     * @return A ResponseEntity containing the IDs of the new credit cards in input order,
+     *         or 400 if the body is malformed, names an unknown user or repeats a card number.
      */
+    @Timed(value = "app.handler", histogram = true)
+    @PostMapping(value = "/credit-card:bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, "application/x-ndjson"})
+    public ResponseEntity<List<Integer>> addCreditCardsToUsers(InputStream body) {
+        try {
+            return ResponseEntity.ok(bulkCreationService.createCards(body));
+        } catch (InvalidPayloadException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Retrieves one page of a user's credit cards, ordered by card ID.
+     * If another page follows, the response carries an X-Next-After-Id header holding the value to pass
+     * as afterId for the next page.
+     *
+     * @param userId  The ID of the user.
+     * @param afterId Only cards with an ID greater than this are returned, 0 for the first page.
+     * @param limit   The maximum number of cards in the page, from 1 to MAX_CARD_PAGE_SIZE.
+     * @return A ResponseEntity containing the page of credit cards, empty if the user has none or does not exist,
+     *         or a bad request if the limit is outside 1 to MAX_CARD_PAGE_SIZE.
+     */
+    @Timed(value = "app.handler", histogram = true)
     @GetMapping("/credit-card:all")
-    public ResponseEntity<List<CreditCardView>> getAllCardOfUser(@RequestParam int userId) {
-        User user = new User();
-        user.setId(userId);
-        List<CreditCard> userCreditCards = creditCardRepository.findByOwner(user);
-        List<CreditCardView> cardViews = userCreditCards.stream()
-                .map(card -> new CreditCardView(card.getIssuanceBank(), card.getNumber()))
+    public ResponseEntity<byte[]> getAllCardOfUser(@RequestParam int userId,
+                                                   @RequestParam(defaultValue = "0") int afterId,
+                                                   @RequestParam(defaultValue = "1000") int limit,
+                                                   WebRequest webRequest) throws JsonProcessingException {
+        if (limit < 1 || limit > MAX_CARD_PAGE_SIZE) {
+            return ResponseEntity.badRequest().build();
+        }
+        String resource = ResourceVersions.userCards(userId);
+        long version = resourceVersions.version(resource);
+        String etag = resourceVersions.etag(version);
+        if (webRequest.checkNotModified(etag)) {
+            responseCache.recordNotModified();
+            return null;
+        }
+        String variant = afterId + ":" + limit;
+        ResponseCache.CachedResponse response = responseCache.get(resource, variant, version);
+        if (response == null) {
+            response = renderCardPage(userId, afterId, limit);
+            responseCache.put(resource, variant, version, response);
+        }
+        return cachedResponse(response, MediaType.APPLICATION_JSON, etag);
+    }
+
+    private ResponseCache.CachedResponse renderCardPage(int userId, int afterId, int limit) throws JsonProcessingException {
+        // One extra row tells whether another page follows without a count query
+        List<CreditCardSummary> summaries = creditCardRepository.findSummariesByOwnerId(userId, afterId, PageRequest.of(0, limit + 1));
+        boolean hasMore = summaries.size() > limit;
+        if (hasMore) {
+            summaries = summaries.subList(0, limit);
+        }
+        List<CreditCardView> cardViews = summaries.stream()
+                .map(summary -> new CreditCardView(summary.getIssuanceBank(), summary.getNumber()))
                 .collect(Collectors.toList());
+        Map<String, String> headers = hasMore
+                ? Map.of(NEXT_AFTER_ID_HEADER, String.valueOf(summaries.get(summaries.size() - 1).getId()))
+                : Map.of();
+        return new ResponseCache.CachedResponse(objectMapper.writeValueAsBytes(cardViews), headers);
+    }
 
-        return ResponseEntity.ok(cardViews);
+    private static ResponseEntity<byte[]> cachedResponse(ResponseCache.CachedResponse response, MediaType contentType, String etag) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok().contentType(contentType).eTag(etag);
+        response.headers().forEach(builder::header);
+        return builder.body(response.body());
     }
 
     /**
-     * Retrieves all credit cards associated with a specific user ID.
+     * Retrieves the ID of the user owning a credit card. Answered from the in-memory card owner index,
+     * or through the card number cache while the index is disabled or not built.
      *
-     * @param userId The user ID to search for credit cards.
-     * @return A ResponseEntity containing a list of CreditCardView objects representing each card.
+     * @param creditCardNumber The credit card number.
+     * @return A ResponseEntity containing the user ID, or a bad request if no user owns a card with this number.
      */
+    @Timed(value = "app.handler", histogram = true)
     @GetMapping("/credit-card:user-id")
     public ResponseEntity<Integer> getUserIdForCreditCard(@RequestParam String creditCardNumber) {
-        CreditCard creditCard = creditCardRepository.findByNumber(creditCardNumber);
-        if (creditCard != null) {
-            return ResponseEntity.ok(creditCard.getOwner().getId());
+        if (cardOwnerIndex.isReady()) {
+            int ownerId = cardOwnerIndex.ownerOf(creditCardNumber);
+            return ownerId == CardOwnerIndex.NO_OWNER ? ResponseEntity.badRequest().build() : ResponseEntity.ok(ownerId);
+        }
+        CardReference cardReference = cardNumberCache.get(creditCardNumber);
+        if (cardReference != null) {
+            return ResponseEntity.ok(cardReference.getOwnerId());
         } else {
             return ResponseEntity.badRequest().build();
         }
     }
 
+    /**
+     * Retrieves the hit, miss and eviction counters of the card number lookup cache.
+     *
+     * @return A ResponseEntity containing the cache statistics.
+     */
+    @Timed(value = "app.handler", histogram = true)
+    @GetMapping("/credit-card:number-cache-stats")
+    public ResponseEntity<CardNumberCacheStats> getCardNumberCacheStats() {
+        return ResponseEntity.ok(cardNumberCache.stats());
+    }
+
+    /**
+     * Compares the card owner index with the credit card table and reports the cards that differ.
+     *
+     * @param repair Whether to rebuild the index if anything differs.
+     * @return A ResponseEntity containing the check result, or a bad request if the index is disabled.
+     */
+    @Timed(value = "app.handler", histogram = true)
+    @PostMapping("/credit-card:owner-index-check")
+    public ResponseEntity<CardOwnerIndexCheck> checkCardOwnerIndex(@RequestParam(defaultValue = "false") boolean repair) {
+        CardOwnerIndexCheck check = cardOwnerIndex.check(repair);
+        if (check == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(check);
+    }
+
+    /**
+     * Retrieves the hit, miss and put counters and the hit ratio of each second-level cache region
+     * holding users, credit cards and card lookup query results.
+     *
+     * @return A ResponseEntity containing one entry per region, empty if the second-level cache is disabled.
+     */
+    @Timed(value = "app.handler", histogram = true)
+    @GetMapping("/credit-card:entity-cache-stats")
+    public ResponseEntity<List<CacheRegionStats>> getEntityCacheStats() {
+        return ResponseEntity.ok(entityCacheStatistics.regions());
+    }
+
     /**
      * Updates the balance of one or more credit cards based on the provided payloads.
+     * All updates are applied in one transaction; unknown cards are reported without
+     * stopping updates to the other cards. In write-behind mode the updates are buffered instead.
      * 
      * @param payloads An array of UpdateBalancePayload objects containing the credit card number, 
      *                 balance date, and balance amount.
-     * @return A ResponseEntity with a success message if the update is successful, 
-     *         or an error message if the card number is not found.
+     * @return A ResponseEntity with a success message if every update is applied, 
+     *         the error messages of the cards that could not be updated,
+     *         or 503 if the write-behind buffer is full.
      */
+    @Timed(value = "app.handler", histogram = true)
     @PostMapping("/credit-card:update-balance")
     public ResponseEntity<String> updateCreditCardBalance(@RequestBody UpdateBalancePayload[] payloads) {
         try {
-            for (UpdateBalancePayload payload : payloads) {
-                CreditCard creditCard = creditCardRepository.findByNumber(payload.getCreditCardNumber());
-                if (creditCard == null) {
-                    return ResponseEntity.badRequest().body("Credit card with number " + payload.getCreditCardNumber() + " does not exist.");
-                }
-
-                double currentBalance = creditCard.getBalance(payload.getBalanceDate());
-                double difference = payload.getBalanceAmount() - currentBalance;
-
-                // Update balance history
-                creditCard.updateBalance(payload.getBalanceDate(), payload.getBalanceAmount());
-
-                if (currentBalance > 0) {
-                    LocalDate today = LocalDate.now();
-                    LocalDate date = payload.getBalanceDate().plusDays(1);
-                    while (!date.isAfter(today)) {
-                        double updatedBalance = creditCard.getBalance(date) + difference;
-                        creditCard.updateBalance(date, updatedBalance);
-                        date = date.plusDays(1);
-                    }
-                }
-
-                creditCardRepository.save(creditCard);
+            List<BalanceUpdateResult> results = applyOrBuffer(Arrays.asList(payloads));
+            String errors = results.stream()
+                    .filter(result -> result.getStatus() != BalanceUpdateResult.Status.UPDATED
+                            && result.getStatus() != BalanceUpdateResult.Status.BUFFERED)
+                    .map(BalanceUpdateResult::getMessage)
+                    .collect(Collectors.joining("\n"));
+            if (!errors.isEmpty()) {
+                return ResponseEntity.badRequest().body(errors);
             }
             return ResponseEntity.ok("Credit card balances updated successfully.");
+        } catch (ConcurrencyFailureException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body("Credit card balances were modified concurrently, retry the update.");
+        } catch (IngestionRejectedException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").body(e.getMessage());
         } catch (Exception e) {
             return ResponseEntity.badRequest().body("An error occurred while updating credit card balances: " + e.getMessage());
         }
     }
 
+    /**
+     * Updates the balance of one or more credit cards in one batch and reports the outcome per card.
+     *
+     * @param payloads An array of UpdateBalancePayload objects containing the credit card number,
+     *                 balance date, and balance amount.
+     * @return A ResponseEntity containing one BalanceUpdateResult per distinct credit card number,
+     *         409 if the cards kept being modified concurrently, or 503 if the write-behind buffer is full.
+     */
+    @Timed(value = "app.handler", histogram = true)
+    @PostMapping("/credit-card:update-balance-batch")
+    public ResponseEntity<List<BalanceUpdateResult>> updateCreditCardBalanceBatch(@RequestBody UpdateBalancePayload[] payloads) {
+        try {
+            return ResponseEntity.ok(applyOrBuffer(Arrays.asList(payloads)));
+        } catch (ConcurrencyFailureException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (IngestionRejectedException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").build();
+        }
+    }
+
+    private List<BalanceUpdateResult> applyOrBuffer(List<UpdateBalancePayload> payloads) {
+        return balanceWriteBehindBuffer.isEnabled()
+                ? balanceWriteBehindBuffer.accept(payloads)
+                : balanceUpdateService.applyUpdates(payloads);
+    }
+
+    /**
+     * Applies a feed of balance updates streamed as CSV ({@code creditCardNumber,balanceDate,balanceAmount} rows)
+     * or NDJSON, optionally gzip-compressed. Rows are parsed incrementally and applied in fixed-size chunks,
+     * each committed on its own, so the feed may be arbitrarily long.
+     *
+     * @param body The request body.
+     * @param contentType Either text/csv or application/x-ndjson.
+     * @return A ResponseEntity containing the rows applied and the cards that could not be updated;
+     *         400 if a row is malformed or 409 if a chunk kept conflicting, with the rows applied before it.
+     */
+    @Timed(value = "app.handler", histogram = true)
+    @PostMapping(value = "/credit-card:update-balance-stream", consumes = {"text/csv", "application/x-ndjson"})
+    public ResponseEntity<BalanceFeedResult> streamCreditCardBalanceUpdates(InputStream body,
+                                                                            @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType) {
+        BalanceFeedService.Format format = NDJSON.isCompatibleWith(contentType)
+                ? BalanceFeedService.Format.NDJSON
+                : BalanceFeedService.Format.CSV;
+        BalanceFeedResult result = balanceFeedService.apply(body, format);
+        return switch (result.getStatus()) {
+            case COMPLETED -> ResponseEntity.ok(result);
+            case MALFORMED -> ResponseEntity.badRequest().body(result);
+            case CONFLICT -> ResponseEntity.status(HttpStatus.CONFLICT).body(result);
+        };
+    }
+
+    /**
+     * Queues balance updates for asynchronous processing and returns immediately.
+     * Updates to the same card are applied in order; different cards are processed in parallel.
+     *
+     * @param payloads An array of UpdateBalancePayload objects containing the credit card number,
+     *                 balance date, and balance amount.
+     * @return A ResponseEntity with status 202 containing the job status,
+     *         or 503 if the ingestion queue is full.
+     */
+    @Timed(value = "app.handler", histogram = true)
+    @PostMapping("/credit-card:update-balance-async")
+    public ResponseEntity<IngestionJobView> submitCreditCardBalanceUpdates(@RequestBody UpdateBalancePayload[] payloads) {
+        try {
+            return ResponseEntity.accepted().body(balanceIngestionService.submit(Arrays.asList(payloads)));
+        } catch (IngestionRejectedException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").build();
+        }
+    }
+
+    /**
+     * Retrieves the progress, per-card failures and timing of an asynchronous balance update job.
+     *
+     * @param jobId The job id returned when the updates were submitted.
+     * @return A ResponseEntity containing the job status, or a bad request if the job is unknown.
+     */
+    @Timed(value = "app.handler", histogram = true)
+    @GetMapping("/credit-card:update-balance-job")
+    public ResponseEntity<IngestionJobView> getCreditCardBalanceUpdateJob(@RequestParam String jobId) {
+        IngestionJobView job = balanceIngestionService.getJob(jobId);
+        if (job == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(job);
+    }
+
     /**
      * Retrieves the balance history for a specific credit card.
+     * Responses carry an ETag that changes whenever the card's balance is updated;
+     * a matching If-None-Match is answered with 304 without loading the history.
      * 
      * @param cardNumber The credit card number to retrieve the balance history for.
      * @return A ResponseEntity containing the balance history as a string, 
      *         or an error message if the card number is not found.
      */
+    @Timed(value = "app.handler", histogram = true)
     @GetMapping("/credit-card:balance-history")
-    public ResponseEntity<String> getBalanceHistory(@RequestParam String cardNumber) {
-        CreditCard creditCard = creditCardRepository.findByNumber(cardNumber);
-        if (creditCard == null) {
-            return ResponseEntity.badRequest().body("Credit card with number " + cardNumber + " does not exist.");
+    public ResponseEntity<byte[]> getBalanceHistory(@RequestParam String cardNumber, WebRequest webRequest) {
+        balanceWriteBehindBuffer.flush(List.of(cardNumber));
+        // Unknown cards have no version of their own, so they must be rejected before the ETag check
+        if (cardNumberCache.get(cardNumber) == null) {
+            return unknownCardResponse(cardNumber);
+        }
+        String resource = ResourceVersions.cardHistory(cardNumber);
+        long version = resourceVersions.version(resource);
+        String etag = resourceVersions.etag(version);
+        if (webRequest.checkNotModified(etag)) {
+            responseCache.recordNotModified();
+            return null;
+        }
+        ResponseCache.CachedResponse response = responseCache.get(resource, "", version);
+        if (response == null) {
+            CreditCard creditCard = creditCardRepository.findByNumber(cardNumber);
+            if (creditCard == null) {
+                return unknownCardResponse(cardNumber);
+            }
+            balanceMetrics.recordHistoryLoaded(balanceStore.loadHistory(creditCard));
+            response = new ResponseCache.CachedResponse(creditCard.getBalanceHistoryString().getBytes(StandardCharsets.UTF_8), Map.of());
+            responseCache.put(resource, "", version, response);
+        }
+        return cachedResponse(response, TEXT_PLAIN_UTF8, etag);
+    }
+
+    private static ResponseEntity<byte[]> unknownCardResponse(String cardNumber) {
+        return ResponseEntity.badRequest().contentType(TEXT_PLAIN_UTF8)
+                .body(("Credit card with number " + cardNumber + " does not exist.").getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Retrieves the balance of a credit card on a date, which is the balance of the latest record on or before it.
+     * Answered with one indexed query, without loading the balance history.
+     *
+     * @param cardNumber The credit card number.
+     * @param date       The date to look up, today if omitted.
+     * @return A ResponseEntity containing the balance, 0.0 if the card has no record on or before the date,
+     *         or a bad request if the card number is unknown.
+     */
+    @Timed(value = "app.handler", histogram = true)
+    @GetMapping("/credit-card:balance")
+    public ResponseEntity<Double> getBalance(@RequestParam String cardNumber,
+                                             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        balanceWriteBehindBuffer.flush(List.of(cardNumber));
+        CardReference cardReference = cardNumberCache.get(cardNumber);
+        if (cardReference == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(balanceLookupService.balanceAt(cardReference.getCardId(), date != null ? date : LocalDate.now()));
+    }
+
+    /**
+     * Retrieves the balance of a credit card on each of several dates.
+     *
+     * @param cardNumber The credit card number.
+     * @param dates      Up to 1000 dates, in any order.
+     * @return A ResponseEntity containing one entry per requested date in request order,
+     *         or a bad request if the card number is unknown or too many dates are given.
+     */
+    @Timed(value = "app.handler", histogram = true)
+    @GetMapping("/credit-card:balance-series")
+    public ResponseEntity<List<BalanceHistoryView>> getBalanceSeries(
+            @RequestParam String cardNumber,
+            @RequestParam("date") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) List<LocalDate> dates) {
+        balanceWriteBehindBuffer.flush(List.of(cardNumber));
+        CardReference cardReference = cardNumberCache.get(cardNumber);
+        if (cardReference == null || dates.size() > MAX_BALANCE_LOOKUPS) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(balanceLookupService.balancesAt(cardReference.getCardId(), dates));
+    }
+
+    /**
+     * Retrieves the balance of many credit cards on one date with a single query.
+     *
+     * @param payload Up to 1000 credit card numbers and the date to look up, today if omitted.
+     * @return A ResponseEntity containing the balances in request order, leaving out unknown cards and cards
+     *         without a record on or before the date, or a bad request if no or too many cards are given.
+     */
+    @Timed(value = "app.handler", histogram = true)
+    @PostMapping("/credit-card:balance-batch")
+    public ResponseEntity<List<CardBalanceView>> getBalances(@RequestBody BalanceLookupPayload payload) {
+        List<String> numbers = payload.getCreditCardNumbers();
+        if (numbers == null || numbers.size() > MAX_BALANCE_LOOKUPS) {
+            return ResponseEntity.badRequest().build();
+        }
+        LocalDate date = payload.getDate() != null ? payload.getDate() : LocalDate.now();
+        balanceWriteBehindBuffer.flush(numbers);
+        return ResponseEntity.ok(balanceLookupService.balancesAt(numbers, date));
+    }
+
+    /**
+     * Streams the balance history of a credit card within a date range, oldest first.
+     * Pages are fetched by keyset: pass the day after the last returned date as the next {@code from}.
+     *
+     * @param cardNumber The credit card number to retrieve the balance history for.
+     * @param from       The first date to include, unbounded if omitted.
+     * @param to         The last date to include, unbounded if omitted.
+     * @param limit      The maximum number of rows to return.
+     * @param format     Either "json" for a JSON array or "ndjson" for newline-delimited JSON.
+     * @return A ResponseEntity streaming the balance history rows,
+     *         or a bad request if the card number or format is unknown.
+     */
+    @Timed(value = "app.handler", histogram = true)
+    @GetMapping("/credit-card:balance-history-range")
+    public ResponseEntity<StreamingResponseBody> getBalanceHistoryRange(
+            @RequestParam String cardNumber,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "10000") int limit,
+            @RequestParam(defaultValue = "json") String format) {
+        boolean ndjson = "ndjson".equals(format);
+        if (!ndjson && !"json".equals(format) || limit < 0) {
+            return ResponseEntity.badRequest().build();
+        }
+        CardReference cardReference = cardNumberCache.get(cardNumber);
+        if (cardReference == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        balanceWriteBehindBuffer.flush(List.of(cardNumber));
+
+        LocalDate rangeStart = from != null ? from : BalanceHistoryService.EARLIEST_DATE;
+        LocalDate rangeEnd = to != null ? to : BalanceHistoryService.LATEST_DATE;
+        StreamingResponseBody body = out -> balanceHistoryService.writeHistory(
+                cardReference.getCardId(), rangeStart, rangeEnd, limit, ndjson, out);
+        return ResponseEntity.ok()
+                .contentType(ndjson ? NDJSON : MediaType.APPLICATION_JSON)
+                .body(body);
+    }
+
+    /**
+     * Aggregates the daily balances of a credit card per month or week from the stored rollups.
+     * The range is widened to whole periods, and the latest balance is carried forward up to today.
+     *
+     * @param cardNumber  The credit card number.
+     * @param granularity Either MONTH or WEEK.
+     * @param from        A date in the first period, one year before {@code to} if omitted.
+     * @param to          A date in the last period, today if omitted.
+     * @return A ResponseEntity containing the per-period and overall aggregates,
+     *         or a bad request if the card number is unknown or the range is reversed.
+     */
+    @Timed(value = "app.handler", histogram = true)
+    @GetMapping("/credit-card:balance-rollup")
+    public ResponseEntity<BalanceRollupReport> getBalanceRollup(
+            @RequestParam String cardNumber,
+            @RequestParam(defaultValue = "MONTH") RollupGranularity granularity,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        LocalDate rangeEnd = to != null ? to : LocalDate.now();
+        LocalDate rangeStart = from != null ? from : rangeEnd.minusYears(1);
+        CardReference cardReference = cardNumberCache.get(cardNumber);
+        if (cardReference == null || rangeStart.isAfter(rangeEnd)) {
+            return ResponseEntity.badRequest().build();
+        }
+        balanceWriteBehindBuffer.flush(List.of(cardNumber));
+        balanceLedger.checkpoint(List.of(cardNumber));
+        return ResponseEntity.ok(balanceRollupService.cardReport(cardReference.getCardId(), granularity, rangeStart, rangeEnd));
+    }
+
+    /**
+     * Rebuilds the balance rollups of a credit card from its full history and reports every stored period that differs.
+     *
+     * @param cardNumber The credit card number.
+     * @param repair     Whether to overwrite the differing rollups with the rebuilt ones.
+     * @return A ResponseEntity containing the check result, or a bad request if the card number is unknown.
+     */
+    @Timed(value = "app.handler", histogram = true)
+    @PostMapping("/credit-card:balance-rollup-check")
+    public ResponseEntity<BalanceRollupCheck> checkBalanceRollup(@RequestParam String cardNumber,
+                                                                 @RequestParam(defaultValue = "false") boolean repair) {
+        balanceWriteBehindBuffer.flush(List.of(cardNumber));
+        balanceLedger.checkpoint(List.of(cardNumber));
+        BalanceRollupCheck check = balanceRollupService.check(cardNumber, repair);
+        if (check == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(check);
+    }
+
+    /**
+     * Lists the balance ledger of a credit card: every update appended while the ledger was enabled, as received,
+     * including those already folded into the stored history. Pages are fetched by passing the last returned
+     * sequence number as the next {@code afterSequence}.
+     *
+     * @param cardNumber    The credit card number.
+     * @param afterSequence Only entries with a greater sequence number are returned; 0 starts from the beginning.
+     * @param limit         The maximum number of entries to return, at most 1000.
+     * @return A ResponseEntity containing the entries in sequence order, or a bad request if the card number is unknown.
+     */
+    @Timed(value = "app.handler", histogram = true)
+    @GetMapping("/credit-card:balance-ledger")
+    public ResponseEntity<List<BalanceLedgerEntryView>> getBalanceLedger(@RequestParam String cardNumber,
+                                                                         @RequestParam(defaultValue = "0") long afterSequence,
+                                                                         @RequestParam(defaultValue = "1000") int limit) {
+        CardReference cardReference = cardNumberCache.get(cardNumber);
+        if (cardReference == null || limit < 1 || limit > MAX_BALANCE_LOOKUPS) {
+            return ResponseEntity.badRequest().build();
         }
-        return ResponseEntity.ok(creditCard.getBalanceHistoryString());
+        return ResponseEntity.ok(balanceLedger.entries(cardReference.getCardId(), afterSequence, limit));
     }
 }
@@ -1,12 +1,25 @@
 package com.shepherdmoney.interviewproject.controller;
 
+import com.shepherdmoney.interviewproject.model.RollupGranularity;
 import com.shepherdmoney.interviewproject.model.User;
 import com.shepherdmoney.interviewproject.repository.UserRepository;
+import com.shepherdmoney.interviewproject.service.BalanceLedger;
+import com.shepherdmoney.interviewproject.service.BalanceRollupService;
+import com.shepherdmoney.interviewproject.service.BalanceWriteBehindBuffer;
+import com.shepherdmoney.interviewproject.service.BulkCreationService;
+import com.shepherdmoney.interviewproject.service.InvalidPayloadException;
+import com.shepherdmoney.interviewproject.service.UserDeletionService;
 import com.shepherdmoney.interviewproject.vo.request.CreateUserPayload;
+import com.shepherdmoney.interviewproject.vo.response.BalanceRollupReport;
+import io.micrometer.core.annotation.Timed;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.Optional;
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.util.List;
 
 /**
  * Controller class responsible for handling web requests related to user operations.
@@ -20,8 +33,25 @@ public class UserController {
 
     private final UserRepository userRepository;
 
-    public UserController(UserRepository userRepository) {
+    private final UserDeletionService userDeletionService;
+
+    private final BulkCreationService bulkCreationService;
+
+    private final BalanceRollupService balanceRollupService;
+
+    private final BalanceWriteBehindBuffer balanceWriteBehindBuffer;
+
+    private final BalanceLedger balanceLedger;
+
+    public UserController(UserRepository userRepository, UserDeletionService userDeletionService,
+                          BulkCreationService bulkCreationService, BalanceRollupService balanceRollupService,
+                          BalanceWriteBehindBuffer balanceWriteBehindBuffer, BalanceLedger balanceLedger) {
         this.userRepository = userRepository;
+        this.userDeletionService = userDeletionService;
+        this.bulkCreationService = bulkCreationService;
+        this.balanceRollupService = balanceRollupService;
+        this.balanceWriteBehindBuffer = balanceWriteBehindBuffer;
+        this.balanceLedger = balanceLedger;
     }
 
     /**
@@ -30,6 +60,7 @@ public class UserController {
      * @param payload The data used to create a new user, including name and email.
      * @return A ResponseEntity containing the ID of the newly created user or an error message.
      */
+    @Timed(value = "app.handler", histogram = true)
     @PutMapping("/user")
     public ResponseEntity<Integer> createUser(@RequestBody CreateUserPayload payload) {
         User user = new User();
@@ -40,19 +71,68 @@ public class UserController {
     }
 
     /**
-     * Deletes an existing user from the system based on the user ID provided.
+     * Creates users in bulk from a JSON array or an NDJSON stream of CreateUserPayload objects.
+     *
+     * @param body The request body.
+     * @return A ResponseEntity containing the IDs of the new users in input order, or 400 if the body is malformed.
+     */
+    @Timed(value = "app.handler", histogram = true)
+    @PutMapping(value = "/user:bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, "application/x-ndjson"})
+    public ResponseEntity<List<Integer>> createUsers(InputStream body) {
+        try {
+            return ResponseEntity.ok(bulkCreationService.createUsers(body));
+        } catch (InvalidPayloadException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Deletes an existing user together with their credit cards and balance history.
+     * Users with a large balance history are removed immediately while their history is purged in the background.
      *
      * @param userId The ID of the user to delete.
-     * @return A ResponseEntity with a success message if the user is found and deleted, or an error message if not found.
+     * @return A ResponseEntity with a success message if the user is found and deleted, 202 if the history purge
+     *         continues in the background, or an error message if not found.
      */
+    @Timed(value = "app.handler", histogram = true)
     @DeleteMapping("/user")
     public ResponseEntity<String> deleteUser(@RequestParam int userId) {
-        Optional<User> optionalUser = userRepository.findById(userId);
-        if (optionalUser.isPresent()) {
-            userRepository.deleteById(userId);
-            return ResponseEntity.ok("User with ID " + userId + " deleted successfully.");
-        } else {
-            return ResponseEntity.badRequest().body("User with ID " + userId + " does not exist.");
+        switch (userDeletionService.deleteUser(userId)) {
+            case DELETED:
+                return ResponseEntity.ok("User with ID " + userId + " deleted successfully.");
+            case PURGE_SCHEDULED:
+                return ResponseEntity.accepted().body("User with ID " + userId + " deleted, balance history is being purged.");
+            default:
+                return ResponseEntity.badRequest().body("User with ID " + userId + " does not exist.");
+        }
+    }
+
+    /**
+     * Aggregates the combined daily balances of all credit cards of a user per month or week.
+     * Per period, the average is taken over the days covered by any card; minimum and maximum are not reported.
+     *
+     * @param userId      The ID of the user.
+     * @param granularity Either MONTH or WEEK.
+     * @param from        A date in the first period, one year before {@code to} if omitted.
+     * @param to          A date in the last period, today if omitted.
+     * @return A ResponseEntity containing the per-period and overall aggregates,
+     *         or a bad request if the user does not exist or the range is reversed.
+     */
+    @Timed(value = "app.handler", histogram = true)
+    @GetMapping("/user:balance-rollup")
+    public ResponseEntity<BalanceRollupReport> getBalanceRollup(
+            @RequestParam int userId,
+            @RequestParam(defaultValue = "MONTH") RollupGranularity granularity,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        LocalDate rangeEnd = to != null ? to : LocalDate.now();
+        LocalDate rangeStart = from != null ? from : rangeEnd.minusYears(1);
+        if (!userRepository.existsById(userId) || rangeStart.isAfter(rangeEnd)) {
+            return ResponseEntity.badRequest().build();
         }
+        // Which buffered cards belong to the user is not known without a query, so flush them all
+        balanceWriteBehindBuffer.flush();
+        balanceLedger.checkpointOwner(userId);
+        return ResponseEntity.ok(balanceRollupService.userReport(userId, granularity, rangeStart, rangeEnd));
     }
 }
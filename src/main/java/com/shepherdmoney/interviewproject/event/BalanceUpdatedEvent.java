@@ -0,0 +1,14 @@
+package com.shepherdmoney.interviewproject.event;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Published when balance updates to one or more credit cards have been written.
+ */
+@Value
+public class BalanceUpdatedEvent {
+
+    List<String> cardNumbers;
+}
@@ -0,0 +1,16 @@
+package com.shepherdmoney.interviewproject.event;
+
+import lombok.Value;
+
+/**
+ * Published after a credit card has been stored.
+ */
+@Value
+public class CreditCardCreatedEvent {
+
+    int cardId;
+
+    String number;
+
+    int ownerId;
+}
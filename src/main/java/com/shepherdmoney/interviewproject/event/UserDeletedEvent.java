@@ -0,0 +1,19 @@
+package com.shepherdmoney.interviewproject.event;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Published after a user and the ownership of their credit cards have been removed.
+ * The cards' balance history may still be purged in the background.
+ */
+@Value
+public class UserDeletedEvent {
+
+    int userId;
+
+    List<String> cardNumbers;
+
+    List<Integer> cardIds;
+}
@@ -0,0 +1,130 @@
+package com.shepherdmoney.interviewproject.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+/**
+ * Distributions describing the shape of balance work: batch sizes, how far updates propagate,
+ * how many stored rows a propagation rewrites, how many rollup periods a card refresh rewrites,
+ * how much history is loaded per card, how often a batch had to be retried after losing a
+ * concurrent update race, how much the write-behind buffer coalesces and flushes, how many
+ * balance ledger entries are replayed per read rebuild and folded per checkpoint, and how many
+ * records move into and back out of the balance archive and how often reads fall through to it.
+ */
+@Component
+public class BalanceMetrics {
+
+    private final DistributionSummary batchSize;
+
+    private final DistributionSummary propagationDays;
+
+    private final DistributionSummary propagationRows;
+
+    private final DistributionSummary rollupPeriods;
+
+    private final DistributionSummary historyLoaded;
+
+    private final Counter updateRetries;
+
+    private final DistributionSummary writeBehindFlushEntries;
+
+    private final Counter writeBehindCoalesced;
+
+    private final DistributionSummary ledgerReplayEntries;
+
+    private final DistributionSummary ledgerCheckpointEntries;
+
+    private final DistributionSummary archiveMoved;
+
+    private final DistributionSummary archiveRestored;
+
+    private final Counter archiveReads;
+
+    public BalanceMetrics(MeterRegistry meterRegistry) {
+        batchSize = summary("balance.update.batch.size", "Payloads per balance update batch", meterRegistry);
+        propagationDays = summary("balance.propagation.days", "Days shifted by one backdated balance update", meterRegistry);
+        propagationRows = summary("balance.propagation.rows", "Stored balance rows rewritten per card flush", meterRegistry);
+        rollupPeriods = summary("balance.rollup.periods", "Rollup periods rewritten per card refresh", meterRegistry);
+        historyLoaded = summary("balance.history.loaded.size", "Balance history rows loaded per card", meterRegistry);
+        updateRetries = Counter.builder("balance.update.retries")
+                .description("Balance update batches retried after a concurrent modification")
+                .register(meterRegistry);
+        writeBehindFlushEntries = summary("balance.write_behind.flush.entries",
+                "Buffered (card, date) balances written per write-behind flush", meterRegistry);
+        writeBehindCoalesced = Counter.builder("balance.write_behind.coalesced")
+                .description("Buffered balance updates replaced by a later update to the same card and date")
+                .register(meterRegistry);
+        ledgerReplayEntries = summary("balance.ledger.replay.entries",
+                "Ledger entries replayed per card to rebuild its history for a read", meterRegistry);
+        ledgerCheckpointEntries = summary("balance.ledger.checkpoint.entries",
+                "Ledger entries folded into a card's stored history per checkpoint", meterRegistry);
+        archiveMoved = summary("balance.archive.moved.records",
+                "Balance records moved from a card's stored history into the archive per run", meterRegistry);
+        archiveRestored = summary("balance.archive.restored.records",
+                "Archived balance records brought back into a card's stored history by a backdated update", meterRegistry);
+        archiveReads = Counter.builder("balance.archive.reads")
+                .description("Balance reads answered partly from the archive")
+                .register(meterRegistry);
+    }
+
+    public void recordBatchSize(int payloads) {
+        batchSize.record(payloads);
+    }
+
+    public void recordPropagationDays(long days) {
+        propagationDays.record(days);
+    }
+
+    public void recordPropagationRows(int rows) {
+        propagationRows.record(rows);
+    }
+
+    public void recordRollupPeriods(int periods) {
+        rollupPeriods.record(periods);
+    }
+
+    public void recordHistoryLoaded(int rows) {
+        historyLoaded.record(rows);
+    }
+
+    public void recordUpdateRetry() {
+        updateRetries.increment();
+    }
+
+    public void recordWriteBehindFlush(int entries) {
+        writeBehindFlushEntries.record(entries);
+    }
+
+    public void recordWriteBehindCoalesced(int updates) {
+        writeBehindCoalesced.increment(updates);
+    }
+
+    public void recordLedgerReplay(int entries) {
+        ledgerReplayEntries.record(entries);
+    }
+
+    public void recordLedgerCheckpoint(int entries) {
+        ledgerCheckpointEntries.record(entries);
+    }
+
+    public void recordArchiveMoved(int records) {
+        archiveMoved.record(records);
+    }
+
+    public void recordArchiveRestored(int records) {
+        archiveRestored.record(records);
+    }
+
+    public void recordArchiveRead() {
+        archiveReads.increment();
+    }
+
+    private static DistributionSummary summary(String name, String description, MeterRegistry meterRegistry) {
+        return DistributionSummary.builder(name)
+                .description(description)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,67 @@
+package com.shepherdmoney.interviewproject.metrics;
+
+import com.shepherdmoney.interviewproject.config.EntityCacheConfig;
+import com.shepherdmoney.interviewproject.vo.response.CacheRegionStats;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Per-region view of the Hibernate second-level cache counters.
+ * Relies on {@code hibernate.generate_statistics}; regions are absent while the cache is disabled.
+ */
+@Component
+public class EntityCacheStatistics {
+
+    private final Statistics statistics;
+
+    public EntityCacheStatistics(EntityManagerFactory entityManagerFactory) {
+        this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    /**
+     * @return The counters of every entity and query region, in {@link EntityCacheConfig#REGIONS} order.
+     */
+    public List<CacheRegionStats> regions() {
+        List<CacheRegionStats> regions = new ArrayList<>(EntityCacheConfig.REGIONS.size());
+        for (String region : EntityCacheConfig.REGIONS) {
+            CacheRegionStatistics stats = region(region);
+            if (stats != null) {
+                regions.add(new CacheRegionStats(region, stats.getHitCount(), stats.getMissCount(), stats.getPutCount(),
+                        hitRatio(stats), stats.getElementCountInMemory()));
+            }
+        }
+        return regions;
+    }
+
+    /**
+     * @param region The region name.
+     * @return The hit ratio of the region, or 0.0 if it is unknown or has not been read yet.
+     */
+    public double hitRatio(String region) {
+        CacheRegionStatistics stats = region(region);
+        return stats == null ? 0.0 : hitRatio(stats);
+    }
+
+    private CacheRegionStatistics region(String region) {
+        if (!statistics.isStatisticsEnabled()) {
+            return null;
+        }
+        try {
+            return statistics.getCacheRegionStatistics(region);
+        } catch (IllegalArgumentException e) {
+            // Region not configured, e.g. with the second-level cache disabled
+            return null;
+        }
+    }
+
+    private static double hitRatio(CacheRegionStatistics stats) {
+        long lookups = stats.getHitCount() + stats.getMissCount();
+        return lookups == 0 ? 0.0 : (double) stats.getHitCount() / lookups;
+    }
+}
@@ -0,0 +1,64 @@
+package com.shepherdmoney.interviewproject.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+/**
+ * Records how much persistence work each handler invocation caused:
+ * statements executed, entities loaded, collections fetched and flushes.
+ * Work done after an async handler returns (e.g. streamed responses) is not attributed.
+ */
+public class PersistenceStatsInterceptor implements AsyncHandlerInterceptor {
+
+    private final MeterRegistry meterRegistry;
+
+    public PersistenceStatsInterceptor(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (handler instanceof HandlerMethod) {
+            RequestPersistenceStats.begin();
+        }
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        record(handler);
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        record(handler);
+    }
+
+    private void record(Object handler) {
+        RequestPersistenceStats stats = RequestPersistenceStats.end();
+        if (stats == null || !(handler instanceof HandlerMethod handlerMethod)) {
+            return;
+        }
+        String name = handlerMethod.getMethod().getName();
+        summary("app.request.statements", "JDBC statements and batches executed per request", name)
+                .record(stats.getStatements());
+        summary("app.request.entities.loaded", "Entities loaded per request", name)
+                .record(stats.getEntitiesLoaded());
+        summary("app.request.collections.fetched", "Collections initialized per request", name)
+                .record(stats.getCollectionsFetched());
+        summary("app.request.flushes", "Session flushes per request", name)
+                .record(stats.getFlushes());
+    }
+
+    private DistributionSummary summary(String name, String description, String handler) {
+        return DistributionSummary.builder(name)
+                .description(description)
+                .tag("handler", handler)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+}
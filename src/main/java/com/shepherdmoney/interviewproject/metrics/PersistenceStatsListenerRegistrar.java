@@ -0,0 +1,34 @@
+package com.shepherdmoney.interviewproject.metrics;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.InitializeCollectionEventListener;
+import org.hibernate.event.spi.PostLoadEventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Hooks entity load and collection initialization events into {@link RequestPersistenceStats}.
+ */
+@Component
+public class PersistenceStatsListenerRegistrar {
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    public PersistenceStatsListenerRegistrar(EntityManagerFactory entityManagerFactory) {
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    @PostConstruct
+    public void register() {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_LOAD,
+                (PostLoadEventListener) event -> RequestPersistenceStats.entityLoaded());
+        registry.appendListeners(EventType.INIT_COLLECTION,
+                (InitializeCollectionEventListener) event -> RequestPersistenceStats.collectionFetched());
+    }
+}
@@ -0,0 +1,25 @@
+package com.shepherdmoney.interviewproject.metrics;
+
+import org.hibernate.BaseSessionEventListener;
+
+/**
+ * Hibernate session listener counting executed statements and flushes for the current request.
+ * Registered for every session through {@code hibernate.session.events.auto}.
+ */
+public class PersistenceStatsSessionListener extends BaseSessionEventListener {
+
+    @Override
+    public void jdbcExecuteStatementEnd() {
+        RequestPersistenceStats.statementExecuted();
+    }
+
+    @Override
+    public void jdbcExecuteBatchEnd() {
+        RequestPersistenceStats.statementExecuted();
+    }
+
+    @Override
+    public void flushEnd(int numberOfEntities, int numberOfCollections) {
+        RequestPersistenceStats.flushed();
+    }
+}
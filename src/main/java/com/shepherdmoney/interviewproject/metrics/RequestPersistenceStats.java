@@ -0,0 +1,83 @@
+package com.shepherdmoney.interviewproject.metrics;
+
+/**
+ * Per-request persistence counters, collected on the request thread by Hibernate callbacks.
+ * Counting is a no-op on threads where no request is being tracked.
+ */
+public final class RequestPersistenceStats {
+
+    private static final ThreadLocal<RequestPersistenceStats> CURRENT = new ThreadLocal<>();
+
+    private long statements;
+
+    private long entitiesLoaded;
+
+    private long collectionsFetched;
+
+    private long flushes;
+
+    private RequestPersistenceStats() {
+    }
+
+    /**
+     * Starts tracking on the current thread, discarding any previous counters.
+     */
+    public static void begin() {
+        CURRENT.set(new RequestPersistenceStats());
+    }
+
+    /**
+     * Stops tracking on the current thread.
+     *
+     * @return The counters collected since {@link #begin()}, or null if tracking was not active.
+     */
+    public static RequestPersistenceStats end() {
+        RequestPersistenceStats stats = CURRENT.get();
+        CURRENT.remove();
+        return stats;
+    }
+
+    static void statementExecuted() {
+        RequestPersistenceStats stats = CURRENT.get();
+        if (stats != null) {
+            stats.statements++;
+        }
+    }
+
+    static void entityLoaded() {
+        RequestPersistenceStats stats = CURRENT.get();
+        if (stats != null) {
+            stats.entitiesLoaded++;
+        }
+    }
+
+    static void collectionFetched() {
+        RequestPersistenceStats stats = CURRENT.get();
+        if (stats != null) {
+            stats.collectionsFetched++;
+        }
+    }
+
+    static void flushed() {
+        RequestPersistenceStats stats = CURRENT.get();
+        if (stats != null) {
+            stats.flushes++;
+        }
+    }
+
+    public long getStatements() {
+        return statements;
+    }
+
+    public long getEntitiesLoaded() {
+        return entitiesLoaded;
+    }
+
+    public long getCollectionsFetched() {
+        return collectionsFetched;
+    }
+
+    public long getFlushes() {
+        return flushes;
+    }
+}
@@ -0,0 +1,124 @@
+package com.shepherdmoney.interviewproject.model;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Binary format of one archived segment: the balance records of one card in one year, laid out like a
+ * {@link BalanceSegmentCodec monthly segment} with days of the year in place of days of the month, then deflated.
+ * Unlike a monthly segment the archive never rounds: balances are stored as cents when every balance of the year
+ * is a whole number of cents, as raw doubles otherwise, so archiving leaves every balance exactly as it was.
+ * <pre>
+ * varint raw length | deflate(varint count | count x varint day delta | encoding | count x value)
+ * </pre>
+ * Values are zigzag varint cents deltas for {@link #CENTS}, 8-byte doubles for {@link #DOUBLES}.
+ */
+public final class BalanceArchiveCodec {
+
+    static final byte CENTS = 0;
+
+    static final byte DOUBLES = 1;
+
+    private BalanceArchiveCodec() {
+    }
+
+    /**
+     * @param records The records of one year in ascending date order.
+     * @return The encoded and compressed segment.
+     */
+    public static byte[] encode(Collection<BalanceHistory> records) {
+        boolean cents = records.stream().allMatch(record -> BalanceSegmentCodec.round(record.getBalance()) == record.getBalance());
+        ByteArrayOutputStream raw = new ByteArrayOutputStream(2 + records.size() * (cents ? 4 : 10));
+        BalanceSegmentCodec.writeVarint(raw, records.size());
+        int previousDay = 0;
+        for (BalanceHistory record : records) {
+            BalanceSegmentCodec.writeVarint(raw, record.getDate().getDayOfYear() - previousDay);
+            previousDay = record.getDate().getDayOfYear();
+        }
+        raw.write(cents ? CENTS : DOUBLES);
+        long previousCents = 0;
+        for (BalanceHistory record : records) {
+            if (cents) {
+                long value = Math.round(record.getBalance() * 100);
+                long delta = value - previousCents;
+                BalanceSegmentCodec.writeVarint(raw, (delta << 1) ^ (delta >> 63));
+                previousCents = value;
+            } else {
+                long bits = Double.doubleToLongBits(record.getBalance());
+                for (int shift = 56; shift >= 0; shift -= 8) {
+                    raw.write((int) (bits >>> shift));
+                }
+            }
+        }
+
+        byte[] input = raw.toByteArray();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(input.length + 8);
+        BalanceSegmentCodec.writeVarint(out, input.length);
+        Deflater deflater = new Deflater();
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            byte[] buffer = new byte[Math.max(64, input.length)];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+        } finally {
+            deflater.end();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @param year     The year of the segment.
+     * @param data     The encoded segment; read from its position to its limit.
+     * @param consumer Receives every record in date order.
+     */
+    public static void decode(int year, ByteBuffer data, BalanceSegmentCodec.RecordConsumer consumer) {
+        byte[] header = new byte[Math.min(10, data.remaining())];
+        data.get(data.position(), header);
+        int[] position = {0};
+        int rawLength = (int) BalanceSegmentCodec.readVarint(header, position);
+        byte[] raw = new byte[rawLength];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data.slice(data.position() + position[0], data.remaining() - position[0]));
+            if (inflater.inflate(raw) != rawLength) {
+                throw new IllegalArgumentException("Archived segment is shorter than its recorded length.");
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Archived segment is not valid deflate data.", e);
+        } finally {
+            inflater.end();
+        }
+
+        position[0] = 0;
+        int count = (int) BalanceSegmentCodec.readVarint(raw, position);
+        int[] days = new int[count];
+        int day = 0;
+        for (int i = 0; i < count; i++) {
+            day += (int) BalanceSegmentCodec.readVarint(raw, position);
+            days[i] = day;
+        }
+        boolean cents = raw[position[0]++] == CENTS;
+        LocalDate yearStart = LocalDate.ofYearDay(year, 1);
+        ByteBuffer doubles = ByteBuffer.wrap(raw);
+        long value = 0;
+        for (int i = 0; i < count; i++) {
+            double balance;
+            if (cents) {
+                long zigzag = BalanceSegmentCodec.readVarint(raw, position);
+                value += (zigzag >>> 1) ^ -(zigzag & 1);
+                balance = value / 100.0;
+            } else {
+                balance = doubles.getDouble(position[0]);
+                position[0] += Double.BYTES;
+            }
+            consumer.accept(yearStart.plusDays(days[i] - 1), balance);
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.shepherdmoney.interviewproject.model;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * Pending balance offsets stored as point deltas on the days on which an offset starts or ends, in a treap
+ * (a binary search tree kept balanced by pseudo-random priorities) whose nodes also hold the sum of their subtree.
+ * A backdated correction is recorded as a single range add instead of rewriting every later day:
+ * adding a boundary day and resolving the accumulated offset for any date both walk one root-to-leaf path,
+ * which is logarithmic in the number of boundary days. Only the boundary days are kept, so memory grows
+ * with the number of corrections rather than with the number of days they span.
+ * Offsets are only pending until {@link CreditCard#flushBalanceHistory()} folds them into the rows.
+ */
+class BalanceDeltaTree {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Index of the absent node; slot 0 of the node arrays is never used.
+     */
+    private static final int NIL = 0;
+
+    private long[] days = new long[INITIAL_CAPACITY];
+
+    private double[] deltas = new double[INITIAL_CAPACITY];
+
+    /**
+     * The sum of the deltas in each node's subtree.
+     */
+    private double[] sums = new double[INITIAL_CAPACITY];
+
+    private long[] priorities = new long[INITIAL_CAPACITY];
+
+    private int[] left = new int[INITIAL_CAPACITY];
+
+    private int[] right = new int[INITIAL_CAPACITY];
+
+    private int root = NIL;
+
+    private int size;
+
+    private boolean empty = true;
+
+    private long firstDay;
+
+    private long lastDay;
+
+    /**
+     * Adds the delta to every date in the inclusive range [from, to].
+     *
+     * @param from  The first date receiving the delta.
+     * @param to    The last date receiving the delta.
+     * @param delta The amount to add.
+     */
+    public void addRange(LocalDate from, LocalDate to, double delta) {
+        if (delta == 0.0 || from.isAfter(to)) {
+            return;
+        }
+        long fromDay = from.toEpochDay();
+        long endDay = to.toEpochDay() + 1;
+        root = add(root, fromDay, delta);
+        root = add(root, endDay, -delta);
+        firstDay = empty ? fromDay : Math.min(firstDay, fromDay);
+        lastDay = empty ? endDay - 1 : Math.max(lastDay, endDay - 1);
+        empty = false;
+    }
+
+    /**
+     * Returns the accumulated offset for a date.
+     *
+     * @param date The date to resolve.
+     * @return The sum of all range deltas covering the date.
+     */
+    public double deltaAt(LocalDate date) {
+        long day = date.toEpochDay();
+        double sum = 0.0;
+        // Sums every point delta on or before the day
+        int node = root;
+        while (node != NIL) {
+            if (days[node] <= day) {
+                sum += sums[left[node]] + deltas[node];
+                node = right[node];
+            } else {
+                node = left[node];
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * @return The earliest date covered by a pending offset. Only meaningful if the tree is not empty.
+     */
+    public LocalDate firstDate() {
+        return LocalDate.ofEpochDay(firstDay);
+    }
+
+    /**
+     * @return The latest date covered by a pending offset. Only meaningful if the tree is not empty.
+     */
+    public LocalDate lastDate() {
+        return LocalDate.ofEpochDay(lastDay);
+    }
+
+    /**
+     * @return true if no offsets are pending.
+     */
+    public boolean isEmpty() {
+        return empty;
+    }
+
+    /**
+     * Discards all pending offsets, keeping the node arrays unless they grew past their initial size.
+     */
+    public void clear() {
+        if (days.length > INITIAL_CAPACITY) {
+            days = new long[INITIAL_CAPACITY];
+            deltas = new double[INITIAL_CAPACITY];
+            sums = new double[INITIAL_CAPACITY];
+            priorities = new long[INITIAL_CAPACITY];
+            left = new int[INITIAL_CAPACITY];
+            right = new int[INITIAL_CAPACITY];
+        }
+        root = NIL;
+        size = 0;
+        empty = true;
+    }
+
+    /**
+     * Adds a point delta below the given node, rotating the new node up while its priority is higher.
+     *
+     * @return The root of the subtree after the insert.
+     */
+    private int add(int node, long day, double delta) {
+        if (node == NIL) {
+            return newNode(day, delta);
+        }
+        if (day == days[node]) {
+            deltas[node] += delta;
+        } else if (day < days[node]) {
+            // Assigned after the call, which may replace the arrays when it adds a node
+            int child = add(left[node], day, delta);
+            left[node] = child;
+            if (priorities[left[node]] > priorities[node]) {
+                node = rotateRight(node);
+            }
+        } else {
+            // Assigned after the call, which may replace the arrays when it adds a node
+            int child = add(right[node], day, delta);
+            right[node] = child;
+            if (priorities[right[node]] > priorities[node]) {
+                node = rotateLeft(node);
+            }
+        }
+        sums[node] = sums[left[node]] + deltas[node] + sums[right[node]];
+        return node;
+    }
+
+    private int rotateRight(int node) {
+        int child = left[node];
+        left[node] = right[child];
+        right[child] = node;
+        sums[node] = sums[left[node]] + deltas[node] + sums[right[node]];
+        return child;
+    }
+
+    private int rotateLeft(int node) {
+        int child = right[node];
+        right[node] = left[child];
+        left[child] = node;
+        sums[node] = sums[left[node]] + deltas[node] + sums[right[node]];
+        return child;
+    }
+
+    private int newNode(long day, double delta) {
+        int node = ++size;
+        if (node == days.length) {
+            int capacity = days.length * 2;
+            days = Arrays.copyOf(days, capacity);
+            deltas = Arrays.copyOf(deltas, capacity);
+            sums = Arrays.copyOf(sums, capacity);
+            priorities = Arrays.copyOf(priorities, capacity);
+            left = Arrays.copyOf(left, capacity);
+            right = Arrays.copyOf(right, capacity);
+        }
+        days[node] = day;
+        deltas[node] = delta;
+        sums[node] = delta;
+        priorities[node] = priority(day);
+        left[node] = NIL;
+        right[node] = NIL;
+        return node;
+    }
+
+    /**
+     * Scrambles the day into a priority, so boundaries added in date order still give a balanced tree.
+     */
+    private static long priority(long day) {
+        long z = day + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -13,10 +13,12 @@ import lombok.ToString;
 @Setter
 @ToString
 @RequiredArgsConstructor
+@Table(indexes = @Index(name = "ix_balance_history_card_date", columnList = "credit_card_id, date"))
 public class BalanceHistory {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "balance_history_seq")
+    @SequenceGenerator(name = "balance_history_seq", sequenceName = "balance_history_seq", allocationSize = 50)
     private int id;
     
     private LocalDate date;
@@ -0,0 +1,46 @@
+package com.shepherdmoney.interviewproject.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.time.LocalDate;
+
+/**
+ * One balance update as it was received, appended to the card's ledger and never changed afterwards.
+ * Replaying a card's entries in sequence order on top of its snapshot yields its current balance history.
+ */
+@Entity
+@Getter
+@Setter
+@ToString
+@RequiredArgsConstructor
+@Table(indexes = @Index(name = "ux_balance_ledger_sequence", columnList = "credit_card_id, sequence", unique = true))
+public class BalanceLedgerEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "balance_ledger_seq")
+    @SequenceGenerator(name = "balance_ledger_seq", sequenceName = "balance_ledger_seq", allocationSize = 50)
+    private long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "credit_card_id")
+    @ToString.Exclude
+    private CreditCard creditCard;
+
+    /**
+     * Position in the card's ledger, starting at 1 and without gaps.
+     */
+    private long sequence;
+
+    private LocalDate balanceDate;
+
+    private double amount;
+
+    /**
+     * The day the update was received, which bounds how far it propagates.
+     */
+    private LocalDate recordedOn;
+}
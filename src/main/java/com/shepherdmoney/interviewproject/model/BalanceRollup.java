@@ -0,0 +1,108 @@
+package com.shepherdmoney.interviewproject.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.time.LocalDate;
+
+/**
+ * Aggregate of a card's daily balances over one month or week.
+ * A day's balance is the latest record on or before it, and only days from the card's first record
+ * up to its last record are covered; later days are carried forward at query time.
+ */
+@Entity
+@Getter
+@Setter
+@ToString
+@RequiredArgsConstructor
+@Table(indexes = @Index(name = BalanceRollup.PERIOD_INDEX, columnList = "credit_card_id, granularity, periodStart", unique = true))
+public class BalanceRollup {
+
+    /**
+     * Unique index over (card, granularity, period start).
+     */
+    public static final String PERIOD_INDEX = "ux_balance_rollup_period";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "balance_rollup_seq")
+    @SequenceGenerator(name = "balance_rollup_seq", sequenceName = "balance_rollup_seq", allocationSize = 50)
+    private int id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "credit_card_id")
+    @ToString.Exclude
+    private CreditCard creditCard;
+
+    @Enumerated(EnumType.STRING)
+    private RollupGranularity granularity;
+
+    private LocalDate periodStart;
+
+    /**
+     * Number of covered days in the period.
+     */
+    private int days;
+
+    private double balanceSum;
+
+    private double minBalance;
+
+    private double maxBalance;
+
+    /**
+     * Balance on the last covered day of the period.
+     */
+    private double endBalance;
+
+    public BalanceRollup(CreditCard creditCard, RollupGranularity granularity, LocalDate periodStart) {
+        this.creditCard = creditCard;
+        this.granularity = granularity;
+        this.periodStart = periodStart;
+    }
+
+    /**
+     * Adds a run of consecutive days that all had the same balance. Runs must be added in date order.
+     *
+     * @param balance The balance of every day in the run.
+     * @param runDays The number of days in the run.
+     */
+    public void addDays(double balance, long runDays) {
+        if (runDays <= 0) {
+            return;
+        }
+        if (days == 0) {
+            minBalance = balance;
+            maxBalance = balance;
+        } else {
+            minBalance = Math.min(minBalance, balance);
+            maxBalance = Math.max(maxBalance, balance);
+        }
+        days += (int) runDays;
+        balanceSum += balance * runDays;
+        endBalance = balance;
+    }
+
+    /**
+     * Adds the days of another rollup of the same period that all follow the days already covered.
+     *
+     * @param later The rollup to add.
+     */
+    public void addAll(BalanceRollup later) {
+        if (later.days == 0) {
+            return;
+        }
+        if (days == 0) {
+            minBalance = later.minBalance;
+            maxBalance = later.maxBalance;
+        } else {
+            minBalance = Math.min(minBalance, later.minBalance);
+            maxBalance = Math.max(maxBalance, later.maxBalance);
+        }
+        days += later.days;
+        balanceSum += later.balanceSum;
+        endBalance = later.endBalance;
+    }
+}
@@ -0,0 +1,46 @@
+package com.shepherdmoney.interviewproject.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.time.LocalDate;
+
+/**
+ * The balance records of one card in one calendar month, packed into a single row.
+ * Used instead of {@link BalanceHistory} rows when balances are stored as segments; see {@link BalanceSegmentCodec}.
+ */
+@Entity
+@Getter
+@Setter
+@ToString
+@RequiredArgsConstructor
+@Table(indexes = @Index(name = BalanceSegment.MONTH_INDEX, columnList = "credit_card_id, monthStart", unique = true))
+public class BalanceSegment {
+
+    /**
+     * Unique index over (card, month start).
+     */
+    public static final String MONTH_INDEX = "ux_balance_segment_month";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "balance_segment_seq")
+    @SequenceGenerator(name = "balance_segment_seq", sequenceName = "balance_segment_seq", allocationSize = 50)
+    private int id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "credit_card_id")
+    @ToString.Exclude
+    private CreditCard creditCard;
+
+    /**
+     * The first day of the month.
+     */
+    private LocalDate monthStart;
+
+    @Column(length = BalanceSegmentCodec.MAX_SIZE, nullable = false)
+    @ToString.Exclude
+    private byte[] data;
+}
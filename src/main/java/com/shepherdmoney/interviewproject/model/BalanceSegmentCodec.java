@@ -0,0 +1,102 @@
+package com.shepherdmoney.interviewproject.model;
+
+import java.io.ByteArrayOutputStream;
+import java.time.LocalDate;
+import java.util.Collection;
+
+/**
+ * Binary format of a {@link BalanceSegment}: the balance records of one card in one month, stored as two columns.
+ * The first column holds the days of the month and the second the balances in whole cents, each delta-encoded
+ * against the previous record and written as variable-length integers, with the cents zigzag-encoded so small
+ * decreases stay small. A month of records fits in a few hundred bytes.
+ * <pre>
+ * varint count | count x varint day delta | count x zigzag varint cents delta
+ * </pre>
+ */
+public final class BalanceSegmentCodec {
+
+    /**
+     * Upper bound on the encoded size: a count, a day and a cents delta of at most 10 bytes per day.
+     */
+    public static final int MAX_SIZE = 1 + 31 * (1 + 10);
+
+    private BalanceSegmentCodec() {
+    }
+
+    /**
+     * Receives the records of a segment in date order.
+     */
+    public interface RecordConsumer {
+        void accept(LocalDate date, double balance);
+    }
+
+    /**
+     * @return The balance rounded to what a segment can hold.
+     */
+    public static double round(double balance) {
+        return Math.round(balance * 100) / 100.0;
+    }
+
+    /**
+     * @param records The records of one month in ascending date order.
+     * @return The encoded segment.
+     */
+    public static byte[] encode(Collection<BalanceHistory> records) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(1 + records.size() * 4);
+        writeVarint(out, records.size());
+        int previousDay = 0;
+        for (BalanceHistory record : records) {
+            writeVarint(out, record.getDate().getDayOfMonth() - previousDay);
+            previousDay = record.getDate().getDayOfMonth();
+        }
+        long previousCents = 0;
+        for (BalanceHistory record : records) {
+            long cents = Math.round(record.getBalance() * 100);
+            long delta = cents - previousCents;
+            writeVarint(out, (delta << 1) ^ (delta >> 63));
+            previousCents = cents;
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @param monthStart The first day of the segment's month.
+     * @param data       The encoded segment.
+     * @param consumer   Receives every record in date order.
+     */
+    public static void decode(LocalDate monthStart, byte[] data, RecordConsumer consumer) {
+        int[] position = {0};
+        int count = (int) readVarint(data, position);
+        int[] days = new int[count];
+        int day = 0;
+        for (int i = 0; i < count; i++) {
+            day += (int) readVarint(data, position);
+            days[i] = day;
+        }
+        long cents = 0;
+        for (int i = 0; i < count; i++) {
+            long zigzag = readVarint(data, position);
+            cents += (zigzag >>> 1) ^ -(zigzag & 1);
+            consumer.accept(monthStart.withDayOfMonth(days[i]), cents / 100.0);
+        }
+    }
+
+    static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    static long readVarint(byte[] data, int[] position) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = data[position[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+}
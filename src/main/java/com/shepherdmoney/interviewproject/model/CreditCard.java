@@ -1,9 +1,14 @@
 package com.shepherdmoney.interviewproject.model;
 
+import com.shepherdmoney.interviewproject.config.EntityCacheConfig;
 import jakarta.persistence.*;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.time.LocalDate;
 import java.util.*;
@@ -12,6 +17,13 @@ import java.util.*;
  * Entity representing a credit card in the system.
  * This class includes details such as the issuance bank and card number, and is associated with a User owner.
  * It handles operations related to the balance history of the card, allowing updates and queries on balances for specific dates.
+ * Cards are held in the second-level cache; the balance history collection is not and is always read from the database.
+ * When balances are stored as monthly segments, the history is loaded with {@link #loadBalanceHistory(Collection)}
+ * instead and the mapped balance history rows are left untouched.
+ * With the balance ledger enabled, the stored history is a snapshot that includes the first
+ * {@code snapshotSequence} of the card's {@link BalanceLedgerEntry ledger entries}.
+ * Records before {@code archivedBefore} may have been moved out of the database into the balance archive,
+ * in which case the stored history only holds the records from that date on.
  *
  * @author Zijie Huang
  * @since 05/02/2024
@@ -20,12 +32,50 @@ import java.util.*;
 @Getter
 @Setter
 @RequiredArgsConstructor
+@Table(indexes = {
+        @Index(name = "ux_credit_card_number", columnList = "number", unique = true),
+        @Index(name = "ix_credit_card_owner", columnList = "user_id, id")
+})
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = EntityCacheConfig.CREDIT_CARD_REGION)
 public class CreditCard {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "credit_card_seq")
+    @SequenceGenerator(name = "credit_card_seq", sequenceName = "credit_card_seq", allocationSize = 50)
     private int id;
 
+    /**
+     * Optimistic lock version, bumped on every balance update so concurrent writers to one card
+     * cannot overwrite each other's propagation.
+     */
+    @Version
+    private long version;
+
+    /**
+     * Number of balance updates appended to this card's ledger.
+     * Defaults to 0 in the schema so the column can be added to an existing card table.
+     */
+    @ColumnDefault("0")
+    private long ledgerSequence;
+
+    /**
+     * Number of ledger entries already folded into the stored balance history.
+     */
+    @ColumnDefault("0")
+    private long snapshotSequence;
+
+    /**
+     * Balance records before this date live in the balance archive, or null if none were ever archived.
+     */
+    private LocalDate archivedBefore;
+
+    /**
+     * Latest archive generation holding this card's archived records; later ones were never committed.
+     */
+    @ColumnDefault("0")
+    private long archiveGeneration;
+
     private String issuanceBank;
 
     private String number;
@@ -35,10 +85,43 @@ public class CreditCard {
     private User owner;
 
     @OneToMany(mappedBy = "creditCard", cascade = CascadeType.ALL, orphanRemoval = true)
+    @OrderBy("date DESC")
     private List<BalanceHistory> balanceHistory = new ArrayList<>();
 
+    @OneToMany(mappedBy = "creditCard", cascade = CascadeType.ALL, orphanRemoval = true)
+    @OrderBy("monthStart")
+    private List<BalanceSegment> balanceSegments = new ArrayList<>();
+
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private final BalanceDeltaTree pendingDeltas = new BalanceDeltaTree();
+
+    /**
+     * Date index over {@link #balanceHistory}, built lazily on first access.
+     * All reads and writes go through this map; the mapped list is only rebuilt from it on flush.
+     */
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private TreeMap<LocalDate, BalanceHistory> timeline;
+
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private boolean historyDirty;
+
+    /**
+     * Whether the timeline was loaded from somewhere other than {@link #balanceHistory}, which then stays as it is.
+     */
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private boolean historyDetached;
+
     /**
      * Inserts a new balance record for a specific date.
+     * An existing record for the same date is replaced.
      *
      * @param date    The date of the balance record.
      * @param balance The balance amount to record.
@@ -46,10 +129,10 @@ public class CreditCard {
     public void insertBalance(LocalDate date, double balance) {
         BalanceHistory history = new BalanceHistory();
         history.setDate(date);
-        history.setBalance(balance);
+        history.setBalance(balance - pendingDeltas.deltaAt(date));
         history.setCreditCard(this);
-        balanceHistory.add(history);
-        sortBalanceHistory();
+        timeline().put(date, history);
+        historyDirty = true;
     }
 
     /**
@@ -60,19 +143,11 @@ public class CreditCard {
      * @return The balance amount or 0.0 if no records exist before the given date.
      */
     public double getBalance(LocalDate date) {
-        for (BalanceHistory history : balanceHistory) {
-            if (history.getDate().isEqual(date)) {
-                return history.getBalance();
-            }
-        }
-
-        for (BalanceHistory history : balanceHistory) {
-            if (!history.getDate().isAfter(date)) {
-                return history.getBalance();
-            }
+        Map.Entry<LocalDate, BalanceHistory> entry = timeline().floorEntry(date);
+        if (entry == null) {
+            return 0.0;
         }
-
-        return 0.0;
+        return effectiveBalance(entry.getValue());
     }
 
     /**
@@ -83,20 +158,148 @@ public class CreditCard {
      * @param balance The new balance amount.
      */
     public void updateBalance(LocalDate date, double balance) {
-        boolean found = false;
-        for (BalanceHistory history : balanceHistory) {
-            if (history.getDate().isEqual(date)) {
-                history.setBalance(balance);
-                history.setCreditCard(this);
-                found = true;
-                break;
-            }
+        BalanceHistory history = timeline().get(date);
+        if (history != null) {
+            history.setBalance(balance - pendingDeltas.deltaAt(date));
+            history.setCreditCard(this);
+            return;
         }
 
         // If record for the specified date doesn't exist, insert a new record
-        if (!found) {
-            this.insertBalance(date, balance);
+        this.insertBalance(date, balance);
+    }
+
+    /**
+     * Sets the balance for a date and shifts every later balance up to today by the same difference.
+     * The shift is recorded as a single pending range offset, so a backdated correction costs
+     * O(log n) regardless of how far back it lands. No propagation happens if the card had no
+     * positive balance on that date.
+     *
+     * @param date    The date of the new balance.
+     * @param balance The new balance amount.
+     * @return The difference applied to later dates, or 0.0 if nothing was propagated.
+     */
+    public double propagateBalance(LocalDate date, double balance) {
+        return propagateBalance(date, balance, LocalDate.now());
+    }
+
+    /**
+     * Sets the balance for a date as {@link #propagateBalance(LocalDate, double)} would have on the given day,
+     * e.g. when replaying a balance update received earlier.
+     *
+     * @param date    The date of the new balance.
+     * @param balance The new balance amount.
+     * @param today   The last date the difference is propagated to.
+     * @return The difference applied to later dates, or 0.0 if nothing was propagated.
+     */
+    public double propagateBalance(LocalDate date, double balance, LocalDate today) {
+        double currentBalance = getBalance(date);
+        double difference = balance - currentBalance;
+
+        updateBalance(date, balance);
+
+        if (currentBalance > 0) {
+            pendingDeltas.addRange(date.plusDays(1), today, difference);
+            return difference;
+        }
+        return 0.0;
+    }
+
+    /**
+     * Folds all pending propagation offsets into the balance records and brings the
+     * JPA-mapped history list back in sync with the timeline.
+     * Must be called before the card is saved.
+     *
+     * @return The number of existing balance records whose stored value changed.
+     */
+    public int flushBalanceHistory() {
+        int changed = 0;
+        if (!pendingDeltas.isEmpty()) {
+            Collection<BalanceHistory> affected = timeline()
+                    .subMap(pendingDeltas.firstDate(), true, pendingDeltas.lastDate(), true).values();
+            for (BalanceHistory history : affected) {
+                double delta = pendingDeltas.deltaAt(history.getDate());
+                if (delta != 0.0) {
+                    history.setBalance(history.getBalance() + delta);
+                    changed++;
+                }
+            }
+            pendingDeltas.clear();
+        }
+        syncBalanceHistory();
+        return changed;
+    }
+
+    /**
+     * Returns the balance records from the last one on or before the given date onwards, oldest first.
+     * Stored balances only include propagation once {@link #flushBalanceHistory()} has been called.
+     *
+     * @param date The date to start from.
+     * @return A read-only view of the records.
+     */
+    public Collection<BalanceHistory> getBalanceHistorySince(LocalDate date) {
+        LocalDate floor = timeline().floorKey(date);
+        return Collections.unmodifiableCollection(timeline().tailMap(floor != null ? floor : date, true).values());
+    }
+
+    /**
+     * Drops the balance records before a date from the history, e.g. once they are archived elsewhere.
+     * Must not be called with propagation pending, i.e. before {@link #flushBalanceHistory()}.
+     *
+     * @param date The first date to keep.
+     * @return The number of records dropped.
+     */
+    public int removeBalanceHistoryBefore(LocalDate date) {
+        SortedMap<LocalDate, BalanceHistory> dropped = timeline().headMap(date);
+        int removed = dropped.size();
+        if (removed > 0) {
+            dropped.clear();
+            historyDirty = true;
+        }
+        return removed;
+    }
+
+    /**
+     * Returns the balance history in reverse chronological order.
+     *
+     * @return The JPA-mapped history list, synced with any unflushed inserts,
+     *         or a copy of the loaded records if the history was loaded with {@link #loadBalanceHistory(Collection)}.
+     */
+    public List<BalanceHistory> getBalanceHistory() {
+        if (historyDetached) {
+            return new ArrayList<>(timeline.descendingMap().values());
         }
+        syncBalanceHistory();
+        return balanceHistory;
+    }
+
+    /**
+     * Uses the given records as the balance history instead of the mapped rows, e.g. records decoded from segments.
+     * Later inserts and updates only change these records; persisting them is up to the caller.
+     *
+     * @param records The balance records, in any order.
+     */
+    public void loadBalanceHistory(Collection<BalanceHistory> records) {
+        timeline = new TreeMap<>();
+        for (BalanceHistory history : records) {
+            history.setCreditCard(this);
+            timeline.put(history.getDate(), history);
+        }
+        pendingDeltas.clear();
+        historyDirty = false;
+        historyDetached = true;
+    }
+
+    /**
+     * Replaces the balance history and drops the date index built over the previous list.
+     *
+     * @param balanceHistory The new balance history.
+     */
+    public void setBalanceHistory(List<BalanceHistory> balanceHistory) {
+        this.balanceHistory = balanceHistory;
+        this.timeline = null;
+        this.historyDirty = false;
+        this.historyDetached = false;
     }
 
     /**
@@ -106,17 +309,37 @@ public class CreditCard {
      */
     public String getBalanceHistoryString() {
         StringBuilder sb = new StringBuilder();
-        for (BalanceHistory history : balanceHistory) {
-            sb.append(history.getDate()).append(": ").append(history.getBalance()).append("\n");
+        for (BalanceHistory history : timeline().descendingMap().values()) {
+            sb.append(history.getDate()).append(": ").append(effectiveBalance(history)).append("\n");
         }
         return sb.toString();
     }
 
+    private TreeMap<LocalDate, BalanceHistory> timeline() {
+        if (timeline == null) {
+            timeline = new TreeMap<>();
+            for (BalanceHistory history : balanceHistory) {
+                timeline.put(history.getDate(), history);
+            }
+        }
+        return timeline;
+    }
+
+    private double effectiveBalance(BalanceHistory history) {
+        return history.getBalance() + pendingDeltas.deltaAt(history.getDate());
+    }
+
     /**
-     * Sorts the balance history in reverse chronological order.
+     * Rewrites the mapped list in reverse chronological order from the timeline.
+     * Records replaced in the timeline drop out of the list and are removed as orphans.
      */
-    private void sortBalanceHistory() {
-        balanceHistory.sort(Comparator.comparing(BalanceHistory::getDate).reversed());
+    private void syncBalanceHistory() {
+        if (!historyDirty || historyDetached) {
+            return;
+        }
+        balanceHistory.clear();
+        balanceHistory.addAll(timeline.descendingMap().values());
+        historyDirty = false;
     }
 
     @Override 
@@ -0,0 +1,55 @@
+package com.shepherdmoney.interviewproject.model;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+
+/**
+ * Period length of a balance rollup. Weeks are ISO weeks starting on Monday.
+ */
+public enum RollupGranularity {
+
+    MONTH {
+        @Override
+        public LocalDate periodStart(LocalDate date) {
+            return date.withDayOfMonth(1);
+        }
+
+        @Override
+        public LocalDate nextPeriodStart(LocalDate periodStart) {
+            return periodStart.plusMonths(1);
+        }
+    },
+
+    WEEK {
+        @Override
+        public LocalDate periodStart(LocalDate date) {
+            return date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        }
+
+        @Override
+        public LocalDate nextPeriodStart(LocalDate periodStart) {
+            return periodStart.plusWeeks(1);
+        }
+    };
+
+    /**
+     * @param date Any date.
+     * @return The first day of the period containing the date.
+     */
+    public abstract LocalDate periodStart(LocalDate date);
+
+    /**
+     * @param periodStart The first day of a period.
+     * @return The first day of the following period.
+     */
+    public abstract LocalDate nextPeriodStart(LocalDate periodStart);
+
+    /**
+     * @param periodStart The first day of a period.
+     * @return The last day of that period.
+     */
+    public LocalDate periodEnd(LocalDate periodStart) {
+        return nextPeriodStart(periodStart).minusDays(1);
+    }
+}
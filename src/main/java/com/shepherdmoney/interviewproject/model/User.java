@@ -1,10 +1,13 @@
 package com.shepherdmoney.interviewproject.model;
 
+import com.shepherdmoney.interviewproject.config.EntityCacheConfig;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.Setter;
 import lombok.ToString;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -13,6 +16,7 @@ import java.util.List;
  * Entity representing a user in the system. 
  * This class is mapped to the "MyUser" table in the database and includes basic user details such as name and email.
  * Users can own multiple credit cards, which are managed through a one-to-many relationship.
+ * Users are held in the second-level cache; the card collection is not.
  *
  * @author Zijie Huang
  * @since 05/02/2024
@@ -23,10 +27,13 @@ import java.util.List;
 @ToString
 @RequiredArgsConstructor
 @Table(name = "MyUser")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = EntityCacheConfig.USER_REGION)
 public class User {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "my_user_seq")
+    @SequenceGenerator(name = "my_user_seq", sequenceName = "my_user_seq", allocationSize = 50)
     private int id;
 
     private String name;
@@ -0,0 +1,130 @@
+package com.shepherdmoney.interviewproject.repository;
+
+import com.shepherdmoney.interviewproject.model.BalanceHistory;
+import com.shepherdmoney.interviewproject.vo.response.BalanceHistoryView;
+import com.shepherdmoney.interviewproject.vo.response.CardBalanceView;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
+
+/**
+ * Repository for reading balance history rows directly, without going through the CreditCard collection.
+ */
+@Repository("BalanceHistoryRepo")
+public interface BalanceHistoryRepository extends JpaRepository<BalanceHistory, Integer> {
+
+    /**
+     * Streams the balance history of a card within a date range in chronological order.
+     * Rows are projected into views and fetched in chunks, so they never enter the persistence context.
+     * Must be consumed inside a transaction and closed afterwards.
+     *
+     * @param cardId the id of the credit card
+     * @param from   the first date to include
+     * @param to     the last date to include
+     * @return a stream of balance history views ordered by date
+     */
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HINT_READ_ONLY, value = "true")})
+    @Query("select new com.shepherdmoney.interviewproject.vo.response.BalanceHistoryView(h.date, h.balance) "
+            + "from BalanceHistory h where h.creditCard.id = :cardId and h.date >= :from and h.date <= :to "
+            + "order by h.date")
+    Stream<BalanceHistoryView> streamByCardIdAndDateBetween(@Param("cardId") int cardId,
+                                                           @Param("from") LocalDate from,
+                                                           @Param("to") LocalDate to);
+
+    /**
+     * Retrieves the latest balance record of a card on or before a date: one probe of the (card, date) index.
+     *
+     * @param cardId the id of the credit card
+     * @param date   the date to look up
+     * @param page   a page of size 1
+     * @return the floor record, or an empty list if the card has no record on or before the date
+     */
+    @QueryHints(@QueryHint(name = HINT_READ_ONLY, value = "true"))
+    @Query("select new com.shepherdmoney.interviewproject.vo.response.BalanceHistoryView(h.date, h.balance) "
+            + "from BalanceHistory h where h.creditCard.id = :cardId and h.date <= :date order by h.date desc")
+    List<BalanceHistoryView> findFloorByCardId(@Param("cardId") int cardId, @Param("date") LocalDate date, Pageable page);
+
+    /**
+     * Retrieves the latest balance record on or before a date for each of the given cards, in one statement.
+     *
+     * @param numbers the credit card numbers
+     * @param date    the date to look up
+     * @return one entry per card that has a record on or before the date, in no particular order
+     */
+    @QueryHints(@QueryHint(name = HINT_READ_ONLY, value = "true"))
+    @Query("select new com.shepherdmoney.interviewproject.vo.response.CardBalanceView(c.number, h.date, h.balance) "
+            + "from BalanceHistory h join h.creditCard c where c.number in :numbers and h.date = "
+            + "(select max(l.date) from BalanceHistory l where l.creditCard = c and l.date <= :date)")
+    List<CardBalanceView> findFloorsByCardNumberIn(@Param("numbers") Collection<String> numbers, @Param("date") LocalDate date);
+
+    /**
+     * Counts the balance history rows of all cards owned by a user.
+     *
+     * @param ownerId the id of the user
+     * @return the number of balance history rows
+     */
+    @Query("select count(h) from BalanceHistory h where h.creditCard.owner.id = :ownerId")
+    long countByOwnerId(@Param("ownerId") int ownerId);
+
+    /**
+     * Deletes the balance history of all cards owned by a user in one statement, bypassing the persistence context.
+     *
+     * @param ownerId the id of the user
+     * @return the number of deleted rows
+     */
+    @Modifying
+    @Query("delete from BalanceHistory h where h.creditCard.id in (select c.id from CreditCard c where c.owner.id = :ownerId)")
+    int deleteByOwnerId(@Param("ownerId") int ownerId);
+
+    /**
+     * Retrieves the ids of up to one page of balance history rows belonging to the given cards.
+     *
+     * @param cardIds the ids of the credit cards
+     * @param page    the page size; the page number is ignored
+     * @return the balance history ids
+     */
+    @Query("select h.id from BalanceHistory h where h.creditCard.id in :cardIds")
+    List<Integer> findIdsByCardIdIn(@Param("cardIds") Collection<Integer> cardIds, Pageable page);
+
+    /**
+     * Retrieves the ids of up to one page of credit cards that have balance history rows.
+     *
+     * @param page the page size; the page number is ignored
+     * @return the card ids
+     */
+    @Query("select distinct h.creditCard.id from BalanceHistory h")
+    List<Integer> findCardIds(Pageable page);
+
+    /**
+     * Deletes the balance history rows of the given cards in one statement, bypassing the persistence context.
+     *
+     * @param cardIds the ids of the credit cards
+     * @return the number of deleted rows
+     */
+    @Modifying
+    @Query("delete from BalanceHistory h where h.creditCard.id in :cardIds")
+    int deleteByCardIdIn(@Param("cardIds") Collection<Integer> cardIds);
+
+    /**
+     * Deletes balance history rows by id in one statement, bypassing the persistence context.
+     *
+     * @param ids the ids of the rows to delete
+     * @return the number of deleted rows
+     */
+    @Modifying
+    @Query("delete from BalanceHistory h where h.id in :ids")
+    int deleteByIdIn(@Param("ids") Collection<Integer> ids);
+}
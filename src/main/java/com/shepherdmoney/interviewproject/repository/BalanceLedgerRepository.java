@@ -0,0 +1,92 @@
+package com.shepherdmoney.interviewproject.repository;
+
+import com.shepherdmoney.interviewproject.model.BalanceLedgerEntry;
+import com.shepherdmoney.interviewproject.vo.response.BalanceLedgerEntryView;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
+
+/**
+ * Repository for the append-only balance ledger of credit cards.
+ */
+@Repository("BalanceLedgerRepo")
+public interface BalanceLedgerRepository extends JpaRepository<BalanceLedgerEntry, Long> {
+
+    /**
+     * Retrieves the ledger entries of a card within a range of sequence numbers, in sequence order.
+     *
+     * @param cardId the id of the credit card
+     * @param after  only entries with a greater sequence number are returned
+     * @param upTo   the last sequence number to include
+     * @return the entry views ordered by sequence number
+     */
+    @QueryHints(@QueryHint(name = HINT_READ_ONLY, value = "true"))
+    @Query("select new com.shepherdmoney.interviewproject.vo.response.BalanceLedgerEntryView(e.sequence, e.balanceDate, e.amount, e.recordedOn) "
+            + "from BalanceLedgerEntry e where e.creditCard.id = :cardId and e.sequence > :after and e.sequence <= :upTo "
+            + "order by e.sequence")
+    List<BalanceLedgerEntryView> findByCardIdAndSequenceBetween(@Param("cardId") int cardId,
+                                                                @Param("after") long after,
+                                                                @Param("upTo") long upTo);
+
+    /**
+     * Retrieves one page of a card's ledger entries in sequence order.
+     *
+     * @param cardId the id of the credit card
+     * @param after  only entries with a greater sequence number are returned; 0 starts from the beginning
+     * @param page   the page size; the page number is ignored
+     * @return the entry views ordered by sequence number
+     */
+    @QueryHints(@QueryHint(name = HINT_READ_ONLY, value = "true"))
+    @Query("select new com.shepherdmoney.interviewproject.vo.response.BalanceLedgerEntryView(e.sequence, e.balanceDate, e.amount, e.recordedOn) "
+            + "from BalanceLedgerEntry e where e.creditCard.id = :cardId and e.sequence > :after order by e.sequence")
+    List<BalanceLedgerEntryView> findPageByCardId(@Param("cardId") int cardId, @Param("after") long after, Pageable page);
+
+    /**
+     * Counts the ledger entries of all cards owned by a user.
+     *
+     * @param ownerId the id of the user
+     * @return the number of entries
+     */
+    @Query("select count(e) from BalanceLedgerEntry e where e.creditCard.owner.id = :ownerId")
+    long countByOwnerId(@Param("ownerId") int ownerId);
+
+    /**
+     * Deletes the ledger entries of all cards owned by a user in one statement, bypassing the persistence context.
+     *
+     * @param ownerId the id of the user
+     * @return the number of deleted entries
+     */
+    @Modifying
+    @Query("delete from BalanceLedgerEntry e where e.creditCard.id in (select c.id from CreditCard c where c.owner.id = :ownerId)")
+    int deleteByOwnerId(@Param("ownerId") int ownerId);
+
+    /**
+     * Retrieves the ids of up to one page of ledger entries belonging to the given cards.
+     *
+     * @param cardIds the ids of the credit cards
+     * @param page    the page size; the page number is ignored
+     * @return the entry ids
+     */
+    @Query("select e.id from BalanceLedgerEntry e where e.creditCard.id in :cardIds")
+    List<Long> findIdsByCardIdIn(@Param("cardIds") Collection<Integer> cardIds, Pageable page);
+
+    /**
+     * Deletes ledger entries by id in one statement, bypassing the persistence context.
+     *
+     * @param ids the ids of the entries to delete
+     * @return the number of deleted entries
+     */
+    @Modifying
+    @Query("delete from BalanceLedgerEntry e where e.id in :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+}
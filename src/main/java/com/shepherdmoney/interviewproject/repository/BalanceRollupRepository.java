@@ -0,0 +1,110 @@
+package com.shepherdmoney.interviewproject.repository;
+
+import com.shepherdmoney.interviewproject.model.BalanceRollup;
+import com.shepherdmoney.interviewproject.model.RollupGranularity;
+import com.shepherdmoney.interviewproject.vo.response.CardLatestBalance;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Repository for the per-period balance rollups of credit cards.
+ */
+@Repository("BalanceRollupRepo")
+public interface BalanceRollupRepository extends JpaRepository<BalanceRollup, Integer> {
+
+    /**
+     * Retrieves a card's rollups of one granularity for the periods starting within a range, oldest first.
+     *
+     * @param cardId      the id of the credit card
+     * @param granularity the period length
+     * @param from        the earliest period start to include
+     * @param to          the latest period start to include
+     * @return the rollups ordered by period start
+     */
+    @Query("select r from BalanceRollup r where r.creditCard.id = :cardId and r.granularity = :granularity "
+            + "and r.periodStart >= :from and r.periodStart <= :to order by r.periodStart")
+    List<BalanceRollup> findByCard(@Param("cardId") int cardId,
+                                   @Param("granularity") RollupGranularity granularity,
+                                   @Param("from") LocalDate from,
+                                   @Param("to") LocalDate to);
+
+    /**
+     * Retrieves the rollups of one granularity of all cards owned by a user for the periods starting within a range.
+     *
+     * @param ownerId     the id of the user
+     * @param granularity the period length
+     * @param from        the earliest period start to include
+     * @param to          the latest period start to include
+     * @return the rollups ordered by period start
+     */
+    @Query("select r from BalanceRollup r where r.creditCard.owner.id = :ownerId and r.granularity = :granularity "
+            + "and r.periodStart >= :from and r.periodStart <= :to order by r.periodStart")
+    List<BalanceRollup> findByOwner(@Param("ownerId") int ownerId,
+                                    @Param("granularity") RollupGranularity granularity,
+                                    @Param("from") LocalDate from,
+                                    @Param("to") LocalDate to);
+
+    /**
+     * Retrieves the latest balance record of every card owned by a user, which later days carry forward.
+     *
+     * @param ownerId the id of the user
+     * @return one entry per card that has any balance history
+     */
+    @Query("select new com.shepherdmoney.interviewproject.vo.response.CardLatestBalance(h.creditCard.id, h.date, h.balance) "
+            + "from BalanceHistory h where h.creditCard.owner.id = :ownerId and h.date = "
+            + "(select max(l.date) from BalanceHistory l where l.creditCard = h.creditCard)")
+    List<CardLatestBalance> findLatestBalancesByOwner(@Param("ownerId") int ownerId);
+
+    /**
+     * Retrieves the latest balance record of a card.
+     *
+     * @param cardId the id of the credit card
+     * @return the latest balance, or null if the card has no balance history
+     */
+    @Query("select new com.shepherdmoney.interviewproject.vo.response.CardLatestBalance(h.creditCard.id, h.date, h.balance) "
+            + "from BalanceHistory h where h.creditCard.id = :cardId and h.date = "
+            + "(select max(l.date) from BalanceHistory l where l.creditCard.id = :cardId)")
+    CardLatestBalance findLatestBalance(@Param("cardId") int cardId);
+
+    /**
+     * Deletes a card's rollups of one granularity from a period onwards, so they can be rewritten.
+     *
+     * @param cardId      the id of the credit card
+     * @param granularity the period length
+     * @param from        the first period start to delete
+     * @return the number of deleted rollups
+     */
+    @Modifying
+    @Query("delete from BalanceRollup r where r.creditCard.id = :cardId and r.granularity = :granularity "
+            + "and r.periodStart >= :from")
+    int deleteFrom(@Param("cardId") int cardId,
+                   @Param("granularity") RollupGranularity granularity,
+                   @Param("from") LocalDate from);
+
+    /**
+     * Deletes the rollups of all cards owned by a user in one statement.
+     *
+     * @param ownerId the id of the user
+     * @return the number of deleted rollups
+     */
+    @Modifying
+    @Query("delete from BalanceRollup r where r.creditCard.id in (select c.id from CreditCard c where c.owner.id = :ownerId)")
+    int deleteByOwnerId(@Param("ownerId") int ownerId);
+
+    /**
+     * Deletes the rollups of the given cards in one statement.
+     *
+     * @param cardIds the ids of the credit cards
+     * @return the number of deleted rollups
+     */
+    @Modifying
+    @Query("delete from BalanceRollup r where r.creditCard.id in :cardIds")
+    int deleteByCardIdIn(@Param("cardIds") Collection<Integer> cardIds);
+}
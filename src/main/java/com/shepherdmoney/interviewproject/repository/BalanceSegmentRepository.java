@@ -0,0 +1,123 @@
+package com.shepherdmoney.interviewproject.repository;
+
+import com.shepherdmoney.interviewproject.model.BalanceSegment;
+import com.shepherdmoney.interviewproject.vo.response.BalanceSegmentView;
+import com.shepherdmoney.interviewproject.vo.response.CardBalanceSegmentView;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
+
+/**
+ * Repository for the monthly balance segments of credit cards.
+ */
+@Repository("BalanceSegmentRepo")
+public interface BalanceSegmentRepository extends JpaRepository<BalanceSegment, Integer> {
+
+    /**
+     * Streams the segments of a card within a range of months in chronological order, without entering
+     * the persistence context. Must be consumed inside a transaction and closed afterwards.
+     *
+     * @param cardId the id of the credit card
+     * @param from   the first month start to include
+     * @param to     the last month start to include
+     * @return a stream of segment views ordered by month
+     */
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "100"), @QueryHint(name = HINT_READ_ONLY, value = "true")})
+    @Query("select new com.shepherdmoney.interviewproject.vo.response.BalanceSegmentView(s.monthStart, s.data) "
+            + "from BalanceSegment s where s.creditCard.id = :cardId and s.monthStart >= :from and s.monthStart <= :to "
+            + "order by s.monthStart")
+    Stream<BalanceSegmentView> streamByCardIdAndMonthBetween(@Param("cardId") int cardId,
+                                                             @Param("from") LocalDate from,
+                                                             @Param("to") LocalDate to);
+
+    /**
+     * Retrieves the latest segments of a card starting on or before a date, newest first.
+     *
+     * @param cardId the id of the credit card
+     * @param date   the date to look up
+     * @param page   the number of segments to return
+     * @return the segment views
+     */
+    @QueryHints(@QueryHint(name = HINT_READ_ONLY, value = "true"))
+    @Query("select new com.shepherdmoney.interviewproject.vo.response.BalanceSegmentView(s.monthStart, s.data) "
+            + "from BalanceSegment s where s.creditCard.id = :cardId and s.monthStart <= :date order by s.monthStart desc")
+    List<BalanceSegmentView> findLatestByCardId(@Param("cardId") int cardId, @Param("date") LocalDate date, Pageable page);
+
+    /**
+     * Retrieves the latest segment starting on or before a date for each of the given cards, in one statement.
+     *
+     * @param numbers the credit card numbers
+     * @param date    the date to look up
+     * @return one entry per card that has a segment starting on or before the date, in no particular order
+     */
+    @QueryHints(@QueryHint(name = HINT_READ_ONLY, value = "true"))
+    @Query("select new com.shepherdmoney.interviewproject.vo.response.CardBalanceSegmentView(c.id, c.number, s.monthStart, s.data) "
+            + "from BalanceSegment s join s.creditCard c where c.number in :numbers and s.monthStart = "
+            + "(select max(l.monthStart) from BalanceSegment l where l.creditCard = c and l.monthStart <= :date)")
+    List<CardBalanceSegmentView> findLatestByCardNumberIn(@Param("numbers") Collection<String> numbers,
+                                                          @Param("date") LocalDate date);
+
+    /**
+     * Retrieves the latest segment of every card owned by a user.
+     *
+     * @param ownerId the id of the user
+     * @return one entry per card that has any segment
+     */
+    @QueryHints(@QueryHint(name = HINT_READ_ONLY, value = "true"))
+    @Query("select new com.shepherdmoney.interviewproject.vo.response.CardBalanceSegmentView(c.id, c.number, s.monthStart, s.data) "
+            + "from BalanceSegment s join s.creditCard c where c.owner.id = :ownerId and s.monthStart = "
+            + "(select max(l.monthStart) from BalanceSegment l where l.creditCard = c)")
+    List<CardBalanceSegmentView> findLatestByOwnerId(@Param("ownerId") int ownerId);
+
+    /**
+     * Counts the segments of all cards owned by a user.
+     *
+     * @param ownerId the id of the user
+     * @return the number of segments
+     */
+    @Query("select count(s) from BalanceSegment s where s.creditCard.owner.id = :ownerId")
+    long countByOwnerId(@Param("ownerId") int ownerId);
+
+    /**
+     * Deletes the segments of all cards owned by a user in one statement, bypassing the persistence context.
+     *
+     * @param ownerId the id of the user
+     * @return the number of deleted segments
+     */
+    @Modifying
+    @Query("delete from BalanceSegment s where s.creditCard.id in (select c.id from CreditCard c where c.owner.id = :ownerId)")
+    int deleteByOwnerId(@Param("ownerId") int ownerId);
+
+    /**
+     * Retrieves the ids of up to one page of segments belonging to the given cards.
+     *
+     * @param cardIds the ids of the credit cards
+     * @param page    the page size; the page number is ignored
+     * @return the segment ids
+     */
+    @Query("select s.id from BalanceSegment s where s.creditCard.id in :cardIds")
+    List<Integer> findIdsByCardIdIn(@Param("cardIds") Collection<Integer> cardIds, Pageable page);
+
+    /**
+     * Deletes segments by id in one statement, bypassing the persistence context.
+     *
+     * @param ids the ids of the segments to delete
+     * @return the number of deleted segments
+     */
+    @Modifying
+    @Query("delete from BalanceSegment s where s.id in :ids")
+    int deleteByIdIn(@Param("ids") Collection<Integer> ids);
+}
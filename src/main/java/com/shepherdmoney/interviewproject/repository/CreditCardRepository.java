@@ -1,12 +1,28 @@
 package com.shepherdmoney.interviewproject.repository;
 
+import com.shepherdmoney.interviewproject.config.EntityCacheConfig;
 import com.shepherdmoney.interviewproject.model.CreditCard;
 import com.shepherdmoney.interviewproject.model.User;
+import com.shepherdmoney.interviewproject.vo.response.CardArchiveState;
+import com.shepherdmoney.interviewproject.vo.response.CardLedgerState;
+import com.shepherdmoney.interviewproject.vo.response.CardOwner;
+import com.shepherdmoney.interviewproject.vo.response.CardReference;
+import com.shepherdmoney.interviewproject.vo.response.CreditCardSummary;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * Crud repository to store credit cards
@@ -19,17 +35,261 @@ public interface CreditCardRepository extends JpaRepository<CreditCard, Integer>
 
     /**
      * Retrieves a list of CreditCard entities owned by a specified user.
+     * The result is held in the query cache until the credit card table is next written.
      * 
      * @param owner the User whose credit cards are to be retrieved
      * @return a list of CreditCard entities
      */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = EntityCacheConfig.CREDIT_CARD_QUERY_REGION)
+    })
     List<CreditCard> findByOwner(User owner);
 
+    /**
+     * Retrieves one page of a user's credit cards ordered by id, selecting only the columns of the card view.
+     * Pages are addressed by the last id seen rather than an offset, so deep pages cost the same as the first.
+     *
+     * @param ownerId the id of the user whose credit cards are to be retrieved
+     * @param afterId only cards with a greater id are returned; 0 starts from the beginning
+     * @param page the page size; the page number is ignored
+     * @return up to the page size of card summaries in ascending id order
+     */
+    @Query("select new com.shepherdmoney.interviewproject.vo.response.CreditCardSummary(c.id, c.issuanceBank, c.number) "
+            + "from CreditCard c where c.owner.id = :ownerId and c.id > :afterId order by c.id")
+    List<CreditCardSummary> findSummariesByOwnerId(@Param("ownerId") int ownerId, @Param("afterId") int afterId, Pageable page);
+
     /**
      * Retrieves a CreditCard entity based on its credit card number.
+     * The result is held in the query cache until the credit card table is next written.
      * 
      * @param creditCardNumber the credit card number to search for
      * @return the CreditCard entity if found, or null if not found
      */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = EntityCacheConfig.CREDIT_CARD_QUERY_REGION)
+    })
     CreditCard findByNumber(String creditCardNumber);
+
+    /**
+     * Retrieves the CreditCard entities with the given numbers, fetching their balance history in the same query.
+     * Numbers without a matching card are simply absent from the result.
+     *
+     * @param creditCardNumbers the credit card numbers to search for
+     * @return the matching CreditCard entities with initialized balance history
+     */
+    @Query("select distinct c from CreditCard c left join fetch c.balanceHistory where c.number in :numbers")
+    List<CreditCard> findAllWithHistoryByNumberIn(@Param("numbers") Collection<String> creditCardNumbers);
+
+    /**
+     * Retrieves the CreditCard entities with the given ids, fetching their balance history in the same query.
+     *
+     * @param ids the ids of the credit cards
+     * @return the matching CreditCard entities with initialized balance history
+     */
+    @Query("select distinct c from CreditCard c left join fetch c.balanceHistory where c.id in :ids")
+    List<CreditCard> findAllWithHistoryByIdIn(@Param("ids") Collection<Integer> ids);
+
+    /**
+     * Retrieves the CreditCard entities with the given numbers, fetching their balance segments in the same query.
+     * Numbers without a matching card are simply absent from the result.
+     *
+     * @param creditCardNumbers the credit card numbers to search for
+     * @return the matching CreditCard entities with initialized balance segments
+     */
+    @Query("select distinct c from CreditCard c left join fetch c.balanceSegments where c.number in :numbers")
+    List<CreditCard> findAllWithSegmentsByNumberIn(@Param("numbers") Collection<String> creditCardNumbers);
+
+    /**
+     * Retrieves the CreditCard entities with the given numbers without their balance history.
+     * Numbers without a matching card are simply absent from the result.
+     *
+     * @param creditCardNumbers the credit card numbers to search for
+     * @return the matching CreditCard entities
+     */
+    @Query("select c from CreditCard c where c.number in :numbers")
+    List<CreditCard> findAllByNumberIn(@Param("numbers") Collection<String> creditCardNumbers);
+
+    /**
+     * Retrieves how many ledger entries a card has and how many of them its stored history includes.
+     *
+     * @param id the id of the credit card
+     * @return the ledger state, or null if the card does not exist
+     */
+    @Query("select new com.shepherdmoney.interviewproject.vo.response.CardLedgerState(c.id, c.number, c.ledgerSequence, c.snapshotSequence) "
+            + "from CreditCard c where c.id = :id")
+    CardLedgerState findLedgerStateById(@Param("id") int id);
+
+    /**
+     * Retrieves the ledger position of the given cards that have ledger entries not yet folded into their stored history.
+     *
+     * @param creditCardNumbers the credit card numbers
+     * @return the ledger states of the cards with pending entries
+     */
+    @Query("select new com.shepherdmoney.interviewproject.vo.response.CardLedgerState(c.id, c.number, c.ledgerSequence, c.snapshotSequence) "
+            + "from CreditCard c where c.number in :numbers and c.ledgerSequence > c.snapshotSequence")
+    List<CardLedgerState> findPendingLedgerByNumberIn(@Param("numbers") Collection<String> creditCardNumbers);
+
+    /**
+     * Retrieves the ledger position of a user's cards that have ledger entries not yet folded into their stored history.
+     *
+     * @param ownerId the id of the user
+     * @return the ledger states of the cards with pending entries
+     */
+    @Query("select new com.shepherdmoney.interviewproject.vo.response.CardLedgerState(c.id, c.number, c.ledgerSequence, c.snapshotSequence) "
+            + "from CreditCard c where c.owner.id = :ownerId and c.ledgerSequence > c.snapshotSequence")
+    List<CardLedgerState> findPendingLedgerByOwnerId(@Param("ownerId") int ownerId);
+
+    /**
+     * Retrieves one page of cards with ledger entries not yet folded into their stored history, ordered by id.
+     *
+     * @param afterId only cards with a greater id are returned; 0 starts from the beginning
+     * @param page    the page size; the page number is ignored
+     * @return the ledger states in ascending id order
+     */
+    @Query("select new com.shepherdmoney.interviewproject.vo.response.CardLedgerState(c.id, c.number, c.ledgerSequence, c.snapshotSequence) "
+            + "from CreditCard c where c.id > :afterId and c.ledgerSequence > c.snapshotSequence order by c.id")
+    List<CardLedgerState> findPendingLedger(@Param("afterId") int afterId, Pageable page);
+
+    /**
+     * Retrieves which of a card's balance records live in the balance archive.
+     *
+     * @param id the id of the credit card
+     * @return the archive state, or null if the card does not exist
+     */
+    @Query("select new com.shepherdmoney.interviewproject.vo.response.CardArchiveState(c.id, c.number, c.archivedBefore, c.archiveGeneration) "
+            + "from CreditCard c where c.id = :id")
+    CardArchiveState findArchiveStateById(@Param("id") int id);
+
+    /**
+     * Retrieves the archive state of the given cards that have archived balance records.
+     *
+     * @param creditCardNumbers the credit card numbers
+     * @return the archive states of the cards with archived records
+     */
+    @Query("select new com.shepherdmoney.interviewproject.vo.response.CardArchiveState(c.id, c.number, c.archivedBefore, c.archiveGeneration) "
+            + "from CreditCard c where c.number in :numbers and c.archivedBefore is not null")
+    List<CardArchiveState> findArchivedByNumberIn(@Param("numbers") Collection<String> creditCardNumbers);
+
+    /**
+     * Retrieves one page of owned cards that have committed an archiving run, ordered by id.
+     *
+     * @param afterId only cards with a greater id are returned; 0 starts from the beginning
+     * @param page    the page size; the page number is ignored
+     * @return the archive states in ascending id order
+     */
+    @Query("select new com.shepherdmoney.interviewproject.vo.response.CardArchiveState(c.id, c.number, c.archivedBefore, c.archiveGeneration) "
+            + "from CreditCard c where c.id > :afterId and c.archiveGeneration > 0 and c.owner is not null order by c.id")
+    List<CardArchiveState> findWithArchiveGeneration(@Param("afterId") int afterId, Pageable page);
+
+    /**
+     * Retrieves one page of cards with balance history rows before a date other than their latest row, ordered by id.
+     *
+     * @param date    the first date that is not archived
+     * @param afterId only cards with a greater id are returned; 0 starts from the beginning
+     * @param page    the page size; the page number is ignored
+     * @return the archive states in ascending id order
+     */
+    @Query("select new com.shepherdmoney.interviewproject.vo.response.CardArchiveState(c.id, c.number, c.archivedBefore, c.archiveGeneration) "
+            + "from CreditCard c where c.id > :afterId and exists (select h.id from BalanceHistory h where h.creditCard = c "
+            + "and h.date < :date and exists (select l.id from BalanceHistory l where l.creditCard = c and l.date > h.date)) "
+            + "order by c.id")
+    List<CardArchiveState> findArchivableRows(@Param("date") LocalDate date, @Param("afterId") int afterId, Pageable page);
+
+    /**
+     * Retrieves one page of cards with balance segments of months before a date other than their latest segment, ordered by id.
+     *
+     * @param date    the first date that is not archived
+     * @param afterId only cards with a greater id are returned; 0 starts from the beginning
+     * @param page    the page size; the page number is ignored
+     * @return the archive states in ascending id order
+     */
+    @Query("select new com.shepherdmoney.interviewproject.vo.response.CardArchiveState(c.id, c.number, c.archivedBefore, c.archiveGeneration) "
+            + "from CreditCard c where c.id > :afterId and exists (select s.id from BalanceSegment s where s.creditCard = c "
+            + "and s.monthStart < :date and exists (select l.id from BalanceSegment l where l.creditCard = c and l.monthStart > s.monthStart)) "
+            + "order by c.id")
+    List<CardArchiveState> findArchivableSegments(@Param("date") LocalDate date, @Param("afterId") int afterId, Pageable page);
+
+    /**
+     * Resolves the card id and owner id for a credit card number without loading the entity.
+     * Cards detached from a deleted user and awaiting their purge are not found.
+     *
+     * @param creditCardNumber the credit card number to search for
+     * @return the card reference if found, or null if not found
+     */
+    @Query("select new com.shepherdmoney.interviewproject.vo.response.CardReference(c.id, c.owner.id) "
+            + "from CreditCard c where c.number = :number and c.owner is not null")
+    CardReference findReferenceByNumber(@Param("number") String creditCardNumber);
+
+    /**
+     * Streams the number and owner id of every credit card that still has an owner, without loading the entities.
+     *
+     * @return a stream of card owners in no particular order
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select new com.shepherdmoney.interviewproject.vo.response.CardOwner(c.number, c.owner.id) "
+            + "from CreditCard c where c.owner is not null")
+    Stream<CardOwner> streamOwners();
+
+    /**
+     * Retrieves the ids of a user's credit cards.
+     *
+     * @param ownerId the id of the user
+     * @return the card ids
+     */
+    @Query("select c.id from CreditCard c where c.owner.id = :ownerId")
+    List<Integer> findIdsByOwnerId(@Param("ownerId") int ownerId);
+
+    /**
+     * Retrieves the numbers of a user's credit cards.
+     *
+     * @param ownerId the id of the user
+     * @return the card numbers
+     */
+    @Query("select c.number from CreditCard c where c.owner.id = :ownerId")
+    List<String> findNumbersByOwnerId(@Param("ownerId") int ownerId);
+
+    /**
+     * Retrieves the ids of credit cards without an owner, left behind by a deferred user deletion.
+     *
+     * @return the card ids
+     */
+    @Query("select c.id from CreditCard c where c.owner is null")
+    List<Integer> findIdsWithoutOwner();
+
+    /**
+     * Deletes all credit cards owned by a user in one statement. Their balance history must be deleted first.
+     *
+     * @param ownerId the id of the user
+     * @return the number of deleted cards
+     */
+    @Modifying
+    @Query("delete from CreditCard c where c.owner.id = :ownerId")
+    int deleteByOwnerId(@Param("ownerId") int ownerId);
+
+    /**
+     * Detaches all credit cards from their owner in one statement, so the owner row can be deleted
+     * before the cards themselves are purged. Their numbers are cleared as well, so they can be added
+     * again while the purge is still running.
+     *
+     * @param ownerId the id of the user
+     * @return the number of detached cards
+     */
+    @Modifying
+    @Query("update CreditCard c set c.owner = null, c.number = null where c.owner.id = :ownerId")
+    int detachFromOwner(@Param("ownerId") int ownerId);
+
+    /**
+     * Deletes credit cards by id in one statement. Their balance history must be deleted first.
+     *
+     * @param ids the ids of the cards to delete
+     * @return the number of deleted cards
+     */
+    @Modifying
+    @Query("delete from CreditCard c where c.id in :ids")
+    int deleteByIdIn(@Param("ids") Collection<Integer> ids);
 }
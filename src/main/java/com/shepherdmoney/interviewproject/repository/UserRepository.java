@@ -2,12 +2,38 @@ package com.shepherdmoney.interviewproject.repository;
 
 import com.shepherdmoney.interviewproject.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+
 /**
  * Crud Repository to store User classes
  */
 @Repository("UserRepo")
 public interface UserRepository extends JpaRepository<User, Integer> {
+
+    /**
+     * Retrieves which of the given user ids exist, in a single query.
+     *
+     * @param userIds the user ids to check
+     * @return the ids among them that belong to a user
+     */
+    @Query("select u.id from User u where u.id in :userIds")
+    List<Integer> findExistingIds(@Param("userIds") Collection<Integer> userIds);
+
+    /**
+     * Deletes a user row in one statement, bypassing the persistence context.
+     * The user's credit cards must be deleted or detached first.
+     *
+     * @param userId the id of the user
+     * @return the number of deleted users
+     */
+    @Modifying
+    @Query("delete from User u where u.id = :userId")
+    int deleteByIdInBulk(@Param("userId") int userId);
 }
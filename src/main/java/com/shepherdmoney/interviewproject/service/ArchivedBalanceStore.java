@@ -0,0 +1,237 @@
+package com.shepherdmoney.interviewproject.service;
+
+import com.shepherdmoney.interviewproject.metrics.BalanceMetrics;
+import com.shepherdmoney.interviewproject.model.BalanceHistory;
+import com.shepherdmoney.interviewproject.model.CreditCard;
+import com.shepherdmoney.interviewproject.model.RollupGranularity;
+import com.shepherdmoney.interviewproject.repository.CreditCardRepository;
+import com.shepherdmoney.interviewproject.vo.response.BalanceHistoryView;
+import com.shepherdmoney.interviewproject.vo.response.CardArchiveState;
+import com.shepherdmoney.interviewproject.vo.response.CardBalanceView;
+import com.shepherdmoney.interviewproject.vo.response.CardLatestBalance;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads balance history across the database and the {@link BalanceArchive}: the stored history of a card holds its
+ * records from {@code archivedBefore} on, and older records are read from the archive when a lookup or range reaches
+ * before them. Cards without archived records never touch the archive, and reads inside the stored window only cost
+ * a lookup of the card's archive state when the stored history has no answer.
+ * <p>
+ * Archive state is read after the stored records, so a concurrent archiving run either had not yet removed them,
+ * in which case archived copies of the same dates are skipped, or had already recorded them in the archive.
+ * <p>
+ * Cards are loaded for update with their stored history only. A backdated update reaching before it first brings
+ * back the archived records it reads, shifts or recomputes rollups from, see {@link #prepareUpdate}.
+ */
+public class ArchivedBalanceStore implements BalanceStore {
+
+    private final BalanceStore stored;
+
+    private final BalanceArchive balanceArchive;
+
+    private final CreditCardRepository creditCardRepository;
+
+    private final BalanceMetrics balanceMetrics;
+
+    public ArchivedBalanceStore(BalanceStore stored,
+                                BalanceArchive balanceArchive,
+                                CreditCardRepository creditCardRepository,
+                                BalanceMetrics balanceMetrics) {
+        this.stored = stored;
+        this.balanceArchive = balanceArchive;
+        this.creditCardRepository = creditCardRepository;
+        this.balanceMetrics = balanceMetrics;
+    }
+
+    /**
+     * Loads the cards with their stored history only.
+     */
+    @Override
+    public List<CreditCard> findCardsWithHistory(Collection<String> numbers) {
+        return stored.findCardsWithHistory(numbers);
+    }
+
+    /**
+     * Loads the full history of a card. A card with archived records gets its history loaded detached
+     * from the stored records, so the result must not be saved.
+     */
+    @Override
+    public int loadHistory(CreditCard creditCard) {
+        int loaded = stored.loadHistory(creditCard);
+        if (!balanceArchive.contains(creditCard.getId())) {
+            return loaded;
+        }
+        CardArchiveState state = creditCardRepository.findArchiveStateById(creditCard.getId());
+        List<BalanceHistoryView> archived = state == null ? List.of()
+                : balanceArchive.findRange(state, BalanceHistoryService.EARLIEST_DATE, BalanceHistoryService.LATEST_DATE);
+        if (archived.isEmpty()) {
+            return loaded;
+        }
+        TreeMap<LocalDate, BalanceHistory> records = new TreeMap<>();
+        archived.forEach(record -> records.put(record.getDate(), history(record.getDate(), record.getBalance())));
+        for (BalanceHistory record : creditCard.getBalanceHistorySince(BalanceHistoryService.EARLIEST_DATE)) {
+            records.put(record.getDate(), history(record.getDate(), record.getBalance()));
+        }
+        creditCard.loadBalanceHistory(records.values());
+        balanceMetrics.recordArchiveRead();
+        return records.size();
+    }
+
+    @Override
+    public void save(CreditCard creditCard, LocalDate since) {
+        stored.save(creditCard, since);
+    }
+
+    /**
+     * Propagating an update reads the balance on its date, and refreshing rollups recomputes whole periods from
+     * the one holding the record before it, starting from the record on or before that period's start.
+     * If that record is archived, it and every later archived record are brought back into the stored history
+     * and the card's {@code archivedBefore} is moved back to it; the archive itself is left as it is.
+     */
+    @Override
+    public void prepareUpdate(CreditCard creditCard, LocalDate since) {
+        stored.prepareUpdate(creditCard, since);
+        if (creditCard.getArchivedBefore() == null) {
+            return;
+        }
+        CardArchiveState state = new CardArchiveState(creditCard.getId(), creditCard.getNumber(),
+                creditCard.getArchivedBefore(), creditCard.getArchiveGeneration());
+        BalanceHistoryView previous = floor(creditCard, state, since.minusDays(1));
+        LocalDate changed = previous == null ? since : previous.getDate();
+        LocalDate from = changed;
+        for (RollupGranularity granularity : RollupGranularity.values()) {
+            LocalDate periodStart = granularity.periodStart(changed);
+            from = periodStart.isBefore(from) ? periodStart : from;
+        }
+        BalanceHistoryView first = floor(creditCard, state, from);
+        LocalDate restoreFrom = first == null ? from : first.getDate();
+        if (!restoreFrom.isBefore(state.getArchivedBefore())) {
+            return;
+        }
+
+        List<BalanceHistoryView> restored = balanceArchive.findRange(state, restoreFrom, state.getArchivedBefore());
+        for (BalanceHistoryView record : restored) {
+            creditCard.insertBalance(record.getDate(), record.getBalance());
+        }
+        creditCard.flushBalanceHistory();
+        stored.save(creditCard, restoreFrom);
+        creditCard.setArchivedBefore(restoreFrom);
+        balanceMetrics.recordArchiveRestored(restored.size());
+    }
+
+    @Override
+    public BalanceHistoryView findFloor(int cardId, LocalDate date) {
+        BalanceHistoryView floor = stored.findFloor(cardId, date);
+        if (floor != null || !balanceArchive.contains(cardId)) {
+            return floor;
+        }
+        CardArchiveState state = creditCardRepository.findArchiveStateById(cardId);
+        floor = state == null ? null : balanceArchive.findFloor(state, date);
+        if (floor != null) {
+            balanceMetrics.recordArchiveRead();
+        }
+        return floor;
+    }
+
+    @Override
+    public List<CardBalanceView> findFloors(Collection<String> numbers, LocalDate date) {
+        List<CardBalanceView> floors = stored.findFloors(numbers, date);
+        if (floors.size() >= numbers.size() || balanceArchive.isEmpty()) {
+            return floors;
+        }
+        Set<String> missing = new HashSet<>(numbers);
+        floors.forEach(floor -> missing.remove(floor.getCreditCardNumber()));
+        List<CardBalanceView> result = new ArrayList<>(floors);
+        for (CardArchiveState state : creditCardRepository.findArchivedByNumberIn(missing)) {
+            BalanceHistoryView floor = balanceArchive.findFloor(state, date);
+            if (floor != null) {
+                result.add(new CardBalanceView(state.getCreditCardNumber(), floor.getDate(), floor.getBalance()));
+                balanceMetrics.recordArchiveRead();
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Stream<BalanceHistoryView> stream(int cardId, LocalDate from, LocalDate to) {
+        Stream<BalanceHistoryView> records = stored.stream(cardId, from, to);
+        if (!balanceArchive.contains(cardId)) {
+            return records;
+        }
+        CardArchiveState state = creditCardRepository.findArchiveStateById(cardId);
+        List<BalanceHistoryView> archived = state == null ? List.of() : balanceArchive.findRange(state, from, to);
+        if (archived.isEmpty()) {
+            return records;
+        }
+        balanceMetrics.recordArchiveRead();
+        Iterator<BalanceHistoryView> newer = records.iterator();
+        BalanceHistoryView firstStored = newer.hasNext() ? newer.next() : null;
+        if (firstStored == null) {
+            return archived.stream().onClose(records::close);
+        }
+        // Records archived after the stored ones were read are still in the stored results
+        Stream<BalanceHistoryView> older = archived.stream().filter(record -> record.getDate().isBefore(firstStored.getDate()));
+        Stream<BalanceHistoryView> rest = StreamSupport.stream(Spliterators.spliteratorUnknownSize(newer, Spliterator.ORDERED), false);
+        return Stream.of(older, Stream.of(firstStored), rest).flatMap(part -> part).onClose(records::close);
+    }
+
+    /**
+     * Every card keeps its latest record in the stored history, so the latest balance never needs the archive.
+     */
+    @Override
+    public CardLatestBalance findLatest(int cardId) {
+        return stored.findLatest(cardId);
+    }
+
+    @Override
+    public List<CardLatestBalance> findLatestByOwner(int ownerId) {
+        return stored.findLatestByOwner(ownerId);
+    }
+
+    /**
+     * @return The stored rows of a user's cards; archived records are not rows.
+     */
+    @Override
+    public long countRowsByOwner(int ownerId) {
+        return stored.countRowsByOwner(ownerId);
+    }
+
+    /**
+     * Deletes the stored history; archived records of the deleted cards are no longer reachable
+     * and are dropped from the archive when the deletion commits, see {@link BalanceArchiver#onUserDeleted}.
+     */
+    @Override
+    public int deleteByOwner(int ownerId) {
+        return stored.deleteByOwner(ownerId);
+    }
+
+    @Override
+    public int deleteChunk(Collection<Integer> cardIds, int limit) {
+        return stored.deleteChunk(cardIds, limit);
+    }
+
+    /**
+     * @return The latest record on or before the date of a card loaded for update, from its stored history or the archive.
+     */
+    private BalanceHistoryView floor(CreditCard creditCard, CardArchiveState state, LocalDate date) {
+        Iterator<BalanceHistory> records = creditCard.getBalanceHistorySince(date).iterator();
+        if (records.hasNext()) {
+            BalanceHistory record = records.next();
+            if (!record.getDate().isAfter(date)) {
+                return new BalanceHistoryView(record.getDate(), record.getBalance());
+            }
+        }
+        return balanceArchive.findFloor(state, date);
+    }
+
+    private static BalanceHistory history(LocalDate date, double balance) {
+        BalanceHistory history = new BalanceHistory();
+        history.setDate(date);
+        history.setBalance(balance);
+        return history;
+    }
+}
@@ -0,0 +1,462 @@
+package com.shepherdmoney.interviewproject.service;
+
+import com.shepherdmoney.interviewproject.model.BalanceArchiveCodec;
+import com.shepherdmoney.interviewproject.model.BalanceHistory;
+import com.shepherdmoney.interviewproject.vo.response.BalanceHistoryView;
+import com.shepherdmoney.interviewproject.vo.response.CardArchiveState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only local files holding archived balance records, one file per year and one segment per card and year.
+ * Each segment is the card's full record set for that year, encoded with {@link BalanceArchiveCodec}, so archiving
+ * more of a year appends a new segment that supersedes the previous one instead of rewriting the file.
+ * <pre>
+ * int card id | long generation | int length | int CRC-32 of the data | data
+ * </pre>
+ * Every archiving run writes its segments under a new generation and records it on the card when its transaction
+ * commits, so a reader only uses segments up to the card's committed generation and segments of a run that
+ * rolled back are never seen. Files are scanned into an in-memory index of segment positions on startup,
+ * where a torn tail left by a crash mid-append is cut off, and read through a read-only memory mapping
+ * that is widened as the file grows.
+ * <p>
+ * The files outlive the database, so on startup {@link #retain(Map)} keeps only the segments a live card has committed
+ * and rewrites the files without the rest: superseded segments, segments of deleted cards or of runs that rolled back,
+ * and segments written for an earlier database whose card ids may now belong to other cards. Deleted cards are
+ * dropped from the index right away. The directory is only created on the first append, so an application that never
+ * archives leaves no trace.
+ */
+public class BalanceArchive implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(BalanceArchive.class);
+
+    private static final Pattern FILE_NAME = Pattern.compile("balance-(\\d+)\\.archive");
+
+    private static final int HEADER_SIZE = Integer.BYTES + Long.BYTES + Integer.BYTES + Integer.BYTES;
+
+    private final Path directory;
+
+    private final Map<Integer, YearFile> files = new ConcurrentHashMap<>();
+
+    /**
+     * Segment positions by card, then year, each list ordered by generation.
+     */
+    private final Map<Integer, NavigableMap<Integer, List<Location>>> index = new ConcurrentHashMap<>();
+
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * Serializes appends and the widening of mappings.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Opens the archive and indexes the segments already in it.
+     *
+     * @param directory Where the year files live.
+     */
+    public BalanceArchive(Path directory) {
+        this.directory = directory;
+        try {
+            scanAll();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open the balance archive in " + directory, e);
+        }
+    }
+
+    /**
+     * Keeps, for every card and year, only the latest segment up to the card's committed generation, and rewrites
+     * the files that held any other segment. Must be called before the first append.
+     *
+     * @param committedGenerations The committed archive generation of every live card that has one, by card id.
+     * @return The number of segments dropped.
+     */
+    public int retain(Map<Integer, Long> committedGenerations) {
+        lock.lock();
+        try {
+            Map<Integer, List<Location>> kept = new HashMap<>();
+            Map<Integer, Integer> segments = new HashMap<>();
+            index.forEach((cardId, years) -> years.forEach((year, locations) -> {
+                segments.merge(year, locations.size(), Integer::sum);
+                Long committed = committedGenerations.get(cardId);
+                Location latest = committed == null ? null : latest(locations, committed);
+                if (latest != null) {
+                    kept.computeIfAbsent(year, y -> new ArrayList<>()).add(latest);
+                }
+            }));
+            int dropped = 0;
+            for (Map.Entry<Integer, Integer> year : segments.entrySet()) {
+                List<Location> locations = kept.getOrDefault(year.getKey(), List.of());
+                if (locations.size() < year.getValue()) {
+                    rewrite(files.get(year.getKey()), locations);
+                    dropped += year.getValue() - locations.size();
+                }
+            }
+            if (dropped > 0) {
+                for (YearFile file : files.values()) {
+                    file.close();
+                }
+                files.clear();
+                index.clear();
+                scanAll();
+                log.info("Dropped {} balance archive segments no live card refers to", dropped);
+            }
+            return dropped;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot compact the balance archive in " + directory, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forgets the segments of deleted cards; their space is reclaimed by the next {@link #retain(Map)}.
+     *
+     * @param cardIds The ids of the deleted cards.
+     */
+    public void remove(Collection<Integer> cardIds) {
+        cardIds.forEach(index::remove);
+    }
+
+    /**
+     * @return Whether any segment of the card was ever appended, committed or not.
+     */
+    public boolean contains(int cardId) {
+        return index.containsKey(cardId);
+    }
+
+    /**
+     * @return Whether no segment was ever appended.
+     */
+    public boolean isEmpty() {
+        return index.isEmpty();
+    }
+
+    /**
+     * @return A generation greater than that of every segment appended so far.
+     */
+    public long nextGeneration() {
+        return generation.incrementAndGet();
+    }
+
+    /**
+     * Appends one card's records of one year as a new segment. Not durable until {@link #sync()}.
+     *
+     * @param cardId     The id of the credit card.
+     * @param generation The generation of the archiving run.
+     * @param year       The year all records fall in.
+     * @param records    Every archived record of the card in that year, in ascending date order.
+     */
+    public void append(int cardId, long generation, int year, Collection<BalanceHistory> records) {
+        byte[] data = BalanceArchiveCodec.encode(records);
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        ByteBuffer segment = ByteBuffer.allocate(HEADER_SIZE + data.length)
+                .putInt(cardId).putLong(generation).putInt(data.length).putInt((int) crc.getValue()).put(data)
+                .flip();
+        lock.lock();
+        try {
+            YearFile file = year(year);
+            long offset = file.channel().size();
+            if (offset + segment.limit() > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Balance archive " + file.path + " would exceed 2 GB.");
+            }
+            while (segment.hasRemaining()) {
+                file.channel().write(segment, offset + segment.position());
+            }
+            file.dirty = true;
+            add(cardId, year, new Location(generation, offset + HEADER_SIZE, data.length));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot append to the balance archive in " + directory, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forces every segment appended so far to disk; must return before the generation is committed.
+     */
+    public void sync() {
+        lock.lock();
+        try {
+            for (YearFile file : files.values()) {
+                if (file.dirty) {
+                    file.channel().force(false);
+                    file.dirty = false;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot sync the balance archive in " + directory, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reads a card's archived records of one year.
+     *
+     * @return The records of the latest segment up to the generation, in date order; empty if there is none.
+     */
+    public List<BalanceHistoryView> read(int cardId, long generation, int year) {
+        NavigableMap<Integer, List<Location>> years = index.get(cardId);
+        List<Location> locations = years == null ? null : years.get(year);
+        Location latest = locations == null ? null : latest(locations, generation);
+        if (latest == null) {
+            return List.of();
+        }
+        List<BalanceHistoryView> records = new ArrayList<>();
+        BalanceArchiveCodec.decode(year, files.get(year).slice(latest),
+                (date, balance) -> records.add(new BalanceHistoryView(date, balance)));
+        return records;
+    }
+
+    /**
+     * @return The latest archived record of the card on or before the date, or null if there is none.
+     */
+    public BalanceHistoryView findFloor(CardArchiveState state, LocalDate date) {
+        if (state.getArchivedBefore() == null) {
+            return null;
+        }
+        LocalDate last = min(date, state.getArchivedBefore().minusDays(1));
+        for (int year : years(state.getCardId()).headSet(last.getYear(), true).descendingSet()) {
+            List<BalanceHistoryView> records = read(state.getCardId(), state.getArchiveGeneration(), year);
+            for (int i = records.size() - 1; i >= 0; i--) {
+                if (!records.get(i).getDate().isAfter(last)) {
+                    return records.get(i);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The archived records of the card within a date range, in chronological order.
+     */
+    public List<BalanceHistoryView> findRange(CardArchiveState state, LocalDate from, LocalDate to) {
+        if (state.getArchivedBefore() == null || !from.isBefore(state.getArchivedBefore())) {
+            return List.of();
+        }
+        LocalDate last = min(to, state.getArchivedBefore().minusDays(1));
+        List<BalanceHistoryView> range = new ArrayList<>();
+        for (int year : years(state.getCardId()).subSet(from.getYear(), true, last.getYear(), true)) {
+            for (BalanceHistoryView record : read(state.getCardId(), state.getArchiveGeneration(), year)) {
+                if (!record.getDate().isBefore(from) && !record.getDate().isAfter(last)) {
+                    range.add(record);
+                }
+            }
+        }
+        return range;
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            for (YearFile file : files.values()) {
+                file.close();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private NavigableSet<Integer> years(int cardId) {
+        NavigableMap<Integer, List<Location>> years = index.get(cardId);
+        return years == null ? Collections.emptyNavigableSet() : years.navigableKeySet();
+    }
+
+    private YearFile year(int year) {
+        return files.computeIfAbsent(year, y -> new YearFile(y, directory.resolve("balance-" + y + ".archive")));
+    }
+
+    private void scanAll() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.list(directory)) {
+            for (Path path : paths.toList()) {
+                Matcher matcher = FILE_NAME.matcher(path.getFileName().toString());
+                if (matcher.matches()) {
+                    scan(year(Integer.parseInt(matcher.group(1))));
+                }
+            }
+        }
+    }
+
+    /**
+     * Replaces a file with a copy holding only the given segments, or deletes it if there are none.
+     * The copy is synced before it atomically takes the file's place, so a crash leaves either file intact.
+     */
+    private void rewrite(YearFile file, List<Location> locations) throws IOException {
+        if (locations.isEmpty()) {
+            file.close();
+            Files.delete(file.path);
+            return;
+        }
+        List<Location> ordered = new ArrayList<>(locations);
+        ordered.sort(Comparator.comparingLong(Location::offset));
+        ByteBuffer data = file.mapping(file.channel().size());
+        Path copy = file.path.resolveSibling(file.path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(copy, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            for (Location location : ordered) {
+                ByteBuffer segment = data.slice((int) location.offset() - HEADER_SIZE, HEADER_SIZE + location.length());
+                while (segment.hasRemaining()) {
+                    channel.write(segment);
+                }
+            }
+            channel.force(false);
+        }
+        file.close();
+        Files.move(copy, file.path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Indexes the segments of a file, cutting off anything after the last complete one.
+     */
+    private void scan(YearFile file) throws IOException {
+        ByteBuffer data = file.mapping(0);
+        int offset = 0;
+        while (offset + HEADER_SIZE <= data.limit()) {
+            int cardId = data.getInt(offset);
+            long segmentGeneration = data.getLong(offset + Integer.BYTES);
+            int length = data.getInt(offset + Integer.BYTES + Long.BYTES);
+            int checksum = data.getInt(offset + Integer.BYTES + Long.BYTES + Integer.BYTES);
+            if (length < 0 || offset + HEADER_SIZE + length > data.limit()) {
+                break;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(data.slice(offset + HEADER_SIZE, length));
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            add(cardId, file.year, new Location(segmentGeneration, offset + HEADER_SIZE, length));
+            generation.accumulateAndGet(segmentGeneration, Math::max);
+            offset += HEADER_SIZE + length;
+        }
+        if (offset < data.limit()) {
+            // Only the last append can be incomplete, and its generation was never committed
+            log.warn("Cutting {} unreadable bytes off the end of {}", data.limit() - offset, file.path);
+            file.channel().truncate(offset);
+            file.mapped = null;
+        }
+    }
+
+    private void add(int cardId, int year, Location location) {
+        NavigableMap<Integer, List<Location>> years = index.computeIfAbsent(cardId, id -> new ConcurrentSkipListMap<>());
+        // Copied on write, so readers never see a list being changed
+        years.merge(year, List.of(location), (current, added) -> {
+            List<Location> locations = new ArrayList<>(current);
+            locations.addAll(added);
+            locations.sort(Comparator.comparingLong(Location::generation));
+            return List.copyOf(locations);
+        });
+    }
+
+    /**
+     * @return The segment of the latest generation up to the given one, or null if there is none.
+     */
+    private static Location latest(List<Location> locations, long generation) {
+        Location latest = null;
+        for (Location location : locations) {
+            if (location.generation() <= generation) {
+                latest = location;
+            }
+        }
+        return latest;
+    }
+
+    private static LocalDate min(LocalDate a, LocalDate b) {
+        return a.isBefore(b) ? a : b;
+    }
+
+    /**
+     * Position of a segment's data within its year file.
+     */
+    private record Location(long generation, long offset, int length) {
+    }
+
+    private class YearFile {
+
+        private final int year;
+
+        private final Path path;
+
+        private FileChannel channel;
+
+        private volatile MappedByteBuffer mapped;
+
+        private boolean dirty;
+
+        YearFile(int year, Path path) {
+            this.year = year;
+            this.path = path;
+        }
+
+        void close() throws IOException {
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+            mapped = null;
+        }
+
+        FileChannel channel() throws IOException {
+            if (channel == null) {
+                Files.createDirectories(directory);
+                channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
+            return channel;
+        }
+
+        ByteBuffer slice(Location location) {
+            try {
+                return mapping(location.offset() + location.length()).slice((int) location.offset(), location.length());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot read the balance archive " + path, e);
+            }
+        }
+
+        /**
+         * @return A mapping of the file covering at least the given number of bytes, remapped if the file grew.
+         */
+        MappedByteBuffer mapping(long size) throws IOException {
+            MappedByteBuffer current = mapped;
+            if (current != null && current.capacity() >= size) {
+                return current;
+            }
+            lock.lock();
+            try {
+                current = mapped;
+                if (current == null || current.capacity() < size) {
+                    current = channel().map(FileChannel.MapMode.READ_ONLY, 0, channel().size());
+                    mapped = current;
+                }
+                return current;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package com.shepherdmoney.interviewproject.service;
+
+import com.shepherdmoney.interviewproject.config.BalanceStoreConfig;
+import com.shepherdmoney.interviewproject.config.ThreadConfig;
+import com.shepherdmoney.interviewproject.event.UserDeletedEvent;
+import com.shepherdmoney.interviewproject.metrics.BalanceMetrics;
+import com.shepherdmoney.interviewproject.model.BalanceHistory;
+import com.shepherdmoney.interviewproject.model.CreditCard;
+import com.shepherdmoney.interviewproject.repository.CreditCardRepository;
+import com.shepherdmoney.interviewproject.vo.response.BalanceHistoryView;
+import com.shepherdmoney.interviewproject.vo.response.CardArchiveState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Optional background job moving cold balance history into the {@link BalanceArchive}. Every interval, the records
+ * of each card dated before the first of the month {@code horizon} ago are appended to the archive and removed
+ * from the stored history, one transaction per chunk of cards, and the card's {@code archivedBefore} is moved
+ * up to that month. Every card keeps at least its latest record, so latest balances and updates after it never
+ * need the archive.
+ * <p>
+ * The archive is synced before each chunk commits, so a committed card never points at segments that are not
+ * on disk; a chunk that rolls back leaves segments of a generation no card refers to. Reads through the
+ * {@link ArchivedBalanceStore} see the same history before and after a card is archived.
+ */
+@Service
+public class BalanceArchiver implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(BalanceArchiver.class);
+
+    /**
+     * Attempts per chunk when a concurrent update of one of its cards wins.
+     */
+    private static final int MAX_ARCHIVE_ATTEMPTS = 3;
+
+    private final CreditCardRepository creditCardRepository;
+
+    private final BalanceStore balanceStore;
+
+    private final BalanceArchive balanceArchive;
+
+    private final BalanceMetrics balanceMetrics;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final boolean segments;
+
+    private final boolean enabled;
+
+    private final Duration horizon;
+
+    private final Duration interval;
+
+    private final int chunkSize;
+
+    private final String threadMode;
+
+    private ScheduledExecutorService archiver;
+
+    private volatile boolean running;
+
+    public BalanceArchiver(CreditCardRepository creditCardRepository,
+                           BalanceStore balanceStore,
+                           BalanceArchive balanceArchive,
+                           BalanceMetrics balanceMetrics,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${app.balance.storage.mode:" + BalanceStoreConfig.ROWS + "}") String storage,
+                           @Value("${app.balance.archive.enabled:false}") boolean enabled,
+                           @Value("${app.balance.archive.horizon:365d}") Duration horizon,
+                           @Value("${app.balance.archive.interval:1h}") Duration interval,
+                           @Value("${app.balance.archive.chunk-size:100}") int chunkSize,
+                           @Value("${app.threads.mode:" + ThreadConfig.PLATFORM + "}") String threadMode) {
+        this.creditCardRepository = creditCardRepository;
+        this.balanceStore = balanceStore;
+        this.balanceArchive = balanceArchive;
+        this.balanceMetrics = balanceMetrics;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.segments = BalanceStoreConfig.SEGMENTS.equals(storage);
+        this.enabled = enabled;
+        this.horizon = horizon;
+        this.interval = interval;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.threadMode = threadMode;
+    }
+
+    /**
+     * @param today The current date.
+     * @return The first date kept in the stored history: the first of the month the horizon reaches back to.
+     */
+    public LocalDate cutoff(LocalDate today) {
+        return today.minusDays(horizon.toDays()).withDayOfMonth(1);
+    }
+
+    /**
+     * Archives the records of every card older than the horizon.
+     *
+     * @return The number of records moved to the archive.
+     */
+    public long archiveAll() {
+        return archiveAll(cutoff(LocalDate.now()));
+    }
+
+    /**
+     * Archives the records of every card dated before the given date, one transaction per chunk of cards.
+     *
+     * @param before The first date kept in the stored history.
+     * @return The number of records moved to the archive.
+     */
+    public long archiveAll(LocalDate before) {
+        long moved = 0;
+        int afterId = 0;
+        List<CardArchiveState> states;
+        while (!(states = findArchivable(before, afterId)).isEmpty()) {
+            afterId = states.get(states.size() - 1).getCardId();
+            moved += archive(states.stream().map(CardArchiveState::getCreditCardNumber).toList(), before);
+        }
+        if (moved > 0) {
+            log.info("Moved {} balance records dated before {} to the archive", moved, before);
+        }
+        return moved;
+    }
+
+    /**
+     * Archives the records of the given cards dated before the given date in one transaction.
+     *
+     * @param numbers The credit card numbers.
+     * @param before  The first date kept in the stored history.
+     * @return The number of records moved to the archive.
+     */
+    public int archive(Collection<String> numbers, LocalDate before) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> {
+                    // A fresh generation per attempt, so segments of a rolled back attempt are never read
+                    long generation = balanceArchive.nextGeneration();
+                    int moved = 0;
+                    for (CreditCard creditCard : balanceStore.findCardsWithHistory(numbers)) {
+                        moved += archive(creditCard, before, generation);
+                    }
+                    if (moved > 0) {
+                        balanceArchive.sync();
+                    }
+                    return moved;
+                });
+            } catch (ConcurrencyFailureException e) {
+                if (attempt >= MAX_ARCHIVE_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops the archived segments of deleted cards from the archive index once the deletion has committed.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserDeleted(UserDeletedEvent event) {
+        balanceArchive.remove(event.getCardIds());
+    }
+
+    /**
+     * Starts the periodic archiving run if archiving is enabled.
+     */
+    @Override
+    public void start() {
+        if (enabled) {
+            archiver = Executors.newSingleThreadScheduledExecutor(ThreadConfig.threadFactory(threadMode, "balance-archiver"));
+            long intervalMillis = interval.toMillis();
+            archiver.scheduleWithFixedDelay(this::archiveQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (archiver == null) {
+            return;
+        }
+        archiver.shutdown();
+        // A run in flight is left to finish; interrupting it mid-statement would break the H2 file channel
+        try {
+            if (!archiver.awaitTermination(30, TimeUnit.SECONDS)) {
+                log.warn("Balance archiving did not finish within 30s");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        archiver = null;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return 0;
+    }
+
+    private void archiveQuietly() {
+        try {
+            archiveAll();
+        } catch (RuntimeException e) {
+            log.warn("Balance archiving failed, records stay in the stored history", e);
+        }
+    }
+
+    private List<CardArchiveState> findArchivable(LocalDate before, int afterId) {
+        PageRequest page = PageRequest.of(0, chunkSize);
+        return segments
+                ? creditCardRepository.findArchivableSegments(before, afterId, page)
+                : creditCardRepository.findArchivableRows(before, afterId, page);
+    }
+
+    /**
+     * Appends a card's records before the date to the archive, merged with what it already archived of the same
+     * years, then removes them from the stored history.
+     *
+     * @return The number of records moved.
+     */
+    private int archive(CreditCard creditCard, LocalDate before, long generation) {
+        List<BalanceHistory> history = creditCard.getBalanceHistory();
+        if (history.size() < 2) {
+            return 0;
+        }
+        // The history is ordered latest first
+        LocalDate latest = history.get(0).getDate();
+        LocalDate cut = latest.isBefore(before) ? latest : before;
+        TreeMap<Integer, List<BalanceHistory>> years = new TreeMap<>();
+        int moved = 0;
+        for (BalanceHistory record : creditCard.getBalanceHistorySince(BalanceHistoryService.EARLIEST_DATE)) {
+            if (!record.getDate().isBefore(cut)) {
+                break;
+            }
+            years.computeIfAbsent(record.getDate().getYear(), year -> new ArrayList<>()).add(record);
+            moved++;
+        }
+        if (moved == 0) {
+            return 0;
+        }
+
+        CardArchiveState state = new CardArchiveState(creditCard.getId(), creditCard.getNumber(),
+                creditCard.getArchivedBefore(), creditCard.getArchiveGeneration());
+        LocalDate firstMoved = years.firstEntry().getValue().get(0).getDate();
+        for (Map.Entry<Integer, List<BalanceHistory>> year : years.entrySet()) {
+            List<BalanceHistory> records = new ArrayList<>();
+            for (BalanceHistoryView archived : balanceArchive.findRange(state,
+                    LocalDate.of(year.getKey(), 1, 1), LocalDate.of(year.getKey(), 12, 31))) {
+                BalanceHistory record = new BalanceHistory();
+                record.setDate(archived.getDate());
+                record.setBalance(archived.getBalance());
+                records.add(record);
+            }
+            records.addAll(year.getValue());
+            balanceArchive.append(creditCard.getId(), generation, year.getKey(), records);
+        }
+        creditCard.removeBalanceHistoryBefore(cut);
+        creditCard.flushBalanceHistory();
+        balanceStore.save(creditCard, firstMoved);
+        creditCard.setArchivedBefore(cut);
+        creditCard.setArchiveGeneration(generation);
+        balanceMetrics.recordArchiveMoved(moved);
+        return moved;
+    }
+}
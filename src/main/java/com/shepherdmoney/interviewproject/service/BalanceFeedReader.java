@@ -0,0 +1,269 @@
+package com.shepherdmoney.interviewproject.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Pull reader over a stream of balance updates that keeps only the current row.
+ * The date is held as an epoch day and the amount as a primitive double, so no objects outlive a row.
+ * <p>
+ * CSV rows are {@code creditCardNumber,balanceDate,balanceAmount} with ISO dates and an optional header line.
+ * NDJSON rows are objects with the same field names as UpdateBalancePayload; a top-level array is accepted too.
+ */
+public abstract class BalanceFeedReader implements Closeable {
+
+    protected String creditCardNumber;
+
+    protected long epochDay;
+
+    protected double balanceAmount;
+
+    protected long line;
+
+    public static BalanceFeedReader csv(InputStream in) {
+        return new Csv(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 64 * 1024));
+    }
+
+    public static BalanceFeedReader ndjson(JsonFactory jsonFactory, InputStream in) throws IOException {
+        return new Ndjson(jsonFactory.createParser(in));
+    }
+
+    /**
+     * Advances to the next row.
+     *
+     * @return false at the end of the stream.
+     * @throws InvalidPayloadException if the row is malformed.
+     * @throws IOException             if reading the stream fails.
+     */
+    public abstract boolean next() throws IOException;
+
+    public String getCreditCardNumber() {
+        return creditCardNumber;
+    }
+
+    public long getEpochDay() {
+        return epochDay;
+    }
+
+    public double getBalanceAmount() {
+        return balanceAmount;
+    }
+
+    /**
+     * @return The line of the current row, for error messages.
+     */
+    public long getLine() {
+        return line;
+    }
+
+    /**
+     * Parses an ISO {@code yyyy-MM-dd} date straight to an epoch day, without creating a LocalDate.
+     *
+     * @return The epoch day of the date.
+     * @throws InvalidPayloadException if the text is not a valid date.
+     */
+    static long parseEpochDay(CharSequence text, int start, int end) {
+        if (end - start != 10 || text.charAt(start + 4) != '-' || text.charAt(start + 7) != '-') {
+            throw new InvalidPayloadException("Balance date must be yyyy-MM-dd.");
+        }
+        int year = digits(text, start, start + 4);
+        int month = digits(text, start + 5, start + 7);
+        int day = digits(text, start + 8, start + 10);
+        if (month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)) {
+            throw new InvalidPayloadException("Balance date is not a valid date.");
+        }
+        // Days from civil: shift the year to start in March so the leap day is the last day of it
+        int y = month <= 2 ? year - 1 : year;
+        int era = y / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+
+    private static int digits(CharSequence text, int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new InvalidPayloadException("Balance date must be yyyy-MM-dd.");
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        return switch (month) {
+            case 2 -> (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+            case 4, 6, 9, 11 -> 30;
+            default -> 31;
+        };
+    }
+
+    private static final class Csv extends BalanceFeedReader {
+
+        private final BufferedReader reader;
+
+        private Csv(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public boolean next() throws IOException {
+            String text;
+            while ((text = reader.readLine()) != null) {
+                line++;
+                if (text.isBlank()) {
+                    continue;
+                }
+                int firstComma = text.indexOf(',');
+                int secondComma = firstComma < 0 ? -1 : text.indexOf(',', firstComma + 1);
+                if (secondComma < 0 || text.indexOf(',', secondComma + 1) >= 0) {
+                    throw new InvalidPayloadException("Line " + line + ": expected creditCardNumber,balanceDate,balanceAmount.");
+                }
+                int dateStart = skipBlank(text, firstComma + 1, secondComma);
+                int dateEnd = trimBlank(text, dateStart, secondComma);
+                if (isQuoted(text, dateStart, dateEnd)) {
+                    dateStart++;
+                    dateEnd--;
+                }
+                if (line == 1 && (dateStart == dateEnd || !Character.isDigit(text.charAt(dateStart)))) {
+                    // Header line
+                    continue;
+                }
+                try {
+                    epochDay = parseEpochDay(text, dateStart, dateEnd);
+                    balanceAmount = Double.parseDouble(text.substring(secondComma + 1).trim());
+                } catch (NumberFormatException e) {
+                    throw new InvalidPayloadException("Line " + line + ": balance amount is not a number.", e);
+                } catch (InvalidPayloadException e) {
+                    throw new InvalidPayloadException("Line " + line + ": " + e.getMessage(), e);
+                }
+                int numberStart = skipBlank(text, 0, firstComma);
+                int numberEnd = trimBlank(text, numberStart, firstComma);
+                if (isQuoted(text, numberStart, numberEnd)) {
+                    numberStart++;
+                    numberEnd--;
+                }
+                creditCardNumber = text.substring(numberStart, numberEnd);
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+
+        private static boolean isQuoted(String text, int start, int end) {
+            return end - start >= 2 && text.charAt(start) == '"' && text.charAt(end - 1) == '"';
+        }
+
+        private static int skipBlank(String text, int start, int end) {
+            while (start < end && text.charAt(start) <= ' ') {
+                start++;
+            }
+            return start;
+        }
+
+        private static int trimBlank(String text, int start, int end) {
+            while (end > start && text.charAt(end - 1) <= ' ') {
+                end--;
+            }
+            return end;
+        }
+    }
+
+    private static final class Ndjson extends BalanceFeedReader {
+
+        private final JsonParser parser;
+
+        private boolean started;
+
+        private boolean array;
+
+        private Ndjson(JsonParser parser) {
+            this.parser = parser;
+        }
+
+        @Override
+        public boolean next() throws IOException {
+            try {
+                JsonToken token = parser.nextToken();
+                if (!started) {
+                    started = true;
+                    if (token == JsonToken.START_ARRAY) {
+                        array = true;
+                        token = parser.nextToken();
+                    }
+                }
+                if (token == null || array && token == JsonToken.END_ARRAY) {
+                    return false;
+                }
+                line = parser.currentLocation().getLineNr();
+                if (token != JsonToken.START_OBJECT) {
+                    throw new InvalidPayloadException("Line " + line + ": expected a balance update object.");
+                }
+                readObject();
+                return true;
+            } catch (JsonProcessingException e) {
+                throw new InvalidPayloadException("Malformed payload: " + e.getOriginalMessage(), e);
+            }
+        }
+
+        private void readObject() throws IOException {
+            creditCardNumber = null;
+            boolean hasDate = false;
+            boolean hasAmount = false;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "creditCardNumber" -> creditCardNumber = value == JsonToken.VALUE_NULL ? null : parser.getText();
+                    case "balanceDate" -> {
+                        if (value != JsonToken.VALUE_STRING) {
+                            throw new InvalidPayloadException("Line " + line + ": balance date must be a yyyy-MM-dd string.");
+                        }
+                        try {
+                            // Reads the parser's own buffer instead of materializing the value as a String
+                            int offset = parser.getTextOffset();
+                            epochDay = parseEpochDay(CharBuffer.wrap(parser.getTextCharacters()),
+                                    offset, offset + parser.getTextLength());
+                        } catch (InvalidPayloadException e) {
+                            throw new InvalidPayloadException("Line " + line + ": " + e.getMessage(), e);
+                        }
+                        hasDate = true;
+                    }
+                    case "balanceAmount" -> {
+                        if (!value.isNumeric()) {
+                            throw new InvalidPayloadException("Line " + line + ": balance amount must be a number.");
+                        }
+                        balanceAmount = parser.getDoubleValue();
+                        hasAmount = true;
+                    }
+                    default -> parser.skipChildren();
+                }
+            }
+            if (creditCardNumber == null || !hasDate || !hasAmount) {
+                throw new InvalidPayloadException("Line " + line + ": creditCardNumber, balanceDate and balanceAmount are required.");
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            parser.close();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.shepherdmoney.interviewproject.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shepherdmoney.interviewproject.vo.request.UpdateBalancePayload;
+import com.shepherdmoney.interviewproject.vo.response.BalanceFeedResult;
+import com.shepherdmoney.interviewproject.vo.response.BalanceUpdateResult;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Applies a stream of balance updates in CSV or NDJSON form, optionally gzip-compressed.
+ * The body is parsed row by row and handed to the update path in fixed-size chunks through a reused
+ * set of payload objects, so heap use depends on the chunk size and not on the length of the feed.
+ * <p>
+ * Every chunk commits on its own. A malformed row or a chunk that keeps conflicting stops the feed;
+ * the chunks before it stay applied and the result says how many rows that covered.
+ */
+@Service
+public class BalanceFeedService {
+
+    public enum Format {
+        CSV,
+        NDJSON
+    }
+
+    static final int MAX_REPORTED_FAILURES = 100;
+
+    private final BalanceWriteBehindBuffer balanceWriteBehindBuffer;
+
+    private final ObjectMapper objectMapper;
+
+    private final int chunkSize;
+
+    public BalanceFeedService(BalanceWriteBehindBuffer balanceWriteBehindBuffer,
+                              ObjectMapper objectMapper,
+                              @Value("${app.balance-feed.chunk-size:1000}") int chunkSize) {
+        this.balanceWriteBehindBuffer = balanceWriteBehindBuffer;
+        this.objectMapper = objectMapper;
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    /**
+     * Applies every row of the feed in input order.
+     *
+     * @param body   The request body; gzip is detected from its first bytes.
+     * @param format The row format.
+     * @return The number of rows and chunks applied and the cards that could not be updated.
+     *         A body that cannot be read or decompressed is reported as MALFORMED.
+     */
+    public BalanceFeedResult apply(InputStream body, Format format) {
+        UpdateBalancePayload[] slots = new UpdateBalancePayload[chunkSize];
+        for (int i = 0; i < chunkSize; i++) {
+            slots[i] = new UpdateBalancePayload();
+        }
+        List<BalanceUpdateResult> failures = new ArrayList<>();
+        long failedCards = 0;
+        long rowsApplied = 0;
+        int chunks = 0;
+        int filled = 0;
+
+        try (BalanceFeedReader reader = open(decompress(body), format)) {
+            while (reader.next()) {
+                UpdateBalancePayload slot = slots[filled++];
+                slot.setCreditCardNumber(reader.getCreditCardNumber());
+                slot.setBalanceDate(LocalDate.ofEpochDay(reader.getEpochDay()));
+                slot.setBalanceAmount(reader.getBalanceAmount());
+                if (filled == chunkSize) {
+                    failedCards += applyChunk(slots, filled, failures);
+                    rowsApplied += filled;
+                    chunks++;
+                    filled = 0;
+                }
+            }
+            if (filled > 0) {
+                failedCards += applyChunk(slots, filled, failures);
+                rowsApplied += filled;
+                chunks++;
+            }
+        } catch (InvalidPayloadException e) {
+            return new BalanceFeedResult(BalanceFeedResult.Status.MALFORMED, rowsApplied, chunks, failedCards,
+                    failures, e.getMessage());
+        } catch (IOException e) {
+            return new BalanceFeedResult(BalanceFeedResult.Status.MALFORMED, rowsApplied, chunks, failedCards,
+                    failures, "Could not read request body: " + e.getMessage());
+        } catch (ConcurrencyFailureException e) {
+            return new BalanceFeedResult(BalanceFeedResult.Status.CONFLICT, rowsApplied, chunks, failedCards,
+                    failures, "Credit card balances were modified concurrently, retry from row " + (rowsApplied + 1) + ".");
+        }
+        return new BalanceFeedResult(BalanceFeedResult.Status.COMPLETED, rowsApplied, chunks, failedCards, failures, null);
+    }
+
+    private int applyChunk(UpdateBalancePayload[] slots, int filled, List<BalanceUpdateResult> failures) {
+        int failed = 0;
+        for (BalanceUpdateResult result : balanceWriteBehindBuffer.applyNow(Arrays.asList(slots).subList(0, filled))) {
+            if (result.getStatus() != BalanceUpdateResult.Status.UPDATED) {
+                failed++;
+                if (failures.size() < MAX_REPORTED_FAILURES) {
+                    failures.add(result);
+                }
+            }
+        }
+        return failed;
+    }
+
+    private BalanceFeedReader open(InputStream in, Format format) throws IOException {
+        return format == Format.CSV ? BalanceFeedReader.csv(in) : BalanceFeedReader.ndjson(objectMapper.getFactory(), in);
+    }
+
+    private static InputStream decompress(InputStream body) throws IOException {
+        BufferedInputStream in = new BufferedInputStream(body, 64 * 1024);
+        in.mark(2);
+        int first = in.read();
+        int second = in.read();
+        in.reset();
+        if (first == 0x1f && second == 0x8b) {
+            return new GZIPInputStream(in, 64 * 1024);
+        }
+        return in;
+    }
+}
@@ -0,0 +1,81 @@
+package com.shepherdmoney.interviewproject.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shepherdmoney.interviewproject.vo.response.BalanceHistoryView;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Service streaming range-bounded balance history straight from the database to a response body.
+ * Rows are written as they are read from the cursor, so memory per request stays constant
+ * regardless of how long the history is.
+ */
+@Service
+public class BalanceHistoryService {
+
+    /**
+     * Bounds used for open-ended ranges; both fit the database DATE type.
+     */
+    public static final LocalDate EARLIEST_DATE = LocalDate.of(1, 1, 1);
+
+    public static final LocalDate LATEST_DATE = LocalDate.of(9999, 12, 31);
+
+    private final BalanceStore balanceStore;
+
+    private final ObjectMapper objectMapper;
+
+    public BalanceHistoryService(BalanceStore balanceStore, ObjectMapper objectMapper) {
+        this.balanceStore = balanceStore;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Writes the balance history of a card in chronological order.
+     * To fetch the next page, call again with {@code from} set to the day after the last date returned.
+     *
+     * @param cardId The id of the credit card.
+     * @param from   The first date to include.
+     * @param to     The last date to include.
+     * @param limit  The maximum number of rows to write.
+     * @param ndjson true to write one JSON object per line, false to write a single JSON array.
+     * @param out    The stream to write to. It is flushed but not closed.
+     * @return The number of rows written.
+     * @throws IOException if writing to the stream fails.
+     */
+    @Transactional(readOnly = true)
+    public int writeHistory(int cardId, LocalDate from, LocalDate to, int limit, boolean ndjson,
+                            OutputStream out) throws IOException {
+        int written = 0;
+        try (Stream<BalanceHistoryView> rows = balanceStore.stream(cardId, from, to);
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            if (ndjson) {
+                generator.setRootValueSeparator(null);
+            } else {
+                generator.writeStartArray();
+            }
+
+            Iterator<BalanceHistoryView> iterator = rows.iterator();
+            while (written < limit && iterator.hasNext()) {
+                generator.writeObject(iterator.next());
+                if (ndjson) {
+                    generator.writeRaw('\n');
+                }
+                written++;
+            }
+
+            if (!ndjson) {
+                generator.writeEndArray();
+            }
+            generator.flush();
+        }
+        return written;
+    }
+}
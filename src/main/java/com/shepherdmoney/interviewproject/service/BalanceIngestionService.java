@@ -0,0 +1,176 @@
+package com.shepherdmoney.interviewproject.service;
+
+import com.shepherdmoney.interviewproject.config.ThreadConfig;
+import com.shepherdmoney.interviewproject.vo.request.UpdateBalancePayload;
+import com.shepherdmoney.interviewproject.vo.response.BalanceUpdateResult;
+import com.shepherdmoney.interviewproject.vo.response.IngestionJobView;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Asynchronous balance ingestion. A submitted batch is split by card number into partitions, each
+ * drained by a single worker thread, so updates to one card are applied in order while different
+ * cards are processed in parallel. Every partition holds a bounded number of queued chunks; a batch
+ * that does not fit is rejected as a whole instead of blocking the caller.
+ * Workers run on virtual threads when {@code app.threads.mode} is virtual.
+ */
+@Service
+public class BalanceIngestionService {
+
+    private static final Logger log = LoggerFactory.getLogger(BalanceIngestionService.class);
+
+    private final BalanceWriteBehindBuffer balanceWriteBehindBuffer;
+
+    private final int chunkSize;
+
+    private final int maxRetainedJobs;
+
+    private final ExecutorService[] workers;
+
+    private final Semaphore[] queueSlots;
+
+    private final Map<String, IngestionJob> jobs = new ConcurrentHashMap<>();
+
+    private final Queue<String> jobOrder = new ConcurrentLinkedQueue<>();
+
+    public BalanceIngestionService(BalanceWriteBehindBuffer balanceWriteBehindBuffer,
+                                   @Value("${app.ingestion.workers:0}") int workers,
+                                   @Value("${app.ingestion.queue-capacity:64}") int queueCapacity,
+                                   @Value("${app.ingestion.chunk-size:500}") int chunkSize,
+                                   @Value("${app.ingestion.max-retained-jobs:1000}") int maxRetainedJobs,
+                                   @Value("${app.threads.mode:" + ThreadConfig.PLATFORM + "}") String threadMode) {
+        this.balanceWriteBehindBuffer = balanceWriteBehindBuffer;
+        this.chunkSize = chunkSize;
+        this.maxRetainedJobs = maxRetainedJobs;
+        int partitions = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+        this.workers = new ExecutorService[partitions];
+        this.queueSlots = new Semaphore[partitions];
+        for (int i = 0; i < partitions; i++) {
+            String name = "ingest-" + i;
+            this.workers[i] = Executors.newSingleThreadExecutor(ThreadConfig.threadFactory(threadMode, name));
+            this.queueSlots[i] = new Semaphore(queueCapacity);
+        }
+    }
+
+    /**
+     * Queues a batch of balance updates.
+     *
+     * @param payloads The balance updates to apply.
+     * @return The status of the new job.
+     * @throws IngestionRejectedException if a partition queue has no room for the batch.
+     */
+    public IngestionJobView submit(List<UpdateBalancePayload> payloads) {
+        Map<String, List<UpdateBalancePayload>> updatesByCard = new LinkedHashMap<>();
+        for (UpdateBalancePayload payload : payloads) {
+            updatesByCard.computeIfAbsent(payload.getCreditCardNumber(), number -> new ArrayList<>()).add(payload);
+        }
+
+        List<List<List<UpdateBalancePayload>>> chunksByPartition = new ArrayList<>(workers.length);
+        for (int i = 0; i < workers.length; i++) {
+            chunksByPartition.add(new ArrayList<>());
+        }
+        for (Map.Entry<String, List<UpdateBalancePayload>> entry : updatesByCard.entrySet()) {
+            List<List<UpdateBalancePayload>> chunks = chunksByPartition.get(partitionOf(entry.getKey()));
+            List<UpdateBalancePayload> chunk = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+            // A card's updates always stay in one chunk so they commit together
+            if (chunk == null || chunk.size() + entry.getValue().size() > chunkSize) {
+                chunk = new ArrayList<>();
+                chunks.add(chunk);
+            }
+            chunk.addAll(entry.getValue());
+        }
+
+        reserveSlots(chunksByPartition);
+
+        int tasks = chunksByPartition.stream().mapToInt(List::size).sum();
+        IngestionJob job = new IngestionJob(UUID.randomUUID().toString(), payloads.size(), updatesByCard.size(), tasks);
+        retain(job);
+        for (int i = 0; i < workers.length; i++) {
+            for (List<UpdateBalancePayload> chunk : chunksByPartition.get(i)) {
+                int partition = i;
+                workers[i].execute(() -> process(job, chunk, partition));
+            }
+        }
+        return job.toView();
+    }
+
+    /**
+     * Looks up the status of a job.
+     *
+     * @param jobId The id returned on submission.
+     * @return The job status, or null if the job is unknown or has been evicted.
+     */
+    public IngestionJobView getJob(String jobId) {
+        IngestionJob job = jobs.get(jobId);
+        return job != null ? job.toView() : null;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        for (ExecutorService worker : workers) {
+            worker.shutdown();
+        }
+        for (ExecutorService worker : workers) {
+            if (!worker.awaitTermination(30, TimeUnit.SECONDS)) {
+                log.warn("Ingestion worker did not drain within 30s, dropping queued chunks");
+                worker.shutdownNow();
+            }
+        }
+    }
+
+    private void process(IngestionJob job, List<UpdateBalancePayload> chunk, int partition) {
+        job.taskStarted();
+        try {
+            for (BalanceUpdateResult result : balanceWriteBehindBuffer.applyNow(chunk)) {
+                if (result.getStatus() != BalanceUpdateResult.Status.UPDATED) {
+                    job.cardFailed(result.getCreditCardNumber(), result.getMessage());
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("Ingestion chunk of job {} failed", job.getId(), e);
+            for (UpdateBalancePayload payload : chunk) {
+                job.cardFailed(payload.getCreditCardNumber(), "An error occurred while updating credit card balances: " + e.getMessage());
+            }
+        } finally {
+            queueSlots[partition].release();
+            job.taskFinished(chunk.size());
+        }
+    }
+
+    private void reserveSlots(List<List<List<UpdateBalancePayload>>> chunksByPartition) {
+        for (int i = 0; i < workers.length; i++) {
+            int needed = chunksByPartition.get(i).size();
+            if (needed > 0 && !queueSlots[i].tryAcquire(needed)) {
+                for (int j = 0; j < i; j++) {
+                    queueSlots[j].release(chunksByPartition.get(j).size());
+                }
+                throw new IngestionRejectedException("Ingestion queue is full, retry later.");
+            }
+        }
+    }
+
+    private void retain(IngestionJob job) {
+        jobs.put(job.getId(), job);
+        jobOrder.add(job.getId());
+        // Evict the oldest finished jobs once over the limit; running jobs are always kept
+        Iterator<String> iterator = jobOrder.iterator();
+        while (jobs.size() > maxRetainedJobs && iterator.hasNext()) {
+            String id = iterator.next();
+            IngestionJob oldest = jobs.get(id);
+            if (oldest == null || oldest.isFinished()) {
+                jobs.remove(id);
+                iterator.remove();
+            }
+        }
+    }
+
+    private int partitionOf(String number) {
+        return Math.floorMod(Objects.hashCode(number), workers.length);
+    }
+}
@@ -0,0 +1,307 @@
+package com.shepherdmoney.interviewproject.service;
+
+import com.shepherdmoney.interviewproject.config.ThreadConfig;
+import com.shepherdmoney.interviewproject.metrics.BalanceMetrics;
+import com.shepherdmoney.interviewproject.model.BalanceLedgerEntry;
+import com.shepherdmoney.interviewproject.model.CreditCard;
+import com.shepherdmoney.interviewproject.repository.BalanceLedgerRepository;
+import com.shepherdmoney.interviewproject.repository.CreditCardRepository;
+import com.shepherdmoney.interviewproject.vo.request.UpdateBalancePayload;
+import com.shepherdmoney.interviewproject.vo.response.BalanceLedgerEntryView;
+import com.shepherdmoney.interviewproject.vo.response.CardLedgerState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Optional event-sourced write path for balance updates. Each update is appended to the card's ledger as one
+ * {@link BalanceLedgerEntry} with the next sequence number, and the card's stored history is left as it is,
+ * so an update costs one insert however far back it lands. The stored history is a snapshot that includes
+ * the card's first {@code snapshotSequence} entries; reads replay the rest through the {@link LedgerBalanceStore}.
+ * <p>
+ * A background checkpoint periodically folds pending entries into the snapshot, replaying them exactly as the
+ * direct update path would have applied them on the day they were received, and refreshes the card's rollups.
+ * Rollup reads checkpoint the cards they cover first, since rollups are only maintained for the snapshot.
+ * Entries stay in the ledger after being folded and can be listed for audits.
+ * <p>
+ * Pending entries left by a previous run are folded on startup before requests are served,
+ * so switching the ledger off never leaves updates that the direct path would not see.
+ */
+@Service
+public class BalanceLedger implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(BalanceLedger.class);
+
+    /**
+     * Attempts per checkpoint chunk when a concurrent append or checkpoint of the same card wins.
+     */
+    private static final int MAX_CHECKPOINT_ATTEMPTS = 3;
+
+    private final CreditCardRepository creditCardRepository;
+
+    private final BalanceLedgerRepository balanceLedgerRepository;
+
+    private final BalanceStore balanceStore;
+
+    private final BalanceRollupService balanceRollupService;
+
+    private final BalanceMetrics balanceMetrics;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final boolean enabled;
+
+    private final Duration checkpointInterval;
+
+    private final int checkpointChunkSize;
+
+    private final String threadMode;
+
+    private ScheduledExecutorService checkpointer;
+
+    private volatile boolean running;
+
+    public BalanceLedger(CreditCardRepository creditCardRepository,
+                         BalanceLedgerRepository balanceLedgerRepository,
+                         BalanceStore balanceStore,
+                         BalanceRollupService balanceRollupService,
+                         BalanceMetrics balanceMetrics,
+                         PlatformTransactionManager transactionManager,
+                         @Value("${app.balance.ledger.enabled:false}") boolean enabled,
+                         @Value("${app.balance.ledger.checkpoint-interval:30s}") Duration checkpointInterval,
+                         @Value("${app.balance.ledger.checkpoint-chunk-size:100}") int checkpointChunkSize,
+                         @Value("${app.threads.mode:" + ThreadConfig.PLATFORM + "}") String threadMode) {
+        this.creditCardRepository = creditCardRepository;
+        this.balanceLedgerRepository = balanceLedgerRepository;
+        this.balanceStore = balanceStore;
+        this.balanceRollupService = balanceRollupService;
+        this.balanceMetrics = balanceMetrics;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.checkpointInterval = checkpointInterval;
+        this.checkpointChunkSize = Math.max(1, checkpointChunkSize);
+        this.threadMode = threadMode;
+    }
+
+    /**
+     * @return Whether balance updates are appended to the ledger instead of being applied to the stored history.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Loads the cards to append to, without their balance history.
+     *
+     * @param numbers The credit card numbers; numbers without a card are left out.
+     * @return The cards in no particular order.
+     */
+    public List<CreditCard> findCards(Collection<String> numbers) {
+        return creditCardRepository.findAllByNumberIn(numbers);
+    }
+
+    /**
+     * Appends balance updates to a card's ledger in the caller's transaction, in the given order.
+     * The card row is written first, so a concurrent append to the same card fails its version check
+     * before inserting entries with the same sequence numbers.
+     *
+     * @param creditCard The persistent credit card.
+     * @param updates    The balance updates, each with a date.
+     */
+    public void append(CreditCard creditCard, List<UpdateBalancePayload> updates) {
+        LocalDate today = LocalDate.now();
+        long sequence = creditCard.getLedgerSequence();
+        List<BalanceLedgerEntry> entries = new ArrayList<>(updates.size());
+        for (UpdateBalancePayload update : updates) {
+            BalanceLedgerEntry entry = new BalanceLedgerEntry();
+            entry.setCreditCard(creditCard);
+            entry.setSequence(++sequence);
+            entry.setBalanceDate(update.getBalanceDate());
+            entry.setAmount(update.getBalanceAmount());
+            entry.setRecordedOn(today);
+            entries.add(entry);
+        }
+        creditCard.setLedgerSequence(sequence);
+        creditCardRepository.saveAndFlush(creditCard);
+        balanceLedgerRepository.saveAll(entries);
+    }
+
+    /**
+     * Folds the pending ledger entries of the given cards into their stored history and rollups.
+     *
+     * @param numbers The credit card numbers.
+     * @return The number of entries folded.
+     */
+    public int checkpoint(Collection<String> numbers) {
+        if (!enabled || numbers.isEmpty()) {
+            return 0;
+        }
+        return checkpoint(creditCardRepository.findPendingLedgerByNumberIn(numbers));
+    }
+
+    /**
+     * Folds the pending ledger entries of all cards of a user into their stored history and rollups.
+     *
+     * @param ownerId The id of the user.
+     * @return The number of entries folded.
+     */
+    public int checkpointOwner(int ownerId) {
+        if (!enabled) {
+            return 0;
+        }
+        return checkpoint(creditCardRepository.findPendingLedgerByOwnerId(ownerId));
+    }
+
+    /**
+     * Folds the pending ledger entries of every card, one transaction per chunk of cards.
+     *
+     * @return The number of entries folded.
+     */
+    public long checkpointAll() {
+        long folded = 0;
+        int afterId = 0;
+        List<CardLedgerState> states;
+        while (!(states = creditCardRepository.findPendingLedger(afterId, PageRequest.of(0, checkpointChunkSize))).isEmpty()) {
+            afterId = states.get(states.size() - 1).getCardId();
+            folded += checkpoint(states);
+        }
+        return folded;
+    }
+
+    /**
+     * Lists one page of a card's ledger entries, including those already folded into its snapshot.
+     *
+     * @param cardId        The id of the credit card.
+     * @param afterSequence Only entries with a greater sequence number are returned; 0 starts from the beginning.
+     * @param limit         The maximum number of entries.
+     * @return The entries in sequence order.
+     */
+    public List<BalanceLedgerEntryView> entries(int cardId, long afterSequence, int limit) {
+        return balanceLedgerRepository.findPageByCardId(cardId, afterSequence, PageRequest.of(0, Math.max(1, limit)));
+    }
+
+    /**
+     * Folds what a previous run left pending, then starts the periodic checkpoint if the ledger is enabled.
+     * Runs in an early lifecycle phase, after startup migrations but before the web server starts.
+     */
+    @Override
+    public void start() {
+        long folded = checkpointAll();
+        if (folded > 0) {
+            log.info("Folded {} pending balance ledger entries into the stored history", folded);
+        }
+        if (enabled) {
+            checkpointer = Executors.newSingleThreadScheduledExecutor(
+                    ThreadConfig.threadFactory(threadMode, "balance-ledger-checkpoint"));
+            long intervalMillis = checkpointInterval.toMillis();
+            checkpointer.scheduleWithFixedDelay(this::checkpointQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (checkpointer == null) {
+            return;
+        }
+        checkpointer.shutdown();
+        // A checkpoint in flight is left to finish; interrupting it mid-statement would break the H2 file channel
+        try {
+            if (!checkpointer.awaitTermination(30, TimeUnit.SECONDS)) {
+                log.warn("Balance ledger checkpoint did not finish within 30s");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        checkpointer = null;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return 0;
+    }
+
+    private void checkpointQuietly() {
+        try {
+            checkpointAll();
+        } catch (RuntimeException e) {
+            log.warn("Balance ledger checkpoint failed, pending entries stay in the ledger", e);
+        }
+    }
+
+    private int checkpoint(List<CardLedgerState> states) {
+        if (states.isEmpty()) {
+            return 0;
+        }
+        List<String> numbers = states.stream().map(CardLedgerState::getCreditCardNumber).toList();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> {
+                    int folded = 0;
+                    for (CreditCard creditCard : balanceStore.findCardsWithHistory(numbers)) {
+                        folded += fold(creditCard);
+                    }
+                    return folded;
+                });
+            } catch (ConcurrencyFailureException | DataIntegrityViolationException e) {
+                // Updates keep being appended while a card is folded; the next attempt folds those as well
+                if (attempt >= MAX_CHECKPOINT_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Replays a card's pending entries over its snapshot and saves the result as the new snapshot.
+     *
+     * @return The number of entries folded.
+     */
+    private int fold(CreditCard creditCard) {
+        if (creditCard.getLedgerSequence() <= creditCard.getSnapshotSequence()) {
+            return 0;
+        }
+        List<BalanceLedgerEntryView> entries = balanceLedgerRepository.findByCardIdAndSequenceBetween(creditCard.getId(),
+                creditCard.getSnapshotSequence(), creditCard.getLedgerSequence());
+        if (entries.isEmpty()) {
+            creditCard.setSnapshotSequence(creditCard.getLedgerSequence());
+            return 0;
+        }
+        LocalDate earliest = entries.get(0).getBalanceDate();
+        for (BalanceLedgerEntryView entry : entries) {
+            if (entry.getBalanceDate().isBefore(earliest)) {
+                earliest = entry.getBalanceDate();
+            }
+        }
+        balanceStore.prepareUpdate(creditCard, earliest);
+        for (BalanceLedgerEntryView entry : entries) {
+            creditCard.propagateBalance(entry.getBalanceDate(), entry.getAmount(), entry.getRecordedOn());
+        }
+        balanceMetrics.recordPropagationRows(creditCard.flushBalanceHistory());
+        balanceStore.save(creditCard, earliest);
+        balanceRollupService.refresh(creditCard, earliest);
+        creditCard.setSnapshotSequence(creditCard.getLedgerSequence());
+        balanceMetrics.recordLedgerCheckpoint(entries.size());
+        return entries.size();
+    }
+}
@@ -0,0 +1,104 @@
+package com.shepherdmoney.interviewproject.service;
+
+import com.shepherdmoney.interviewproject.vo.response.BalanceHistoryView;
+import com.shepherdmoney.interviewproject.vo.response.CardBalanceView;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Service answering point-in-time balance lookups in the database instead of in a loaded balance history.
+ * The balance on a date is that of the latest record on or before it, found through the (card, date) index
+ * of the {@link BalanceStore}, so a lookup never hydrates the card's history collection.
+ */
+@Service
+public class BalanceLookupService {
+
+    private final BalanceStore balanceStore;
+
+    public BalanceLookupService(BalanceStore balanceStore) {
+        this.balanceStore = balanceStore;
+    }
+
+    /**
+     * @param cardId The id of the credit card.
+     * @param date   The date to look up.
+     * @return The balance on that date, or 0.0 if the card has no record on or before it.
+     */
+    @Transactional(readOnly = true)
+    public double balanceAt(int cardId, LocalDate date) {
+        BalanceHistoryView floor = balanceStore.findFloor(cardId, date);
+        return floor == null ? 0.0 : floor.getBalance();
+    }
+
+    /**
+     * Looks up the balance of many cards on one date with a single statement.
+     *
+     * @param numbers The credit card numbers.
+     * @param date    The date to look up.
+     * @return The balances in input order; unknown cards and cards without a record on or before the date are left out.
+     */
+    @Transactional(readOnly = true)
+    public List<CardBalanceView> balancesAt(Collection<String> numbers, LocalDate date) {
+        if (numbers.isEmpty()) {
+            return List.of();
+        }
+        Map<String, CardBalanceView> floors = new HashMap<>();
+        for (CardBalanceView floor : balanceStore.findFloors(new HashSet<>(numbers), date)) {
+            floors.put(floor.getCreditCardNumber(), floor);
+        }
+        List<CardBalanceView> balances = new ArrayList<>(floors.size());
+        for (String number : new LinkedHashSet<>(numbers)) {
+            CardBalanceView floor = floors.get(number);
+            if (floor != null) {
+                balances.add(floor);
+            }
+        }
+        return balances;
+    }
+
+    /**
+     * Looks up the balance of one card on many dates: one probe for the floor of the earliest date and
+     * one ordered range scan up to the latest date, merged against the sorted dates.
+     *
+     * @param cardId The id of the credit card.
+     * @param dates  The dates to look up.
+     * @return One entry per requested date, in input order; 0.0 where the card has no record on or before the date.
+     */
+    @Transactional(readOnly = true)
+    public List<BalanceHistoryView> balancesAt(int cardId, List<LocalDate> dates) {
+        if (dates.isEmpty()) {
+            return List.of();
+        }
+        TreeMap<LocalDate, Double> balances = new TreeMap<>();
+        dates.forEach(date -> balances.put(date, 0.0));
+        LocalDate first = balances.firstKey();
+        LocalDate last = balances.lastKey();
+
+        BalanceHistoryView floor = balanceStore.findFloor(cardId, first);
+        LocalDate scanFrom = floor == null ? first : floor.getDate();
+        try (Stream<BalanceHistoryView> rows = balanceStore.stream(cardId, scanFrom, last)) {
+            Iterator<BalanceHistoryView> records = rows.iterator();
+            BalanceHistoryView current = null;
+            BalanceHistoryView next = records.hasNext() ? records.next() : null;
+            for (Map.Entry<LocalDate, Double> entry : balances.entrySet()) {
+                while (next != null && !next.getDate().isAfter(entry.getKey())) {
+                    current = next;
+                    next = records.hasNext() ? records.next() : null;
+                }
+                if (current != null) {
+                    entry.setValue(current.getBalance());
+                }
+            }
+        }
+
+        List<BalanceHistoryView> result = new ArrayList<>(dates.size());
+        for (LocalDate date : dates) {
+            result.add(new BalanceHistoryView(date, balances.get(date)));
+        }
+        return result;
+    }
+}
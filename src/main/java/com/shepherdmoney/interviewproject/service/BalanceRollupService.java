@@ -0,0 +1,341 @@
+package com.shepherdmoney.interviewproject.service;
+
+import com.shepherdmoney.interviewproject.metrics.BalanceMetrics;
+import com.shepherdmoney.interviewproject.model.BalanceHistory;
+import com.shepherdmoney.interviewproject.model.BalanceRollup;
+import com.shepherdmoney.interviewproject.model.CreditCard;
+import com.shepherdmoney.interviewproject.model.RollupGranularity;
+import com.shepherdmoney.interviewproject.repository.BalanceRollupRepository;
+import com.shepherdmoney.interviewproject.repository.CreditCardRepository;
+import com.shepherdmoney.interviewproject.vo.response.BalanceRollupCheck;
+import com.shepherdmoney.interviewproject.vo.response.BalanceRollupReport;
+import com.shepherdmoney.interviewproject.vo.response.BalanceRollupView;
+import com.shepherdmoney.interviewproject.vo.response.CardLatestBalance;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+/**
+ * Service maintaining monthly and weekly balance rollups per card and answering range aggregates from them.
+ * <p>
+ * Rollups are refreshed inside the balance update transaction. A backdated update shifts every later balance,
+ * so all periods from the one containing the record before the earliest changed date onwards are recomputed
+ * from the card's history in a single pass over its records; only periods whose totals changed are written.
+ * Reports read one row per period and carry the latest balance forward to today, so a range aggregate
+ * costs O(periods) however many balance records the range spans.
+ */
+@Service
+public class BalanceRollupService {
+
+    /**
+     * Tolerance when comparing stored totals against recomputed ones.
+     */
+    private static final double EPSILON = 1e-6;
+
+    private final BalanceRollupRepository balanceRollupRepository;
+
+    private final CreditCardRepository creditCardRepository;
+
+    private final BalanceStore balanceStore;
+
+    private final BalanceMetrics balanceMetrics;
+
+    public BalanceRollupService(BalanceRollupRepository balanceRollupRepository,
+                                CreditCardRepository creditCardRepository,
+                                BalanceStore balanceStore,
+                                BalanceMetrics balanceMetrics) {
+        this.balanceRollupRepository = balanceRollupRepository;
+        this.creditCardRepository = creditCardRepository;
+        this.balanceStore = balanceStore;
+        this.balanceMetrics = balanceMetrics;
+    }
+
+    /**
+     * Recomputes the rollups of a card from the period containing the record before the earliest changed date onwards.
+     * Must run in the transaction that changed the history, after {@link CreditCard#flushBalanceHistory()}.
+     *
+     * @param creditCard The persistent credit card with its history loaded.
+     * @param since      The earliest date whose balance may have changed.
+     * @return The number of rollup rows inserted, updated or deleted.
+     */
+    public int refresh(CreditCard creditCard, LocalDate since) {
+        // The record before the change now holds until the changed date, which may extend it into earlier periods
+        Iterator<BalanceHistory> previous = creditCard.getBalanceHistorySince(since.minusDays(1)).iterator();
+        LocalDate start = previous.hasNext() ? min(previous.next().getDate(), since) : since;
+        int rewritten = 0;
+        for (RollupGranularity granularity : RollupGranularity.values()) {
+            LocalDate from = granularity.periodStart(start);
+            List<BalanceRollup> stored = balanceRollupRepository.findByCard(creditCard.getId(), granularity,
+                    from, BalanceHistoryService.LATEST_DATE);
+            rewritten += reconcile(stored, compute(creditCard, granularity, from), null, true);
+        }
+        balanceMetrics.recordRollupPeriods(rewritten);
+        return rewritten;
+    }
+
+    /**
+     * Rebuilds the rollups of a card from its full balance history and compares them with the stored ones.
+     *
+     * @param cardNumber The credit card number.
+     * @param repair     Whether to overwrite the stored rollups that differ.
+     * @return The periods compared and the differences found, or null if the card does not exist.
+     */
+    @Transactional
+    public BalanceRollupCheck check(String cardNumber, boolean repair) {
+        CreditCard creditCard = creditCardRepository.findByNumber(cardNumber);
+        if (creditCard == null) {
+            return null;
+        }
+        balanceStore.loadHistory(creditCard);
+        Iterator<BalanceHistory> records = creditCard.getBalanceHistorySince(BalanceHistoryService.EARLIEST_DATE).iterator();
+        LocalDate firstDate = records.hasNext() ? records.next().getDate() : null;
+
+        int periodsChecked = 0;
+        List<String> mismatches = new ArrayList<>();
+        for (RollupGranularity granularity : RollupGranularity.values()) {
+            List<BalanceRollup> stored = balanceRollupRepository.findByCard(creditCard.getId(), granularity,
+                    BalanceHistoryService.EARLIEST_DATE, BalanceHistoryService.LATEST_DATE);
+            Map<LocalDate, BalanceRollup> expected = firstDate == null
+                    ? new TreeMap<>()
+                    : compute(creditCard, granularity, granularity.periodStart(firstDate));
+            Set<LocalDate> periods = new HashSet<>(expected.keySet());
+            stored.forEach(rollup -> periods.add(rollup.getPeriodStart()));
+            periodsChecked += periods.size();
+            reconcile(stored, expected, mismatches, repair);
+        }
+        return new BalanceRollupCheck(cardNumber, periodsChecked, mismatches, repair && !mismatches.isEmpty());
+    }
+
+    /**
+     * Aggregates the daily balances of a card over whole periods. The range is widened to period boundaries.
+     *
+     * @param cardId      The id of the credit card.
+     * @param granularity The period length.
+     * @param from        A date in the first period.
+     * @param to          A date in the last period.
+     * @return The per-period and overall aggregates; days before the first balance record are not covered.
+     */
+    @Transactional(readOnly = true)
+    public BalanceRollupReport cardReport(int cardId, RollupGranularity granularity, LocalDate from, LocalDate to) {
+        LocalDate first = granularity.periodStart(from);
+        LocalDate last = granularity.periodStart(to);
+        TreeMap<LocalDate, BalanceRollup> totals = cardTotals(
+                balanceRollupRepository.findByCard(cardId, granularity, first, last),
+                balanceStore.findLatest(cardId), granularity, first, last);
+
+        List<BalanceRollupView> periods = new ArrayList<>(totals.size());
+        for (BalanceRollup rollup : totals.values()) {
+            periods.add(view(rollup));
+        }
+        return report(granularity, first, granularity.periodEnd(last), periods);
+    }
+
+    /**
+     * Aggregates the combined daily balances of all cards of a user over whole periods.
+     * Per period, the days covered by any card are counted once and the average is the summed daily balance
+     * of all cards over those days, so a card opened mid-period adds nothing to the days before its first record.
+     * The minimum and maximum of the summed daily balance cannot be derived from per-card rollups and are left out.
+     *
+     * @param userId      The id of the user.
+     * @param granularity The period length.
+     * @param from        A date in the first period.
+     * @param to          A date in the last period.
+     * @return The per-period and overall aggregates.
+     */
+    @Transactional(readOnly = true)
+    public BalanceRollupReport userReport(int userId, RollupGranularity granularity, LocalDate from, LocalDate to) {
+        LocalDate first = granularity.periodStart(from);
+        LocalDate last = granularity.periodStart(to);
+        Map<Integer, List<BalanceRollup>> rollupsByCard = new HashMap<>();
+        for (BalanceRollup rollup : balanceRollupRepository.findByOwner(userId, granularity, first, last)) {
+            rollupsByCard.computeIfAbsent(rollup.getCreditCard().getId(), id -> new ArrayList<>()).add(rollup);
+        }
+
+        LocalDate today = LocalDate.now();
+        TreeMap<LocalDate, UserPeriod> combined = new TreeMap<>();
+        for (CardLatestBalance latest : balanceStore.findLatestByOwner(userId)) {
+            List<BalanceRollup> rollups = rollupsByCard.getOrDefault(latest.getCardId(), List.of());
+            for (BalanceRollup rollup : cardTotals(rollups, latest, granularity, first, last).values()) {
+                // A card covers every day from its first record to today, or to its latest record if that is later
+                LocalDate periodStart = rollup.getPeriodStart();
+                LocalDate end = min(granularity.periodEnd(periodStart), max(latest.getDate(), today));
+                int endDay = (int) ChronoUnit.DAYS.between(periodStart, end);
+                UserPeriod period = combined.computeIfAbsent(periodStart, start -> new UserPeriod());
+                period.coveredDays.set(endDay - rollup.getDays() + 1, endDay + 1);
+                period.balanceSum += rollup.getBalanceSum();
+                period.endBalance += rollup.getEndBalance();
+            }
+        }
+
+        List<BalanceRollupView> periods = new ArrayList<>(combined.size());
+        combined.forEach((periodStart, period) -> {
+            int days = period.coveredDays.cardinality();
+            periods.add(new BalanceRollupView(periodStart, granularity.periodEnd(periodStart), days,
+                    period.endBalance, period.balanceSum / days, null, null));
+        });
+        return report(granularity, first, granularity.periodEnd(last), periods);
+    }
+
+    /**
+     * Computes the rollups of every period from {@code from} onwards in one pass over the balance records.
+     * Each record's balance holds until the day before the next record; the last record covers only its own day.
+     */
+    private static TreeMap<LocalDate, BalanceRollup> compute(CreditCard creditCard, RollupGranularity granularity, LocalDate from) {
+        TreeMap<LocalDate, BalanceRollup> rollups = new TreeMap<>();
+        BalanceHistory previous = null;
+        for (BalanceHistory record : creditCard.getBalanceHistorySince(from)) {
+            if (previous != null) {
+                addRun(rollups, creditCard, granularity, previous.getBalance(),
+                        max(previous.getDate(), from), record.getDate().minusDays(1));
+            }
+            previous = record;
+        }
+        if (previous != null) {
+            addRun(rollups, creditCard, granularity, previous.getBalance(), max(previous.getDate(), from), previous.getDate());
+        }
+        return rollups;
+    }
+
+    private static void addRun(Map<LocalDate, BalanceRollup> rollups, CreditCard creditCard, RollupGranularity granularity,
+                               double balance, LocalDate start, LocalDate end) {
+        while (!start.isAfter(end)) {
+            LocalDate periodStart = granularity.periodStart(start);
+            LocalDate runEnd = min(end, granularity.periodEnd(periodStart));
+            rollups.computeIfAbsent(periodStart, period -> new BalanceRollup(creditCard, granularity, period))
+                    .addDays(balance, ChronoUnit.DAYS.between(start, runEnd) + 1);
+            start = runEnd.plusDays(1);
+        }
+    }
+
+    /**
+     * Brings stored rollups in line with recomputed ones, touching only the periods that differ.
+     *
+     * @param stored     The stored rollups of the recomputed range.
+     * @param expected   The recomputed rollups by period start; consumed by this call.
+     * @param mismatches Receives a description of every difference, or null if not needed.
+     * @param write      Whether to write the differences.
+     * @return The number of periods that differ.
+     */
+    private int reconcile(List<BalanceRollup> stored, Map<LocalDate, BalanceRollup> expected,
+                          List<String> mismatches, boolean write) {
+        int differing = 0;
+        List<BalanceRollup> obsolete = new ArrayList<>();
+        for (BalanceRollup rollup : stored) {
+            BalanceRollup fresh = expected.remove(rollup.getPeriodStart());
+            if (fresh == null) {
+                obsolete.add(rollup);
+            } else if (!sameTotals(rollup, fresh)) {
+                if (mismatches != null) {
+                    mismatches.add(describe(rollup) + " stored as " + totals(rollup) + ", expected " + totals(fresh));
+                }
+                if (write) {
+                    copyTotals(fresh, rollup);
+                }
+                differing++;
+            }
+        }
+        if (mismatches != null) {
+            obsolete.forEach(rollup -> mismatches.add(describe(rollup) + " stored but not covered by history"));
+            expected.values().forEach(rollup -> mismatches.add(describe(rollup) + " missing"));
+        }
+        if (write) {
+            balanceRollupRepository.deleteAll(obsolete);
+            balanceRollupRepository.saveAll(expected.values());
+        }
+        return differing + obsolete.size() + expected.size();
+    }
+
+    /**
+     * Turns stored rollups into detached per-period totals and extends them with the latest balance,
+     * which holds from the day after the last record up to today.
+     */
+    private static TreeMap<LocalDate, BalanceRollup> cardTotals(List<BalanceRollup> rollups, CardLatestBalance latest,
+                                                               RollupGranularity granularity, LocalDate first, LocalDate last) {
+        TreeMap<LocalDate, BalanceRollup> totals = new TreeMap<>();
+        for (BalanceRollup rollup : rollups) {
+            BalanceRollup copy = new BalanceRollup(null, granularity, rollup.getPeriodStart());
+            copy.addAll(rollup);
+            totals.put(rollup.getPeriodStart(), copy);
+        }
+        if (latest == null) {
+            return totals;
+        }
+        addRun(totals, null, granularity, latest.getBalance(), max(latest.getDate().plusDays(1), first),
+                min(granularity.periodEnd(last), LocalDate.now()));
+        return totals;
+    }
+
+    private static BalanceRollupView view(BalanceRollup rollup) {
+        return new BalanceRollupView(rollup.getPeriodStart(), rollup.getGranularity().periodEnd(rollup.getPeriodStart()),
+                rollup.getDays(), rollup.getEndBalance(), rollup.getBalanceSum() / rollup.getDays(),
+                rollup.getMinBalance(), rollup.getMaxBalance());
+    }
+
+    private static BalanceRollupReport report(RollupGranularity granularity, LocalDate from, LocalDate to,
+                                              List<BalanceRollupView> periods) {
+        int days = 0;
+        double weightedSum = 0;
+        Double endBalance = null;
+        Double minBalance = null;
+        Double maxBalance = null;
+        for (BalanceRollupView period : periods) {
+            days += period.getDays();
+            weightedSum += period.getAverageBalance() * period.getDays();
+            endBalance = period.getEndBalance();
+            if (period.getMinBalance() != null) {
+                minBalance = minBalance == null ? period.getMinBalance() : Math.min(minBalance, period.getMinBalance());
+                maxBalance = maxBalance == null ? period.getMaxBalance() : Math.max(maxBalance, period.getMaxBalance());
+            }
+        }
+        return new BalanceRollupReport(granularity, from, to, days, endBalance,
+                days > 0 ? weightedSum / days : null, minBalance, maxBalance, periods);
+    }
+
+    private static boolean sameTotals(BalanceRollup a, BalanceRollup b) {
+        return a.getDays() == b.getDays()
+                && Math.abs(a.getBalanceSum() - b.getBalanceSum()) <= EPSILON * Math.max(1, Math.abs(b.getBalanceSum()))
+                && Math.abs(a.getMinBalance() - b.getMinBalance()) <= EPSILON
+                && Math.abs(a.getMaxBalance() - b.getMaxBalance()) <= EPSILON
+                && Math.abs(a.getEndBalance() - b.getEndBalance()) <= EPSILON;
+    }
+
+    private static void copyTotals(BalanceRollup from, BalanceRollup to) {
+        to.setDays(from.getDays());
+        to.setBalanceSum(from.getBalanceSum());
+        to.setMinBalance(from.getMinBalance());
+        to.setMaxBalance(from.getMaxBalance());
+        to.setEndBalance(from.getEndBalance());
+    }
+
+    private static String describe(BalanceRollup rollup) {
+        return rollup.getGranularity() + " " + rollup.getPeriodStart();
+    }
+
+    private static String totals(BalanceRollup rollup) {
+        return "days=" + rollup.getDays() + " sum=" + rollup.getBalanceSum() + " min=" + rollup.getMinBalance()
+                + " max=" + rollup.getMaxBalance() + " end=" + rollup.getEndBalance();
+    }
+
+    private static LocalDate min(LocalDate a, LocalDate b) {
+        return a.isBefore(b) ? a : b;
+    }
+
+    private static LocalDate max(LocalDate a, LocalDate b) {
+        return a.isAfter(b) ? a : b;
+    }
+
+    /**
+     * Totals of all cards of a user in one period, with the days of the period covered by at least one card.
+     */
+    private static final class UserPeriod {
+
+        private final BitSet coveredDays = new BitSet();
+
+        private double balanceSum;
+
+        private double endBalance;
+    }
+}
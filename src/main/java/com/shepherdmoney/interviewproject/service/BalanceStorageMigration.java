@@ -0,0 +1,132 @@
+package com.shepherdmoney.interviewproject.service;
+
+import com.shepherdmoney.interviewproject.config.BalanceStoreConfig;
+import com.shepherdmoney.interviewproject.model.BalanceHistory;
+import com.shepherdmoney.interviewproject.model.BalanceSegmentCodec;
+import com.shepherdmoney.interviewproject.model.CreditCard;
+import com.shepherdmoney.interviewproject.repository.BalanceHistoryRepository;
+import com.shepherdmoney.interviewproject.repository.BalanceSegmentRepository;
+import com.shepherdmoney.interviewproject.repository.CreditCardRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Converts balance history rows into monthly segments, one transaction per chunk of cards.
+ * Rows are merged into any segments a card already has, replacing records of the same date, and deleted once
+ * their segments are written, so an interrupted migration simply continues with the cards that still have rows.
+ * Cards whose balances had to be rounded to whole cents get their rollups refreshed.
+ * <p>
+ * When balances are stored as segments, the migration runs on startup before the application serves requests.
+ */
+@Service
+public class BalanceStorageMigration implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(BalanceStorageMigration.class);
+
+    private final CreditCardRepository creditCardRepository;
+
+    private final BalanceHistoryRepository balanceHistoryRepository;
+
+    private final BalanceRollupService balanceRollupService;
+
+    private final SegmentBalanceStore segmentBalanceStore;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final boolean migrateOnStartup;
+
+    private final int chunkSize;
+
+    public BalanceStorageMigration(CreditCardRepository creditCardRepository,
+                                   BalanceHistoryRepository balanceHistoryRepository,
+                                   BalanceSegmentRepository balanceSegmentRepository,
+                                   BalanceRollupService balanceRollupService,
+                                   PlatformTransactionManager transactionManager,
+                                   @Value("${app.balance.storage.mode:" + BalanceStoreConfig.ROWS + "}") String storage,
+                                   @Value("${app.balance.storage.migrate-on-startup:true}") boolean migrateOnStartup,
+                                   @Value("${app.balance.storage.migration-chunk-size:100}") int chunkSize) {
+        this.creditCardRepository = creditCardRepository;
+        this.balanceHistoryRepository = balanceHistoryRepository;
+        this.balanceRollupService = balanceRollupService;
+        this.segmentBalanceStore = new SegmentBalanceStore(creditCardRepository, balanceSegmentRepository);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.migrateOnStartup = migrateOnStartup && BalanceStoreConfig.SEGMENTS.equals(storage);
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    /**
+     * Runs after every singleton is created but before the web server starts,
+     * so no request can read a card whose history is still in rows.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (migrateOnStartup) {
+            migrateAll();
+        }
+    }
+
+    /**
+     * Converts the balance history rows of every card.
+     *
+     * @return The number of rows converted.
+     */
+    public long migrateAll() {
+        long migrated = 0;
+        int cards = 0;
+        List<Integer> cardIds;
+        while (!(cardIds = balanceHistoryRepository.findCardIds(PageRequest.of(0, chunkSize))).isEmpty()) {
+            migrated += migrate(cardIds);
+            cards += cardIds.size();
+            log.debug("Converted balance history of {} credit cards into segments", cards);
+        }
+        if (cards > 0) {
+            log.info("Converted {} balance history rows of {} credit cards into segments", migrated, cards);
+        }
+        return migrated;
+    }
+
+    /**
+     * Converts the balance history rows of the given cards in one transaction.
+     *
+     * @param cardIds The ids of the credit cards.
+     * @return The number of rows converted.
+     */
+    public int migrate(Collection<Integer> cardIds) {
+        return transactionTemplate.execute(status -> {
+            int migrated = 0;
+            for (CreditCard creditCard : creditCardRepository.findAllWithHistoryByIdIn(cardIds)) {
+                List<BalanceHistory> rows = new ArrayList<>(creditCard.getBalanceHistory());
+                if (rows.isEmpty()) {
+                    continue;
+                }
+                segmentBalanceStore.loadHistory(creditCard);
+                LocalDate earliest = rows.get(0).getDate();
+                boolean rounded = false;
+                for (BalanceHistory row : rows) {
+                    creditCard.insertBalance(row.getDate(), row.getBalance());
+                    earliest = row.getDate().isBefore(earliest) ? row.getDate() : earliest;
+                    rounded |= BalanceSegmentCodec.round(row.getBalance()) != row.getBalance();
+                }
+                creditCard.flushBalanceHistory();
+                segmentBalanceStore.save(creditCard, earliest);
+                if (rounded) {
+                    balanceRollupService.refresh(creditCard, earliest);
+                }
+                migrated += rows.size();
+            }
+            balanceHistoryRepository.deleteByCardIdIn(cardIds);
+            return migrated;
+        });
+    }
+}
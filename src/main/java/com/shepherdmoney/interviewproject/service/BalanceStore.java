@@ -0,0 +1,96 @@
+package com.shepherdmoney.interviewproject.service;
+
+import com.shepherdmoney.interviewproject.model.CreditCard;
+import com.shepherdmoney.interviewproject.vo.response.BalanceHistoryView;
+import com.shepherdmoney.interviewproject.vo.response.CardBalanceView;
+import com.shepherdmoney.interviewproject.vo.response.CardLatestBalance;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Where the balance records of credit cards are kept: one row per record, or packed monthly segments,
+ * selected with {@code app.balance.storage.mode}, with records older than the archiving horizon moved to the
+ * balance archive. Every read and write of balance history goes through this interface,
+ * so the endpoints behave the same with either. Writes and streams must run inside a transaction.
+ */
+public interface BalanceStore {
+
+    /**
+     * Loads the cards with the given numbers with their stored balance history, ready to be updated
+     * once {@link #prepareUpdate} has brought back whatever else the update needs.
+     *
+     * @param numbers The credit card numbers; numbers without a card are left out.
+     * @return The cards in no particular order.
+     */
+    List<CreditCard> findCardsWithHistory(Collection<String> numbers);
+
+    /**
+     * Loads the full balance history of a persistent card.
+     *
+     * @return The number of balance records loaded.
+     */
+    int loadHistory(CreditCard creditCard);
+
+    /**
+     * Persists the balance history of a card loaded by this store, after {@link CreditCard#flushBalanceHistory()}.
+     * Records are rounded in place to what the store can hold, so rollups computed afterwards match later reads.
+     *
+     * @param since The earliest date whose balance may have changed.
+     */
+    void save(CreditCard creditCard, LocalDate since);
+
+    /**
+     * Makes a card loaded with {@link #findCardsWithHistory} hold every record that changing its balance from the date
+     * reads, shifts or recomputes rollups from. Must run in the transaction of the update, before the first change.
+     *
+     * @param since The earliest date the update changes.
+     */
+    void prepareUpdate(CreditCard creditCard, LocalDate since);
+
+    /**
+     * @return The latest record of a card on or before the date, or null if there is none.
+     */
+    BalanceHistoryView findFloor(int cardId, LocalDate date);
+
+    /**
+     * @return The latest record on or before the date of each given card that has one, in no particular order.
+     */
+    List<CardBalanceView> findFloors(Collection<String> numbers, LocalDate date);
+
+    /**
+     * Streams the records of a card within a date range in chronological order. Must be closed after use.
+     */
+    Stream<BalanceHistoryView> stream(int cardId, LocalDate from, LocalDate to);
+
+    /**
+     * @return The latest record of a card, or null if it has no balance history.
+     */
+    CardLatestBalance findLatest(int cardId);
+
+    /**
+     * @return The latest record of every card of a user that has any balance history.
+     */
+    List<CardLatestBalance> findLatestByOwner(int ownerId);
+
+    /**
+     * @return The number of stored rows holding the balance history of a user's cards.
+     */
+    long countRowsByOwner(int ownerId);
+
+    /**
+     * Deletes the balance history of all cards of a user with bulk statements.
+     *
+     * @return The number of deleted rows.
+     */
+    int deleteByOwner(int ownerId);
+
+    /**
+     * Deletes up to a limit of rows holding the balance history of the given cards.
+     *
+     * @return The number of deleted rows; 0 once nothing is left.
+     */
+    int deleteChunk(Collection<Integer> cardIds, int limit);
+}
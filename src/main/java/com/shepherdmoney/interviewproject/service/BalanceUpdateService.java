@@ -0,0 +1,301 @@
+package com.shepherdmoney.interviewproject.service;
+
+import com.shepherdmoney.interviewproject.event.BalanceUpdatedEvent;
+import com.shepherdmoney.interviewproject.metrics.BalanceMetrics;
+import com.shepherdmoney.interviewproject.model.BalanceRollup;
+import com.shepherdmoney.interviewproject.model.BalanceSegment;
+import com.shepherdmoney.interviewproject.model.CreditCard;
+import com.shepherdmoney.interviewproject.vo.request.UpdateBalancePayload;
+import com.shepherdmoney.interviewproject.vo.response.BalanceUpdateResult;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import org.hibernate.cache.spi.TimestampsCache;
+import org.hibernate.cache.spi.access.EntityDataAccess;
+import org.hibernate.cache.spi.access.SoftLock;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.exception.ConstraintViolationException;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Service applying balance updates to credit cards as one set-based batch.
+ * Payloads are grouped by card number, all cards are resolved with their history from the {@link BalanceStore}
+ * in a single IN query per chunk, and every change is written in one transaction so Hibernate can flush the
+ * balance rows with JDBC batching.
+ * <p>
+ * Concurrent batches touching the same card are kept correct by optimistic versioning: the batch that
+ * commits second fails and is retried from scratch against fresh state, up to a bounded number of attempts.
+ * For hot cards an optional in-process striped lock serializes batches per card before they hit the database,
+ * while batches on different cards still run fully in parallel.
+ * <p>
+ * The card's balance rollups are refreshed in the same transaction, so they never disagree with committed history.
+ * Updated cards are kept out of the second-level cache until the transaction completes.
+ * <p>
+ * With the {@link BalanceLedger} enabled, updates are appended to each card's ledger instead, without loading
+ * or rewriting its history; the card row still carries the version check, so concurrent appends retry the same way.
+ */
+@Service
+public class BalanceUpdateService {
+
+    /**
+     * Upper bound on card numbers bound into a single IN clause.
+     */
+    static final int LOOKUP_CHUNK_SIZE = 1000;
+
+    /**
+     * Unique keys two writers on the same card can both try to insert, when both create the same rollup period
+     * or balance segment month.
+     */
+    private static final List<String> CONCURRENT_INSERT_KEYS = List.of(BalanceRollup.PERIOD_INDEX, BalanceSegment.MONTH_INDEX);
+
+    private final BalanceStore balanceStore;
+
+    private final BalanceMetrics balanceMetrics;
+
+    private final EntityManager entityManager;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final BalanceRollupService balanceRollupService;
+
+    private final BalanceLedger balanceLedger;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final int maxAttempts;
+
+    private final StripedLock cardLocks;
+
+    public BalanceUpdateService(BalanceStore balanceStore,
+                                BalanceMetrics balanceMetrics,
+                                EntityManager entityManager,
+                                ApplicationEventPublisher eventPublisher,
+                                BalanceRollupService balanceRollupService,
+                                BalanceLedger balanceLedger,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${app.balance.max-attempts:5}") int maxAttempts,
+                                @Value("${app.balance.card-locks.enabled:false}") boolean cardLocksEnabled,
+                                @Value("${app.balance.card-locks.stripes:256}") int cardLockStripes) {
+        this.balanceStore = balanceStore;
+        this.balanceMetrics = balanceMetrics;
+        this.entityManager = entityManager;
+        this.eventPublisher = eventPublisher;
+        this.balanceRollupService = balanceRollupService;
+        this.balanceLedger = balanceLedger != null && balanceLedger.isEnabled() ? balanceLedger : null;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.cardLocks = cardLocksEnabled ? new StripedLock(cardLockStripes) : null;
+    }
+
+    /**
+     * Applies the updates card by card, keeping the input order of updates within each card.
+     * An unknown or invalid card does not stop the remaining cards from being updated.
+     * When called inside an existing transaction the batch joins it and is not retried here.
+     *
+     * @param payloads The balance updates to apply.
+     * @return One result per distinct card number, in order of first appearance.
+     * @throws ConcurrencyFailureException if the batch still conflicts after the last attempt.
+     */
+    public List<BalanceUpdateResult> applyUpdates(List<UpdateBalancePayload> payloads) {
+        balanceMetrics.recordBatchSize(payloads.size());
+        Map<String, List<UpdateBalancePayload>> updatesByCard = new LinkedHashMap<>();
+        for (UpdateBalancePayload payload : payloads) {
+            updatesByCard.computeIfAbsent(payload.getCreditCardNumber(), number -> new ArrayList<>()).add(payload);
+        }
+
+        if (cardLocks == null) {
+            return applyWithRetry(updatesByCard);
+        }
+        StripedLock.Held held = cardLocks.lockAll(updatesByCard.keySet());
+        try {
+            return applyWithRetry(updatesByCard);
+        } finally {
+            held.close();
+        }
+    }
+
+    private List<BalanceUpdateResult> applyWithRetry(Map<String, List<UpdateBalancePayload>> updatesByCard) {
+        // Retrying inside a caller's transaction would reuse a session that is already rollback-only
+        int attempts = TransactionSynchronizationManager.isActualTransactionActive() ? 1 : maxAttempts;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> applyInTransaction(updatesByCard));
+            } catch (ConcurrencyFailureException e) {
+                if (attempt >= attempts) {
+                    throw e;
+                }
+                balanceMetrics.recordUpdateRetry();
+                backOff(attempt, e);
+            }
+        }
+    }
+
+    private List<BalanceUpdateResult> applyInTransaction(Map<String, List<UpdateBalancePayload>> updatesByCard) {
+        Map<String, CreditCard> cards = findCards(updatesByCard.keySet());
+
+        List<BalanceUpdateResult> results = new ArrayList<>(updatesByCard.size());
+        try {
+            for (Map.Entry<String, List<UpdateBalancePayload>> entry : updatesByCard.entrySet()) {
+                results.add(applyCardUpdates(entry.getKey(), cards.get(entry.getKey()), entry.getValue()));
+            }
+            entityManager.flush();
+        } catch (ConstraintViolationException | DataIntegrityViolationException e) {
+            if (!isConcurrentInsert(e)) {
+                throw e;
+            }
+            // A writer racing on the same card can insert the same rollup period first; that fails on flush,
+            // before the version check at commit would, and is the same conflict
+            throw new ConcurrencyFailureException("Balance rollups were written concurrently.", e);
+        }
+        if (balanceLedger == null) {
+            invalidateCachedCards(cards.values());
+        }
+        List<String> updated = results.stream()
+                .filter(result -> result.getStatus() == BalanceUpdateResult.Status.UPDATED)
+                .map(BalanceUpdateResult::getCreditCardNumber)
+                .toList();
+        if (!updated.isEmpty()) {
+            // Delivered to transactional listeners only once this attempt commits
+            eventPublisher.publishEvent(new BalanceUpdatedEvent(updated));
+        }
+        return results;
+    }
+
+    /**
+     * Does for the second-level cache what a regular versioned UPDATE of the cards would do: their cached entries
+     * are soft-locked and cached queries over the card table invalidated until the transaction completes.
+     * The forced version increment is a plain UPDATE that Hibernate does not route through the cache,
+     * so without this cached cards and card query results would keep the old version.
+     */
+    private void invalidateCachedCards(Collection<CreditCard> creditCards) {
+        SessionImplementor session = entityManager.unwrap(SessionImplementor.class);
+        SessionFactoryImplementor factory = session.getFactory();
+        EntityPersister persister = factory.getMappingMetamodel().getEntityDescriptor(CreditCard.class);
+        if (creditCards.isEmpty() || !persister.canWriteToCache()) {
+            return;
+        }
+        EntityDataAccess cacheAccess = persister.getCacheAccessStrategy();
+        Map<Object, SoftLock> locks = new HashMap<>();
+        for (CreditCard creditCard : creditCards) {
+            Object key = cacheAccess.generateCacheKey(creditCard.getId(), persister, factory, session.getTenantIdentifier());
+            locks.put(key, cacheAccess.lockItem(session, key, creditCard.getVersion()));
+        }
+        Serializable[] querySpaces = persister.getQuerySpaces();
+        String[] tables = Arrays.copyOf(querySpaces, querySpaces.length, String[].class);
+        TimestampsCache timestamps = factory.getCache().getTimestampsCache();
+        timestamps.preInvalidate(tables, session);
+        session.getActionQueue().registerProcess((success, completedSession) -> {
+            locks.forEach((key, lock) -> cacheAccess.unlockItem(completedSession, key, lock));
+            timestamps.invalidate(tables, completedSession);
+        });
+    }
+
+    /**
+     * Tells whether a constraint violation is on one of the keys a concurrent writer of the same card can hit first.
+     * Any other violation is a real integrity error and must not be retried.
+     */
+    static boolean isConcurrentInsert(RuntimeException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation) {
+                if (violation.getConstraintName() == null) {
+                    return false;
+                }
+                // Databases decorate the index name, e.g. H2 reports it with its schema, a suffix and the key
+                String constraintName = violation.getConstraintName().toLowerCase(Locale.ROOT);
+                return CONCURRENT_INSERT_KEYS.stream().anyMatch(constraintName::contains);
+            }
+        }
+        return false;
+    }
+
+    private static void backOff(int attempt, ConcurrencyFailureException cause) {
+        // Randomized so writers that collided once do not collide again on the next attempt
+        long maxDelay = 5L << Math.min(attempt, 6);
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(1, maxDelay + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw cause;
+        }
+    }
+
+    private BalanceUpdateResult applyCardUpdates(String number, CreditCard creditCard, List<UpdateBalancePayload> updates) {
+        if (creditCard == null) {
+            return new BalanceUpdateResult(number, BalanceUpdateResult.Status.NOT_FOUND, 0,
+                    "Credit card with number " + number + " does not exist.");
+        }
+        for (UpdateBalancePayload update : updates) {
+            if (update.getBalanceDate() == null) {
+                return new BalanceUpdateResult(number, BalanceUpdateResult.Status.INVALID, 0,
+                        "Balance date is missing for credit card with number " + number + ".");
+            }
+        }
+
+        if (balanceLedger != null) {
+            balanceLedger.append(creditCard, updates);
+            return new BalanceUpdateResult(number, BalanceUpdateResult.Status.UPDATED, updates.size(), null);
+        }
+
+        // Balance rows change without touching the card itself, so bump its version explicitly;
+        // a concurrent writer of the same card then fails on commit instead of overwriting this one
+        entityManager.lock(creditCard, LockModeType.OPTIMISTIC_FORCE_INCREMENT);
+        LocalDate today = LocalDate.now();
+        LocalDate earliest = updates.get(0).getBalanceDate();
+        for (UpdateBalancePayload update : updates) {
+            if (update.getBalanceDate().isBefore(earliest)) {
+                earliest = update.getBalanceDate();
+            }
+        }
+        balanceStore.prepareUpdate(creditCard, earliest);
+        for (UpdateBalancePayload update : updates) {
+            if (creditCard.propagateBalance(update.getBalanceDate(), update.getBalanceAmount()) != 0.0) {
+                balanceMetrics.recordPropagationDays(Math.max(0, ChronoUnit.DAYS.between(update.getBalanceDate(), today)));
+            }
+        }
+        balanceMetrics.recordPropagationRows(creditCard.flushBalanceHistory());
+        balanceStore.save(creditCard, earliest);
+        balanceRollupService.refresh(creditCard, earliest);
+        return new BalanceUpdateResult(number, BalanceUpdateResult.Status.UPDATED, updates.size(), null);
+    }
+
+    private Map<String, CreditCard> findCards(Collection<String> numbers) {
+        Map<String, CreditCard> cards = new HashMap<>();
+        List<String> chunk = new ArrayList<>(Math.min(numbers.size(), LOOKUP_CHUNK_SIZE));
+        for (String number : numbers) {
+            chunk.add(number);
+            if (chunk.size() == LOOKUP_CHUNK_SIZE) {
+                addCards(cards, chunk);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            addCards(cards, chunk);
+        }
+        return cards;
+    }
+
+    private void addCards(Map<String, CreditCard> cards, List<String> numbers) {
+        if (balanceLedger != null) {
+            balanceLedger.findCards(numbers).forEach(creditCard -> cards.put(creditCard.getNumber(), creditCard));
+            return;
+        }
+        for (CreditCard creditCard : balanceStore.findCardsWithHistory(numbers)) {
+            balanceMetrics.recordHistoryLoaded(creditCard.getBalanceHistory().size());
+            cards.put(creditCard.getNumber(), creditCard);
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.shepherdmoney.interviewproject.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Append-only log of the balance updates accepted by the write-behind buffer, split into numbered segment files.
+ * Each line is {@code balanceDate,balanceAmount,creditCardNumber}; the number comes last so it may contain commas.
+ * A flush rotates to a new segment and deletes the older ones once everything in them is committed,
+ * so replaying all segments in order rebuilds exactly the updates that may not have reached the database.
+ * <p>
+ * Not thread-safe; the buffer calls it under its own lock so log order always matches buffer order.
+ */
+class BalanceWriteAheadLog implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(BalanceWriteAheadLog.class);
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("balance-updates-(\\d+)\\.log");
+
+    private final Path directory;
+
+    private final boolean sync;
+
+    private long segment;
+
+    private FileChannel channel;
+
+    /**
+     * @param directory Where the segment files live; created if missing.
+     * @param sync      Whether every append is forced to disk before it returns.
+     */
+    BalanceWriteAheadLog(Path directory, boolean sync) throws IOException {
+        this.directory = directory;
+        this.sync = sync;
+        Files.createDirectories(directory);
+        List<Long> segments = segments();
+        segment = segments.isEmpty() ? 0 : segments.get(segments.size() - 1);
+    }
+
+    /**
+     * Reads every segment oldest first. Call before the first append.
+     *
+     * @param consumer Receives each logged update in log order.
+     */
+    void replay(EntryConsumer consumer) throws IOException {
+        for (long number : segments()) {
+            Path path = segmentPath(number);
+            try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                String line;
+                int lineNumber = 0;
+                while ((line = reader.readLine()) != null) {
+                    lineNumber++;
+                    int firstComma = line.indexOf(',');
+                    int secondComma = firstComma < 0 ? -1 : line.indexOf(',', firstComma + 1);
+                    try {
+                        if (secondComma < 0) {
+                            throw new IllegalArgumentException("missing fields");
+                        }
+                        consumer.accept(line.substring(secondComma + 1), LocalDate.parse(line.substring(0, firstComma)),
+                                Double.parseDouble(line.substring(firstComma + 1, secondComma)));
+                    } catch (IllegalArgumentException | DateTimeParseException e) {
+                        // Only the tail of the last segment can be torn by a crash mid-append
+                        log.warn("Skipping unreadable line {} of {}", lineNumber, path);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Appends updates to the current segment.
+     */
+    void append(List<Entry> entries) throws IOException {
+        StringBuilder text = new StringBuilder(entries.size() * 48);
+        for (Entry entry : entries) {
+            text.append(entry.date()).append(',').append(entry.amount()).append(',').append(entry.creditCardNumber()).append('\n');
+        }
+        FileChannel current = channel();
+        ByteBuffer bytes = StandardCharsets.UTF_8.encode(text.toString());
+        while (bytes.hasRemaining()) {
+            current.write(bytes);
+        }
+        if (sync) {
+            current.force(false);
+        }
+    }
+
+    /**
+     * Closes the current segment and starts a new one.
+     *
+     * @return The number of the closed segment; it and all older segments can be deleted once their updates commit.
+     */
+    long rotate() throws IOException {
+        closeChannel();
+        return segment++;
+    }
+
+    /**
+     * Deletes a segment and every older one.
+     */
+    void deleteUpTo(long last) throws IOException {
+        for (long number : segments()) {
+            if (number <= last) {
+                Files.deleteIfExists(segmentPath(number));
+            }
+        }
+    }
+
+    /**
+     * Replaces the whole log with a single segment holding the given updates, in map order.
+     * Used when updates go back to the buffer after a failed flush, so the log keeps their order relative to later ones.
+     *
+     * @param updates Buffered balances by card number and date.
+     */
+    void rewrite(Map<String, ? extends Map<LocalDate, Double>> updates) throws IOException {
+        long closed = rotate();
+        List<Entry> entries = new ArrayList<>();
+        updates.forEach((number, balances) ->
+                balances.forEach((date, amount) -> entries.add(new Entry(number, date, amount))));
+        if (!entries.isEmpty()) {
+            append(entries);
+        }
+        // Once the new segment is on disk the older ones are redundant
+        channel().force(true);
+        deleteUpTo(closed);
+    }
+
+    @Override
+    public void close() throws IOException {
+        closeChannel();
+    }
+
+    private FileChannel channel() throws IOException {
+        if (channel == null) {
+            channel = FileChannel.open(segmentPath(segment),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        return channel;
+    }
+
+    private void closeChannel() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private Path segmentPath(long number) {
+        return directory.resolve("balance-updates-" + number + ".log");
+    }
+
+    private List<Long> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> SEGMENT_NAME.matcher(path.getFileName().toString()))
+                    .filter(Matcher::matches)
+                    .map(matcher -> Long.parseLong(matcher.group(1)))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    record Entry(String creditCardNumber, LocalDate date, double amount) {
+    }
+
+    interface EntryConsumer {
+        void accept(String creditCardNumber, LocalDate date, double amount);
+    }
+}
@@ -0,0 +1,455 @@
+package com.shepherdmoney.interviewproject.service;
+
+import com.shepherdmoney.interviewproject.config.ThreadConfig;
+import com.shepherdmoney.interviewproject.metrics.BalanceMetrics;
+import com.shepherdmoney.interviewproject.vo.request.UpdateBalancePayload;
+import com.shepherdmoney.interviewproject.vo.response.BalanceUpdateResult;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Optional write-behind mode for balance updates. Accepted updates are logged to a write-ahead file and held
+ * in memory keyed by (card, date), where a later update to the same key replaces the earlier one, as if only the
+ * last update for each (card, date) had been sent. The buffer is written through {@link BalanceUpdateService}
+ * once it reaches a size threshold or after a fixed interval, so each card gets one propagation pass per flush.
+ * <p>
+ * Reads of a card with buffered updates flush the buffer first, and so does a read while a flush is in flight,
+ * so reads always see accepted updates. Updates applied past the buffer, by asynchronous ingestion and streamed
+ * feeds, go through {@link #applyNow(List)} so they never land before buffered updates of the same card.
+ * On shutdown the buffer is flushed until a deadline; whatever is left,
+ * and everything after a crash, is replayed from the write-ahead file on the next start. A crash between a flush
+ * committing and its log segments being deleted replays that flush once more.
+ */
+@Service
+public class BalanceWriteBehindBuffer {
+
+    private static final Logger log = LoggerFactory.getLogger(BalanceWriteBehindBuffer.class);
+
+    private final BalanceUpdateService balanceUpdateService;
+
+    private final CardNumberCache cardNumberCache;
+
+    private final BalanceMetrics balanceMetrics;
+
+    private final boolean enabled;
+
+    private final int flushEntries;
+
+    private final int capacity;
+
+    private final Duration shutdownTimeout;
+
+    private final BalanceWriteAheadLog writeAheadLog;
+
+    private final ScheduledExecutorService flusher;
+
+    /**
+     * Guards the buffered balances and the write-ahead log.
+     */
+    private final ReentrantLock bufferLock = new ReentrantLock();
+
+    /**
+     * Write-locked for a whole flush, so a read can wait for updates that have left the buffer but not yet committed.
+     * Read-locked while updates are applied past the buffer, so no flush can write older balances over them.
+     */
+    private final ReentrantReadWriteLock flushLock = new ReentrantReadWriteLock();
+
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+
+    private Map<String, LinkedHashMap<LocalDate, Double>> pending = new HashMap<>();
+
+    private int pendingEntries;
+
+    public BalanceWriteBehindBuffer(BalanceUpdateService balanceUpdateService,
+                                    CardNumberCache cardNumberCache,
+                                    BalanceMetrics balanceMetrics,
+                                    @Value("${app.balance.write-behind.enabled:false}") boolean enabled,
+                                    @Value("${app.balance.write-behind.flush-entries:5000}") int flushEntries,
+                                    @Value("${app.balance.write-behind.capacity:50000}") int capacity,
+                                    @Value("${app.balance.write-behind.flush-interval:1s}") Duration flushInterval,
+                                    @Value("${app.balance.write-behind.shutdown-timeout:10s}") Duration shutdownTimeout,
+                                    @Value("${app.balance.write-behind.wal-dir:${user.home}/balance-wal}") Path walDirectory,
+                                    @Value("${app.balance.write-behind.wal-sync:true}") boolean walSync,
+                                    @Value("${app.threads.mode:" + ThreadConfig.PLATFORM + "}") String threadMode) {
+        this.balanceUpdateService = balanceUpdateService;
+        this.cardNumberCache = cardNumberCache;
+        this.balanceMetrics = balanceMetrics;
+        this.enabled = enabled;
+        this.flushEntries = Math.max(1, flushEntries);
+        this.capacity = Math.max(this.flushEntries, capacity);
+        this.shutdownTimeout = shutdownTimeout;
+        if (!enabled) {
+            this.writeAheadLog = null;
+            this.flusher = null;
+            return;
+        }
+        try {
+            this.writeAheadLog = new BalanceWriteAheadLog(walDirectory, walSync);
+            writeAheadLog.replay(this::buffer);
+            writeAheadLog.rewrite(pending);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open the balance write-ahead log in " + walDirectory, e);
+        }
+        if (pendingEntries > 0) {
+            log.info("Recovered {} buffered balance updates from {}", pendingEntries, walDirectory);
+        }
+        this.flusher = Executors.newSingleThreadScheduledExecutor(ThreadConfig.threadFactory(threadMode, "balance-write-behind"));
+        long intervalMillis = flushInterval.toMillis();
+        flusher.scheduleWithFixedDelay(this::flushQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return Whether updates should go through {@link #accept(List)} instead of being applied directly.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Logs and buffers balance updates. Unknown cards and payloads without a date are rejected up front
+     * with the same results {@link BalanceUpdateService#applyUpdates(List)} would report.
+     *
+     * @param payloads The balance updates to accept.
+     * @return One result per distinct card number, in order of first appearance; accepted cards are BUFFERED.
+     * @throws IngestionRejectedException if the buffer has no room for the updates.
+     */
+    public List<BalanceUpdateResult> accept(List<UpdateBalancePayload> payloads) {
+        if (!enabled) {
+            throw new IllegalStateException("Write-behind buffering is disabled.");
+        }
+        Map<String, List<UpdateBalancePayload>> updatesByCard = new LinkedHashMap<>();
+        for (UpdateBalancePayload payload : payloads) {
+            updatesByCard.computeIfAbsent(payload.getCreditCardNumber(), number -> new ArrayList<>()).add(payload);
+        }
+        List<BalanceUpdateResult> results = new ArrayList<>(updatesByCard.size());
+        List<BalanceWriteAheadLog.Entry> accepted = new ArrayList<>(payloads.size());
+        for (Map.Entry<String, List<UpdateBalancePayload>> entry : updatesByCard.entrySet()) {
+            BalanceUpdateResult result = validate(entry.getKey(), entry.getValue());
+            if (result == null) {
+                for (UpdateBalancePayload update : entry.getValue()) {
+                    accepted.add(new BalanceWriteAheadLog.Entry(entry.getKey(), update.getBalanceDate(), update.getBalanceAmount()));
+                }
+                result = new BalanceUpdateResult(entry.getKey(), BalanceUpdateResult.Status.BUFFERED, entry.getValue().size(), null);
+            }
+            results.add(result);
+        }
+        if (accepted.isEmpty()) {
+            return results;
+        }
+
+        int buffered;
+        bufferLock.lock();
+        try {
+            if (pendingEntries + accepted.size() > capacity) {
+                throw new IngestionRejectedException("Balance write-behind buffer is full, retry later.");
+            }
+            // Logged before it becomes visible, so nothing readable can be lost
+            writeAheadLog.append(accepted);
+            int coalesced = 0;
+            for (BalanceWriteAheadLog.Entry entry : accepted) {
+                if (!buffer(entry.creditCardNumber(), entry.date(), entry.amount())) {
+                    coalesced++;
+                }
+            }
+            balanceMetrics.recordWriteBehindCoalesced(coalesced);
+            buffered = pendingEntries;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot append to the balance write-ahead log.", e);
+        } finally {
+            bufferLock.unlock();
+        }
+        if (buffered >= flushEntries && flushRequested.compareAndSet(false, true)) {
+            flusher.execute(this::flushQuietly);
+        }
+        return results;
+    }
+
+    /**
+     * Applies balance updates at once instead of buffering them. Buffered updates of the same cards were accepted
+     * first, so they are flushed before these are applied, and no flush runs until these have committed.
+     * Without write-behind this is {@link BalanceUpdateService#applyUpdates(List)}.
+     *
+     * @param payloads The balance updates to apply.
+     * @return One result per distinct card number, in order of first appearance.
+     * @throws ConcurrencyFailureException if buffered updates of the same cards could not be flushed first,
+     *                                     or the batch still conflicts after the last attempt.
+     */
+    public List<BalanceUpdateResult> applyNow(List<UpdateBalancePayload> payloads) {
+        if (!enabled) {
+            return balanceUpdateService.applyUpdates(payloads);
+        }
+        Set<String> numbers = new HashSet<>();
+        payloads.forEach(payload -> numbers.add(payload.getCreditCardNumber()));
+        Lock applying = flushLock.readLock();
+        applying.lock();
+        try {
+            if (hasPending(numbers)) {
+                applying.unlock();
+                boolean flushed;
+                try {
+                    flushed = flush(Long.MAX_VALUE);
+                } finally {
+                    applying.lock();
+                }
+                // Whatever is buffered now after a complete flush was accepted after this call began
+                if (!flushed && hasPending(numbers)) {
+                    throw new ConcurrencyFailureException(
+                            "Buffered balance updates of the same credit cards could not be written first, retry later.");
+                }
+            }
+            return balanceUpdateService.applyUpdates(payloads);
+        } finally {
+            applying.unlock();
+        }
+    }
+
+    /**
+     * Makes buffered updates of the given cards visible in the database before they are read.
+     * Returns at once if none of them has buffered updates and no flush is in flight.
+     *
+     * @param creditCardNumbers The cards about to be read.
+     */
+    public void flush(Collection<String> creditCardNumbers) {
+        if (!enabled || !flushLock.isWriteLocked() && !hasPending(creditCardNumbers)) {
+            return;
+        }
+        flush(Long.MAX_VALUE);
+    }
+
+    /**
+     * Makes all buffered updates visible in the database, e.g. before reading every card of a user.
+     */
+    public void flush() {
+        if (enabled && (flushLock.isWriteLocked() || hasPending(null))) {
+            flush(Long.MAX_VALUE);
+        }
+    }
+
+    /**
+     * @return The number of buffered (card, date) balances.
+     */
+    public int size() {
+        bufferLock.lock();
+        try {
+            return pendingEntries;
+        } finally {
+            bufferLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException, IOException {
+        if (!enabled) {
+            return;
+        }
+        flusher.shutdown();
+        // A flush in flight is left to finish; interrupting it mid-statement would break the H2 file channel
+        long start = System.nanoTime();
+        flusher.awaitTermination(shutdownTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        flush(Math.max(0, shutdownTimeout.toNanos() - (System.nanoTime() - start)));
+        int left = size();
+        if (left > 0) {
+            log.warn("{} buffered balance updates were not flushed before shutdown and stay in the write-ahead log", left);
+        }
+        bufferLock.lock();
+        try {
+            writeAheadLog.close();
+        } finally {
+            bufferLock.unlock();
+        }
+    }
+
+    private BalanceUpdateResult validate(String number, List<UpdateBalancePayload> updates) {
+        for (UpdateBalancePayload update : updates) {
+            if (update.getBalanceDate() == null) {
+                return new BalanceUpdateResult(number, BalanceUpdateResult.Status.INVALID, 0,
+                        "Balance date is missing for credit card with number " + number + ".");
+            }
+        }
+        // Line breaks would split a write-ahead log line; no real card number has one
+        if (number == null || number.indexOf('\n') >= 0 || number.indexOf('\r') >= 0 || cardNumberCache.get(number) == null) {
+            return new BalanceUpdateResult(number, BalanceUpdateResult.Status.NOT_FOUND, 0,
+                    "Credit card with number " + number + " does not exist.");
+        }
+        return null;
+    }
+
+    /**
+     * Puts one balance into the buffer, moving a replaced key to the end so the card's updates keep the order
+     * in which their surviving values were written. Caller holds the buffer lock.
+     *
+     * @return true if the key was new, false if it replaced a buffered balance.
+     */
+    private boolean buffer(String number, LocalDate date, double amount) {
+        LinkedHashMap<LocalDate, Double> balances = pending.computeIfAbsent(number, key -> new LinkedHashMap<>());
+        boolean replaced = balances.remove(date) != null;
+        balances.put(date, amount);
+        if (!replaced) {
+            pendingEntries++;
+        }
+        return !replaced;
+    }
+
+    private boolean hasPending(Collection<String> creditCardNumbers) {
+        bufferLock.lock();
+        try {
+            if (creditCardNumbers == null) {
+                return pendingEntries > 0;
+            }
+            for (String number : creditCardNumbers) {
+                if (pending.containsKey(number)) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            bufferLock.unlock();
+        }
+    }
+
+    private void flushQuietly() {
+        flushRequested.set(false);
+        try {
+            flush(Long.MAX_VALUE);
+        } catch (RuntimeException e) {
+            log.warn("Balance write-behind flush failed", e);
+        }
+    }
+
+    /**
+     * Takes the whole buffer and applies it in chunks of whole cards. Chunks that fail, and chunks not started
+     * within the timeout, go back into the buffer ahead of anything buffered for their cards since.
+     *
+     * @param timeoutNanos Time after which no further chunk is started.
+     * @return false if some chunks went back into the buffer.
+     */
+    private boolean flush(long timeoutNanos) {
+        flushLock.writeLock().lock();
+        try {
+            long deadline = System.nanoTime() + Math.min(timeoutNanos, Long.MAX_VALUE / 2);
+            Map<String, LinkedHashMap<LocalDate, Double>> batch;
+            long closedSegment;
+            bufferLock.lock();
+            try {
+                if (pendingEntries == 0) {
+                    return true;
+                }
+                batch = pending;
+                pending = new HashMap<>();
+                pendingEntries = 0;
+                closedSegment = writeAheadLog.rotate();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot rotate the balance write-ahead log.", e);
+            } finally {
+                bufferLock.unlock();
+            }
+
+            Map<String, LinkedHashMap<LocalDate, Double>> failed = new LinkedHashMap<>();
+            List<String> chunk = new ArrayList<>();
+            int chunkEntries = 0;
+            int entries = 0;
+            for (Map.Entry<String, LinkedHashMap<LocalDate, Double>> card : batch.entrySet()) {
+                chunk.add(card.getKey());
+                chunkEntries += card.getValue().size();
+                if (chunkEntries >= flushEntries) {
+                    entries += applyChunk(batch, chunk, deadline, failed);
+                    chunk.clear();
+                    chunkEntries = 0;
+                }
+            }
+            if (!chunk.isEmpty()) {
+                entries += applyChunk(batch, chunk, deadline, failed);
+            }
+            balanceMetrics.recordWriteBehindFlush(entries);
+
+            bufferLock.lock();
+            try {
+                if (failed.isEmpty()) {
+                    writeAheadLog.deleteUpTo(closedSegment);
+                } else {
+                    restore(failed);
+                    writeAheadLog.rewrite(pending);
+                }
+            } catch (IOException e) {
+                // The old segments stay, so the updates are still recoverable; they may be replayed twice
+                log.warn("Cannot trim the balance write-ahead log", e);
+            } finally {
+                bufferLock.unlock();
+            }
+            return failed.isEmpty();
+        } finally {
+            flushLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return The number of (card, date) balances written.
+     */
+    private int applyChunk(Map<String, LinkedHashMap<LocalDate, Double>> batch, List<String> numbers, long deadline,
+                           Map<String, LinkedHashMap<LocalDate, Double>> failed) {
+        if (System.nanoTime() - deadline > 0) {
+            numbers.forEach(number -> failed.put(number, batch.get(number)));
+            return 0;
+        }
+        List<UpdateBalancePayload> payloads = new ArrayList<>();
+        for (String number : numbers) {
+            batch.get(number).forEach((date, amount) -> {
+                UpdateBalancePayload payload = new UpdateBalancePayload();
+                payload.setCreditCardNumber(number);
+                payload.setBalanceDate(date);
+                payload.setBalanceAmount(amount);
+                payloads.add(payload);
+            });
+        }
+        try {
+            for (BalanceUpdateResult result : balanceUpdateService.applyUpdates(payloads)) {
+                if (result.getStatus() != BalanceUpdateResult.Status.UPDATED) {
+                    // The card was deleted after its updates were accepted
+                    log.warn("Dropping buffered balance updates: {}", result.getMessage());
+                }
+            }
+            return payloads.size();
+        } catch (RuntimeException e) {
+            log.warn("Balance write-behind flush of {} cards failed, keeping their updates buffered", numbers.size(), e);
+            numbers.forEach(number -> failed.put(number, batch.get(number)));
+            return 0;
+        }
+    }
+
+    /**
+     * Puts unflushed balances back ahead of anything buffered for the same card since. Caller holds the buffer lock.
+     */
+    private void restore(Map<String, LinkedHashMap<LocalDate, Double>> failed) {
+        failed.forEach((number, balances) -> {
+            LinkedHashMap<LocalDate, Double> newer = pending.remove(number);
+            LinkedHashMap<LocalDate, Double> merged = new LinkedHashMap<>(balances);
+            if (newer != null) {
+                pendingEntries -= newer.size();
+                newer.forEach((date, amount) -> {
+                    merged.remove(date);
+                    merged.put(date, amount);
+                });
+            }
+            pending.put(number, merged);
+            pendingEntries += merged.size();
+        });
+    }
+}
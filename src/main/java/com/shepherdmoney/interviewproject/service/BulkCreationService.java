@@ -0,0 +1,174 @@
+package com.shepherdmoney.interviewproject.service;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shepherdmoney.interviewproject.event.CreditCardCreatedEvent;
+import com.shepherdmoney.interviewproject.model.CreditCard;
+import com.shepherdmoney.interviewproject.model.User;
+import com.shepherdmoney.interviewproject.repository.UserRepository;
+import com.shepherdmoney.interviewproject.vo.request.AddCreditCardToUserPayload;
+import com.shepherdmoney.interviewproject.vo.request.CreateUserPayload;
+import jakarta.persistence.EntityManager;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+
+/**
+ * Creates users and credit cards in bulk from a JSON array or an NDJSON stream.
+ * The body is parsed incrementally and persisted in fixed-size chunks: each chunk is flushed as
+ * batched inserts, with ids taken from the pooled sequences, and then cleared from the persistence
+ * context, so memory stays flat however long the stream is. A whole request is one transaction.
+ */
+@Service
+public class BulkCreationService {
+
+    private final UserRepository userRepository;
+
+    private final EntityManager entityManager;
+
+    private final ObjectMapper objectMapper;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final int chunkSize;
+
+    public BulkCreationService(UserRepository userRepository,
+                               EntityManager entityManager,
+                               ObjectMapper objectMapper,
+                               ApplicationEventPublisher eventPublisher,
+                               @Value("${app.bulk.chunk-size:1000}") int chunkSize) {
+        this.userRepository = userRepository;
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
+        this.eventPublisher = eventPublisher;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Creates one user per payload.
+     *
+     * @param body A JSON array or NDJSON stream of CreateUserPayload objects.
+     * @return The ids of the new users, in input order.
+     * @throws InvalidPayloadException if the body cannot be parsed.
+     */
+    @Transactional
+    public List<Integer> createUsers(InputStream body) {
+        List<Integer> ids = new ArrayList<>();
+        List<User> chunk = new ArrayList<>(chunkSize);
+        try (MappingIterator<CreateUserPayload> payloads = read(body, CreateUserPayload.class)) {
+            while (hasNext(payloads)) {
+                CreateUserPayload payload = next(payloads);
+                User user = new User();
+                user.setName(payload.getName());
+                user.setEmail(payload.getEmail());
+                entityManager.persist(user);
+                chunk.add(user);
+                if (chunk.size() == chunkSize) {
+                    flushUsers(chunk, ids);
+                }
+            }
+            flushUsers(chunk, ids);
+        } catch (IOException e) {
+            throw new InvalidPayloadException("Could not read request body: " + e.getMessage(), e);
+        }
+        return ids;
+    }
+
+    /**
+     * Creates one credit card per payload. Owners are checked with one set-based query per chunk;
+     * a payload naming an unknown user fails the whole request.
+     *
+     * @param body A JSON array or NDJSON stream of AddCreditCardToUserPayload objects.
+     * @return The ids of the new credit cards, in input order.
+     * @throws InvalidPayloadException if the body cannot be parsed or names an unknown user.
+     */
+    @Transactional
+    public List<Integer> createCards(InputStream body) {
+        List<Integer> ids = new ArrayList<>();
+        List<AddCreditCardToUserPayload> chunk = new ArrayList<>(chunkSize);
+        try (MappingIterator<AddCreditCardToUserPayload> payloads = read(body, AddCreditCardToUserPayload.class)) {
+            while (hasNext(payloads)) {
+                chunk.add(next(payloads));
+                if (chunk.size() == chunkSize) {
+                    persistCards(chunk, ids);
+                }
+            }
+            persistCards(chunk, ids);
+        } catch (IOException e) {
+            throw new InvalidPayloadException("Could not read request body: " + e.getMessage(), e);
+        }
+        return ids;
+    }
+
+    private void flushUsers(List<User> chunk, List<Integer> ids) {
+        entityManager.flush();
+        for (User user : chunk) {
+            ids.add(user.getId());
+        }
+        entityManager.clear();
+        chunk.clear();
+    }
+
+    private void persistCards(List<AddCreditCardToUserPayload> chunk, List<Integer> ids) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        Set<Integer> ownerIds = new HashSet<>();
+        for (AddCreditCardToUserPayload payload : chunk) {
+            ownerIds.add(payload.getUserId());
+        }
+        ownerIds.removeAll(userRepository.findExistingIds(ownerIds));
+        if (!ownerIds.isEmpty()) {
+            throw new InvalidPayloadException("Users with IDs " + new TreeSet<>(ownerIds) + " do not exist.");
+        }
+
+        List<CreditCard> creditCards = new ArrayList<>(chunk.size());
+        for (AddCreditCardToUserPayload payload : chunk) {
+            CreditCard creditCard = new CreditCard();
+            creditCard.setIssuanceBank(payload.getCardIssuanceBank());
+            creditCard.setNumber(payload.getCardNumber());
+            creditCard.setOwner(entityManager.getReference(User.class, payload.getUserId()));
+            entityManager.persist(creditCard);
+            creditCards.add(creditCard);
+        }
+        try {
+            entityManager.flush();
+        } catch (ConstraintViolationException e) {
+            throw new InvalidPayloadException("Credit card numbers must be unique.", e);
+        }
+        for (CreditCard creditCard : creditCards) {
+            ids.add(creditCard.getId());
+            eventPublisher.publishEvent(new CreditCardCreatedEvent(creditCard.getId(), creditCard.getNumber(),
+                    creditCard.getOwner().getId()));
+        }
+        entityManager.clear();
+        chunk.clear();
+    }
+
+    private <T> MappingIterator<T> read(InputStream body, Class<T> type) throws IOException {
+        // Accepts both a top-level JSON array and whitespace-separated values (NDJSON)
+        return objectMapper.readerFor(type).readValues(body);
+    }
+
+    private static boolean hasNext(MappingIterator<?> payloads) {
+        try {
+            return payloads.hasNextValue();
+        } catch (IOException e) {
+            throw new InvalidPayloadException("Malformed payload: " + e.getMessage(), e);
+        }
+    }
+
+    private static <T> T next(MappingIterator<T> payloads) {
+        try {
+            return payloads.nextValue();
+        } catch (IOException e) {
+            throw new InvalidPayloadException("Malformed payload: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.shepherdmoney.interviewproject.service;
+
+import com.shepherdmoney.interviewproject.event.CreditCardCreatedEvent;
+import com.shepherdmoney.interviewproject.event.UserDeletedEvent;
+import com.shepherdmoney.interviewproject.repository.CreditCardRepository;
+import com.shepherdmoney.interviewproject.vo.response.CardNumberCacheStats;
+import com.shepherdmoney.interviewproject.vo.response.CardReference;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded near-cache of credit card number to (card id, owner id) in front of the repository.
+ * Entries are evicted least-recently-used once the size limit is reached and expire after a fixed TTL.
+ * Misses are resolved with a projection query, so neither path hydrates the CreditCard entity.
+ */
+@Service
+public class CardNumberCache {
+
+    private final CreditCardRepository creditCardRepository;
+
+    private final int maxSize;
+
+    private final long ttlNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final LinkedHashMap<String, Entry> entries;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    public CardNumberCache(CreditCardRepository creditCardRepository,
+                           @Value("${app.card-cache.max-size:10000}") int maxSize,
+                           @Value("${app.card-cache.ttl:10m}") Duration ttl) {
+        this.creditCardRepository = creditCardRepository;
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > CardNumberCache.this.maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Resolves a credit card number, loading it from the database on a miss.
+     * Unknown numbers are not cached.
+     *
+     * @param number The credit card number.
+     * @return The card reference, or null if no card has this number.
+     */
+    public CardReference get(String number) {
+        long now = System.nanoTime();
+        lock.lock();
+        try {
+            Entry entry = entries.get(number);
+            if (entry != null) {
+                if (now - entry.loadedAt < ttlNanos) {
+                    hits.increment();
+                    return entry.reference;
+                }
+                entries.remove(number);
+                evictions.increment();
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        misses.increment();
+        CardReference reference = creditCardRepository.findReferenceByNumber(number);
+        if (reference != null) {
+            put(number, reference, now);
+        }
+        return reference;
+    }
+
+    /**
+     * Drops the cached entry for a credit card number.
+     *
+     * @param number The credit card number.
+     */
+    public void invalidate(String number) {
+        lock.lock();
+        try {
+            entries.remove(number);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return The hit, miss and eviction counters and the current number of entries.
+     */
+    public CardNumberCacheStats stats() {
+        lock.lock();
+        try {
+            return new CardNumberCacheStats(hits.sum(), misses.sum(), evictions.sum(), entries.size());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCreditCardCreated(CreditCardCreatedEvent event) {
+        invalidate(event.getNumber());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserDeleted(UserDeletedEvent event) {
+        event.getCardNumbers().forEach(this::invalidate);
+    }
+
+    private void put(String number, CardReference reference, long loadedAt) {
+        lock.lock();
+        try {
+            entries.put(number, new Entry(reference, loadedAt));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private record Entry(CardReference reference, long loadedAt) {
+    }
+}
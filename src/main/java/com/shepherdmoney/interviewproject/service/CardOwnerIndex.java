@@ -0,0 +1,386 @@
+package com.shepherdmoney.interviewproject.service;
+
+import com.shepherdmoney.interviewproject.event.CreditCardCreatedEvent;
+import com.shepherdmoney.interviewproject.event.UserDeletedEvent;
+import com.shepherdmoney.interviewproject.repository.CreditCardRepository;
+import com.shepherdmoney.interviewproject.vo.response.CardOwner;
+import com.shepherdmoney.interviewproject.vo.response.CardOwnerIndexCheck;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.stream.Stream;
+
+/**
+ * In-memory read model of credit card number to owner id for every card that has an owner, so owner lookups
+ * never reach the database. Numbers and owner ids are kept in two parallel arrays with open addressing and
+ * linear probing, at most half full, so a lookup costs a hash of the number and a few array reads and allocates
+ * nothing. Card numbers are free-form strings, so they are kept as the strings themselves rather than as numbers.
+ * <p>
+ * The index is built on startup with one streaming query, before requests are served, and kept current by
+ * card creation and user deletion events after their transaction commits; cards are never deleted on their own.
+ * Changes made while it is being rebuilt are replayed onto the rebuilt index. Lookups read optimistically and only
+ * take the read lock when a change ran concurrently; changes are rare and take the write lock.
+ * <p>
+ * Disabled with {@code app.card-owner-index.enabled=false}, or if building it fails, in which case
+ * lookups go through the {@link CardNumberCache} instead.
+ */
+@Service
+public class CardOwnerIndex implements SmartLifecycle {
+
+    /**
+     * Returned by {@link #ownerOf(String)} for a number without an owned card.
+     */
+    public static final int NO_OWNER = -1;
+
+    private static final Logger log = LoggerFactory.getLogger(CardOwnerIndex.class);
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private static final int MAX_REPORTED_MISMATCHES = 100;
+
+    private final CreditCardRepository creditCardRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final boolean enabled;
+
+    private final StampedLock lock = new StampedLock();
+
+    /**
+     * Serializes rebuilds, which stream the whole card table; a lock rather than a monitor so a virtual thread
+     * waiting on it or holding it through the query does not pin its carrier.
+     */
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+
+    /**
+     * Null until the first build completes. Replaced when it grows, changed in place otherwise.
+     */
+    private volatile Table table;
+
+    /**
+     * Changes made during a rebuild, replayed onto the rebuilt table; null when no rebuild runs. Guarded by the write lock.
+     */
+    private List<Change> pending;
+
+    private volatile boolean running;
+
+    public CardOwnerIndex(CreditCardRepository creditCardRepository,
+                          PlatformTransactionManager transactionManager,
+                          @Value("${app.card-owner-index.enabled:true}") boolean enabled) {
+        this.creditCardRepository = creditCardRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.enabled = enabled;
+    }
+
+    /**
+     * @return Whether the index is built and answers lookups.
+     */
+    public boolean isReady() {
+        return table != null;
+    }
+
+    /**
+     * Looks up the owner of a credit card without allocating.
+     *
+     * @param number The credit card number.
+     * @return The id of the owner, or {@link #NO_OWNER} if no owned card has this number or the index is not ready.
+     */
+    public int ownerOf(String number) {
+        long stamp = lock.tryOptimisticRead();
+        int ownerId = find(table, number);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                ownerId = find(table, number);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return ownerId;
+    }
+
+    /**
+     * @return The number of cards in the index.
+     */
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return table == null ? 0 : table.size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Builds the index from the credit card table with one streaming query and replaces the current one.
+     *
+     * @return The number of cards indexed.
+     */
+    public int rebuild() {
+        rebuildLock.lock();
+        try {
+            return rebuildLocked();
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    private int rebuildLocked() {
+        long stamp = lock.writeLock();
+        try {
+            pending = new ArrayList<>();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        Table built = null;
+        try {
+            built = transactionTemplate.execute(status -> {
+                Table loaded = new Table(INITIAL_CAPACITY);
+                try (Stream<CardOwner> owners = creditCardRepository.streamOwners()) {
+                    for (Iterator<CardOwner> it = owners.iterator(); it.hasNext(); ) {
+                        CardOwner owner = it.next();
+                        loaded = put(loaded, owner.getCreditCardNumber(), owner.getOwnerId());
+                    }
+                }
+                return loaded;
+            });
+        } finally {
+            stamp = lock.writeLock();
+            try {
+                if (built != null) {
+                    for (Change change : pending) {
+                        built = apply(built, change);
+                    }
+                    table = built;
+                }
+                pending = null;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+        return built.size;
+    }
+
+    /**
+     * Compares the index with the credit card table. Cards created or removed while the check runs may be
+     * reported as mismatches.
+     *
+     * @param repair Whether to rebuild the index if anything differs.
+     * @return The counts of cards missing from the index, indexed with another owner and indexed without
+     * an owned card, with up to 100 of the differing numbers; null if the index is disabled.
+     */
+    public CardOwnerIndexCheck check(boolean repair) {
+        if (!enabled) {
+            return null;
+        }
+        List<String> mismatches = new ArrayList<>();
+        int[] counts = new int[3];
+        transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<CardOwner> owners = creditCardRepository.streamOwners()) {
+                for (Iterator<CardOwner> it = owners.iterator(); it.hasNext(); ) {
+                    CardOwner owner = it.next();
+                    int indexed = ownerOf(owner.getCreditCardNumber());
+                    String mismatch = null;
+                    if (indexed == NO_OWNER) {
+                        counts[1]++;
+                        mismatch = owner.getCreditCardNumber() + ": owner " + owner.getOwnerId() + " missing from the index";
+                    } else if (indexed != owner.getOwnerId()) {
+                        counts[2]++;
+                        mismatch = owner.getCreditCardNumber() + ": owner " + owner.getOwnerId() + " in the table, "
+                                + indexed + " in the index";
+                    }
+                    if (mismatch != null && mismatches.size() < MAX_REPORTED_MISMATCHES) {
+                        mismatches.add(mismatch);
+                    }
+                    counts[0]++;
+                }
+            }
+        });
+        int indexSize = size();
+        int extra = Math.max(0, indexSize - (counts[0] - counts[1]));
+        boolean differs = counts[1] > 0 || counts[2] > 0 || extra > 0;
+        if (repair && differs) {
+            rebuild();
+        }
+        return new CardOwnerIndexCheck(counts[0], indexSize, counts[1], counts[2], extra, mismatches, repair && differs);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCreditCardCreated(CreditCardCreatedEvent event) {
+        change(new Change(event.getNumber(), event.getOwnerId()));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserDeleted(UserDeletedEvent event) {
+        event.getCardNumbers().forEach(number -> change(new Change(number, NO_OWNER)));
+    }
+
+    /**
+     * Builds the index if it is enabled. Runs in an early lifecycle phase, before the web server starts.
+     */
+    @Override
+    public void start() {
+        if (enabled) {
+            try {
+                log.info("Indexed the owners of {} credit cards", rebuild());
+            } catch (RuntimeException e) {
+                log.warn("Building the card owner index failed, owner lookups go to the database", e);
+            }
+        }
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return 0;
+    }
+
+    private void change(Change change) {
+        if (!enabled) {
+            return;
+        }
+        long stamp = lock.writeLock();
+        try {
+            if (table != null) {
+                table = apply(table, change);
+            }
+            if (pending != null) {
+                pending.add(change);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private static int slot(String number, int mask) {
+        int hash = number.hashCode() * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    /**
+     * May run concurrently with a change, so it never probes more than the whole table; the caller validates.
+     */
+    private static int find(Table table, String number) {
+        if (table == null) {
+            return NO_OWNER;
+        }
+        String[] numbers = table.numbers;
+        int mask = numbers.length - 1;
+        for (int i = slot(number, mask), probes = 0; probes <= mask; i = (i + 1) & mask, probes++) {
+            String key = numbers[i];
+            if (key == null) {
+                return NO_OWNER;
+            }
+            if (key.equals(number)) {
+                return table.owners[i];
+            }
+        }
+        return NO_OWNER;
+    }
+
+    private static Table apply(Table table, Change change) {
+        return change.ownerId() == NO_OWNER ? remove(table, change.number()) : put(table, change.number(), change.ownerId());
+    }
+
+    /**
+     * @return The table holding the entry: the given one, or a larger copy once it would be more than half full.
+     */
+    private static Table put(Table table, String number, int ownerId) {
+        if ((table.size + 1) * 2 > table.numbers.length) {
+            Table grown = new Table(table.numbers.length * 2);
+            for (int i = 0; i < table.numbers.length; i++) {
+                if (table.numbers[i] != null) {
+                    put(grown, table.numbers[i], table.owners[i]);
+                }
+            }
+            table = grown;
+        }
+        int mask = table.numbers.length - 1;
+        for (int i = slot(number, mask); ; i = (i + 1) & mask) {
+            String key = table.numbers[i];
+            if (key == null) {
+                table.numbers[i] = number;
+                table.owners[i] = ownerId;
+                table.size++;
+                return table;
+            }
+            if (key.equals(number)) {
+                table.owners[i] = ownerId;
+                return table;
+            }
+        }
+    }
+
+    /**
+     * Removes an entry and shifts later entries of the same probe run back into the gap, so no tombstones are needed.
+     */
+    private static Table remove(Table table, String number) {
+        String[] numbers = table.numbers;
+        int mask = numbers.length - 1;
+        int hole = slot(number, mask);
+        while (numbers[hole] != null && !numbers[hole].equals(number)) {
+            hole = (hole + 1) & mask;
+        }
+        if (numbers[hole] == null) {
+            return table;
+        }
+        for (int i = (hole + 1) & mask; numbers[i] != null; i = (i + 1) & mask) {
+            int home = slot(numbers[i], mask);
+            // An entry may move back unless its home slot lies after the hole in its probe run
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                numbers[hole] = numbers[i];
+                table.owners[hole] = table.owners[i];
+                hole = i;
+            }
+        }
+        numbers[hole] = null;
+        table.owners[hole] = 0;
+        table.size--;
+        return table;
+    }
+
+    /**
+     * Open addressing table with a power of two capacity.
+     */
+    private static final class Table {
+
+        private final String[] numbers;
+
+        private final int[] owners;
+
+        private int size;
+
+        Table(int capacity) {
+            numbers = new String[capacity];
+            owners = new int[capacity];
+        }
+    }
+
+    /**
+     * A card added with its owner, or removed with {@link #NO_OWNER}.
+     */
+    private record Change(String number, int ownerId) {
+    }
+}
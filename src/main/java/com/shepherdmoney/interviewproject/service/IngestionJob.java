@@ -0,0 +1,84 @@
+package com.shepherdmoney.interviewproject.service;
+
+import com.shepherdmoney.interviewproject.vo.response.IngestionJobView;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Progress of one asynchronous balance ingestion job. Updated concurrently by the partition workers.
+ */
+class IngestionJob {
+
+    private final String id;
+
+    private final int totalUpdates;
+
+    private final int totalCards;
+
+    private final Instant submittedAt = Instant.now();
+
+    private final AtomicInteger pendingTasks;
+
+    private final AtomicInteger processedUpdates = new AtomicInteger();
+
+    private final Map<String, String> failures = new ConcurrentHashMap<>();
+
+    private volatile Instant startedAt;
+
+    private volatile Instant finishedAt;
+
+    IngestionJob(String id, int totalUpdates, int totalCards, int tasks) {
+        this.id = id;
+        this.totalUpdates = totalUpdates;
+        this.totalCards = totalCards;
+        this.pendingTasks = new AtomicInteger(tasks);
+        if (tasks == 0) {
+            startedAt = submittedAt;
+            finishedAt = submittedAt;
+        }
+    }
+
+    String getId() {
+        return id;
+    }
+
+    boolean isFinished() {
+        return finishedAt != null;
+    }
+
+    void taskStarted() {
+        if (startedAt == null) {
+            startedAt = Instant.now();
+        }
+    }
+
+    void taskFinished(int updates) {
+        processedUpdates.addAndGet(updates);
+        if (pendingTasks.decrementAndGet() == 0) {
+            finishedAt = Instant.now();
+        }
+    }
+
+    void cardFailed(String number, String message) {
+        failures.put(String.valueOf(number), message);
+    }
+
+    IngestionJobView toView() {
+        Instant started = startedAt;
+        Instant finished = finishedAt;
+        IngestionJobView.Status status;
+        if (finished != null) {
+            status = failures.isEmpty() ? IngestionJobView.Status.COMPLETED : IngestionJobView.Status.COMPLETED_WITH_ERRORS;
+        } else {
+            status = started != null ? IngestionJobView.Status.RUNNING : IngestionJobView.Status.QUEUED;
+        }
+        Long elapsed = started == null ? null
+                : (finished != null ? finished : Instant.now()).toEpochMilli() - started.toEpochMilli();
+        return new IngestionJobView(id, status, totalUpdates, processedUpdates.get(), totalCards, failures.size(),
+                new LinkedHashMap<>(failures), submittedAt, started, finished, elapsed);
+    }
+}
@@ -0,0 +1,11 @@
+package com.shepherdmoney.interviewproject.service;
+
+/**
+ * Thrown when the ingestion queues do not have room for a new job.
+ */
+public class IngestionRejectedException extends RuntimeException {
+
+    public IngestionRejectedException(String message) {
+        super(message);
+    }
+}
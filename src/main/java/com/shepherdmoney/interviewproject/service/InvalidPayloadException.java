@@ -0,0 +1,15 @@
+package com.shepherdmoney.interviewproject.service;
+
+/**
+ * Thrown when a streamed request body cannot be parsed or refers to entities that do not exist.
+ */
+public class InvalidPayloadException extends RuntimeException {
+
+    public InvalidPayloadException(String message) {
+        super(message);
+    }
+
+    public InvalidPayloadException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,323 @@
+package com.shepherdmoney.interviewproject.service;
+
+import com.shepherdmoney.interviewproject.metrics.BalanceMetrics;
+import com.shepherdmoney.interviewproject.model.BalanceHistory;
+import com.shepherdmoney.interviewproject.model.CreditCard;
+import com.shepherdmoney.interviewproject.repository.BalanceLedgerRepository;
+import com.shepherdmoney.interviewproject.repository.CreditCardRepository;
+import com.shepherdmoney.interviewproject.vo.response.BalanceHistoryView;
+import com.shepherdmoney.interviewproject.vo.response.BalanceLedgerEntryView;
+import com.shepherdmoney.interviewproject.vo.response.CardBalanceView;
+import com.shepherdmoney.interviewproject.vo.response.CardLatestBalance;
+import com.shepherdmoney.interviewproject.vo.response.CardLedgerState;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Answers balance reads on top of the stored history, which is a snapshot of each card's {@link BalanceLedger}.
+ * Cards whose ledger has entries not yet folded into the snapshot are rebuilt on first read by replaying those
+ * entries over the snapshot, and the result is kept in a bounded least-recently-used cache keyed by the ledger
+ * position, so a card that keeps receiving updates only replays the entries appended since it was last read.
+ * Cards without pending entries are read from the snapshot store directly.
+ * <p>
+ * Loading cards for update and saving them goes to the snapshot store unchanged, and deletes also remove the
+ * cards' ledger entries. With the ledger disabled no card has pending entries after startup, and reads skip
+ * the ledger position lookup entirely.
+ */
+public class LedgerBalanceStore implements BalanceStore {
+
+    /**
+     * Times a rebuild is retried when a checkpoint moves the snapshot while it is being read.
+     */
+    private static final int MAX_REBUILD_ATTEMPTS = 3;
+
+    private final BalanceStore snapshots;
+
+    private final CreditCardRepository creditCardRepository;
+
+    private final BalanceLedgerRepository balanceLedgerRepository;
+
+    private final BalanceMetrics balanceMetrics;
+
+    private final TransactionTemplate readTransaction;
+
+    private final boolean enabled;
+
+    private final int maxCachedCards;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final LinkedHashMap<Integer, Rebuilt> rebuilt;
+
+    public LedgerBalanceStore(BalanceStore snapshots,
+                              CreditCardRepository creditCardRepository,
+                              BalanceLedgerRepository balanceLedgerRepository,
+                              BalanceMetrics balanceMetrics,
+                              PlatformTransactionManager transactionManager,
+                              boolean enabled,
+                              int maxCachedCards) {
+        this.snapshots = snapshots;
+        this.creditCardRepository = creditCardRepository;
+        this.balanceLedgerRepository = balanceLedgerRepository;
+        this.balanceMetrics = balanceMetrics;
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+        this.enabled = enabled;
+        this.maxCachedCards = Math.max(0, maxCachedCards);
+        this.rebuilt = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Rebuilt> eldest) {
+                return size() > LedgerBalanceStore.this.maxCachedCards;
+            }
+        };
+    }
+
+    /**
+     * Loads the cards with their snapshot history, without pending ledger entries, ready to be updated.
+     */
+    @Override
+    public List<CreditCard> findCardsWithHistory(Collection<String> numbers) {
+        return snapshots.findCardsWithHistory(numbers);
+    }
+
+    /**
+     * Loads the current history of a card, including pending ledger entries. Such a card's history is
+     * loaded detached from its stored records, so changing it does not change the snapshot.
+     */
+    @Override
+    public int loadHistory(CreditCard creditCard) {
+        CardLedgerState state = pendingState(creditCard.getId());
+        if (state == null) {
+            return snapshots.loadHistory(creditCard);
+        }
+        Collection<BalanceHistoryView> records = rebuild(state).values();
+        List<BalanceHistory> history = new ArrayList<>(records.size());
+        for (BalanceHistoryView record : records) {
+            history.add(history(record.getDate(), record.getBalance()));
+        }
+        creditCard.loadBalanceHistory(history);
+        return history.size();
+    }
+
+    /**
+     * Saves the snapshot history of a card loaded with {@link #findCardsWithHistory(Collection)}.
+     */
+    @Override
+    public void save(CreditCard creditCard, LocalDate since) {
+        snapshots.save(creditCard, since);
+    }
+
+    @Override
+    public void prepareUpdate(CreditCard creditCard, LocalDate since) {
+        snapshots.prepareUpdate(creditCard, since);
+    }
+
+    @Override
+    public BalanceHistoryView findFloor(int cardId, LocalDate date) {
+        NavigableMap<LocalDate, BalanceHistoryView> records = pending(cardId);
+        if (records == null) {
+            return snapshots.findFloor(cardId, date);
+        }
+        Map.Entry<LocalDate, BalanceHistoryView> floor = records.floorEntry(date);
+        return floor == null ? null : floor.getValue();
+    }
+
+    @Override
+    public List<CardBalanceView> findFloors(Collection<String> numbers, LocalDate date) {
+        List<CardLedgerState> states = enabled ? creditCardRepository.findPendingLedgerByNumberIn(numbers) : List.of();
+        if (states.isEmpty()) {
+            return snapshots.findFloors(numbers, date);
+        }
+        Set<String> stored = new HashSet<>(numbers);
+        List<CardBalanceView> floors = new ArrayList<>(numbers.size());
+        for (CardLedgerState state : states) {
+            stored.remove(state.getCreditCardNumber());
+            Map.Entry<LocalDate, BalanceHistoryView> floor = rebuild(state).floorEntry(date);
+            if (floor != null) {
+                floors.add(new CardBalanceView(state.getCreditCardNumber(), floor.getKey(), floor.getValue().getBalance()));
+            }
+        }
+        if (!stored.isEmpty()) {
+            floors.addAll(snapshots.findFloors(stored, date));
+        }
+        return floors;
+    }
+
+    @Override
+    public Stream<BalanceHistoryView> stream(int cardId, LocalDate from, LocalDate to) {
+        NavigableMap<LocalDate, BalanceHistoryView> records = pending(cardId);
+        if (records == null) {
+            return snapshots.stream(cardId, from, to);
+        }
+        return records.subMap(from, true, to, true).values().stream();
+    }
+
+    @Override
+    public CardLatestBalance findLatest(int cardId) {
+        NavigableMap<LocalDate, BalanceHistoryView> records = pending(cardId);
+        if (records == null) {
+            return snapshots.findLatest(cardId);
+        }
+        return records.isEmpty() ? null : latest(cardId, records);
+    }
+
+    @Override
+    public List<CardLatestBalance> findLatestByOwner(int ownerId) {
+        List<CardLatestBalance> latest = snapshots.findLatestByOwner(ownerId);
+        List<CardLedgerState> states = enabled ? creditCardRepository.findPendingLedgerByOwnerId(ownerId) : List.of();
+        if (states.isEmpty()) {
+            return latest;
+        }
+        Map<Integer, CardLatestBalance> byCard = new LinkedHashMap<>();
+        latest.forEach(balance -> byCard.put(balance.getCardId(), balance));
+        for (CardLedgerState state : states) {
+            NavigableMap<LocalDate, BalanceHistoryView> records = rebuild(state);
+            if (records.isEmpty()) {
+                byCard.remove(state.getCardId());
+            } else {
+                byCard.put(state.getCardId(), latest(state.getCardId(), records));
+            }
+        }
+        return new ArrayList<>(byCard.values());
+    }
+
+    /**
+     * @return The stored history rows and ledger entries of a user's cards.
+     */
+    @Override
+    public long countRowsByOwner(int ownerId) {
+        return snapshots.countRowsByOwner(ownerId) + balanceLedgerRepository.countByOwnerId(ownerId);
+    }
+
+    @Override
+    public int deleteByOwner(int ownerId) {
+        return balanceLedgerRepository.deleteByOwnerId(ownerId) + snapshots.deleteByOwner(ownerId);
+    }
+
+    @Override
+    public int deleteChunk(Collection<Integer> cardIds, int limit) {
+        int deleted = snapshots.deleteChunk(cardIds, limit);
+        if (deleted > 0) {
+            return deleted;
+        }
+        List<Long> ids = balanceLedgerRepository.findIdsByCardIdIn(cardIds, PageRequest.of(0, limit));
+        return ids.isEmpty() ? 0 : balanceLedgerRepository.deleteByIdIn(ids);
+    }
+
+    /**
+     * @return The rebuilt history of a card with pending ledger entries, or null if its snapshot is current.
+     */
+    private NavigableMap<LocalDate, BalanceHistoryView> pending(int cardId) {
+        CardLedgerState state = pendingState(cardId);
+        return state == null ? null : rebuild(state);
+    }
+
+    private CardLedgerState pendingState(int cardId) {
+        if (!enabled) {
+            return null;
+        }
+        CardLedgerState state = creditCardRepository.findLedgerStateById(cardId);
+        return state != null && state.getLedgerSequence() > state.getSnapshotSequence() ? state : null;
+    }
+
+    /**
+     * Returns the card's history up to at least the given ledger position, replaying only the entries appended
+     * since the cached rebuild if there is one, or all pending entries over the snapshot otherwise.
+     */
+    private NavigableMap<LocalDate, BalanceHistoryView> rebuild(CardLedgerState state) {
+        Rebuilt cached;
+        lock.lock();
+        try {
+            cached = rebuilt.get(state.getCardId());
+        } finally {
+            lock.unlock();
+        }
+        if (cached != null && cached.ledgerSequence() >= state.getLedgerSequence()) {
+            return cached.records();
+        }
+
+        Rebuilt result = readTransaction.execute(status -> cached != null
+                ? replay(state.getCardId(), cached.records().values(), cached.ledgerSequence(), state.getLedgerSequence())
+                : replaySnapshot(state));
+        lock.lock();
+        try {
+            Rebuilt current = rebuilt.get(state.getCardId());
+            if (current == null || current.ledgerSequence() < result.ledgerSequence()) {
+                rebuilt.put(state.getCardId(), result);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return result.records();
+    }
+
+    private Rebuilt replaySnapshot(CardLedgerState state) {
+        CardLedgerState current = state;
+        for (int attempt = 1; attempt <= MAX_REBUILD_ATTEMPTS; attempt++) {
+            List<BalanceHistoryView> snapshot;
+            try (Stream<BalanceHistoryView> records = snapshots.stream(current.getCardId(),
+                    BalanceHistoryService.EARLIEST_DATE, BalanceHistoryService.LATEST_DATE)) {
+                snapshot = records.toList();
+            }
+            // A checkpoint committing after the state was read may have folded some of the entries
+            // into the snapshot just read, and replaying them again would apply them twice
+            CardLedgerState after = creditCardRepository.findLedgerStateById(current.getCardId());
+            if (after == null || after.getSnapshotSequence() == current.getSnapshotSequence()) {
+                return replay(current.getCardId(), snapshot, current.getSnapshotSequence(), current.getLedgerSequence());
+            }
+            current = after;
+        }
+        throw new ConcurrencyFailureException("Balance snapshot of credit card " + state.getCardId()
+                + " kept changing while it was rebuilt.");
+    }
+
+    /**
+     * Applies the ledger entries after one position up to another to a copy of the given records.
+     */
+    private Rebuilt replay(int cardId, Collection<BalanceHistoryView> records, long after, long upTo) {
+        CreditCard creditCard = new CreditCard();
+        List<BalanceHistory> history = new ArrayList<>(records.size());
+        for (BalanceHistoryView record : records) {
+            history.add(history(record.getDate(), record.getBalance()));
+        }
+        creditCard.loadBalanceHistory(history);
+        List<BalanceLedgerEntryView> entries = balanceLedgerRepository.findByCardIdAndSequenceBetween(cardId, after, upTo);
+        for (BalanceLedgerEntryView entry : entries) {
+            creditCard.propagateBalance(entry.getBalanceDate(), entry.getAmount(), entry.getRecordedOn());
+        }
+        creditCard.flushBalanceHistory();
+        balanceMetrics.recordLedgerReplay(entries.size());
+
+        TreeMap<LocalDate, BalanceHistoryView> replayed = new TreeMap<>();
+        for (BalanceHistory record : creditCard.getBalanceHistorySince(BalanceHistoryService.EARLIEST_DATE)) {
+            replayed.put(record.getDate(), new BalanceHistoryView(record.getDate(), record.getBalance()));
+        }
+        long ledgerSequence = entries.isEmpty() ? after : entries.get(entries.size() - 1).getSequence();
+        return new Rebuilt(ledgerSequence, Collections.unmodifiableNavigableMap(replayed));
+    }
+
+    private static CardLatestBalance latest(int cardId, NavigableMap<LocalDate, BalanceHistoryView> records) {
+        BalanceHistoryView last = records.lastEntry().getValue();
+        return new CardLatestBalance(cardId, last.getDate(), last.getBalance());
+    }
+
+    private static BalanceHistory history(LocalDate date, double balance) {
+        BalanceHistory history = new BalanceHistory();
+        history.setDate(date);
+        history.setBalance(balance);
+        return history;
+    }
+
+    /**
+     * A card's history with its ledger replayed up to a position.
+     */
+    private record Rebuilt(long ledgerSequence, NavigableMap<LocalDate, BalanceHistoryView> records) {
+    }
+}
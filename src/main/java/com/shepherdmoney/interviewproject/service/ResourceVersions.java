@@ -0,0 +1,81 @@
+package com.shepherdmoney.interviewproject.service;
+
+import com.shepherdmoney.interviewproject.event.BalanceUpdatedEvent;
+import com.shepherdmoney.interviewproject.event.CreditCardCreatedEvent;
+import com.shepherdmoney.interviewproject.event.UserDeletedEvent;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory version counters for cacheable read resources: the balance history of a card and the
+ * card list of a user. Versions are bumped after the writes that change a resource commit, and
+ * each bump drops the resource from the response cache.
+ * <p>
+ * Readers must take the version before loading data: a response rendered from data that is newer
+ * than its version is merely revalidated once more, never served stale.
+ */
+@Service
+public class ResourceVersions {
+
+    /**
+     * Distinguishes ETags of this process from ones issued before a restart, when all counters were reset.
+     */
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+    private final Map<String, Long> versions = new ConcurrentHashMap<>();
+
+    private final ResponseCache responseCache;
+
+    public ResourceVersions(ResponseCache responseCache) {
+        this.responseCache = responseCache;
+    }
+
+    public static String cardHistory(String cardNumber) {
+        return "card-history:" + cardNumber;
+    }
+
+    public static String userCards(int userId) {
+        return "user-cards:" + userId;
+    }
+
+    /**
+     * @param resource The resource key.
+     * @return The current version; resources never written since startup are at 0.
+     */
+    public long version(String resource) {
+        return versions.getOrDefault(resource, 0L);
+    }
+
+    /**
+     * @param version A version previously returned by {@link #version(String)}.
+     * @return A strong ETag for a resource at that version.
+     */
+    public String etag(long version) {
+        return "\"" + epoch + "-" + version + "\"";
+    }
+
+    public void bump(String resource) {
+        versions.merge(resource, 1L, Long::sum);
+        responseCache.invalidate(resource);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBalanceUpdated(BalanceUpdatedEvent event) {
+        event.getCardNumbers().forEach(number -> bump(cardHistory(number)));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCreditCardCreated(CreditCardCreatedEvent event) {
+        bump(cardHistory(event.getNumber()));
+        bump(userCards(event.getOwnerId()));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserDeleted(UserDeletedEvent event) {
+        event.getCardNumbers().forEach(number -> bump(cardHistory(number)));
+        bump(userCards(event.getUserId()));
+    }
+}
@@ -0,0 +1,172 @@
+package com.shepherdmoney.interviewproject.service;
+
+import com.shepherdmoney.interviewproject.vo.response.ResponseCacheStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded cache of serialized response bodies, keyed by resource and request variant.
+ * Every entry is tagged with the resource version it was rendered from and is only served while
+ * that version is current. Writes drop all variants of the resource they touch, and the least
+ * recently used entries are evicted once the total body size exceeds the limit.
+ */
+@Service
+public class ResponseCache {
+
+    /**
+     * A cached response body with the extra headers it was sent with.
+     */
+    public record CachedResponse(byte[] body, Map<String, String> headers) {
+    }
+
+    private record Entry(String resource, long version, CachedResponse response) {
+    }
+
+    private final long maxBytes;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final Map<String, Set<String>> keysByResource = new HashMap<>();
+
+    private long bytes;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder notModified = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    private final LongAdder invalidations = new LongAdder();
+
+    public ResponseCache(@Value("${app.response-cache.max-size:16MB}") DataSize maxSize) {
+        this.maxBytes = maxSize.toBytes();
+    }
+
+    /**
+     * @return Whether responses are cached at all; a zero size disables the cache.
+     */
+    public boolean isEnabled() {
+        return maxBytes > 0;
+    }
+
+    /**
+     * @param resource The resource the response was rendered from.
+     * @param variant  What distinguishes responses for the same resource, such as paging parameters.
+     * @param version  The current version of the resource.
+     * @return The cached response, or null if none was rendered from this version.
+     */
+    public CachedResponse get(String resource, String variant, long version) {
+        if (!isEnabled()) {
+            return null;
+        }
+        lock.lock();
+        try {
+            Entry entry = entries.get(key(resource, variant));
+            if (entry != null && entry.version == version) {
+                hits.increment();
+                return entry.response;
+            }
+        } finally {
+            lock.unlock();
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Stores a rendered response. Bodies larger than the whole cache are not stored.
+     */
+    public void put(String resource, String variant, long version, CachedResponse response) {
+        if (!isEnabled() || response.body().length > maxBytes) {
+            return;
+        }
+        String key = key(resource, variant);
+        lock.lock();
+        try {
+            Entry previous = entries.put(key, new Entry(resource, version, response));
+            if (previous != null) {
+                bytes -= previous.response.body().length;
+            }
+            bytes += response.body().length;
+            keysByResource.computeIfAbsent(resource, r -> new HashSet<>()).add(key);
+
+            Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+            while (bytes > maxBytes && eldest.hasNext()) {
+                Map.Entry<String, Entry> evicted = eldest.next();
+                eldest.remove();
+                forget(evicted.getKey(), evicted.getValue());
+                evictions.increment();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drops every cached variant of a resource.
+     *
+     * @param resource The resource that changed.
+     */
+    public void invalidate(String resource) {
+        lock.lock();
+        try {
+            Set<String> keys = keysByResource.remove(resource);
+            if (keys == null) {
+                return;
+            }
+            for (String key : keys) {
+                Entry entry = entries.remove(key);
+                if (entry != null) {
+                    bytes -= entry.response.body().length;
+                    invalidations.increment();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Counts a conditional request answered with 304 Not Modified.
+     */
+    public void recordNotModified() {
+        notModified.increment();
+    }
+
+    /**
+     * @return The hit, miss, 304, eviction and invalidation counters and the current size.
+     */
+    public ResponseCacheStats stats() {
+        lock.lock();
+        try {
+            return new ResponseCacheStats(hits.sum(), misses.sum(), notModified.sum(), evictions.sum(),
+                    invalidations.sum(), entries.size(), bytes);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void forget(String key, Entry entry) {
+        bytes -= entry.response.body().length;
+        Set<String> keys = keysByResource.get(entry.resource);
+        if (keys != null) {
+            keys.remove(key);
+            if (keys.isEmpty()) {
+                keysByResource.remove(entry.resource);
+            }
+        }
+    }
+
+    private static String key(String resource, String variant) {
+        return resource + '|' + variant;
+    }
+}
@@ -0,0 +1,97 @@
+package com.shepherdmoney.interviewproject.service;
+
+import com.shepherdmoney.interviewproject.model.CreditCard;
+import com.shepherdmoney.interviewproject.repository.BalanceHistoryRepository;
+import com.shepherdmoney.interviewproject.repository.BalanceRollupRepository;
+import com.shepherdmoney.interviewproject.repository.CreditCardRepository;
+import com.shepherdmoney.interviewproject.vo.response.BalanceHistoryView;
+import com.shepherdmoney.interviewproject.vo.response.CardBalanceView;
+import com.shepherdmoney.interviewproject.vo.response.CardLatestBalance;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Stores one {@code BalanceHistory} row per balance record, mapped as the card's balance history collection.
+ */
+public class RowBalanceStore implements BalanceStore {
+
+    private final CreditCardRepository creditCardRepository;
+
+    private final BalanceHistoryRepository balanceHistoryRepository;
+
+    private final BalanceRollupRepository balanceRollupRepository;
+
+    public RowBalanceStore(CreditCardRepository creditCardRepository,
+                           BalanceHistoryRepository balanceHistoryRepository,
+                           BalanceRollupRepository balanceRollupRepository) {
+        this.creditCardRepository = creditCardRepository;
+        this.balanceHistoryRepository = balanceHistoryRepository;
+        this.balanceRollupRepository = balanceRollupRepository;
+    }
+
+    @Override
+    public List<CreditCard> findCardsWithHistory(Collection<String> numbers) {
+        return creditCardRepository.findAllWithHistoryByNumberIn(numbers);
+    }
+
+    @Override
+    public int loadHistory(CreditCard creditCard) {
+        return creditCard.getBalanceHistory().size();
+    }
+
+    @Override
+    public void save(CreditCard creditCard, LocalDate since) {
+        // The history collection cascades, so flushing the card writes the changed rows
+    }
+
+    @Override
+    public void prepareUpdate(CreditCard creditCard, LocalDate since) {
+        // Cards are loaded with every stored record
+    }
+
+    @Override
+    public BalanceHistoryView findFloor(int cardId, LocalDate date) {
+        List<BalanceHistoryView> floor = balanceHistoryRepository.findFloorByCardId(cardId, date, PageRequest.of(0, 1));
+        return floor.isEmpty() ? null : floor.get(0);
+    }
+
+    @Override
+    public List<CardBalanceView> findFloors(Collection<String> numbers, LocalDate date) {
+        return balanceHistoryRepository.findFloorsByCardNumberIn(numbers, date);
+    }
+
+    @Override
+    public Stream<BalanceHistoryView> stream(int cardId, LocalDate from, LocalDate to) {
+        return balanceHistoryRepository.streamByCardIdAndDateBetween(cardId, from, to);
+    }
+
+    @Override
+    public CardLatestBalance findLatest(int cardId) {
+        return balanceRollupRepository.findLatestBalance(cardId);
+    }
+
+    @Override
+    public List<CardLatestBalance> findLatestByOwner(int ownerId) {
+        return balanceRollupRepository.findLatestBalancesByOwner(ownerId);
+    }
+
+    @Override
+    public long countRowsByOwner(int ownerId) {
+        return balanceHistoryRepository.countByOwnerId(ownerId);
+    }
+
+    @Override
+    public int deleteByOwner(int ownerId) {
+        return balanceHistoryRepository.deleteByOwnerId(ownerId);
+    }
+
+    @Override
+    public int deleteChunk(Collection<Integer> cardIds, int limit) {
+        List<Integer> ids = balanceHistoryRepository.findIdsByCardIdIn(cardIds, PageRequest.of(0, limit));
+        return ids.isEmpty() ? 0 : balanceHistoryRepository.deleteByIdIn(ids);
+    }
+}
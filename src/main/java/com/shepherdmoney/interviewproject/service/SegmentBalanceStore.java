@@ -0,0 +1,198 @@
+package com.shepherdmoney.interviewproject.service;
+
+import com.shepherdmoney.interviewproject.model.BalanceHistory;
+import com.shepherdmoney.interviewproject.model.BalanceSegment;
+import com.shepherdmoney.interviewproject.model.BalanceSegmentCodec;
+import com.shepherdmoney.interviewproject.model.CreditCard;
+import com.shepherdmoney.interviewproject.repository.BalanceSegmentRepository;
+import com.shepherdmoney.interviewproject.repository.CreditCardRepository;
+import com.shepherdmoney.interviewproject.vo.response.BalanceHistoryView;
+import com.shepherdmoney.interviewproject.vo.response.BalanceSegmentView;
+import com.shepherdmoney.interviewproject.vo.response.CardBalanceSegmentView;
+import com.shepherdmoney.interviewproject.vo.response.CardBalanceView;
+import com.shepherdmoney.interviewproject.vo.response.CardLatestBalance;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Stores the balance records of a card packed into one {@link BalanceSegment} row per month, so a card costs
+ * a row per month of history instead of a row per record. Reads decode whole segments and writes re-encode
+ * the months from the earliest changed date onwards, skipping those whose encoding did not change.
+ * Balances are held in whole cents.
+ */
+public class SegmentBalanceStore implements BalanceStore {
+
+    private final CreditCardRepository creditCardRepository;
+
+    private final BalanceSegmentRepository balanceSegmentRepository;
+
+    public SegmentBalanceStore(CreditCardRepository creditCardRepository,
+                               BalanceSegmentRepository balanceSegmentRepository) {
+        this.creditCardRepository = creditCardRepository;
+        this.balanceSegmentRepository = balanceSegmentRepository;
+    }
+
+    @Override
+    public List<CreditCard> findCardsWithHistory(Collection<String> numbers) {
+        List<CreditCard> creditCards = creditCardRepository.findAllWithSegmentsByNumberIn(numbers);
+        creditCards.forEach(this::loadHistory);
+        return creditCards;
+    }
+
+    @Override
+    public int loadHistory(CreditCard creditCard) {
+        List<BalanceHistory> records = new ArrayList<>();
+        for (BalanceSegment segment : creditCard.getBalanceSegments()) {
+            BalanceSegmentCodec.decode(segment.getMonthStart(), segment.getData(), (date, balance) -> {
+                BalanceHistory history = new BalanceHistory();
+                history.setDate(date);
+                history.setBalance(balance);
+                records.add(history);
+            });
+        }
+        creditCard.loadBalanceHistory(records);
+        return records.size();
+    }
+
+    @Override
+    public void save(CreditCard creditCard, LocalDate since) {
+        LocalDate from = since.withDayOfMonth(1);
+        TreeMap<LocalDate, List<BalanceHistory>> months = new TreeMap<>();
+        for (BalanceHistory history : creditCard.getBalanceHistorySince(from)) {
+            if (history.getDate().isBefore(from)) {
+                continue;
+            }
+            history.setBalance(BalanceSegmentCodec.round(history.getBalance()));
+            months.computeIfAbsent(history.getDate().withDayOfMonth(1), month -> new ArrayList<>()).add(history);
+        }
+
+        Map<LocalDate, BalanceSegment> stored = new HashMap<>();
+        for (BalanceSegment segment : creditCard.getBalanceSegments()) {
+            if (!segment.getMonthStart().isBefore(from)) {
+                stored.put(segment.getMonthStart(), segment);
+            }
+        }
+        for (Map.Entry<LocalDate, List<BalanceHistory>> month : months.entrySet()) {
+            byte[] data = BalanceSegmentCodec.encode(month.getValue());
+            BalanceSegment segment = stored.remove(month.getKey());
+            if (segment == null) {
+                segment = new BalanceSegment();
+                segment.setCreditCard(creditCard);
+                segment.setMonthStart(month.getKey());
+                segment.setData(data);
+                creditCard.getBalanceSegments().add(segment);
+            } else if (!Arrays.equals(segment.getData(), data)) {
+                segment.setData(data);
+            }
+        }
+        // Months without records left; removed as orphans
+        creditCard.getBalanceSegments().removeAll(stored.values());
+    }
+
+    @Override
+    public void prepareUpdate(CreditCard creditCard, LocalDate since) {
+        // Cards are loaded with every stored record
+    }
+
+    @Override
+    public BalanceHistoryView findFloor(int cardId, LocalDate date) {
+        // Stored segments are never empty, so if the latest one starts after the floor the one before holds it
+        for (BalanceSegmentView segment : balanceSegmentRepository.findLatestByCardId(cardId, date, PageRequest.of(0, 2))) {
+            BalanceHistoryView floor = floor(segment.getMonthStart(), segment.getData(), date);
+            if (floor != null) {
+                return floor;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public List<CardBalanceView> findFloors(Collection<String> numbers, LocalDate date) {
+        List<CardBalanceView> floors = new ArrayList<>(numbers.size());
+        List<String> earlier = new ArrayList<>();
+        for (CardBalanceSegmentView segment : balanceSegmentRepository.findLatestByCardNumberIn(numbers, date)) {
+            BalanceHistoryView floor = floor(segment.getMonthStart(), segment.getData(), date);
+            if (floor != null) {
+                floors.add(new CardBalanceView(segment.getCreditCardNumber(), floor.getDate(), floor.getBalance()));
+            } else {
+                earlier.add(segment.getCreditCardNumber());
+            }
+        }
+        if (!earlier.isEmpty()) {
+            // Only a segment of the date's own month can start before the date and still hold no record on or before it
+            LocalDate previousMonthEnd = date.withDayOfMonth(1).minusDays(1);
+            for (CardBalanceSegmentView segment : balanceSegmentRepository.findLatestByCardNumberIn(earlier, previousMonthEnd)) {
+                BalanceHistoryView floor = floor(segment.getMonthStart(), segment.getData(), date);
+                floors.add(new CardBalanceView(segment.getCreditCardNumber(), floor.getDate(), floor.getBalance()));
+            }
+        }
+        return floors;
+    }
+
+    @Override
+    public Stream<BalanceHistoryView> stream(int cardId, LocalDate from, LocalDate to) {
+        return balanceSegmentRepository.streamByCardIdAndMonthBetween(cardId, from.withDayOfMonth(1), to)
+                .flatMap(segment -> records(segment.getMonthStart(), segment.getData()).stream())
+                .filter(record -> !record.getDate().isBefore(from) && !record.getDate().isAfter(to));
+    }
+
+    @Override
+    public CardLatestBalance findLatest(int cardId) {
+        List<BalanceSegmentView> latest = balanceSegmentRepository.findLatestByCardId(cardId,
+                BalanceHistoryService.LATEST_DATE, PageRequest.of(0, 1));
+        if (latest.isEmpty()) {
+            return null;
+        }
+        BalanceHistoryView last = floor(latest.get(0).getMonthStart(), latest.get(0).getData(), BalanceHistoryService.LATEST_DATE);
+        return new CardLatestBalance(cardId, last.getDate(), last.getBalance());
+    }
+
+    @Override
+    public List<CardLatestBalance> findLatestByOwner(int ownerId) {
+        List<CardLatestBalance> latest = new ArrayList<>();
+        for (CardBalanceSegmentView segment : balanceSegmentRepository.findLatestByOwnerId(ownerId)) {
+            BalanceHistoryView last = floor(segment.getMonthStart(), segment.getData(), BalanceHistoryService.LATEST_DATE);
+            latest.add(new CardLatestBalance(segment.getCardId(), last.getDate(), last.getBalance()));
+        }
+        return latest;
+    }
+
+    @Override
+    public long countRowsByOwner(int ownerId) {
+        return balanceSegmentRepository.countByOwnerId(ownerId);
+    }
+
+    @Override
+    public int deleteByOwner(int ownerId) {
+        return balanceSegmentRepository.deleteByOwnerId(ownerId);
+    }
+
+    @Override
+    public int deleteChunk(Collection<Integer> cardIds, int limit) {
+        List<Integer> ids = balanceSegmentRepository.findIdsByCardIdIn(cardIds, PageRequest.of(0, limit));
+        return ids.isEmpty() ? 0 : balanceSegmentRepository.deleteByIdIn(ids);
+    }
+
+    private static List<BalanceHistoryView> records(LocalDate monthStart, byte[] data) {
+        List<BalanceHistoryView> records = new ArrayList<>();
+        BalanceSegmentCodec.decode(monthStart, data, (date, balance) -> records.add(new BalanceHistoryView(date, balance)));
+        return records;
+    }
+
+    /**
+     * @return The latest record of the segment on or before the date, or null if all of them are later.
+     */
+    private static BalanceHistoryView floor(LocalDate monthStart, byte[] data, LocalDate date) {
+        BalanceHistoryView floor = null;
+        for (BalanceHistoryView record : records(monthStart, data)) {
+            if (record.getDate().isAfter(date)) {
+                break;
+            }
+            floor = record;
+        }
+        return floor;
+    }
+}
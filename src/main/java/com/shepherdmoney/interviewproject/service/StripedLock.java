@@ -0,0 +1,73 @@
+package com.shepherdmoney.interviewproject.service;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed set of reentrant locks keyed by hash, so callers touching the same key serialize
+ * while unrelated keys almost always proceed in parallel.
+ * Multiple keys are locked in ascending stripe order, which rules out deadlocks between callers.
+ */
+public class StripedLock {
+
+    /**
+     * A set of held stripes, released by {@link #close()}.
+     */
+    public interface Held extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private final ReentrantLock[] stripes;
+
+    /**
+     * @param stripes The number of locks, rounded up to a power of two.
+     */
+    public StripedLock(int stripes) {
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Blocks until the stripes of all keys are held.
+     *
+     * @param keys The keys to lock.
+     * @return A handle that releases the stripes.
+     */
+    public Held lockAll(Collection<String> keys) {
+        BitSet indexes = new BitSet(stripes.length);
+        for (String key : keys) {
+            indexes.set(stripeOf(key));
+        }
+        int locked = 0;
+        try {
+            for (int i = indexes.nextSetBit(0); i >= 0; i = indexes.nextSetBit(i + 1)) {
+                stripes[i].lock();
+                locked++;
+            }
+        } catch (RuntimeException | Error e) {
+            release(indexes, locked);
+            throw e;
+        }
+        int held = locked;
+        return () -> release(indexes, held);
+    }
+
+    private void release(BitSet indexes, int count) {
+        int released = 0;
+        for (int i = indexes.nextSetBit(0); i >= 0 && released < count; i = indexes.nextSetBit(i + 1)) {
+            stripes[i].unlock();
+            released++;
+        }
+    }
+
+    private int stripeOf(String key) {
+        int hash = Objects.hashCode(key);
+        return (hash ^ (hash >>> 16)) & (stripes.length - 1);
+    }
+}
@@ -0,0 +1,172 @@
+package com.shepherdmoney.interviewproject.service;
+
+import com.shepherdmoney.interviewproject.config.ThreadConfig;
+import com.shepherdmoney.interviewproject.event.UserDeletedEvent;
+import com.shepherdmoney.interviewproject.repository.BalanceRollupRepository;
+import com.shepherdmoney.interviewproject.repository.CreditCardRepository;
+import com.shepherdmoney.interviewproject.repository.UserRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deletes users together with their credit cards, balance history and rollups using bulk statements,
+ * without loading any of the rows into the persistence context.
+ * <p>
+ * Users with more balance history than the deferred threshold are deleted in two phases: the request
+ * detaches the cards, releasing their numbers, and removes the user row in one short transaction, and a
+ * background worker then purges the detached cards' history in fixed-size chunks, one transaction per chunk.
+ * Detached cards left behind by a shutdown are picked up again when the application starts.
+ */
+@Service
+public class UserDeletionService {
+
+    /**
+     * Upper bound on card ids bound into a single IN clause.
+     */
+    static final int CARD_CHUNK_SIZE = 1000;
+
+    public enum Outcome {
+        NOT_FOUND,
+        DELETED,
+        PURGE_SCHEDULED
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(UserDeletionService.class);
+
+    private final UserRepository userRepository;
+
+    private final CreditCardRepository creditCardRepository;
+
+    private final BalanceStore balanceStore;
+
+    private final BalanceRollupRepository balanceRollupRepository;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final long deferredThreshold;
+
+    private final int purgeChunkSize;
+
+    private final ExecutorService purgeWorker;
+
+    public UserDeletionService(UserRepository userRepository,
+                               CreditCardRepository creditCardRepository,
+                               BalanceStore balanceStore,
+                               BalanceRollupRepository balanceRollupRepository,
+                               ApplicationEventPublisher eventPublisher,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${app.user-deletion.deferred-threshold:100000}") long deferredThreshold,
+                               @Value("${app.user-deletion.purge-chunk-size:5000}") int purgeChunkSize,
+                               @Value("${app.threads.mode:" + ThreadConfig.PLATFORM + "}") String threadMode) {
+        this.userRepository = userRepository;
+        this.creditCardRepository = creditCardRepository;
+        this.balanceStore = balanceStore;
+        this.balanceRollupRepository = balanceRollupRepository;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.deferredThreshold = deferredThreshold;
+        this.purgeChunkSize = purgeChunkSize;
+        this.purgeWorker = Executors.newSingleThreadExecutor(ThreadConfig.threadFactory(threadMode, "user-purge"));
+    }
+
+    /**
+     * Deletes a user with all of their credit cards and balance history.
+     *
+     * @param userId The ID of the user to delete.
+     * @return DELETED if everything was removed, PURGE_SCHEDULED if the user was removed and the
+     *         balance history is being purged in the background, or NOT_FOUND.
+     */
+    public Outcome deleteUser(int userId) {
+        List<Integer> detachedCardIds = new ArrayList<>();
+        Outcome outcome = transactionTemplate.execute(status -> delete(userId, detachedCardIds));
+        if (outcome == Outcome.PURGE_SCHEDULED) {
+            schedulePurge(detachedCardIds);
+        }
+        return outcome;
+    }
+
+    /**
+     * Resumes purging cards that were detached by a deferred deletion but not yet removed.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumePurge() {
+        List<Integer> cardIds = creditCardRepository.findIdsWithoutOwner();
+        if (!cardIds.isEmpty()) {
+            log.info("Resuming purge of {} detached credit cards", cardIds.size());
+            schedulePurge(cardIds);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        purgeWorker.shutdown();
+        if (!purgeWorker.awaitTermination(30, TimeUnit.SECONDS)) {
+            log.warn("User purge did not finish within 30s, it resumes on next start");
+            purgeWorker.shutdownNow();
+        }
+    }
+
+    Future<?> schedulePurge(List<Integer> cardIds) {
+        return purgeWorker.submit(() -> purge(cardIds));
+    }
+
+    private Outcome delete(int userId, List<Integer> detachedCardIds) {
+        if (!userRepository.existsById(userId)) {
+            return Outcome.NOT_FOUND;
+        }
+        List<String> cardNumbers = creditCardRepository.findNumbersByOwnerId(userId);
+        List<Integer> cardIds = creditCardRepository.findIdsByOwnerId(userId);
+        Outcome outcome;
+        if (deferredThreshold > 0 && balanceStore.countRowsByOwner(userId) > deferredThreshold) {
+            detachedCardIds.addAll(cardIds);
+            creditCardRepository.detachFromOwner(userId);
+            outcome = Outcome.PURGE_SCHEDULED;
+        } else {
+            balanceStore.deleteByOwner(userId);
+            balanceRollupRepository.deleteByOwnerId(userId);
+            creditCardRepository.deleteByOwnerId(userId);
+            outcome = Outcome.DELETED;
+        }
+        userRepository.deleteByIdInBulk(userId);
+        eventPublisher.publishEvent(new UserDeletedEvent(userId, cardNumbers, cardIds));
+        return outcome;
+    }
+
+    private void purge(List<Integer> cardIds) {
+        try {
+            for (int from = 0; from < cardIds.size(); from += CARD_CHUNK_SIZE) {
+                List<Integer> chunk = cardIds.subList(from, Math.min(cardIds.size(), from + CARD_CHUNK_SIZE));
+                long deleted = 0;
+                int rows;
+                do {
+                    rows = transactionTemplate.execute(status -> balanceStore.deleteChunk(chunk, purgeChunkSize));
+                    deleted += rows;
+                } while (rows > 0);
+                transactionTemplate.executeWithoutResult(status -> {
+                    balanceRollupRepository.deleteByCardIdIn(chunk);
+                    creditCardRepository.deleteByIdIn(chunk);
+                });
+                log.debug("Purged {} credit cards with {} balance history rows", chunk.size(), deleted);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Purge of detached credit cards failed, it resumes on next start", e);
+        }
+    }
+}
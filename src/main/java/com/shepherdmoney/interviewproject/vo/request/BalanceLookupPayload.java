@@ -0,0 +1,14 @@
+package com.shepherdmoney.interviewproject.vo.request;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import lombok.Data;
+
+@Data
+public class BalanceLookupPayload {
+
+    private List<String> creditCardNumbers;
+
+    private LocalDate date;
+}
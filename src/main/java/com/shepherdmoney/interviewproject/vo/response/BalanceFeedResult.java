@@ -0,0 +1,40 @@
+package com.shepherdmoney.interviewproject.vo.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+public class BalanceFeedResult {
+
+    public enum Status {
+        COMPLETED,
+        MALFORMED,
+        CONFLICT
+    }
+
+    private Status status;
+
+    /**
+     * Rows in chunks that were committed; a stream stopped by an error keeps the chunks before it.
+     */
+    private long rowsApplied;
+
+    private int chunks;
+
+    /**
+     * Cards not updated, counted once per chunk they appear in.
+     */
+    private long failedCards;
+
+    /**
+     * The first per-card failures, in order; capped so a feed of unknown cards cannot grow the response.
+     */
+    private List<BalanceUpdateResult> failures;
+
+    private String message;
+}
@@ -0,0 +1,15 @@
+package com.shepherdmoney.interviewproject.vo.response;
+
+import java.time.LocalDate;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class BalanceHistoryView {
+
+    private LocalDate date;
+
+    private double balance;
+}
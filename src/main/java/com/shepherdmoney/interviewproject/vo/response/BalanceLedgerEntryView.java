@@ -0,0 +1,19 @@
+package com.shepherdmoney.interviewproject.vo.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDate;
+
+@Data
+@AllArgsConstructor
+public class BalanceLedgerEntryView {
+
+    private long sequence;
+
+    private LocalDate balanceDate;
+
+    private double amount;
+
+    private LocalDate recordedOn;
+}
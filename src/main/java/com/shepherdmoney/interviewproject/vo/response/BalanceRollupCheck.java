@@ -0,0 +1,21 @@
+package com.shepherdmoney.interviewproject.vo.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+public class BalanceRollupCheck {
+
+    private String creditCardNumber;
+
+    private int periodsChecked;
+
+    private List<String> mismatches;
+
+    private boolean repaired;
+}
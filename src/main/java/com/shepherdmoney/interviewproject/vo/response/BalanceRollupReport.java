@@ -0,0 +1,33 @@
+package com.shepherdmoney.interviewproject.vo.response;
+
+import com.shepherdmoney.interviewproject.model.RollupGranularity;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+public class BalanceRollupReport {
+
+    private RollupGranularity granularity;
+
+    private LocalDate from;
+
+    private LocalDate to;
+
+    private int days;
+
+    private Double endBalance;
+
+    private Double averageBalance;
+
+    private Double minBalance;
+
+    private Double maxBalance;
+
+    private List<BalanceRollupView> periods;
+}
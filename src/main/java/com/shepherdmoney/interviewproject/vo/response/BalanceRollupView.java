@@ -0,0 +1,27 @@
+package com.shepherdmoney.interviewproject.vo.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDate;
+
+@Data
+@Builder
+@AllArgsConstructor
+public class BalanceRollupView {
+
+    private LocalDate periodStart;
+
+    private LocalDate periodEnd;
+
+    private int days;
+
+    private double endBalance;
+
+    private double averageBalance;
+
+    private Double minBalance;
+
+    private Double maxBalance;
+}
@@ -0,0 +1,15 @@
+package com.shepherdmoney.interviewproject.vo.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDate;
+
+@Data
+@AllArgsConstructor
+public class BalanceSegmentView {
+
+    private LocalDate monthStart;
+
+    private byte[] data;
+}
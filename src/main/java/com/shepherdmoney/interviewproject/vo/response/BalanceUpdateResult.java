@@ -0,0 +1,29 @@
+package com.shepherdmoney.interviewproject.vo.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+@AllArgsConstructor
+public class BalanceUpdateResult {
+
+    public enum Status {
+        UPDATED,
+        NOT_FOUND,
+        INVALID,
+        /**
+         * Accepted into the write-behind buffer and applied by a later flush.
+         */
+        BUFFERED
+    }
+
+    private String creditCardNumber;
+
+    private Status status;
+
+    private int updatesApplied;
+
+    private String message;
+}
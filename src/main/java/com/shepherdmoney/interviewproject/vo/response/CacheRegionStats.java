@@ -0,0 +1,26 @@
+package com.shepherdmoney.interviewproject.vo.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+@AllArgsConstructor
+public class CacheRegionStats {
+
+    private String region;
+
+    private long hits;
+
+    private long misses;
+
+    private long puts;
+
+    /**
+     * Hits over lookups, or 0.0 before the first lookup.
+     */
+    private double hitRatio;
+
+    private long size;
+}
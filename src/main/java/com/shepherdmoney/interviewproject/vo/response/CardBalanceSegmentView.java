@@ -0,0 +1,19 @@
+package com.shepherdmoney.interviewproject.vo.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDate;
+
+@Data
+@AllArgsConstructor
+public class CardBalanceSegmentView {
+
+    private int cardId;
+
+    private String creditCardNumber;
+
+    private LocalDate monthStart;
+
+    private byte[] data;
+}
@@ -0,0 +1,20 @@
+package com.shepherdmoney.interviewproject.vo.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDate;
+
+@Data
+@AllArgsConstructor
+public class CardBalanceView {
+
+    private String creditCardNumber;
+
+    /**
+     * Date of the balance record the balance was taken from.
+     */
+    private LocalDate date;
+
+    private double balance;
+}
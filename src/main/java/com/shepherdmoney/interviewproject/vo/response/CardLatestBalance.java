@@ -0,0 +1,17 @@
+package com.shepherdmoney.interviewproject.vo.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDate;
+
+@Data
+@AllArgsConstructor
+public class CardLatestBalance {
+
+    private int cardId;
+
+    private LocalDate date;
+
+    private double balance;
+}
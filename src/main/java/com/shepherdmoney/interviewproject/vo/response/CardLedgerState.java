@@ -0,0 +1,17 @@
+package com.shepherdmoney.interviewproject.vo.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class CardLedgerState {
+
+    private int cardId;
+
+    private String creditCardNumber;
+
+    private long ledgerSequence;
+
+    private long snapshotSequence;
+}
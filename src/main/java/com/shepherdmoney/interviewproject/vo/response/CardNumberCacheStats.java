@@ -0,0 +1,19 @@
+package com.shepherdmoney.interviewproject.vo.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+@AllArgsConstructor
+public class CardNumberCacheStats {
+
+    private long hits;
+
+    private long misses;
+
+    private long evictions;
+
+    private int size;
+}
@@ -0,0 +1,27 @@
+package com.shepherdmoney.interviewproject.vo.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+public class CardOwnerIndexCheck {
+
+    private int cardsChecked;
+
+    private int indexSize;
+
+    private int missing;
+
+    private int wrongOwner;
+
+    private int extra;
+
+    private List<String> mismatches;
+
+    private boolean repaired;
+}
@@ -0,0 +1,13 @@
+package com.shepherdmoney.interviewproject.vo.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class CardReference {
+
+    private int cardId;
+
+    private int ownerId;
+}
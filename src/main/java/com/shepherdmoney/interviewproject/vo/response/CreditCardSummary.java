@@ -0,0 +1,15 @@
+package com.shepherdmoney.interviewproject.vo.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class CreditCardSummary {
+
+    private int id;
+
+    private String issuanceBank;
+
+    private String number;
+}
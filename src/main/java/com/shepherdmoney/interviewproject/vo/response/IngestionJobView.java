@@ -0,0 +1,43 @@
+package com.shepherdmoney.interviewproject.vo.response;
+
+import java.time.Instant;
+import java.util.Map;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+@AllArgsConstructor
+public class IngestionJobView {
+
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        COMPLETED,
+        COMPLETED_WITH_ERRORS
+    }
+
+    private String jobId;
+
+    private Status status;
+
+    private int totalUpdates;
+
+    private int processedUpdates;
+
+    private int totalCards;
+
+    private int failedCards;
+
+    private Map<String, String> failures;
+
+    private Instant submittedAt;
+
+    private Instant startedAt;
+
+    private Instant finishedAt;
+
+    private Long elapsedMillis;
+}
@@ -0,0 +1,25 @@
+package com.shepherdmoney.interviewproject.vo.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+@AllArgsConstructor
+public class ResponseCacheStats {
+
+    private long hits;
+
+    private long misses;
+
+    private long notModified;
+
+    private long evictions;
+
+    private long invalidations;
+
+    private int size;
+
+    private long bytes;
+}
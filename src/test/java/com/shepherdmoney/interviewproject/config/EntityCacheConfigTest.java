@@ -0,0 +1,125 @@
+package com.shepherdmoney.interviewproject.config;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.shepherdmoney.interviewproject.metrics.EntityCacheStatistics;
+import com.shepherdmoney.interviewproject.model.CreditCard;
+import com.shepherdmoney.interviewproject.model.User;
+import com.shepherdmoney.interviewproject.repository.CreditCardRepository;
+import com.shepherdmoney.interviewproject.repository.UserRepository;
+import com.shepherdmoney.interviewproject.service.BalanceUpdateService;
+import com.shepherdmoney.interviewproject.vo.request.UpdateBalancePayload;
+import com.shepherdmoney.interviewproject.vo.response.CacheRegionStats;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Runs without a test transaction, since the second-level cache is only written on commit.
+ */
+@SpringBootTest
+public class EntityCacheConfigTest {
+
+    @Autowired
+    private CreditCardRepository creditCardRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BalanceUpdateService balanceUpdateService;
+
+    @Autowired
+    private EntityCacheStatistics entityCacheStatistics;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Statistics statistics;
+
+    private String number;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        number = UUID.randomUUID().toString();
+        inTransaction(() -> {
+            User user = new User();
+            user.setName("Cached User");
+            user.setEmail("cached@example.com");
+            userRepository.save(user);
+
+            CreditCard creditCard = new CreditCard();
+            creditCard.setIssuanceBank("Bank");
+            creditCard.setNumber(number);
+            creditCard.setOwner(user);
+            return creditCardRepository.save(creditCard);
+        });
+    }
+
+    @Test
+    public void testRepeatedLookupIsServedFromCache() {
+        CreditCard first = inTransaction(() -> creditCardRepository.findByNumber(number));
+        long statementsBefore = statistics.getPrepareStatementCount();
+
+        CreditCard second = inTransaction(() -> {
+            CreditCard creditCard = creditCardRepository.findByNumber(number);
+            assertEquals("Cached User", creditCard.getOwner().getName());
+            return creditCard;
+        });
+        CreditCard byId = inTransaction(() -> creditCardRepository.findById(first.getId()).orElseThrow());
+
+        assertEquals(first.getId(), second.getId());
+        assertEquals(number, byId.getNumber());
+        assertEquals(statementsBefore, statistics.getPrepareStatementCount(),
+                "The query result, the card and its owner should all come from the cache");
+        List<CacheRegionStats> regions = entityCacheStatistics.regions();
+        assertEquals(EntityCacheConfig.REGIONS, regions.stream().map(CacheRegionStats::getRegion).toList());
+        for (CacheRegionStats region : regions) {
+            assertTrue(region.getHits() > 0, "Region " + region.getRegion() + " should have been hit");
+            assertTrue(region.getHitRatio() > 0.0 && region.getHitRatio() <= 1.0, region.toString());
+        }
+    }
+
+    @Test
+    public void testBalanceUpdateIsNotHiddenByCachedCard() {
+        long version = inTransaction(() -> creditCardRepository.findByNumber(number)).getVersion();
+
+        UpdateBalancePayload payload = new UpdateBalancePayload();
+        payload.setCreditCardNumber(number);
+        payload.setBalanceDate(LocalDate.now());
+        payload.setBalanceAmount(10.0);
+        balanceUpdateService.applyUpdates(List.of(payload));
+
+        assertEquals(version + 1, inTransaction(() -> creditCardRepository.findByNumber(number)).getVersion(),
+                "The forced version increment should evict the cached card");
+    }
+
+    @Test
+    public void testDeletedCardIsNotServedFromCache() {
+        CreditCard creditCard = inTransaction(() -> creditCardRepository.findByNumber(number));
+
+        inTransaction(() -> creditCardRepository.deleteByIdIn(List.of(creditCard.getId())));
+
+        assertNull(inTransaction(() -> creditCardRepository.findByNumber(number)),
+                "A bulk delete should invalidate the cached query result and card");
+    }
+
+    private <T> T inTransaction(Supplier<T> action) {
+        return new TransactionTemplate(transactionManager).execute(status -> action.get());
+    }
+}
@@ -0,0 +1,142 @@
+package com.shepherdmoney.interviewproject.controller;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import com.shepherdmoney.interviewproject.model.CreditCard;
+import com.shepherdmoney.interviewproject.model.User;
+import com.shepherdmoney.interviewproject.repository.CreditCardRepository;
+import com.shepherdmoney.interviewproject.repository.UserRepository;
+import com.shepherdmoney.interviewproject.service.ResourceVersions;
+import com.shepherdmoney.interviewproject.service.ResponseCache;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class CreditCardControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CreditCardRepository creditCardRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ResponseCache responseCache;
+
+    @Autowired
+    private ResourceVersions resourceVersions;
+
+    @Test
+    public void testListCardsPagesByKeyset() throws Exception {
+        User user = new User();
+        user.setName("Paged User");
+        user.setEmail("paged@example.com");
+        userRepository.save(user);
+        for (int i = 0; i < 5; i++) {
+            CreditCard creditCard = new CreditCard();
+            creditCard.setIssuanceBank("Bank " + i);
+            creditCard.setNumber(UUID.randomUUID().toString());
+            creditCard.setOwner(user);
+            creditCardRepository.save(creditCard);
+        }
+
+        MvcResult first = mockMvc.perform(get("/credit-card:all")
+                        .param("userId", String.valueOf(user.getId())).param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].issuanceBank").value("Bank 0"))
+                .andExpect(header().exists("X-Next-After-Id"))
+                .andReturn();
+        MvcResult second = mockMvc.perform(get("/credit-card:all")
+                        .param("userId", String.valueOf(user.getId())).param("limit", "2")
+                        .param("afterId", first.getResponse().getHeader("X-Next-After-Id")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].issuanceBank").value("Bank 2"))
+                .andExpect(jsonPath("$[1].issuanceBank").value("Bank 3"))
+                .andReturn();
+        mockMvc.perform(get("/credit-card:all")
+                        .param("userId", String.valueOf(user.getId())).param("limit", "2")
+                        .param("afterId", second.getResponse().getHeader("X-Next-After-Id")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].issuanceBank").value("Bank 4"))
+                .andExpect(header().doesNotExist("X-Next-After-Id"));
+
+        DistributionSummary entitiesLoaded = meterRegistry.find("app.request.entities.loaded")
+                .tag("handler", "getAllCardOfUser").summary();
+        assertNotNull(entitiesLoaded, "Entities loaded per request should be recorded for the handler");
+        assertEquals(0.0, entitiesLoaded.totalAmount(), "Listing cards should not hydrate any entity");
+    }
+
+    @Test
+    public void testBalanceHistoryHonorsIfNoneMatch() throws Exception {
+        User user = new User();
+        user.setName("Polling User");
+        user.setEmail("polling@example.com");
+        userRepository.save(user);
+        CreditCard creditCard = new CreditCard();
+        creditCard.setIssuanceBank("Bank");
+        creditCard.setNumber(UUID.randomUUID().toString());
+        creditCard.setOwner(user);
+        creditCardRepository.save(creditCard);
+
+        String etag = mockMvc.perform(get("/credit-card:balance-history").param("cardNumber", creditCard.getNumber()))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andReturn().getResponse().getHeader("ETag");
+        long notModified = responseCache.stats().getNotModified();
+        mockMvc.perform(get("/credit-card:balance-history").param("cardNumber", creditCard.getNumber())
+                        .header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+        assertEquals(notModified + 1, responseCache.stats().getNotModified(), "The 304 should be counted");
+
+        mockMvc.perform(post("/credit-card:update-balance").contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"creditCardNumber\":\"" + creditCard.getNumber() + "\",\"balanceDate\":\""
+                                + LocalDate.now() + "\",\"balanceAmount\":42.0}]"))
+                .andExpect(status().isOk());
+
+        MvcResult changed = mockMvc.perform(get("/credit-card:balance-history").param("cardNumber", creditCard.getNumber())
+                        .header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andReturn();
+        assertNotEquals(etag, changed.getResponse().getHeader("ETag"), "An update should change the ETag");
+        assertTrue(changed.getResponse().getContentAsString().contains("42.0"), "The update should be visible");
+    }
+
+    @Test
+    public void testBalanceHistoryOfUnknownCardIgnoresIfNoneMatch() throws Exception {
+        String unknownNumber = UUID.randomUUID().toString();
+        String unversionedEtag = resourceVersions.etag(0);
+        mockMvc.perform(get("/credit-card:balance-history").param("cardNumber", unknownNumber)
+                        .header("If-None-Match", unversionedEtag))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testListCardsRejectsOutOfRangeLimit() throws Exception {
+        mockMvc.perform(get("/credit-card:all").param("userId", "1").param("limit", "0"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/credit-card:all").param("userId", "1").param("limit", "1001"))
+                .andExpect(status().isBadRequest());
+    }
+}
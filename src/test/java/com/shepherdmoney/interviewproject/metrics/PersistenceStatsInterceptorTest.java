@@ -0,0 +1,40 @@
+package com.shepherdmoney.interviewproject.metrics;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class PersistenceStatsInterceptorTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    public void testHandlerRecordsPersistenceStats() throws Exception {
+        mockMvc.perform(get("/credit-card:all").param("userId", "-1")).andExpect(status().isOk());
+
+        DistributionSummary statements = meterRegistry.find("app.request.statements")
+                .tag("handler", "getAllCardOfUser").summary();
+        assertNotNull(statements, "Statements per request should be recorded for the handler");
+        assertTrue(statements.count() >= 1);
+        assertTrue(statements.totalAmount() >= 1, "Listing cards should execute at least one statement");
+
+        Timer timer = meterRegistry.find("app.handler").tag("method", "getAllCardOfUser").timer();
+        assertNotNull(timer, "Handler should be timed");
+        assertTrue(timer.count() >= 1);
+    }
+}
@@ -0,0 +1,61 @@
+package com.shepherdmoney.interviewproject.model;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class BalanceArchiveCodecTest {
+
+    private static final int YEAR = 2023;
+
+    @Test
+    public void testRoundTripInCents() {
+        Map<LocalDate, Double> balances = new LinkedHashMap<>();
+        for (int day = 1; day <= 365; day += 2) {
+            balances.put(LocalDate.ofYearDay(YEAR, day), (day < 300 ? 250_000 + day * 37 : -1250 - day) / 100.0);
+        }
+
+        byte[] data = BalanceArchiveCodec.encode(records(balances));
+
+        assertEquals(balances, decode(data), "Decoded records should match the encoded ones");
+        assertTrue(data.length < balances.size() * 3, "Whole cents with small deltas should compress well, was " + data.length);
+    }
+
+    @Test
+    public void testBalancesOutsideCentsAreKeptExactly() {
+        Map<LocalDate, Double> balances = new LinkedHashMap<>();
+        balances.put(LocalDate.of(YEAR, 1, 1), 10.125);
+        balances.put(LocalDate.of(YEAR, 6, 30), -10.0 / 3);
+        balances.put(LocalDate.of(YEAR, 12, 31), 1e-9);
+
+        assertEquals(balances, decode(BalanceArchiveCodec.encode(records(balances))),
+                "Archiving should never round a balance");
+    }
+
+    @Test
+    public void testEmptySegment() {
+        assertTrue(decode(BalanceArchiveCodec.encode(List.of())).isEmpty());
+    }
+
+    private static List<BalanceHistory> records(Map<LocalDate, Double> balances) {
+        List<BalanceHistory> records = new ArrayList<>();
+        balances.forEach((date, balance) -> {
+            BalanceHistory history = new BalanceHistory();
+            history.setDate(date);
+            history.setBalance(balance);
+            records.add(history);
+        });
+        return records;
+    }
+
+    private static Map<LocalDate, Double> decode(byte[] data) {
+        Map<LocalDate, Double> balances = new LinkedHashMap<>();
+        BalanceArchiveCodec.decode(YEAR, ByteBuffer.wrap(data), balances::put);
+        return balances;
+    }
+}
@@ -0,0 +1,98 @@
+package com.shepherdmoney.interviewproject.model;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.time.LocalDate;
+
+public class BalanceDeltaTreeTest {
+    private BalanceDeltaTree deltas;
+
+    @BeforeEach
+    void setUp() {
+        deltas = new BalanceDeltaTree();
+    }
+
+    @Test
+    public void testEmptyTree() {
+        assertTrue(deltas.isEmpty(), "New tree should have no pending offsets");
+        assertEquals(0.0, deltas.deltaAt(LocalDate.parse("2023-04-10")),
+            "Empty tree should resolve every date to 0.0");
+    }
+
+    @Test
+    public void testRangeAdd() {
+        deltas.addRange(LocalDate.parse("2023-04-10"), LocalDate.parse("2023-04-20"), 50.0);
+
+        assertEquals(0.0, deltas.deltaAt(LocalDate.parse("2023-04-09")),
+            "Dates before the range should not be shifted");
+        assertEquals(50.0, deltas.deltaAt(LocalDate.parse("2023-04-10")),
+            "First date of the range should be shifted");
+        assertEquals(50.0, deltas.deltaAt(LocalDate.parse("2023-04-20")),
+            "Last date of the range should be shifted");
+        assertEquals(0.0, deltas.deltaAt(LocalDate.parse("2023-04-21")),
+            "Dates after the range should not be shifted");
+    }
+
+    @Test
+    public void testOverlappingRangesGrowInBothDirections() {
+        deltas.addRange(LocalDate.parse("2023-04-10"), LocalDate.parse("2023-04-20"), 50.0);
+        deltas.addRange(LocalDate.parse("2022-01-01"), LocalDate.parse("2023-04-15"), -20.0);
+        deltas.addRange(LocalDate.parse("2023-04-12"), LocalDate.parse("2025-12-31"), 5.0);
+
+        assertEquals(-20.0, deltas.deltaAt(LocalDate.parse("2022-06-01")));
+        assertEquals(30.0, deltas.deltaAt(LocalDate.parse("2023-04-11")));
+        assertEquals(35.0, deltas.deltaAt(LocalDate.parse("2023-04-15")));
+        assertEquals(55.0, deltas.deltaAt(LocalDate.parse("2023-04-16")));
+        assertEquals(5.0, deltas.deltaAt(LocalDate.parse("2025-12-31")));
+        assertEquals(0.0, deltas.deltaAt(LocalDate.parse("2026-01-01")));
+        assertEquals(LocalDate.parse("2022-01-01"), deltas.firstDate());
+        assertEquals(LocalDate.parse("2025-12-31"), deltas.lastDate());
+    }
+
+    @Test
+    public void testRangesSpanningCenturiesStayCheap() {
+        // Only the boundary days are stored, so these would otherwise need arrays covering every day in between
+        deltas.addRange(LocalDate.MIN, LocalDate.parse("2023-04-20"), 10.0);
+        deltas.addRange(LocalDate.parse("0001-01-01"), LocalDate.MAX.minusDays(1), 2.5);
+        deltas.addRange(LocalDate.parse("2023-04-21"), LocalDate.parse("2023-04-21"), -1.0);
+
+        assertEquals(10.0, deltas.deltaAt(LocalDate.MIN));
+        assertEquals(10.0, deltas.deltaAt(LocalDate.parse("-0001-12-31")));
+        assertEquals(12.5, deltas.deltaAt(LocalDate.parse("2023-04-20")));
+        assertEquals(1.5, deltas.deltaAt(LocalDate.parse("2023-04-21")));
+        assertEquals(2.5, deltas.deltaAt(LocalDate.MAX.minusDays(1)));
+        assertEquals(0.0, deltas.deltaAt(LocalDate.MAX));
+        assertEquals(LocalDate.MIN, deltas.firstDate());
+        assertEquals(LocalDate.MAX.minusDays(1), deltas.lastDate());
+    }
+
+    @Test
+    public void testManyDistinctBackdatesMatchDayByDaySums() {
+        // Backdates on a different day each, in date order, the order most likely to unbalance a search tree
+        LocalDate today = LocalDate.parse("2024-05-01");
+        int corrections = 50_000;
+        double[] expected = new double[corrections + 1];
+        for (int i = 0; i < corrections; i++) {
+            double delta = (i % 7) - 3;
+            deltas.addRange(today.minusDays(corrections - i), today, delta);
+            // Every correction reaches today, so the offset of a day is the sum of the corrections on or before it
+            expected[i + 1] = expected[i] + delta;
+        }
+
+        for (int day = 0; day < corrections; day++) {
+            assertEquals(expected[day + 1], deltas.deltaAt(today.minusDays(corrections - day)), 1e-9,
+                "Offset " + (corrections - day) + " days before today");
+        }
+        assertEquals(0.0, deltas.deltaAt(today.plusDays(1)));
+    }
+
+    @Test
+    public void testClear() {
+        deltas.addRange(LocalDate.parse("2023-04-10"), LocalDate.parse("2023-04-20"), 50.0);
+        deltas.clear();
+
+        assertTrue(deltas.isEmpty(), "Cleared tree should have no pending offsets");
+        assertEquals(0.0, deltas.deltaAt(LocalDate.parse("2023-04-15")));
+    }
+}
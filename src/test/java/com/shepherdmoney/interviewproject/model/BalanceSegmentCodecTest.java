@@ -0,0 +1,79 @@
+package com.shepherdmoney.interviewproject.model;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class BalanceSegmentCodecTest {
+
+    private static final LocalDate MONTH = LocalDate.parse("2023-04-01");
+
+    @Test
+    public void testRoundTrip() {
+        Map<LocalDate, Double> balances = new LinkedHashMap<>();
+        balances.put(LocalDate.parse("2023-04-01"), 1250.75);
+        balances.put(LocalDate.parse("2023-04-02"), 1250.70);
+        balances.put(LocalDate.parse("2023-04-15"), -42.5);
+        balances.put(LocalDate.parse("2023-04-30"), 98_765_432.1);
+
+        byte[] data = BalanceSegmentCodec.encode(records(balances));
+
+        assertEquals(balances, decode(data), "Decoded records should match the encoded ones");
+        assertTrue(data.length <= BalanceSegmentCodec.MAX_SIZE, "Encoding should fit the column");
+    }
+
+    @Test
+    public void testEmptySegment() {
+        byte[] data = BalanceSegmentCodec.encode(List.of());
+
+        assertEquals(1, data.length, "An empty segment should only hold its count");
+        assertTrue(decode(data).isEmpty());
+    }
+
+    @Test
+    public void testFullMonthOfSmallChangesStaysCompact() {
+        Map<LocalDate, Double> balances = new LinkedHashMap<>();
+        for (int day = 1; day <= 31; day++) {
+            balances.put(MONTH.plusMonths(1).withDayOfMonth(day), 5000.0 + day * 0.25);
+        }
+
+        byte[] data = BalanceSegmentCodec.encode(records(balances));
+
+        assertEquals(balances, decode(MONTH.plusMonths(1), data));
+        assertTrue(data.length < 100, "Consecutive days with small deltas should take a few bytes each, was " + data.length);
+    }
+
+    @Test
+    public void testBalancesAreRoundedToCents() {
+        byte[] data = BalanceSegmentCodec.encode(records(Map.of(MONTH, 10.125)));
+
+        assertEquals(Map.of(MONTH, 10.13), decode(data));
+        assertEquals(10.13, BalanceSegmentCodec.round(10.125), "round should match what the codec stores");
+        assertEquals(-3.33, BalanceSegmentCodec.round(-10.0 / 3));
+    }
+
+    private static List<BalanceHistory> records(Map<LocalDate, Double> balances) {
+        List<BalanceHistory> records = new ArrayList<>();
+        balances.forEach((date, balance) -> {
+            BalanceHistory history = new BalanceHistory();
+            history.setDate(date);
+            history.setBalance(balance);
+            records.add(history);
+        });
+        return records;
+    }
+
+    private static Map<LocalDate, Double> decode(byte[] data) {
+        return decode(MONTH, data);
+    }
+
+    private static Map<LocalDate, Double> decode(LocalDate month, byte[] data) {
+        Map<LocalDate, Double> balances = new LinkedHashMap<>();
+        BalanceSegmentCodec.decode(month, data, balances::put);
+        return balances;
+    }
+}
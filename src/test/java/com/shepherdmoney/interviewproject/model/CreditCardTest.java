@@ -4,6 +4,8 @@ import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
 
 public class CreditCardTest {
     private CreditCard creditCard;
@@ -121,4 +123,96 @@ public class CreditCardTest {
             currentDate = currentDate.plusDays(1);
         }
     }
+
+    @Test
+    public void testPropagateBalanceShiftsLaterDates() {
+        LocalDate today = LocalDate.now();
+        creditCard.insertBalance(today.minusDays(10), 100.0);
+        creditCard.insertBalance(today.minusDays(5), 150.0);
+        creditCard.insertBalance(today, 200.0);
+
+        double difference = creditCard.propagateBalance(today.minusDays(8), 130.0);
+
+        assertEquals(30.0, difference, "Difference should be taken from the closest previous balance");
+        assertEquals(100.0, creditCard.getBalance(today.minusDays(9)),
+            "Balances before the updated date should not change");
+        assertEquals(130.0, creditCard.getBalance(today.minusDays(8)),
+            "Updated date should hold the new balance");
+        assertEquals(130.0, creditCard.getBalance(today.minusDays(6)),
+            "Gap dates should resolve to the closest previous balance");
+        assertEquals(180.0, creditCard.getBalance(today.minusDays(5)),
+            "Later balances should be shifted by the difference");
+        assertEquals(230.0, creditCard.getBalance(today),
+            "Today's balance should be shifted by the difference");
+    }
+
+    @Test
+    public void testPropagateBalanceWithoutPreviousBalance() {
+        LocalDate today = LocalDate.now();
+        creditCard.insertBalance(today, 200.0);
+
+        double difference = creditCard.propagateBalance(today.minusDays(3), 50.0);
+
+        assertEquals(0.0, difference, "Nothing should be propagated without a previous balance");
+        assertEquals(200.0, creditCard.getBalance(today));
+    }
+
+    @Test
+    public void testFlushBalanceHistory() {
+        LocalDate today = LocalDate.now();
+        creditCard.insertBalance(today.minusDays(10), 100.0);
+        creditCard.insertBalance(today.minusDays(5), 150.0);
+        creditCard.insertBalance(today, 200.0);
+        creditCard.propagateBalance(today.minusDays(10), 120.0);
+        creditCard.propagateBalance(today.minusDays(5), 160.0);
+
+        assertEquals(2, creditCard.flushBalanceHistory(),
+            "Only records after the first updated date should carry a pending offset");
+        assertEquals(3, creditCard.getBalanceHistory().size(),
+            "Propagation should not materialize a record per day");
+        assertEquals(210.0, creditCard.getBalanceHistory().get(0).getBalance(),
+            "Stored balances should include the folded offsets");
+        assertEquals(160.0, creditCard.getBalance(today.minusDays(5)));
+        assertEquals(120.0, creditCard.getBalance(today.minusDays(10)));
+    }
+
+    @Test
+    public void testInsertBalanceReplacesSameDate() {
+        LocalDate today = LocalDate.now();
+        creditCard.insertBalance(today, 100.0);
+        creditCard.insertBalance(today, 250.0);
+
+        assertEquals(250.0, creditCard.getBalance(today),
+            "Latest insert for a date should win");
+        assertEquals(1, creditCard.getBalanceHistory().size(),
+            "Only one record should be kept per date");
+    }
+
+    @Test
+    public void testTimelineBuiltFromLoadedHistory() {
+        List<BalanceHistory> loaded = new ArrayList<>();
+        loaded.add(history("2023-04-16", 900.0));
+        loaded.add(history("2023-04-12", 1200.0));
+        loaded.add(history("2023-04-10", 800.0));
+        creditCard.setBalanceHistory(loaded);
+
+        assertEquals(1200.0, creditCard.getBalance(LocalDate.parse("2023-04-14")),
+            "Floor lookups should work on a loaded history");
+
+        creditCard.updateBalance(LocalDate.parse("2023-04-13"), 1100.0);
+        creditCard.flushBalanceHistory();
+
+        assertSame(loaded, creditCard.getBalanceHistory(), "Mapped list instance should be kept");
+        assertEquals(4, loaded.size(), "Flush should sync new records into the mapped list");
+        assertEquals(LocalDate.parse("2023-04-13"), loaded.get(1).getDate(),
+            "Synced list should stay in reverse chronological order");
+    }
+
+    private BalanceHistory history(String date, double balance) {
+        BalanceHistory history = new BalanceHistory();
+        history.setDate(LocalDate.parse(date));
+        history.setBalance(balance);
+        history.setCreditCard(creditCard);
+        return history;
+    }
 }
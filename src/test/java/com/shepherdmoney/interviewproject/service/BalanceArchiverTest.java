@@ -0,0 +1,292 @@
+package com.shepherdmoney.interviewproject.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.shepherdmoney.interviewproject.config.ThreadConfig;
+import com.shepherdmoney.interviewproject.event.UserDeletedEvent;
+import com.shepherdmoney.interviewproject.metrics.BalanceMetrics;
+import com.shepherdmoney.interviewproject.model.BalanceHistory;
+import com.shepherdmoney.interviewproject.model.CreditCard;
+import com.shepherdmoney.interviewproject.model.User;
+import com.shepherdmoney.interviewproject.repository.BalanceHistoryRepository;
+import com.shepherdmoney.interviewproject.repository.BalanceRollupRepository;
+import com.shepherdmoney.interviewproject.repository.CreditCardRepository;
+import com.shepherdmoney.interviewproject.repository.UserRepository;
+import com.shepherdmoney.interviewproject.vo.request.UpdateBalancePayload;
+import com.shepherdmoney.interviewproject.vo.response.BalanceHistoryView;
+import com.shepherdmoney.interviewproject.vo.response.BalanceRollupCheck;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Archives the older half of a card's history and checks reads and backdated updates against the same card
+ * kept in memory. The archive and the services using it are built by hand over a temporary directory.
+ */
+@SpringBootTest
+@Transactional
+public class BalanceArchiverTest {
+
+    private static final LocalDate TODAY = LocalDate.now();
+
+    @Autowired
+    private CreditCardRepository creditCardRepository;
+
+    @Autowired
+    private BalanceHistoryRepository balanceHistoryRepository;
+
+    @Autowired
+    private BalanceRollupRepository balanceRollupRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BalanceMetrics balanceMetrics;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @TempDir
+    private Path directory;
+
+    private BalanceArchive balanceArchive;
+
+    private ArchivedBalanceStore balanceStore;
+
+    private BalanceRollupService balanceRollupService;
+
+    private BalanceArchiver balanceArchiver;
+
+    private BalanceUpdateService balanceUpdateService;
+
+    private CreditCard creditCard;
+
+    /**
+     * The same card, never archived, in memory.
+     */
+    private CreditCard expected;
+
+    private LocalDate cutoff;
+
+    @BeforeEach
+    void setUp() {
+        balanceArchive = new BalanceArchive(directory);
+        build();
+
+        User user = new User();
+        user.setName("Archive User");
+        user.setEmail("archive@example.com");
+        userRepository.save(user);
+
+        creditCard = new CreditCard();
+        creditCard.setIssuanceBank("Bank");
+        creditCard.setNumber(UUID.randomUUID().toString());
+        creditCard.setOwner(user);
+        expected = new CreditCard();
+        for (int day = 600; day >= 0; day -= 5) {
+            // Balances beyond whole cents must survive the archive unchanged
+            creditCard.insertBalance(TODAY.minusDays(day), 1000.0 + day / 3.0);
+            expected.insertBalance(TODAY.minusDays(day), 1000.0 + day / 3.0);
+        }
+        creditCard.flushBalanceHistory();
+        creditCardRepository.save(creditCard);
+        balanceRollupService.refresh(creditCard, TODAY.minusDays(600));
+        entityManager.flush();
+        entityManager.clear();
+        cutoff = balanceArchiver.cutoff(TODAY);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        balanceArchive.close();
+    }
+
+    @Test
+    public void testArchiveMovesOldRecordsAndReadsStayTheSame() {
+        int archivable = 0;
+        for (BalanceHistory history : expected.getBalanceHistorySince(TODAY.minusDays(600))) {
+            archivable += history.getDate().isBefore(cutoff) ? 1 : 0;
+        }
+
+        assertEquals(archivable, archive(), "Every record before the cutoff should be archived");
+        assertEquals(0, archive(), "Nothing should be left to archive");
+
+        CreditCard stored = creditCardRepository.findByNumber(creditCard.getNumber());
+        assertEquals(cutoff, stored.getArchivedBefore());
+        List<BalanceHistory> rows = stored.getBalanceHistory();
+        assertFalse(rows.get(rows.size() - 1).getDate().isBefore(cutoff), "Archived rows should be deleted");
+        assertMatchesExpected();
+    }
+
+    @Test
+    public void testBackdatedUpdateBringsBackArchivedRecords() {
+        archive();
+        update(TODAY.minusDays(500), 42.0);
+        update(TODAY.minusDays(30), 7.5);
+
+        CreditCard stored = creditCardRepository.findByNumber(creditCard.getNumber());
+        assertTrue(stored.getArchivedBefore().isBefore(TODAY.minusDays(500)),
+                "Records from the updated date on should be stored again, archived before " + stored.getArchivedBefore());
+        assertMatchesExpected();
+        BalanceRollupCheck check = balanceRollupService.check(creditCard.getNumber(), false);
+        assertTrue(check.getMismatches().isEmpty(), "Rollups should match the updated history: " + check.getMismatches());
+        entityManager.clear();
+
+        assertTrue(archive() > 0, "Restored records should be archived again");
+        assertMatchesExpected();
+    }
+
+    @Test
+    public void testReopenedArchiveReadsTheSameRecords() throws IOException {
+        archive();
+        balanceArchive.close();
+        // A torn append left by a crash is cut off on open
+        Path file = directory.resolve("balance-" + TODAY.minusDays(600).getYear() + ".archive");
+        Files.write(file, new byte[]{0, 0, 0, 1, 0, 0}, StandardOpenOption.APPEND);
+
+        balanceArchive = new BalanceArchive(directory);
+        build();
+
+        assertMatchesExpected();
+    }
+
+    @Test
+    public void testRetainDropsSegmentsNoLiveCardCommitted() throws IOException {
+        archive();
+        balanceArchive.close();
+
+        // As if the database had been recreated: no card committed any of the segments in the files
+        balanceArchive = new BalanceArchive(directory);
+        assertTrue(balanceArchive.retain(Map.of()) > 0, "Every segment should be dropped");
+        build();
+
+        assertFalse(balanceArchive.contains(creditCard.getId()), "A card reusing the id should not see the old segments");
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(List.of(), files.toList(), "Files left without segments should be deleted");
+        }
+    }
+
+    @Test
+    public void testRetainDropsSupersededSegmentsAndReadsStayTheSame() throws IOException {
+        archive();
+        update(TODAY.minusDays(500), 42.0);
+        archive();
+        balanceArchive.close();
+        long sizeBefore = archiveSize();
+
+        balanceArchive = new BalanceArchive(directory);
+        long committed = creditCardRepository.findArchiveStateById(creditCard.getId()).getArchiveGeneration();
+        assertTrue(balanceArchive.retain(Map.of(creditCard.getId(), committed)) > 0, "Superseded segments should be dropped");
+        build();
+
+        assertTrue(archiveSize() < sizeBefore, "The files should shrink");
+        assertMatchesExpected();
+        balanceArchive.close();
+        balanceArchive = new BalanceArchive(directory);
+        assertEquals(0, balanceArchive.retain(Map.of(creditCard.getId(), committed)), "Nothing should be left to drop");
+        build();
+        assertMatchesExpected();
+    }
+
+    @Test
+    public void testDeletedCardsLeaveTheIndex() {
+        archive();
+        assertTrue(balanceArchive.contains(creditCard.getId()));
+
+        balanceArchiver.onUserDeleted(new UserDeletedEvent(creditCard.getOwner().getId(),
+                List.of(creditCard.getNumber()), List.of(creditCard.getId())));
+
+        assertFalse(balanceArchive.contains(creditCard.getId()), "Segments of a deleted card should be dropped");
+    }
+
+    private long archiveSize() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            long size = 0;
+            for (Path file : files.toList()) {
+                size += Files.size(file);
+            }
+            return size;
+        }
+    }
+
+    private void build() {
+        RowBalanceStore rowBalanceStore = new RowBalanceStore(creditCardRepository, balanceHistoryRepository, balanceRollupRepository);
+        balanceStore = new ArchivedBalanceStore(rowBalanceStore, balanceArchive, creditCardRepository, balanceMetrics);
+        balanceRollupService = new BalanceRollupService(balanceRollupRepository, creditCardRepository, balanceStore, balanceMetrics);
+        balanceArchiver = new BalanceArchiver(creditCardRepository, balanceStore, balanceArchive, balanceMetrics,
+                transactionManager, "rows", true, Duration.ofDays(365), Duration.ofHours(1), 10,
+                ThreadConfig.PLATFORM);
+        balanceUpdateService = new BalanceUpdateService(balanceStore, balanceMetrics, entityManager, eventPublisher,
+                balanceRollupService, null, transactionManager, 1, false, 256);
+    }
+
+    private int archive() {
+        int moved = balanceArchiver.archive(List.of(creditCard.getNumber()), cutoff);
+        entityManager.flush();
+        entityManager.clear();
+        return moved;
+    }
+
+    private void update(LocalDate date, double amount) {
+        UpdateBalancePayload payload = new UpdateBalancePayload();
+        payload.setCreditCardNumber(creditCard.getNumber());
+        payload.setBalanceDate(date);
+        payload.setBalanceAmount(amount);
+        balanceUpdateService.applyUpdates(List.of(payload));
+        entityManager.flush();
+        entityManager.clear();
+        expected.propagateBalance(date, amount);
+        expected.flushBalanceHistory();
+    }
+
+    private void assertMatchesExpected() {
+        for (int day = 610; day >= 0; day--) {
+            LocalDate date = TODAY.minusDays(day);
+            BalanceHistoryView floor = balanceStore.findFloor(creditCard.getId(), date);
+            assertEquals(expected.getBalance(date), floor == null ? 0.0 : floor.getBalance(), "Balance on " + date);
+        }
+        try (Stream<BalanceHistoryView> range = balanceStore.stream(creditCard.getId(), TODAY.minusDays(550), TODAY)) {
+            assertEquals(views(expected, TODAY.minusDays(550)), range.toList());
+        }
+        CreditCard stored = creditCardRepository.findByNumber(creditCard.getNumber());
+        balanceStore.loadHistory(stored);
+        assertEquals(expected.getBalanceHistoryString(), stored.getBalanceHistoryString());
+        entityManager.clear();
+    }
+
+    private static List<BalanceHistoryView> views(CreditCard creditCard, LocalDate from) {
+        List<BalanceHistoryView> views = new ArrayList<>();
+        for (BalanceHistory history : creditCard.getBalanceHistorySince(from)) {
+            if (!history.getDate().isBefore(from)) {
+                views.add(new BalanceHistoryView(history.getDate(), history.getBalance()));
+            }
+        }
+        return views;
+    }
+}
@@ -0,0 +1,138 @@
+package com.shepherdmoney.interviewproject.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shepherdmoney.interviewproject.model.CreditCard;
+import com.shepherdmoney.interviewproject.model.User;
+import com.shepherdmoney.interviewproject.repository.CreditCardRepository;
+import com.shepherdmoney.interviewproject.repository.UserRepository;
+import com.shepherdmoney.interviewproject.vo.response.BalanceFeedResult;
+import com.shepherdmoney.interviewproject.vo.response.BalanceUpdateResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
+
+@SpringBootTest
+@Transactional
+public class BalanceFeedServiceTest {
+
+    @Autowired
+    private BalanceWriteBehindBuffer balanceWriteBehindBuffer;
+
+    @Autowired
+    private CreditCardRepository creditCardRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private BalanceFeedService balanceFeedService;
+
+    private String number;
+
+    @BeforeEach
+    void setUp() {
+        // Small chunks so a short feed spans several of them
+        balanceFeedService = new BalanceFeedService(balanceWriteBehindBuffer, objectMapper, 2);
+
+        User user = new User();
+        user.setName("Feed User");
+        user.setEmail("feed@example.com");
+        userRepository.save(user);
+        number = UUID.randomUUID().toString();
+        CreditCard creditCard = new CreditCard();
+        creditCard.setIssuanceBank("Bank");
+        creditCard.setNumber(number);
+        creditCard.setOwner(user);
+        creditCardRepository.save(creditCard);
+    }
+
+    @Test
+    public void testCsvFeedIsAppliedInChunks() {
+        String csv = "creditCardNumber,balanceDate,balanceAmount\n"
+                + number + ",2020-01-01,100\n"
+                + "\n"
+                + "\"" + number + "\", \"2020-01-05\" , 150.5\n"
+                + "missing-card,2020-01-02,1\n"
+                + number + ",2020-01-10,200\n";
+
+        BalanceFeedResult result = balanceFeedService.apply(stream(csv.getBytes(StandardCharsets.UTF_8)), BalanceFeedService.Format.CSV);
+
+        assertEquals(BalanceFeedResult.Status.COMPLETED, result.getStatus(), result.getMessage());
+        assertEquals(4, result.getRowsApplied());
+        assertEquals(2, result.getChunks(), "Four rows in chunks of two");
+        assertEquals(1, result.getFailedCards());
+        assertEquals(BalanceUpdateResult.Status.NOT_FOUND, result.getFailures().get(0).getStatus());
+
+        CreditCard creditCard = creditCardRepository.findByNumber(number);
+        assertEquals(100.0, creditCard.getBalance(LocalDate.of(2020, 1, 1)));
+        assertEquals(150.5, creditCard.getBalance(LocalDate.of(2020, 1, 7)));
+        assertEquals(200.0, creditCard.getBalance(LocalDate.of(2020, 1, 10)));
+    }
+
+    @Test
+    public void testGzipNdjsonFeedIsApplied() throws IOException {
+        String ndjson = "{\"creditCardNumber\":\"" + number + "\",\"balanceDate\":\"2020-02-01\",\"balanceAmount\":10}\n"
+                + "{\"balanceAmount\":20.25,\"ignored\":[1,2],\"balanceDate\":\"2020-02-03\",\"creditCardNumber\":\"" + number + "\"}\n"
+                + "{\"creditCardNumber\":\"" + number + "\",\"balanceDate\":\"2020-02-29\",\"balanceAmount\":30}\n";
+
+        BalanceFeedResult result = balanceFeedService.apply(stream(gzip(ndjson)), BalanceFeedService.Format.NDJSON);
+
+        assertEquals(BalanceFeedResult.Status.COMPLETED, result.getStatus(), result.getMessage());
+        assertEquals(3, result.getRowsApplied());
+        CreditCard creditCard = creditCardRepository.findByNumber(number);
+        assertEquals(20.25, creditCard.getBalance(LocalDate.of(2020, 2, 28)));
+        assertEquals(30.0, creditCard.getBalance(LocalDate.of(2020, 2, 29)));
+    }
+
+    @Test
+    public void testMalformedRowStopsFeedAfterAppliedChunks() {
+        String csv = number + ",2020-03-01,1\n"
+                + number + ",2020-03-02,2\n"
+                + number + ",2020-03-03,3\n"
+                + number + ",2021-02-29,4\n";
+
+        BalanceFeedResult result = balanceFeedService.apply(stream(csv.getBytes(StandardCharsets.UTF_8)), BalanceFeedService.Format.CSV);
+
+        assertEquals(BalanceFeedResult.Status.MALFORMED, result.getStatus());
+        assertEquals(2, result.getRowsApplied(), "Only the chunk before the bad row should be applied");
+        assertTrue(result.getMessage().startsWith("Line 4"), result.getMessage());
+    }
+
+    @Test
+    public void testEpochDayParsingMatchesLocalDate() {
+        for (LocalDate date = LocalDate.of(1899, 12, 1); date.isBefore(LocalDate.of(2101, 3, 1)); date = date.plusDays(13)) {
+            assertEquals(date.toEpochDay(), BalanceFeedReader.parseEpochDay(date.toString(), 0, 10), "Epoch day of " + date);
+        }
+        assertEquals(LocalDate.of(2000, 2, 29).toEpochDay(), BalanceFeedReader.parseEpochDay("2000-02-29", 0, 10));
+        assertThrows(InvalidPayloadException.class, () -> BalanceFeedReader.parseEpochDay("1900-02-29", 0, 10));
+        assertThrows(InvalidPayloadException.class, () -> BalanceFeedReader.parseEpochDay("2020-13-01", 0, 10));
+        assertThrows(InvalidPayloadException.class, () -> BalanceFeedReader.parseEpochDay("2020-1-01x", 0, 10));
+    }
+
+    private static InputStream stream(byte[] bytes) {
+        return new ByteArrayInputStream(bytes);
+    }
+
+    private static byte[] gzip(String text) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,91 @@
+package com.shepherdmoney.interviewproject.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.shepherdmoney.interviewproject.model.CreditCard;
+import com.shepherdmoney.interviewproject.model.User;
+import com.shepherdmoney.interviewproject.repository.CreditCardRepository;
+import com.shepherdmoney.interviewproject.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.UUID;
+
+@SpringBootTest
+@Transactional
+public class BalanceHistoryServiceTest {
+
+    @Autowired
+    private BalanceHistoryService balanceHistoryService;
+
+    @Autowired
+    private CreditCardRepository creditCardRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private int cardId;
+
+    @BeforeEach
+    void setUp() {
+        User user = new User();
+        user.setName("History User");
+        userRepository.save(user);
+
+        CreditCard creditCard = new CreditCard();
+        creditCard.setNumber(UUID.randomUUID().toString());
+        creditCard.setOwner(user);
+        creditCard.insertBalance(LocalDate.parse("2023-04-10"), 800.0);
+        creditCard.insertBalance(LocalDate.parse("2023-04-11"), 1000.0);
+        creditCard.insertBalance(LocalDate.parse("2023-04-12"), 1200.0);
+        creditCard.insertBalance(LocalDate.parse("2023-04-13"), 1100.0);
+        creditCard.flushBalanceHistory();
+        cardId = creditCardRepository.save(creditCard).getId();
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    public void testJsonArrayRange() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int written = balanceHistoryService.writeHistory(cardId, LocalDate.parse("2023-04-11"),
+                LocalDate.parse("2023-04-12"), 100, false, out);
+
+        assertEquals(2, written);
+        assertEquals("[{\"date\":\"2023-04-11\",\"balance\":1000.0},{\"date\":\"2023-04-12\",\"balance\":1200.0}]",
+                out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testNdjsonWithLimit() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int written = balanceHistoryService.writeHistory(cardId, BalanceHistoryService.EARLIEST_DATE,
+                BalanceHistoryService.LATEST_DATE, 3, true, out);
+
+        assertEquals(3, written, "Limit should cap the number of rows");
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(3, lines.length);
+        assertEquals("{\"date\":\"2023-04-10\",\"balance\":800.0}", lines[0],
+            "Rows should be streamed oldest first");
+    }
+
+    @Test
+    public void testEmptyRange() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int written = balanceHistoryService.writeHistory(cardId, LocalDate.parse("2024-01-01"),
+                BalanceHistoryService.LATEST_DATE, 100, false, out);
+
+        assertEquals(0, written);
+        assertEquals("[]", out.toString(StandardCharsets.UTF_8));
+    }
+}
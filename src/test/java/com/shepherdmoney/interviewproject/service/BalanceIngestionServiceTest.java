@@ -0,0 +1,105 @@
+package com.shepherdmoney.interviewproject.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+import com.shepherdmoney.interviewproject.config.ThreadConfig;
+import com.shepherdmoney.interviewproject.vo.request.UpdateBalancePayload;
+import com.shepherdmoney.interviewproject.vo.response.BalanceUpdateResult;
+import com.shepherdmoney.interviewproject.vo.response.IngestionJobView;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class BalanceIngestionServiceTest {
+    private final BalanceWriteBehindBuffer balanceWriteBehindBuffer = mock(BalanceWriteBehindBuffer.class);
+
+    private BalanceIngestionService ingestionService;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        ingestionService.shutdown();
+    }
+
+    @Test
+    public void testJobReportsProgressAndFailures() throws Exception {
+        when(balanceWriteBehindBuffer.applyNow(anyList())).thenAnswer(invocation -> {
+            List<UpdateBalancePayload> chunk = invocation.getArgument(0);
+            List<BalanceUpdateResult> results = new ArrayList<>();
+            for (UpdateBalancePayload payload : chunk) {
+                boolean missing = payload.getCreditCardNumber().equals("missing");
+                results.add(new BalanceUpdateResult(payload.getCreditCardNumber(),
+                        missing ? BalanceUpdateResult.Status.NOT_FOUND : BalanceUpdateResult.Status.UPDATED,
+                        missing ? 0 : 1, missing ? "Credit card with number missing does not exist." : null));
+            }
+            return results;
+        });
+        ingestionService = new BalanceIngestionService(balanceWriteBehindBuffer, 4, 8, 2, 100, ThreadConfig.VIRTUAL);
+
+        IngestionJobView submitted = ingestionService.submit(List.of(
+                payload("1111"), payload("2222"), payload("missing"), payload("3333")));
+
+        assertEquals(4, submitted.getTotalUpdates());
+        assertEquals(4, submitted.getTotalCards());
+        IngestionJobView finished = awaitJob(submitted.getJobId());
+        assertEquals(IngestionJobView.Status.COMPLETED_WITH_ERRORS, finished.getStatus());
+        assertEquals(4, finished.getProcessedUpdates());
+        assertEquals(1, finished.getFailedCards());
+        assertTrue(finished.getFailures().containsKey("missing"));
+        assertNotNull(finished.getElapsedMillis());
+    }
+
+    @Test
+    public void testCardUpdatesStayOrderedInOneChunk() throws Exception {
+        when(balanceWriteBehindBuffer.applyNow(anyList())).thenReturn(List.of());
+        ingestionService = new BalanceIngestionService(balanceWriteBehindBuffer, 2, 8, 1, 100, ThreadConfig.PLATFORM);
+
+        List<UpdateBalancePayload> payloads = List.of(payload("1111"), payload("1111"), payload("1111"));
+        awaitJob(ingestionService.submit(payloads).getJobId());
+
+        verify(balanceWriteBehindBuffer, times(1)).applyNow(payloads);
+    }
+
+    @Test
+    public void testFullQueueRejectsBatch() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(balanceWriteBehindBuffer.applyNow(anyList())).thenAnswer(invocation -> {
+            release.await(10, TimeUnit.SECONDS);
+            return List.of();
+        });
+        ingestionService = new BalanceIngestionService(balanceWriteBehindBuffer, 1, 1, 1, 100, ThreadConfig.PLATFORM);
+
+        IngestionJobView first = ingestionService.submit(List.of(payload("1111")));
+        assertThrows(IngestionRejectedException.class, () -> ingestionService.submit(List.of(payload("2222"))),
+            "A batch should be rejected while the partition queue is full");
+
+        release.countDown();
+        assertEquals(IngestionJobView.Status.COMPLETED, awaitJob(first.getJobId()).getStatus());
+        awaitJob(ingestionService.submit(List.of(payload("2222"))).getJobId());
+    }
+
+    private IngestionJobView awaitJob(String jobId) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        IngestionJobView job = ingestionService.getJob(jobId);
+        while (job.getFinishedAt() == null && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            job = ingestionService.getJob(jobId);
+        }
+        assertNotNull(job.getFinishedAt(), "Job should finish");
+        return job;
+    }
+
+    private static UpdateBalancePayload payload(String number) {
+        UpdateBalancePayload payload = new UpdateBalancePayload();
+        payload.setCreditCardNumber(number);
+        payload.setBalanceDate(LocalDate.now());
+        payload.setBalanceAmount(10.0);
+        return payload;
+    }
+}
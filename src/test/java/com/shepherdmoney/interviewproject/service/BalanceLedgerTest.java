@@ -0,0 +1,210 @@
+package com.shepherdmoney.interviewproject.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.shepherdmoney.interviewproject.config.ThreadConfig;
+import com.shepherdmoney.interviewproject.metrics.BalanceMetrics;
+import com.shepherdmoney.interviewproject.model.BalanceHistory;
+import com.shepherdmoney.interviewproject.model.CreditCard;
+import com.shepherdmoney.interviewproject.model.User;
+import com.shepherdmoney.interviewproject.repository.BalanceHistoryRepository;
+import com.shepherdmoney.interviewproject.repository.BalanceLedgerRepository;
+import com.shepherdmoney.interviewproject.repository.BalanceRollupRepository;
+import com.shepherdmoney.interviewproject.repository.CreditCardRepository;
+import com.shepherdmoney.interviewproject.repository.UserRepository;
+import com.shepherdmoney.interviewproject.vo.request.UpdateBalancePayload;
+import com.shepherdmoney.interviewproject.vo.response.BalanceHistoryView;
+import com.shepherdmoney.interviewproject.vo.response.BalanceRollupCheck;
+import com.shepherdmoney.interviewproject.vo.response.BalanceUpdateResult;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Appends updates to the ledger and checks reads and checkpoints against a card updated directly.
+ * The ledger and the services using it are built by hand, since the shared context has the ledger disabled.
+ */
+@SpringBootTest
+@Transactional
+public class BalanceLedgerTest {
+
+    private static final LocalDate TODAY = LocalDate.now();
+
+    @Autowired
+    private CreditCardRepository creditCardRepository;
+
+    @Autowired
+    private BalanceHistoryRepository balanceHistoryRepository;
+
+    @Autowired
+    private BalanceLedgerRepository balanceLedgerRepository;
+
+    @Autowired
+    private BalanceRollupRepository balanceRollupRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BalanceMetrics balanceMetrics;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private LedgerBalanceStore ledgerBalanceStore;
+
+    private BalanceRollupService balanceRollupService;
+
+    private BalanceLedger balanceLedger;
+
+    private BalanceUpdateService balanceUpdateService;
+
+    private CreditCard creditCard;
+
+    /**
+     * The same card updated directly, in memory.
+     */
+    private CreditCard expected;
+
+    @BeforeEach
+    void setUp() {
+        RowBalanceStore rowBalanceStore = new RowBalanceStore(creditCardRepository, balanceHistoryRepository, balanceRollupRepository);
+        ledgerBalanceStore = new LedgerBalanceStore(rowBalanceStore, creditCardRepository, balanceLedgerRepository,
+                balanceMetrics, transactionManager, true, 10);
+        balanceRollupService = new BalanceRollupService(balanceRollupRepository, creditCardRepository, ledgerBalanceStore, balanceMetrics);
+        balanceLedger = new BalanceLedger(creditCardRepository, balanceLedgerRepository, ledgerBalanceStore,
+                balanceRollupService, balanceMetrics, transactionManager, true, Duration.ofHours(1), 10, ThreadConfig.PLATFORM);
+        balanceUpdateService = new BalanceUpdateService(ledgerBalanceStore, balanceMetrics, entityManager, eventPublisher,
+                balanceRollupService, balanceLedger, transactionManager, 1, false, 256);
+
+        User user = new User();
+        user.setName("Ledger User");
+        user.setEmail("ledger@example.com");
+        userRepository.save(user);
+
+        creditCard = new CreditCard();
+        creditCard.setIssuanceBank("Bank");
+        creditCard.setNumber(UUID.randomUUID().toString());
+        creditCard.setOwner(user);
+        expected = new CreditCard();
+        for (int day = 60; day >= 0; day -= 5) {
+            creditCard.insertBalance(TODAY.minusDays(day), 1000.0 + day);
+            expected.insertBalance(TODAY.minusDays(day), 1000.0 + day);
+        }
+        creditCard.flushBalanceHistory();
+        creditCardRepository.save(creditCard);
+        balanceRollupService.refresh(creditCard, TODAY.minusDays(60));
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    public void testAppendLeavesSnapshotAndReadsReplayLedger() {
+        List<BalanceUpdateResult> results = update(payload(TODAY.minusDays(42), 500.0), payload(TODAY.minusDays(7), 640.0));
+        assertEquals(BalanceUpdateResult.Status.UPDATED, results.get(0).getStatus());
+        expected.propagateBalance(TODAY.minusDays(42), 500.0);
+        expected.propagateBalance(TODAY.minusDays(7), 640.0);
+        expected.flushBalanceHistory();
+
+        CreditCard stored = creditCardRepository.findByNumber(creditCard.getNumber());
+        assertEquals(2, stored.getLedgerSequence());
+        assertEquals(0, stored.getSnapshotSequence());
+        assertEquals(1000.0 + 40, stored.getBalance(TODAY.minusDays(40)), "Appending should not rewrite stored rows");
+
+        for (int day = 65; day >= 0; day--) {
+            LocalDate date = TODAY.minusDays(day);
+            BalanceHistoryView floor = ledgerBalanceStore.findFloor(creditCard.getId(), date);
+            assertEquals(expected.getBalance(date), floor == null ? 0.0 : floor.getBalance(), "Balance on " + date);
+        }
+        try (Stream<BalanceHistoryView> range = ledgerBalanceStore.stream(creditCard.getId(), TODAY.minusDays(45), TODAY)) {
+            assertEquals(views(expected, TODAY.minusDays(45)), range.toList());
+        }
+        ledgerBalanceStore.loadHistory(stored);
+        assertEquals(expected.getBalanceHistoryString(), stored.getBalanceHistoryString());
+    }
+
+    @Test
+    public void testCheckpointFoldsLedgerIntoSnapshot() {
+        update(payload(TODAY.minusDays(42), 500.0));
+        update(payload(TODAY.minusDays(3), 700.0), payload(TODAY.minusDays(20), 900.0));
+        expected.propagateBalance(TODAY.minusDays(42), 500.0);
+        expected.propagateBalance(TODAY.minusDays(3), 700.0);
+        expected.propagateBalance(TODAY.minusDays(20), 900.0);
+        expected.flushBalanceHistory();
+
+        assertEquals(3, balanceLedger.checkpoint(List.of(creditCard.getNumber())));
+        entityManager.flush();
+        entityManager.clear();
+
+        CreditCard stored = creditCardRepository.findByNumber(creditCard.getNumber());
+        assertEquals(3, stored.getSnapshotSequence(), "The snapshot should include every appended entry");
+        assertEquals(expected.getBalanceHistoryString(), stored.getBalanceHistoryString(), "Stored rows should hold the replayed history");
+        assertEquals(0, balanceLedger.checkpoint(List.of(creditCard.getNumber())), "Nothing should be left to fold");
+        assertEquals(3, balanceLedger.entries(creditCard.getId(), 0, 10).size(), "Folded entries should stay in the ledger");
+        BalanceRollupCheck check = balanceRollupService.check(creditCard.getNumber(), false);
+        assertTrue(check.getMismatches().isEmpty(), "Rollups should match the folded history: " + check.getMismatches());
+    }
+
+    @Test
+    public void testReadsSeeUpdatesAppendedAfterCachedRebuild() {
+        update(payload(TODAY.minusDays(30), 100.0));
+        expected.propagateBalance(TODAY.minusDays(30), 100.0);
+        expected.flushBalanceHistory();
+        assertEquals(expected.getBalance(TODAY), ledgerBalanceStore.findFloor(creditCard.getId(), TODAY).getBalance());
+
+        update(payload(TODAY.minusDays(10), 300.0));
+        expected.propagateBalance(TODAY.minusDays(10), 300.0);
+        expected.flushBalanceHistory();
+        assertEquals(expected.getBalance(TODAY), ledgerBalanceStore.findFloor(creditCard.getId(), TODAY).getBalance());
+        assertEquals(expected.getBalance(TODAY.minusDays(20)), ledgerBalanceStore.findFloor(creditCard.getId(), TODAY.minusDays(20)).getBalance());
+
+        balanceLedger.checkpoint(List.of(creditCard.getNumber()));
+        entityManager.flush();
+        entityManager.clear();
+        assertEquals(expected.getBalance(TODAY), ledgerBalanceStore.findFloor(creditCard.getId(), TODAY).getBalance(),
+                "Reads after a checkpoint should come from the snapshot");
+    }
+
+    private List<BalanceUpdateResult> update(UpdateBalancePayload... payloads) {
+        List<BalanceUpdateResult> results = balanceUpdateService.applyUpdates(List.of(payloads));
+        entityManager.flush();
+        entityManager.clear();
+        return results;
+    }
+
+    private UpdateBalancePayload payload(LocalDate date, double amount) {
+        UpdateBalancePayload payload = new UpdateBalancePayload();
+        payload.setCreditCardNumber(creditCard.getNumber());
+        payload.setBalanceDate(date);
+        payload.setBalanceAmount(amount);
+        return payload;
+    }
+
+    private static List<BalanceHistoryView> views(CreditCard creditCard, LocalDate from) {
+        List<BalanceHistoryView> views = new ArrayList<>();
+        for (BalanceHistory history : creditCard.getBalanceHistorySince(from)) {
+            if (!history.getDate().isBefore(from)) {
+                views.add(new BalanceHistoryView(history.getDate(), history.getBalance()));
+            }
+        }
+        return views;
+    }
+}
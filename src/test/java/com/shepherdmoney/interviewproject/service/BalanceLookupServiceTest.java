@@ -0,0 +1,112 @@
+package com.shepherdmoney.interviewproject.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.shepherdmoney.interviewproject.model.CreditCard;
+import com.shepherdmoney.interviewproject.model.User;
+import com.shepherdmoney.interviewproject.repository.CreditCardRepository;
+import com.shepherdmoney.interviewproject.repository.UserRepository;
+import com.shepherdmoney.interviewproject.vo.response.BalanceHistoryView;
+import com.shepherdmoney.interviewproject.vo.response.CardBalanceView;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Checks every database lookup form against {@link CreditCard#getBalance(LocalDate)} on the same history.
+ */
+@SpringBootTest
+@Transactional
+public class BalanceLookupServiceTest {
+
+    private static final LocalDate START = LocalDate.of(2020, 1, 1);
+
+    @Autowired
+    private BalanceLookupService balanceLookupService;
+
+    @Autowired
+    private CreditCardRepository creditCardRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private final List<CreditCard> cards = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        User user = new User();
+        user.setName("Lookup User");
+        user.setEmail("lookup@example.com");
+        userRepository.save(user);
+
+        Random random = new Random(17);
+        for (int i = 0; i < 3; i++) {
+            CreditCard creditCard = new CreditCard();
+            creditCard.setIssuanceBank("Bank");
+            creditCard.setNumber(UUID.randomUUID().toString());
+            creditCard.setOwner(user);
+            for (int day = 5 * i; day < 120; day += 1 + random.nextInt(9)) {
+                creditCard.insertBalance(START.plusDays(day), random.nextInt(10_000) / 4.0);
+            }
+            creditCard.flushBalanceHistory();
+            cards.add(creditCardRepository.save(creditCard));
+        }
+        entityManager.flush();
+    }
+
+    @Test
+    public void testSingleLookupMatchesLoadedHistory() {
+        for (CreditCard creditCard : cards) {
+            for (int day = -3; day < 130; day++) {
+                LocalDate date = START.plusDays(day);
+                assertEquals(creditCard.getBalance(date), balanceLookupService.balanceAt(creditCard.getId(), date),
+                        "Balance of card " + creditCard.getId() + " on " + date);
+            }
+        }
+    }
+
+    @Test
+    public void testSeriesLookupMatchesLoadedHistory() {
+        CreditCard creditCard = cards.get(1);
+        List<LocalDate> dates = new ArrayList<>();
+        for (int day = 125; day >= -3; day -= 4) {
+            dates.add(START.plusDays(day));
+        }
+        dates.add(START.plusDays(50));
+
+        List<BalanceHistoryView> series = balanceLookupService.balancesAt(creditCard.getId(), dates);
+
+        assertEquals(dates.size(), series.size(), "Every requested date should be answered, duplicates included");
+        for (int i = 0; i < dates.size(); i++) {
+            assertEquals(dates.get(i), series.get(i).getDate(), "Results should follow the request order");
+            assertEquals(creditCard.getBalance(dates.get(i)), series.get(i).getBalance(), "Balance on " + dates.get(i));
+        }
+    }
+
+    @Test
+    public void testBatchLookupReturnsFloorPerCard() {
+        LocalDate date = START.plusDays(7);
+        List<String> numbers = List.of(cards.get(2).getNumber(), "missing-card", cards.get(0).getNumber(), cards.get(1).getNumber());
+
+        List<CardBalanceView> balances = balanceLookupService.balancesAt(numbers, date);
+
+        // Card 2 starts after the date, so only cards 0 and 1 have a floor record
+        List<String> expectedNumbers = List.of(cards.get(0).getNumber(), cards.get(1).getNumber());
+        assertEquals(expectedNumbers, balances.stream().map(CardBalanceView::getCreditCardNumber).toList(),
+                "Unknown cards and cards without an earlier record should be left out, the rest kept in request order");
+        for (CardBalanceView balance : balances) {
+            CreditCard creditCard = creditCardRepository.findByNumber(balance.getCreditCardNumber());
+            assertEquals(creditCard.getBalance(date), balance.getBalance(), "Balance of " + balance.getCreditCardNumber());
+            assertFalse(balance.getDate().isAfter(date), "The floor record must not be after the requested date");
+        }
+    }
+}
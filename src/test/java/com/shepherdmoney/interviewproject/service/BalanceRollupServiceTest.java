@@ -0,0 +1,180 @@
+package com.shepherdmoney.interviewproject.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.shepherdmoney.interviewproject.model.BalanceRollup;
+import com.shepherdmoney.interviewproject.model.CreditCard;
+import com.shepherdmoney.interviewproject.model.RollupGranularity;
+import com.shepherdmoney.interviewproject.model.User;
+import com.shepherdmoney.interviewproject.repository.BalanceRollupRepository;
+import com.shepherdmoney.interviewproject.repository.CreditCardRepository;
+import com.shepherdmoney.interviewproject.repository.UserRepository;
+import com.shepherdmoney.interviewproject.vo.request.UpdateBalancePayload;
+import com.shepherdmoney.interviewproject.vo.response.BalanceRollupCheck;
+import com.shepherdmoney.interviewproject.vo.response.BalanceRollupReport;
+import com.shepherdmoney.interviewproject.vo.response.BalanceRollupView;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+@SpringBootTest
+@Transactional
+public class BalanceRollupServiceTest {
+
+    @Autowired
+    private BalanceRollupService balanceRollupService;
+
+    @Autowired
+    private BalanceUpdateService balanceUpdateService;
+
+    @Autowired
+    private BalanceRollupRepository balanceRollupRepository;
+
+    @Autowired
+    private CreditCardRepository creditCardRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private User user;
+
+    private CreditCard creditCard;
+
+    @BeforeEach
+    void setUp() {
+        user = new User();
+        user.setName("Rollup User");
+        user.setEmail("rollup@example.com");
+        userRepository.save(user);
+        creditCard = createCard();
+
+        update(creditCard, LocalDate.of(2020, 1, 10), 100.0);
+        update(creditCard, LocalDate.of(2020, 3, 5), 300.0);
+        // Backdated: shifts the March record to 400 and rewrites the March rollup as well
+        update(creditCard, LocalDate.of(2020, 2, 1), 200.0);
+    }
+
+    @Test
+    public void testBackdatedUpdateShiftsLaterPeriods() {
+        List<BalanceRollup> months = balanceRollupRepository.findByCard(creditCard.getId(), RollupGranularity.MONTH,
+                LocalDate.of(2020, 1, 1), LocalDate.of(2020, 12, 1));
+
+        assertEquals(3, months.size(), "History from January to March should produce three monthly rollups");
+        assertRollup(months.get(0), LocalDate.of(2020, 1, 1), 22, 2200.0, 100.0, 100.0, 100.0);
+        assertRollup(months.get(1), LocalDate.of(2020, 2, 1), 29, 5800.0, 200.0, 200.0, 200.0);
+        assertRollup(months.get(2), LocalDate.of(2020, 3, 1), 5, 1200.0, 200.0, 400.0, 400.0);
+
+        BalanceRollupCheck check = balanceRollupService.check(creditCard.getNumber(), false);
+        assertTrue(check.getMismatches().isEmpty(), "Incremental rollups should match a full rebuild: " + check.getMismatches());
+        assertTrue(check.getPeriodsChecked() > 3, "Both monthly and weekly periods should be checked");
+    }
+
+    @Test
+    public void testCardReportCarriesLatestBalanceForward() {
+        BalanceRollupReport report = balanceRollupService.cardReport(creditCard.getId(), RollupGranularity.MONTH,
+                LocalDate.of(2020, 1, 15), LocalDate.of(2020, 4, 10));
+
+        assertEquals(LocalDate.of(2020, 1, 1), report.getFrom(), "Range should be widened to the start of the first month");
+        assertEquals(LocalDate.of(2020, 4, 30), report.getTo(), "Range should be widened to the end of the last month");
+        List<BalanceRollupView> periods = report.getPeriods();
+        assertEquals(4, periods.size(), "April has no records but should be covered by the carried balance");
+        assertEquals(31, periods.get(2).getDays(), "March should be carried forward to its last day");
+        assertEquals((4 * 200.0 + 27 * 400.0) / 31, periods.get(2).getAverageBalance(), 1e-9);
+        assertEquals(30, periods.get(3).getDays());
+        assertEquals(400.0, periods.get(3).getAverageBalance(), 1e-9);
+
+        assertEquals(22 + 29 + 31 + 30, report.getDays());
+        assertEquals(100.0, report.getMinBalance());
+        assertEquals(400.0, report.getMaxBalance());
+        assertEquals(400.0, report.getEndBalance());
+    }
+
+    @Test
+    public void testUserReportSumsCards() {
+        CreditCard second = createCard();
+        update(second, LocalDate.of(2020, 1, 1), 50.0);
+
+        BalanceRollupReport report = balanceRollupService.userReport(user.getId(), RollupGranularity.MONTH,
+                LocalDate.of(2020, 1, 1), LocalDate.of(2020, 3, 31));
+
+        List<BalanceRollupView> periods = report.getPeriods();
+        assertEquals(3, periods.size());
+        assertEquals(150.0, periods.get(0).getEndBalance(), 1e-9, "January end balances should be summed");
+        assertEquals(450.0, periods.get(2).getEndBalance(), 1e-9, "The second card should be carried into March");
+    }
+
+    @Test
+    public void testUserReportAveragesOverDaysCoveredByAnyCard() {
+        // Covers all of January, while the first card only starts on the 10th
+        CreditCard second = createCard();
+        update(second, LocalDate.of(2020, 1, 1), 50.0);
+
+        BalanceRollupReport report = balanceRollupService.userReport(user.getId(), RollupGranularity.MONTH,
+                LocalDate.of(2020, 1, 1), LocalDate.of(2020, 2, 29));
+
+        BalanceRollupView january = report.getPeriods().get(0);
+        assertEquals(31, january.getDays(), "Days covered by both cards should be counted once");
+        assertEquals((9 * 50.0 + 22 * 150.0) / 31, january.getAverageBalance(), 1e-9,
+                "The average should be taken over the summed daily balances");
+        BalanceRollupView february = report.getPeriods().get(1);
+        assertEquals(29, february.getDays());
+        assertEquals(250.0, february.getAverageBalance(), 1e-9);
+        assertNull(january.getMinBalance(), "The minimum of the summed balances is not known from per-card rollups");
+        assertNull(report.getMaxBalance());
+        assertEquals((9 * 50.0 + 22 * 150.0 + 29 * 250.0) / 60, report.getAverageBalance(), 1e-9);
+    }
+
+    @Test
+    public void testCheckRepairsDivergedRollups() {
+        List<BalanceRollup> weeks = balanceRollupRepository.findByCard(creditCard.getId(), RollupGranularity.WEEK,
+                LocalDate.of(2020, 1, 1), LocalDate.of(2020, 12, 1));
+        weeks.get(0).setBalanceSum(weeks.get(0).getBalanceSum() + 1);
+        balanceRollupRepository.delete(weeks.get(1));
+        entityManager.flush();
+
+        BalanceRollupCheck check = balanceRollupService.check(creditCard.getNumber(), false);
+        assertEquals(2, check.getMismatches().size(), "Changed and missing weeks should be reported: " + check.getMismatches());
+        assertFalse(check.isRepaired());
+
+        assertTrue(balanceRollupService.check(creditCard.getNumber(), true).isRepaired());
+        entityManager.flush();
+        assertTrue(balanceRollupService.check(creditCard.getNumber(), false).getMismatches().isEmpty(),
+                "Repaired rollups should match a full rebuild");
+    }
+
+    private CreditCard createCard() {
+        CreditCard card = new CreditCard();
+        card.setIssuanceBank("Bank");
+        card.setNumber(UUID.randomUUID().toString());
+        card.setOwner(user);
+        return creditCardRepository.save(card);
+    }
+
+    private void update(CreditCard card, LocalDate date, double amount) {
+        UpdateBalancePayload payload = new UpdateBalancePayload();
+        payload.setCreditCardNumber(card.getNumber());
+        payload.setBalanceDate(date);
+        payload.setBalanceAmount(amount);
+        balanceUpdateService.applyUpdates(List.of(payload));
+    }
+
+    private static void assertRollup(BalanceRollup rollup, LocalDate periodStart, int days, double balanceSum,
+                                     double minBalance, double maxBalance, double endBalance) {
+        assertEquals(periodStart, rollup.getPeriodStart());
+        assertEquals(days, rollup.getDays(), "Covered days of " + periodStart);
+        assertEquals(balanceSum, rollup.getBalanceSum(), 1e-9, "Balance sum of " + periodStart);
+        assertEquals(minBalance, rollup.getMinBalance(), 1e-9, "Minimum balance of " + periodStart);
+        assertEquals(maxBalance, rollup.getMaxBalance(), 1e-9, "Maximum balance of " + periodStart);
+        assertEquals(endBalance, rollup.getEndBalance(), 1e-9, "End balance of " + periodStart);
+    }
+}
@@ -0,0 +1,225 @@
+package com.shepherdmoney.interviewproject.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.shepherdmoney.interviewproject.metrics.BalanceMetrics;
+import com.shepherdmoney.interviewproject.model.BalanceHistory;
+import com.shepherdmoney.interviewproject.model.CreditCard;
+import com.shepherdmoney.interviewproject.model.User;
+import com.shepherdmoney.interviewproject.repository.CreditCardRepository;
+import com.shepherdmoney.interviewproject.repository.UserRepository;
+import com.shepherdmoney.interviewproject.vo.request.UpdateBalancePayload;
+import com.shepherdmoney.interviewproject.vo.response.BalanceUpdateResult;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Races several writers against one card and checks the stored history equals the result of applying
+ * the same updates one after another in some order. A lost update leaves a state no serial order produces.
+ */
+@SpringBootTest
+public class BalanceUpdateConcurrencyTest {
+
+    private static final int WRITERS = 4;
+
+    private static final int ROUNDS = 10;
+
+    @Autowired
+    private CreditCardRepository creditCardRepository;
+
+    @Autowired
+    private BalanceStore balanceStore;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BalanceMetrics balanceMetrics;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private BalanceRollupService balanceRollupService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    public void testOptimisticRetryLosesNoUpdates() throws Exception {
+        assertNoLostUpdates(new BalanceUpdateService(balanceStore, balanceMetrics, entityManager, eventPublisher, balanceRollupService, null, transactionManager, 100, false, 256));
+    }
+
+    @Test
+    public void testStripedLockLosesNoUpdates() throws Exception {
+        assertNoLostUpdates(new BalanceUpdateService(balanceStore, balanceMetrics, entityManager, eventPublisher, balanceRollupService, null, transactionManager, 1, true, 256));
+    }
+
+    @Test
+    public void testDifferentCardsUpdateInParallel() throws Exception {
+        BalanceUpdateService service = new BalanceUpdateService(balanceStore, balanceMetrics, entityManager, eventPublisher, balanceRollupService, null, transactionManager, 1, true, 256);
+        LocalDate today = LocalDate.now();
+        List<String> numbers = new ArrayList<>();
+        for (int i = 0; i < WRITERS * 4; i++) {
+            numbers.add(createCard(Map.of(today.minusDays(10), 100.0)));
+        }
+
+        List<List<BalanceUpdateResult>> results = race(numbers.size(),
+                writer -> service.applyUpdates(List.of(payload(numbers.get(writer), today.minusDays(5), 50.0 + writer))));
+
+        for (int i = 0; i < numbers.size(); i++) {
+            assertEquals(BalanceUpdateResult.Status.UPDATED, results.get(i).get(0).getStatus(),
+                    "Every card should be updated with a single attempt");
+            assertEquals(50.0 + i, storedHistory(numbers.get(i)).get(today.minusDays(5)),
+                    "Each card should hold its own update");
+        }
+    }
+
+    private void assertNoLostUpdates(BalanceUpdateService service) throws Exception {
+        LocalDate today = LocalDate.now();
+        Map<LocalDate, Double> initial = new TreeMap<>();
+        for (int i = 0; i <= 4; i++) {
+            initial.put(today.minusDays(40 - 10L * i), 100.0 * (i + 1));
+        }
+        List<UpdateBalancePayload> updates = new ArrayList<>();
+        for (int i = 0; i < WRITERS; i++) {
+            updates.add(payload(null, today.minusDays(35 - 10L * i), 1000.0 + 10 * i));
+        }
+        Set<Map<LocalDate, Double>> serialOutcomes = new HashSet<>();
+        for (List<UpdateBalancePayload> order : permutations(updates)) {
+            serialOutcomes.add(replay(initial, order));
+        }
+
+        for (int round = 0; round < ROUNDS; round++) {
+            String number = createCard(initial);
+            long initialVersion = storedVersion(number);
+
+            List<List<BalanceUpdateResult>> results = race(WRITERS, writer -> {
+                UpdateBalancePayload update = updates.get(writer);
+                return service.applyUpdates(List.of(payload(number, update.getBalanceDate(), update.getBalanceAmount())));
+            });
+
+            for (List<BalanceUpdateResult> result : results) {
+                assertEquals(BalanceUpdateResult.Status.UPDATED, result.get(0).getStatus(), "Every writer should succeed");
+            }
+            assertTrue(serialOutcomes.contains(storedHistory(number)),
+                    "Round " + round + " produced a history no serial order can produce: " + storedHistory(number));
+            assertEquals(initialVersion + WRITERS, storedVersion(number),
+                    "Every committed update should bump the card version exactly once");
+        }
+    }
+
+    private <T> List<T> race(int writers, WriterTask<T> task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<T>> futures = new ArrayList<>();
+            for (int i = 0; i < writers; i++) {
+                int writer = i;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return task.run(writer);
+                }));
+            }
+            start.countDown();
+            List<T> results = new ArrayList<>();
+            for (Future<T> future : futures) {
+                results.add(future.get(60, TimeUnit.SECONDS));
+            }
+            return results;
+        } finally {
+            // Interrupting a writer mid-statement would close the H2 file channel, so let them finish
+            executor.shutdown();
+            executor.awaitTermination(60, TimeUnit.SECONDS);
+        }
+    }
+
+    private interface WriterTask<T> {
+        T run(int writer);
+    }
+
+    private String createCard(Map<LocalDate, Double> history) {
+        String number = UUID.randomUUID().toString();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            User user = new User();
+            user.setName("Concurrent User");
+            user.setEmail("concurrent@example.com");
+            userRepository.save(user);
+
+            CreditCard creditCard = new CreditCard();
+            creditCard.setIssuanceBank("Bank");
+            creditCard.setNumber(number);
+            creditCard.setOwner(user);
+            history.forEach(creditCard::insertBalance);
+            creditCard.flushBalanceHistory();
+            creditCardRepository.save(creditCard);
+        });
+        return number;
+    }
+
+    private Map<LocalDate, Double> storedHistory(String number) {
+        return new TransactionTemplate(transactionManager).execute(status ->
+                toMap(creditCardRepository.findByNumber(number).getBalanceHistory()));
+    }
+
+    private long storedVersion(String number) {
+        return new TransactionTemplate(transactionManager).execute(status ->
+                creditCardRepository.findByNumber(number).getVersion());
+    }
+
+    private static Map<LocalDate, Double> replay(Map<LocalDate, Double> initial, List<UpdateBalancePayload> order) {
+        CreditCard creditCard = new CreditCard();
+        initial.forEach(creditCard::insertBalance);
+        for (UpdateBalancePayload update : order) {
+            creditCard.propagateBalance(update.getBalanceDate(), update.getBalanceAmount());
+        }
+        creditCard.flushBalanceHistory();
+        return toMap(creditCard.getBalanceHistory());
+    }
+
+    private static Map<LocalDate, Double> toMap(List<BalanceHistory> history) {
+        Map<LocalDate, Double> balances = new TreeMap<>();
+        for (BalanceHistory entry : history) {
+            balances.put(entry.getDate(), entry.getBalance());
+        }
+        return balances;
+    }
+
+    private static <T> List<List<T>> permutations(List<T> items) {
+        if (items.isEmpty()) {
+            return List.of(List.of());
+        }
+        List<List<T>> result = new ArrayList<>();
+        for (int i = 0; i < items.size(); i++) {
+            List<T> rest = new ArrayList<>(items);
+            T head = rest.remove(i);
+            for (List<T> tail : permutations(rest)) {
+                List<T> permutation = new ArrayList<>();
+                permutation.add(head);
+                permutation.addAll(tail);
+                result.add(permutation);
+            }
+        }
+        return result;
+    }
+
+    private static UpdateBalancePayload payload(String number, LocalDate date, double amount) {
+        UpdateBalancePayload payload = new UpdateBalancePayload();
+        payload.setCreditCardNumber(number);
+        payload.setBalanceDate(date);
+        payload.setBalanceAmount(amount);
+        return payload;
+    }
+}
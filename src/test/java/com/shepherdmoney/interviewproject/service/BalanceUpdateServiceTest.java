@@ -0,0 +1,146 @@
+package com.shepherdmoney.interviewproject.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.shepherdmoney.interviewproject.model.CreditCard;
+import com.shepherdmoney.interviewproject.model.User;
+import com.shepherdmoney.interviewproject.repository.CreditCardRepository;
+import com.shepherdmoney.interviewproject.repository.UserRepository;
+import com.shepherdmoney.interviewproject.vo.request.UpdateBalancePayload;
+import com.shepherdmoney.interviewproject.vo.response.BalanceUpdateResult;
+import jakarta.persistence.EntityManager;
+import org.hibernate.exception.ConstraintViolationException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+@SpringBootTest
+@Transactional
+public class BalanceUpdateServiceTest {
+
+    @Autowired
+    private BalanceUpdateService balanceUpdateService;
+
+    @Autowired
+    private CreditCardRepository creditCardRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private String firstNumber;
+
+    private String secondNumber;
+
+    @BeforeEach
+    void setUp() {
+        User user = new User();
+        user.setName("Batch User");
+        user.setEmail("batch@example.com");
+        userRepository.save(user);
+
+        firstNumber = UUID.randomUUID().toString();
+        secondNumber = UUID.randomUUID().toString();
+        for (String number : List.of(firstNumber, secondNumber)) {
+            CreditCard creditCard = new CreditCard();
+            creditCard.setIssuanceBank("Bank");
+            creditCard.setNumber(number);
+            creditCard.setOwner(user);
+            creditCardRepository.save(creditCard);
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    public void testBatchReportsPerCardOutcomes() {
+        LocalDate today = LocalDate.now();
+        List<BalanceUpdateResult> results = balanceUpdateService.applyUpdates(List.of(
+                payload(firstNumber, today.minusDays(3), 100.0),
+                payload("missing-card", today, 1.0),
+                payload(secondNumber, today, 40.0),
+                payload(firstNumber, today, 200.0)));
+
+        assertEquals(3, results.size(), "There should be one result per distinct card");
+        assertEquals(firstNumber, results.get(0).getCreditCardNumber());
+        assertEquals(BalanceUpdateResult.Status.UPDATED, results.get(0).getStatus());
+        assertEquals(2, results.get(0).getUpdatesApplied());
+        assertEquals(BalanceUpdateResult.Status.NOT_FOUND, results.get(1).getStatus(),
+            "Unknown card should be reported instead of failing the batch");
+        assertEquals(BalanceUpdateResult.Status.UPDATED, results.get(2).getStatus(),
+            "Cards after an unknown card should still be updated");
+
+        entityManager.flush();
+        entityManager.clear();
+
+        CreditCard first = creditCardRepository.findByNumber(firstNumber);
+        assertEquals(2, first.getBalanceHistory().size());
+        assertEquals(100.0, first.getBalance(today.minusDays(1)));
+        assertEquals(200.0, first.getBalance(today));
+        assertEquals(40.0, creditCardRepository.findByNumber(secondNumber).getBalance(today));
+    }
+
+    @Test
+    public void testBackdatedUpdatePropagatesToStoredRows() {
+        LocalDate today = LocalDate.now();
+        balanceUpdateService.applyUpdates(List.of(
+                payload(firstNumber, today.minusDays(10), 100.0),
+                payload(firstNumber, today.minusDays(2), 150.0)));
+        entityManager.flush();
+        entityManager.clear();
+
+        balanceUpdateService.applyUpdates(List.of(payload(firstNumber, today.minusDays(10), 130.0)));
+        entityManager.flush();
+        entityManager.clear();
+
+        CreditCard creditCard = creditCardRepository.findByNumber(firstNumber);
+        assertEquals(180.0, creditCard.getBalanceHistory().get(0).getBalance(),
+            "Later stored rows should be shifted by the backdated difference");
+        assertEquals(130.0, creditCard.getBalance(today.minusDays(5)));
+    }
+
+    @Test
+    public void testMissingDateIsInvalid() {
+        List<BalanceUpdateResult> results = balanceUpdateService.applyUpdates(List.of(payload(firstNumber, null, 1.0)));
+
+        assertEquals(BalanceUpdateResult.Status.INVALID, results.get(0).getStatus());
+    }
+
+    @Test
+    public void testOnlyRacingInsertsAreConcurrencyFailures() {
+        assertTrue(BalanceUpdateService.isConcurrentInsert(violation(
+                "\"PUBLIC.UX_BALANCE_ROLLUP_PERIOD_INDEX_4 ON PUBLIC.BALANCE_ROLLUP(CREDIT_CARD_ID, GRANULARITY, PERIOD_START)\"")),
+            "A duplicate rollup period is a concurrent insert");
+        assertTrue(BalanceUpdateService.isConcurrentInsert(violation(
+                "\"PUBLIC.UX_BALANCE_SEGMENT_MONTH_INDEX_9 ON PUBLIC.BALANCE_SEGMENT(CREDIT_CARD_ID, MONTH_START)\"")),
+            "A duplicate segment month is a concurrent insert");
+        assertFalse(BalanceUpdateService.isConcurrentInsert(violation(
+                "\"PUBLIC.UX_CREDIT_CARD_NUMBER_INDEX_6 ON PUBLIC.CREDIT_CARD(NUMBER)\"")),
+            "Other unique keys should not be retried");
+        assertFalse(BalanceUpdateService.isConcurrentInsert(violation(null)),
+            "A violation of an unknown constraint should not be retried");
+    }
+
+    private static DataIntegrityViolationException violation(String constraintName) {
+        return new DataIntegrityViolationException("could not execute statement",
+                new ConstraintViolationException("could not execute statement", new SQLException("violation"), constraintName));
+    }
+
+    private static UpdateBalancePayload payload(String number, LocalDate date, double amount) {
+        UpdateBalancePayload payload = new UpdateBalancePayload();
+        payload.setCreditCardNumber(number);
+        payload.setBalanceDate(date);
+        payload.setBalanceAmount(amount);
+        return payload;
+    }
+}
@@ -0,0 +1,192 @@
+package com.shepherdmoney.interviewproject.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.shepherdmoney.interviewproject.config.ThreadConfig;
+import com.shepherdmoney.interviewproject.metrics.BalanceMetrics;
+import com.shepherdmoney.interviewproject.model.CreditCard;
+import com.shepherdmoney.interviewproject.model.User;
+import com.shepherdmoney.interviewproject.repository.CreditCardRepository;
+import com.shepherdmoney.interviewproject.repository.UserRepository;
+import com.shepherdmoney.interviewproject.vo.request.UpdateBalancePayload;
+import com.shepherdmoney.interviewproject.vo.response.BalanceUpdateResult;
+import com.shepherdmoney.interviewproject.vo.response.IngestionJobView;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs without a test transaction, since flushes commit on their own.
+ */
+@SpringBootTest
+public class BalanceWriteBehindBufferTest {
+
+    private static final LocalDate START = LocalDate.of(2021, 3, 1);
+
+    @Autowired
+    private BalanceUpdateService balanceUpdateService;
+
+    @Autowired
+    private CardNumberCache cardNumberCache;
+
+    @Autowired
+    private BalanceMetrics balanceMetrics;
+
+    @Autowired
+    private CreditCardRepository creditCardRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @TempDir
+    Path walDirectory;
+
+    private String number;
+
+    @BeforeEach
+    void setUp() {
+        number = UUID.randomUUID().toString();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            User user = new User();
+            user.setName("Buffered User");
+            user.setEmail("buffered@example.com");
+            userRepository.save(user);
+
+            CreditCard creditCard = new CreditCard();
+            creditCard.setIssuanceBank("Bank");
+            creditCard.setNumber(number);
+            creditCard.setOwner(user);
+            creditCard.insertBalance(START, 100.0);
+            creditCard.flushBalanceHistory();
+            creditCardRepository.save(creditCard);
+        });
+    }
+
+    @Test
+    public void testLastWriteWinsPerCardAndDate() throws Exception {
+        BalanceWriteBehindBuffer buffer = buffer();
+        try {
+            List<BalanceUpdateResult> results = buffer.accept(List.of(
+                    payload(number, START.plusDays(2), 150.0),
+                    payload(number, START.plusDays(5), 300.0),
+                    payload("missing-card", START, 1.0),
+                    payload(number, START.plusDays(2), 200.0)));
+
+            assertEquals(BalanceUpdateResult.Status.BUFFERED, results.get(0).getStatus());
+            assertEquals(3, results.get(0).getUpdatesApplied());
+            assertEquals(BalanceUpdateResult.Status.NOT_FOUND, results.get(1).getStatus());
+            assertEquals(2, buffer.size(), "The second update to the same date should replace the first");
+            assertEquals(Map.of(START, 100.0), storedHistory(), "Nothing should be written before a flush");
+
+            buffer.flush(List.of(number));
+
+            assertEquals(0, buffer.size());
+            // Applied in the order the surviving values were written: day 5 first, then day 2 shifting it by 100
+            assertEquals(Map.of(START, 100.0, START.plusDays(2), 200.0, START.plusDays(5), 400.0), storedHistory());
+        } finally {
+            buffer.shutdown();
+        }
+    }
+
+    @Test
+    public void testUnflushedUpdatesAreReplayedAfterRestart() throws Exception {
+        // Never flushed and never shut down, as if the process had died
+        BalanceWriteBehindBuffer crashed = buffer();
+        crashed.accept(List.of(payload(number, START.plusDays(1), 110.0)));
+        crashed.accept(List.of(payload(number, START.plusDays(1), 120.0), payload(number, START.plusDays(3), 130.0)));
+
+        BalanceWriteBehindBuffer restarted = buffer();
+        try {
+            assertEquals(2, restarted.size(), "Both buffered dates should be recovered from the write-ahead log");
+            restarted.flush();
+            assertEquals(Map.of(START, 100.0, START.plusDays(1), 120.0, START.plusDays(3), 130.0), storedHistory());
+        } finally {
+            restarted.shutdown();
+        }
+
+        BalanceWriteBehindBuffer afterFlush = buffer();
+        try {
+            assertEquals(0, afterFlush.size(), "Flushed updates should be dropped from the write-ahead log");
+        } finally {
+            afterFlush.shutdown();
+        }
+    }
+
+    @Test
+    public void testShutdownFlushesBuffer() throws Exception {
+        BalanceWriteBehindBuffer buffer = buffer();
+        buffer.accept(List.of(payload(number, START.plusDays(1), 50.0)));
+
+        buffer.shutdown();
+
+        assertEquals(Map.of(START, 100.0, START.plusDays(1), 50.0), storedHistory());
+        BalanceWriteBehindBuffer restarted = buffer();
+        try {
+            assertEquals(0, restarted.size());
+        } finally {
+            restarted.shutdown();
+        }
+    }
+
+    @Test
+    public void testAsyncUpdateIsNotOverwrittenByOlderBufferedUpdate() throws Exception {
+        BalanceWriteBehindBuffer buffer = buffer();
+        BalanceIngestionService ingestionService = new BalanceIngestionService(buffer, 1, 8, 100, 100, ThreadConfig.PLATFORM);
+        try {
+            buffer.accept(List.of(payload(number, START.plusDays(2), 150.0)));
+            IngestionJobView job = ingestionService.submit(List.of(payload(number, START.plusDays(2), 200.0)));
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (ingestionService.getJob(job.getJobId()).getFinishedAt() == null && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(IngestionJobView.Status.COMPLETED, ingestionService.getJob(job.getJobId()).getStatus());
+            assertEquals(0, buffer.size(), "The buffered update should be written before the asynchronous one");
+
+            buffer.flush();
+            assertEquals(Map.of(START, 100.0, START.plusDays(2), 200.0), storedHistory(),
+                "The later asynchronous update should win over the earlier buffered one");
+        } finally {
+            ingestionService.shutdown();
+            buffer.shutdown();
+        }
+    }
+
+    private BalanceWriteBehindBuffer buffer() {
+        // Interval long enough that only explicit flushes run
+        return new BalanceWriteBehindBuffer(balanceUpdateService, cardNumberCache, balanceMetrics, true, 1000, 10_000,
+                Duration.ofHours(1), Duration.ofSeconds(10), walDirectory, true, ThreadConfig.PLATFORM);
+    }
+
+    private Map<LocalDate, Double> storedHistory() {
+        return new TransactionTemplate(transactionManager).execute(status -> {
+            Map<LocalDate, Double> balances = new TreeMap<>();
+            creditCardRepository.findByNumber(number).getBalanceHistory()
+                    .forEach(entry -> balances.put(entry.getDate(), entry.getBalance()));
+            return balances;
+        });
+    }
+
+    private static UpdateBalancePayload payload(String number, LocalDate date, double amount) {
+        UpdateBalancePayload payload = new UpdateBalancePayload();
+        payload.setCreditCardNumber(number);
+        payload.setBalanceDate(date);
+        payload.setBalanceAmount(amount);
+        return payload;
+    }
+}
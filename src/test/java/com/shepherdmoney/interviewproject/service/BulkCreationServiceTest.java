@@ -0,0 +1,98 @@
+package com.shepherdmoney.interviewproject.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shepherdmoney.interviewproject.model.CreditCard;
+import com.shepherdmoney.interviewproject.repository.CreditCardRepository;
+import com.shepherdmoney.interviewproject.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+
+@SpringBootTest
+@Transactional
+public class BulkCreationServiceTest {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CreditCardRepository creditCardRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    private BulkCreationService bulkCreationService;
+
+    @BeforeEach
+    void setUp() {
+        // A tiny chunk size exercises the flush and clear between chunks
+        bulkCreationService = new BulkCreationService(userRepository, entityManager, objectMapper, eventPublisher, 2);
+    }
+
+    @Test
+    public void testCreateUsersFromJsonArray() {
+        List<Integer> ids = bulkCreationService.createUsers(body(
+                "[{\"name\":\"a\",\"email\":\"a@example.com\"},{\"name\":\"b\",\"email\":\"b@example.com\"},"
+                        + "{\"name\":\"c\",\"email\":\"c@example.com\"}]"));
+
+        assertEquals(3, ids.size(), "There should be one id per payload");
+        assertEquals("a", userRepository.findById(ids.get(0)).orElseThrow().getName());
+        assertEquals("c", userRepository.findById(ids.get(2)).orElseThrow().getName(), "Ids should be in input order");
+    }
+
+    @Test
+    public void testCreateCardsFromNdjson() {
+        List<Integer> userIds = bulkCreationService.createUsers(body(
+                "{\"name\":\"a\",\"email\":\"a@example.com\"}\n{\"name\":\"b\",\"email\":\"b@example.com\"}\n"));
+        String first = UUID.randomUUID().toString();
+        String last = UUID.randomUUID().toString();
+
+        List<Integer> cardIds = bulkCreationService.createCards(body(
+                card(userIds.get(0), first) + "\n" + card(userIds.get(1), UUID.randomUUID().toString()) + "\n"
+                        + card(userIds.get(0), last) + "\n"));
+
+        assertEquals(3, cardIds.size(), "There should be one id per payload");
+        CreditCard lastCard = creditCardRepository.findById(cardIds.get(2)).orElseThrow();
+        assertEquals(last, lastCard.getNumber(), "Ids should be in input order");
+        assertEquals(userIds.get(0), lastCard.getOwner().getId());
+        assertEquals(cardIds.get(0), creditCardRepository.findByNumber(first).getId());
+    }
+
+    @Test
+    public void testCreateCardsRejectsUnknownOwner() {
+        InvalidPayloadException e = assertThrows(InvalidPayloadException.class, () -> bulkCreationService.createCards(
+                body("[" + card(-7, UUID.randomUUID().toString()) + "]")));
+        assertTrue(e.getMessage().contains("-7"), "The unknown user should be named");
+    }
+
+    @Test
+    public void testMalformedBodyIsRejected() {
+        assertThrows(InvalidPayloadException.class, () -> bulkCreationService.createUsers(body("[{\"name\":")));
+    }
+
+    private static String card(int userId, String number) {
+        return "{\"userId\":" + userId + ",\"cardIssuanceBank\":\"Bank\",\"cardNumber\":\"" + number + "\"}";
+    }
+
+    private static InputStream body(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,85 @@
+package com.shepherdmoney.interviewproject.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.shepherdmoney.interviewproject.event.CreditCardCreatedEvent;
+import com.shepherdmoney.interviewproject.repository.CreditCardRepository;
+import com.shepherdmoney.interviewproject.vo.response.CardNumberCacheStats;
+import com.shepherdmoney.interviewproject.vo.response.CardReference;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+public class CardNumberCacheTest {
+    private CreditCardRepository creditCardRepository;
+
+    @BeforeEach
+    void setUp() {
+        creditCardRepository = mock(CreditCardRepository.class);
+        when(creditCardRepository.findReferenceByNumber("1111")).thenReturn(new CardReference(1, 10));
+        when(creditCardRepository.findReferenceByNumber("2222")).thenReturn(new CardReference(2, 20));
+    }
+
+    @Test
+    public void testHitAfterMiss() {
+        CardNumberCache cache = new CardNumberCache(creditCardRepository, 10, Duration.ofMinutes(10));
+
+        assertEquals(10, cache.get("1111").getOwnerId());
+        assertEquals(10, cache.get("1111").getOwnerId());
+
+        verify(creditCardRepository, times(1)).findReferenceByNumber("1111");
+        CardNumberCacheStats stats = cache.stats();
+        assertEquals(1, stats.getHits());
+        assertEquals(1, stats.getMisses());
+        assertEquals(1, stats.getSize());
+    }
+
+    @Test
+    public void testUnknownNumberIsNotCached() {
+        CardNumberCache cache = new CardNumberCache(creditCardRepository, 10, Duration.ofMinutes(10));
+
+        assertNull(cache.get("9999"));
+        assertNull(cache.get("9999"));
+
+        verify(creditCardRepository, times(2)).findReferenceByNumber("9999");
+        assertEquals(0, cache.stats().getSize());
+    }
+
+    @Test
+    public void testSizeEviction() {
+        CardNumberCache cache = new CardNumberCache(creditCardRepository, 1, Duration.ofMinutes(10));
+
+        cache.get("1111");
+        cache.get("2222");
+        cache.get("1111");
+
+        verify(creditCardRepository, times(2)).findReferenceByNumber("1111");
+        assertEquals(2, cache.stats().getEvictions());
+        assertEquals(1, cache.stats().getSize());
+    }
+
+    @Test
+    public void testExpiredEntryIsReloaded() {
+        CardNumberCache cache = new CardNumberCache(creditCardRepository, 10, Duration.ZERO);
+
+        cache.get("1111");
+        cache.get("1111");
+
+        verify(creditCardRepository, times(2)).findReferenceByNumber("1111");
+        assertEquals(0, cache.stats().getHits());
+        assertEquals(1, cache.stats().getEvictions());
+    }
+
+    @Test
+    public void testCreateEventInvalidates() {
+        CardNumberCache cache = new CardNumberCache(creditCardRepository, 10, Duration.ofMinutes(10));
+        cache.get("1111");
+
+        cache.onCreditCardCreated(new CreditCardCreatedEvent(1, "1111", 10));
+        cache.get("1111");
+
+        verify(creditCardRepository, times(2)).findReferenceByNumber("1111");
+    }
+}
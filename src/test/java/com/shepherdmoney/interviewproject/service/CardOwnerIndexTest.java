@@ -0,0 +1,113 @@
+package com.shepherdmoney.interviewproject.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.shepherdmoney.interviewproject.event.CreditCardCreatedEvent;
+import com.shepherdmoney.interviewproject.event.UserDeletedEvent;
+import com.shepherdmoney.interviewproject.repository.CreditCardRepository;
+import com.shepherdmoney.interviewproject.vo.response.CardOwner;
+import com.shepherdmoney.interviewproject.vo.response.CardOwnerIndexCheck;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class CardOwnerIndexTest {
+    private CreditCardRepository creditCardRepository;
+
+    private List<CardOwner> owners;
+
+    private CardOwnerIndex index;
+
+    @BeforeEach
+    void setUp() {
+        creditCardRepository = mock(CreditCardRepository.class);
+        owners = new ArrayList<>(List.of(new CardOwner("1111", 10), new CardOwner("2222", 20)));
+        when(creditCardRepository.streamOwners()).thenAnswer(invocation -> new ArrayList<>(owners).stream());
+        index = new CardOwnerIndex(creditCardRepository, mock(PlatformTransactionManager.class), true);
+    }
+
+    @Test
+    public void testLookupAfterStart() {
+        assertFalse(index.isReady(), "The index should not answer before it is built");
+
+        index.start();
+
+        assertTrue(index.isReady());
+        assertEquals(2, index.size());
+        assertEquals(10, index.ownerOf("1111"));
+        assertEquals(20, index.ownerOf("2222"));
+        assertEquals(CardOwnerIndex.NO_OWNER, index.ownerOf("9999"));
+    }
+
+    @Test
+    public void testEventsKeepTheIndexCurrent() {
+        index.start();
+
+        index.onCreditCardCreated(new CreditCardCreatedEvent(3, "3333", 10));
+        index.onUserDeleted(new UserDeletedEvent(10, List.of("1111", "3333"), List.of(1, 3)));
+
+        assertEquals(CardOwnerIndex.NO_OWNER, index.ownerOf("1111"), "Cards of a deleted user should be removed");
+        assertEquals(CardOwnerIndex.NO_OWNER, index.ownerOf("3333"));
+        assertEquals(20, index.ownerOf("2222"));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void testGrowthAndRemovalKeepEveryEntryReachable() {
+        index.start();
+
+        for (int i = 0; i < 5000; i++) {
+            index.onCreditCardCreated(new CreditCardCreatedEvent(i, "card-" + i, i));
+        }
+        List<String> removed = new ArrayList<>();
+        for (int i = 0; i < 5000; i += 3) {
+            removed.add("card-" + i);
+        }
+        index.onUserDeleted(new UserDeletedEvent(0, removed, List.of()));
+
+        for (int i = 0; i < 5000; i++) {
+            assertEquals(i % 3 == 0 ? CardOwnerIndex.NO_OWNER : i, index.ownerOf("card-" + i), "Owner of card-" + i);
+        }
+        assertEquals(2 + 5000 - removed.size(), index.size());
+    }
+
+    @Test
+    public void testCheckFindsAndRepairsMismatches() {
+        index.start();
+        assertEquals(0, index.check(false).getMismatches().size(), "A freshly built index should match the table");
+
+        // Changes whose events never reached the index
+        owners.set(0, new CardOwner("1111", 11));
+        owners.add(new CardOwner("3333", 30));
+        owners.remove(1);
+        CardOwnerIndexCheck check = index.check(false);
+
+        assertEquals(2, check.getCardsChecked());
+        assertEquals(1, check.getMissing());
+        assertEquals(1, check.getWrongOwner());
+        assertEquals(1, check.getExtra(), "The card no longer in the table should be reported");
+        assertFalse(check.isRepaired());
+
+        assertTrue(index.check(true).isRepaired());
+        assertEquals(11, index.ownerOf("1111"));
+        assertEquals(30, index.ownerOf("3333"));
+        assertEquals(CardOwnerIndex.NO_OWNER, index.ownerOf("2222"));
+        assertEquals(0, index.check(false).getMismatches().size());
+    }
+
+    @Test
+    public void testDisabledIndexIsNeverBuilt() {
+        CardOwnerIndex disabled = new CardOwnerIndex(creditCardRepository, mock(PlatformTransactionManager.class), false);
+
+        disabled.start();
+        disabled.onCreditCardCreated(new CreditCardCreatedEvent(3, "3333", 10));
+
+        assertFalse(disabled.isReady());
+        assertNull(disabled.check(false));
+        verify(creditCardRepository, never()).streamOwners();
+    }
+}
@@ -0,0 +1,64 @@
+package com.shepherdmoney.interviewproject.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.util.Map;
+
+public class ResponseCacheTest {
+
+    @Test
+    public void testServesOnlyMatchingVersion() {
+        ResponseCache cache = new ResponseCache(DataSize.ofKilobytes(1));
+        cache.put("card-history:1", "", 3, response(10));
+
+        assertNotNull(cache.get("card-history:1", "", 3), "Entry should be served for its own version");
+        assertNull(cache.get("card-history:1", "", 4), "Entry should not be served for a newer version");
+        assertEquals(1, cache.stats().getHits());
+        assertEquals(1, cache.stats().getMisses());
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsedBeyondByteLimit() {
+        ResponseCache cache = new ResponseCache(DataSize.ofBytes(100));
+        cache.put("a", "", 0, response(40));
+        cache.put("b", "", 0, response(40));
+        cache.get("a", "", 0);
+        cache.put("c", "", 0, response(40));
+
+        assertNotNull(cache.get("a", "", 0), "Recently used entry should survive");
+        assertNull(cache.get("b", "", 0), "Least recently used entry should be evicted");
+        assertEquals(80, cache.stats().getBytes());
+        assertEquals(1, cache.stats().getEvictions());
+    }
+
+    @Test
+    public void testInvalidateDropsEveryVariant() {
+        ResponseCache cache = new ResponseCache(DataSize.ofKilobytes(1));
+        cache.put("user-cards:1", "0:10", 0, response(10));
+        cache.put("user-cards:1", "5:10", 0, response(10));
+        cache.put("user-cards:2", "0:10", 0, response(10));
+
+        cache.invalidate("user-cards:1");
+
+        assertNull(cache.get("user-cards:1", "0:10", 0));
+        assertNull(cache.get("user-cards:1", "5:10", 0));
+        assertNotNull(cache.get("user-cards:2", "0:10", 0), "Other resources should be untouched");
+        assertEquals(2, cache.stats().getInvalidations());
+        assertEquals(1, cache.stats().getSize());
+    }
+
+    @Test
+    public void testZeroSizeDisablesCache() {
+        ResponseCache cache = new ResponseCache(DataSize.ofBytes(0));
+        cache.put("a", "", 0, response(1));
+        assertNull(cache.get("a", "", 0));
+        assertEquals(0, cache.stats().getSize());
+    }
+
+    private static ResponseCache.CachedResponse response(int bytes) {
+        return new ResponseCache.CachedResponse(new byte[bytes], Map.of());
+    }
+}
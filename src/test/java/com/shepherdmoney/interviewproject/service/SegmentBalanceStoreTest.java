@@ -0,0 +1,223 @@
+package com.shepherdmoney.interviewproject.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.shepherdmoney.interviewproject.config.BalanceStoreConfig;
+import com.shepherdmoney.interviewproject.metrics.BalanceMetrics;
+import com.shepherdmoney.interviewproject.model.BalanceHistory;
+import com.shepherdmoney.interviewproject.model.CreditCard;
+import com.shepherdmoney.interviewproject.model.User;
+import com.shepherdmoney.interviewproject.repository.BalanceHistoryRepository;
+import com.shepherdmoney.interviewproject.repository.BalanceRollupRepository;
+import com.shepherdmoney.interviewproject.repository.BalanceSegmentRepository;
+import com.shepherdmoney.interviewproject.repository.CreditCardRepository;
+import com.shepherdmoney.interviewproject.repository.UserRepository;
+import com.shepherdmoney.interviewproject.vo.request.UpdateBalancePayload;
+import com.shepherdmoney.interviewproject.vo.response.BalanceHistoryView;
+import com.shepherdmoney.interviewproject.vo.response.BalanceRollupCheck;
+import com.shepherdmoney.interviewproject.vo.response.CardBalanceView;
+import com.shepherdmoney.interviewproject.vo.response.CardLatestBalance;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Converts row history into segments and checks every read against the history the rows held.
+ * The store and the services using it are built by hand, since the shared context stores rows.
+ */
+@SpringBootTest
+@Transactional
+public class SegmentBalanceStoreTest {
+
+    private static final LocalDate START = LocalDate.of(2020, 1, 20);
+
+    @Autowired
+    private CreditCardRepository creditCardRepository;
+
+    @Autowired
+    private BalanceHistoryRepository balanceHistoryRepository;
+
+    @Autowired
+    private BalanceSegmentRepository balanceSegmentRepository;
+
+    @Autowired
+    private BalanceRollupRepository balanceRollupRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BalanceMetrics balanceMetrics;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private SegmentBalanceStore segmentBalanceStore;
+
+    private BalanceRollupService balanceRollupService;
+
+    private User user;
+
+    private final List<CreditCard> cards = new ArrayList<>();
+
+    /**
+     * The history each card held as rows, in memory.
+     */
+    private final Map<String, CreditCard> expected = new HashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        segmentBalanceStore = new SegmentBalanceStore(creditCardRepository, balanceSegmentRepository);
+        balanceRollupService = new BalanceRollupService(balanceRollupRepository, creditCardRepository, segmentBalanceStore, balanceMetrics);
+
+        user = new User();
+        user.setName("Segment User");
+        user.setEmail("segment@example.com");
+        userRepository.save(user);
+
+        Random random = new Random(23);
+        for (int i = 0; i < 3; i++) {
+            CreditCard creditCard = new CreditCard();
+            creditCard.setIssuanceBank("Bank");
+            creditCard.setNumber(UUID.randomUUID().toString());
+            creditCard.setOwner(user);
+            CreditCard reference = new CreditCard();
+            for (int day = 20 * i; day < 200; day += 1 + random.nextInt(12)) {
+                double balance = random.nextInt(100_000) / 4.0;
+                creditCard.insertBalance(START.plusDays(day), balance);
+                reference.insertBalance(START.plusDays(day), balance);
+            }
+            creditCard.flushBalanceHistory();
+            cards.add(creditCardRepository.save(creditCard));
+            expected.put(creditCard.getNumber(), reference);
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        BalanceStorageMigration migration = new BalanceStorageMigration(creditCardRepository, balanceHistoryRepository,
+                balanceSegmentRepository, balanceRollupService, transactionManager, BalanceStoreConfig.ROWS, false, 2);
+        int migrated = migration.migrate(cards.stream().map(CreditCard::getId).toList());
+        entityManager.flush();
+        entityManager.clear();
+
+        int records = expected.values().stream().mapToInt(card -> card.getBalanceHistory().size()).sum();
+        assertEquals(records, migrated, "Every row should be converted");
+    }
+
+    @Test
+    public void testMigrationPacksRowsIntoMonths() {
+        List<Integer> cardIds = cards.stream().map(CreditCard::getId).toList();
+        assertTrue(balanceHistoryRepository.findIdsByCardIdIn(cardIds, PageRequest.of(0, 1)).isEmpty(),
+                "Converted rows should be deleted");
+        long segments = balanceSegmentRepository.countByOwnerId(user.getId());
+        int records = expected.values().stream().mapToInt(card -> card.getBalanceHistory().size()).sum();
+        assertTrue(segments <= 3 * 8, "Each card spans at most eight months, found " + segments + " segments");
+        assertTrue(segments * 3 < records, "Segments should be far fewer than records");
+
+        for (CreditCard creditCard : cards) {
+            CreditCard loaded = creditCardRepository.findByNumber(creditCard.getNumber());
+            assertEquals(expected.get(creditCard.getNumber()).getBalanceHistory().size(), segmentBalanceStore.loadHistory(loaded));
+            assertEquals(expected.get(creditCard.getNumber()).getBalanceHistoryString(), loaded.getBalanceHistoryString(),
+                    "Loaded history of " + creditCard.getNumber());
+        }
+    }
+
+    @Test
+    public void testReadsMatchRowHistory() {
+        for (CreditCard creditCard : cards) {
+            CreditCard reference = expected.get(creditCard.getNumber());
+            for (int day = -3; day < 210; day++) {
+                LocalDate date = START.plusDays(day);
+                BalanceHistoryView floor = segmentBalanceStore.findFloor(creditCard.getId(), date);
+                assertEquals(reference.getBalance(date), floor == null ? 0.0 : floor.getBalance(),
+                        "Balance of card " + creditCard.getId() + " on " + date);
+            }
+
+            LocalDate from = START.plusDays(35);
+            LocalDate to = START.plusDays(130);
+            List<BalanceHistoryView> expectedRange = new ArrayList<>();
+            for (BalanceHistory history : reference.getBalanceHistorySince(from)) {
+                if (!history.getDate().isBefore(from) && !history.getDate().isAfter(to)) {
+                    expectedRange.add(new BalanceHistoryView(history.getDate(), history.getBalance()));
+                }
+            }
+            try (Stream<BalanceHistoryView> range = segmentBalanceStore.stream(creditCard.getId(), from, to)) {
+                assertEquals(expectedRange, range.toList(), "Range of card " + creditCard.getId());
+            }
+        }
+
+        List<String> numbers = cards.stream().map(CreditCard::getNumber).toList();
+        for (int day = 0; day < 210; day += 7) {
+            LocalDate date = START.plusDays(day);
+            Map<String, Double> floors = new HashMap<>();
+            for (CardBalanceView floor : segmentBalanceStore.findFloors(numbers, date)) {
+                floors.put(floor.getCreditCardNumber(), floor.getBalance());
+            }
+            for (String number : numbers) {
+                CreditCard reference = expected.get(number);
+                Double balance = reference.getBalanceHistorySince(date).iterator().next().getDate().isAfter(date)
+                        ? null
+                        : reference.getBalance(date);
+                assertEquals(balance, floors.get(number), "Batch balance of " + number + " on " + date);
+            }
+        }
+
+        List<CardLatestBalance> latest = segmentBalanceStore.findLatestByOwner(user.getId());
+        assertEquals(3, latest.size(), "Every card should have a latest balance");
+        for (CardLatestBalance balance : latest) {
+            assertEquals(balance, segmentBalanceStore.findLatest(balance.getCardId()));
+        }
+    }
+
+    @Test
+    public void testBackdatedUpdateRewritesSegments() {
+        CreditCard creditCard = cards.get(0);
+        BalanceRollupCheck repaired = balanceRollupService.check(creditCard.getNumber(), true);
+        assertTrue(repaired.isRepaired(), "Rollups should be built from the converted history");
+        entityManager.flush();
+        entityManager.clear();
+
+        BalanceUpdateService balanceUpdateService = new BalanceUpdateService(segmentBalanceStore, balanceMetrics,
+                entityManager, eventPublisher, balanceRollupService, null, transactionManager, 1, false, 256);
+        LocalDate backdated = START.plusDays(45);
+        balanceUpdateService.applyUpdates(List.of(payload(creditCard.getNumber(), backdated, 1_000_000.5),
+                payload(creditCard.getNumber(), START.plusDays(300), 12.0)));
+        entityManager.flush();
+        entityManager.clear();
+
+        CreditCard reference = expected.get(creditCard.getNumber());
+        reference.propagateBalance(backdated, 1_000_000.5);
+        reference.propagateBalance(START.plusDays(300), 12.0);
+        reference.flushBalanceHistory();
+        CreditCard loaded = creditCardRepository.findByNumber(creditCard.getNumber());
+        segmentBalanceStore.loadHistory(loaded);
+        assertEquals(reference.getBalanceHistoryString(), loaded.getBalanceHistoryString(),
+                "Segments should hold the propagated history");
+        BalanceRollupCheck check = balanceRollupService.check(creditCard.getNumber(), false);
+        assertTrue(check.getMismatches().isEmpty(), "Rollups should match the stored segments: " + check.getMismatches());
+    }
+
+    private static UpdateBalancePayload payload(String number, LocalDate date, double amount) {
+        UpdateBalancePayload payload = new UpdateBalancePayload();
+        payload.setCreditCardNumber(number);
+        payload.setBalanceDate(date);
+        payload.setBalanceAmount(amount);
+        return payload;
+    }
+}
@@ -0,0 +1,181 @@
+package com.shepherdmoney.interviewproject.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.shepherdmoney.interviewproject.config.ThreadConfig;
+import com.shepherdmoney.interviewproject.model.BalanceRollup;
+import com.shepherdmoney.interviewproject.model.CreditCard;
+import com.shepherdmoney.interviewproject.model.RollupGranularity;
+import com.shepherdmoney.interviewproject.model.User;
+import com.shepherdmoney.interviewproject.repository.BalanceHistoryRepository;
+import com.shepherdmoney.interviewproject.repository.BalanceRollupRepository;
+import com.shepherdmoney.interviewproject.repository.CreditCardRepository;
+import com.shepherdmoney.interviewproject.repository.UserRepository;
+import com.shepherdmoney.interviewproject.vo.request.UpdateBalancePayload;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+@SpringBootTest
+public class UserDeletionServiceTest {
+
+    @Autowired
+    private UserDeletionService userDeletionService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CreditCardRepository creditCardRepository;
+
+    @Autowired
+    private BalanceHistoryRepository balanceHistoryRepository;
+
+    @Autowired
+    private BalanceStore balanceStore;
+
+    @Autowired
+    private BalanceRollupRepository balanceRollupRepository;
+
+    @Autowired
+    private BalanceUpdateService balanceUpdateService;
+
+    @Autowired
+    private CardNumberCache cardNumberCache;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    public void testDeleteRemovesCardsAndHistory() {
+        User user = createUser(2, 10);
+        List<String> numbers = creditCardRepository.findNumbersByOwnerId(user.getId());
+        List<Integer> cardIds = creditCardRepository.findIdsByOwnerId(user.getId());
+        assertFalse(rollups(cardIds).isEmpty(), "Cards should have rollups before deletion");
+        assertNotNull(cardNumberCache.get(numbers.get(0)), "Card should be cached before deletion");
+
+        assertEquals(UserDeletionService.Outcome.DELETED, userDeletionService.deleteUser(user.getId()));
+
+        assertFalse(userRepository.existsById(user.getId()), "User row should be deleted");
+        assertTrue(creditCardRepository.findIdsByOwnerId(user.getId()).isEmpty(), "Cards should be deleted");
+        assertTrue(rollups(cardIds).isEmpty(), "Rollups should be deleted");
+        for (String number : numbers) {
+            assertNull(creditCardRepository.findByNumber(number), "Card " + number + " should be deleted");
+            assertNull(cardNumberCache.get(number), "Deleted card should not be served from the cache");
+        }
+        assertEquals(UserDeletionService.Outcome.NOT_FOUND, userDeletionService.deleteUser(user.getId()),
+                "Deleting twice should report the user as missing");
+    }
+
+    @Test
+    public void testDeferredDeletePurgesInChunks() throws Exception {
+        UserDeletionService deferred = new UserDeletionService(userRepository, creditCardRepository,
+                balanceStore, balanceRollupRepository, eventPublisher, transactionManager, 5, 3, ThreadConfig.PLATFORM);
+        User user = createUser(2, 10);
+        List<Integer> cardIds = creditCardRepository.findIdsByOwnerId(user.getId());
+
+        assertEquals(UserDeletionService.Outcome.PURGE_SCHEDULED, deferred.deleteUser(user.getId()));
+        assertFalse(userRepository.existsById(user.getId()), "User row should be deleted immediately");
+
+        // Waits for the queued purge to drain
+        deferred.shutdown();
+        assertTrue(balanceHistoryRepository.findIdsByCardIdIn(cardIds, PageRequest.of(0, 1)).isEmpty(),
+                "Balance history of the detached cards should be purged");
+        assertTrue(rollups(cardIds).isEmpty(), "Rollups of the detached cards should be purged");
+        for (Integer cardId : cardIds) {
+            assertFalse(creditCardRepository.existsById(cardId), "Detached card " + cardId + " should be purged");
+        }
+    }
+
+    @Test
+    public void testDetachedCardsAreNotFoundBeforeThePurge() throws Exception {
+        UserDeletionService deferred = new UserDeletionService(userRepository, creditCardRepository,
+                balanceStore, balanceRollupRepository, eventPublisher, transactionManager, 5, 3, ThreadConfig.PLATFORM);
+        User user = createUser(1, 10);
+        List<String> numbers = creditCardRepository.findNumbersByOwnerId(user.getId());
+        List<Integer> cardIds = creditCardRepository.findIdsByOwnerId(user.getId());
+
+        // Detaches the cards the way a deferred deletion does, without scheduling the purge yet
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> creditCardRepository.detachFromOwner(user.getId()));
+
+        for (String number : numbers) {
+            assertNull(creditCardRepository.findReferenceByNumber(number), "Detached card " + number + " should not be found");
+            assertNull(cardNumberCache.get(number), "Detached card " + number + " should not be served from the cache");
+        }
+        deferred.schedulePurge(cardIds).get();
+        deferred.shutdown();
+    }
+
+    @Test
+    public void testDeferredDeleteReleasesCardNumbers() throws Exception {
+        UserDeletionService deferred = new UserDeletionService(userRepository, creditCardRepository,
+                balanceStore, balanceRollupRepository, eventPublisher, transactionManager, 5, 3, ThreadConfig.PLATFORM);
+        User user = createUser(2, 10);
+        List<String> numbers = creditCardRepository.findNumbersByOwnerId(user.getId());
+
+        assertEquals(UserDeletionService.Outcome.PURGE_SCHEDULED, deferred.deleteUser(user.getId()));
+        // Re-added right away, while the purge of the detached cards may still be running
+        User newOwner = createUser(0, 0);
+        for (String number : numbers) {
+            CreditCard creditCard = new CreditCard();
+            creditCard.setIssuanceBank("Bank");
+            creditCard.setNumber(number);
+            creditCard.setOwner(newOwner);
+            creditCardRepository.save(creditCard);
+        }
+
+        deferred.shutdown();
+        for (String number : numbers) {
+            assertEquals(newOwner.getId(), cardNumberCache.get(number).getOwnerId(),
+                    "Re-added card " + number + " should belong to the new owner");
+        }
+    }
+
+    private List<BalanceRollup> rollups(List<Integer> cardIds) {
+        List<BalanceRollup> rollups = new ArrayList<>();
+        for (Integer cardId : cardIds) {
+            rollups.addAll(balanceRollupRepository.findByCard(cardId, RollupGranularity.MONTH,
+                    BalanceHistoryService.EARLIEST_DATE, BalanceHistoryService.LATEST_DATE));
+        }
+        return rollups;
+    }
+
+    private User createUser(int cards, int historyDays) {
+        User user = new User();
+        user.setName("Deleted User");
+        user.setEmail("deleted@example.com");
+        userRepository.save(user);
+        LocalDate today = LocalDate.now();
+        for (int i = 0; i < cards; i++) {
+            CreditCard creditCard = new CreditCard();
+            creditCard.setIssuanceBank("Bank");
+            creditCard.setNumber(UUID.randomUUID().toString());
+            creditCard.setOwner(user);
+            for (int day = 0; day < historyDays; day++) {
+                creditCard.insertBalance(today.minusDays(day), day);
+            }
+            creditCard.flushBalanceHistory();
+            creditCardRepository.save(creditCard);
+
+            // Goes through the write path so the card also has rollups referencing it
+            UpdateBalancePayload payload = new UpdateBalancePayload();
+            payload.setCreditCardNumber(creditCard.getNumber());
+            payload.setBalanceDate(today);
+            payload.setBalanceAmount(historyDays);
+            balanceUpdateService.applyUpdates(List.of(payload));
+        }
+        return user;
+    }
+}